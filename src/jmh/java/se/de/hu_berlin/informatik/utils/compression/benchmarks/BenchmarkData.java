@@ -0,0 +1,99 @@
+/**
+ *
+ */
+package se.de.hu_berlin.informatik.utils.compression.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates the input data for the compression benchmarks. Every data set contains exactly
+ * {@link #VALUES} values, such that the throughput of all benchmarks is given in values per second.
+ *
+ * @author Simon Heiden
+ */
+final class BenchmarkData {
+
+	// number of values that are encoded or decoded per benchmark invocation
+	static final int VALUES = 1 << 16;
+
+	// average length of sequences in delimiter mode
+	static final int AVERAGE_LENGTH = 16;
+
+	// every n-th sequence repeats an earlier one (as in typical execution traces)
+	private static final int REPEAT_RATE = 4;
+
+	private BenchmarkData() {
+		// only static methods
+	}
+
+	/**
+	 * @param bitWidth
+	 * the number of bits needed to store the largest value
+	 * @return
+	 * the largest value to store
+	 */
+	static int maxValue(int bitWidth) {
+		return (1 << bitWidth) - 1;
+	}
+
+	/**
+	 * Generates sequences with values in the range [1, 2^bitWidth - 1].
+	 * @param bitWidth
+	 * the number of bits needed to store the largest value
+	 * @param sequenceLength
+	 * the length of all sequences, or 0 for sequences of varying length
+	 * @return
+	 * sequences with a total of {@link #VALUES} values
+	 */
+	static int[][] sequences(int bitWidth, int sequenceLength) {
+		Random random = new Random(31 * bitWidth + sequenceLength);
+		int maxValue = maxValue(bitWidth);
+		List<int[]> sequences = new ArrayList<>();
+		int total = 0;
+		while (total < VALUES) {
+			int[] sequence;
+			if (sequences.size() > 0 && random.nextInt(REPEAT_RATE) == 0) {
+				sequence = sequences.get(random.nextInt(sequences.size())).clone();
+			} else {
+				sequence = new int[sequenceLength > 0 ? sequenceLength : random.nextInt(2 * AVERAGE_LENGTH + 1)];
+				for (int i = 0; i < sequence.length; ++i) {
+					sequence[i] = 1 + random.nextInt(maxValue);
+				}
+			}
+			if (total + sequence.length > VALUES) {
+				//only possible in delimiter mode
+				sequence = Arrays.copyOf(sequence, VALUES - total);
+			}
+			sequences.add(sequence);
+			total += sequence.length;
+		}
+		return sequences.toArray(new int[sequences.size()][]);
+	}
+
+	static List<List<Integer>> toLists(int[][] sequences) {
+		List<List<Integer>> result = new ArrayList<>(sequences.length);
+		for (int[] sequence : sequences) {
+			List<Integer> list = new ArrayList<>(sequence.length);
+			for (int element : sequence) {
+				list.add(element);
+			}
+			result.add(list);
+		}
+		return result;
+	}
+
+	static Integer[][] toIntegerArrays(int[][] sequences) {
+		Integer[][] result = new Integer[sequences.length][];
+		for (int i = 0; i < sequences.length; ++i) {
+			result[i] = new Integer[sequences[i].length];
+			for (int j = 0; j < sequences[i].length; ++j) {
+				result[i][j] = sequences[i][j];
+			}
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,70 @@
+/**
+ *
+ */
+package se.de.hu_berlin.informatik.utils.compression.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import se.de.hu_berlin.informatik.utils.compression.CompressedIntSequencesReader;
+import se.de.hu_berlin.informatik.utils.compression.IntArraysToCompressedByteArrayProcessor;
+
+/**
+ * Measures the access to single sequences via a {@link CompressedIntSequencesReader},
+ * with and without an index that is written by the encoder. The throughput is given
+ * in sequences per second.
+ *
+ * @author Simon Heiden
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RandomAccessBenchmark {
+
+	@Param({ "4", "12", "24" })
+	public int bitWidth;
+
+	// 0 for delimiter mode
+	@Param({ "0", "16", "256" })
+	public int sequenceLength;
+
+	// 0 for no index (the reader builds it on first access)
+	@Param({ "0", "64" })
+	public int indexInterval;
+
+	private CompressedIntSequencesReader reader;
+	private int next = 0;
+
+	@Setup
+	public void setUp() {
+		int[][] sequences = BenchmarkData.sequences(bitWidth, sequenceLength);
+		IntArraysToCompressedByteArrayProcessor encoder = new IntArraysToCompressedByteArrayProcessor(
+				BenchmarkData.maxValue(bitWidth), sequenceLength, false, indexInterval);
+		for (int[] sequence : sequences) {
+			encoder.processItem(sequence);
+		}
+		reader = new CompressedIntSequencesReader(encoder.getResultFromCollectedItems(), false);
+	}
+
+	@Benchmark
+	public int[] getSequence() {
+		//visit the sequences in a scattered order
+		next = (int) ((next + 0x9E3779B1L) % reader.size());
+		return reader.getSequence(next);
+	}
+
+}
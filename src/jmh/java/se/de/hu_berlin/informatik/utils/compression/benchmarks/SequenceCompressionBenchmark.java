@@ -0,0 +1,218 @@
+/**
+ *
+ */
+package se.de.hu_berlin.informatik.utils.compression.benchmarks;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import se.de.hu_berlin.informatik.utils.compression.BlockCompressedByteArrayToIntArraysProcessor;
+import se.de.hu_berlin.informatik.utils.compression.ChunkedCompressedByteArrayToIntArraysProcessor;
+import se.de.hu_berlin.informatik.utils.compression.CompressedByteArrayToIntArraysProcessor;
+import se.de.hu_berlin.informatik.utils.compression.CompressedByteArrayToIntSequencesProcessor;
+import se.de.hu_berlin.informatik.utils.compression.DeltaCompressedByteArrayToIntArraysProcessor;
+import se.de.hu_berlin.informatik.utils.compression.IntArraysToBlockCompressedByteArrayProcessor;
+import se.de.hu_berlin.informatik.utils.compression.IntArraysToChunkedCompressedByteArrayProcessor;
+import se.de.hu_berlin.informatik.utils.compression.IntArraysToCompressedByteArrayProcessor;
+import se.de.hu_berlin.informatik.utils.compression.IntArraysToDeltaCompressedByteArrayProcessor;
+import se.de.hu_berlin.informatik.utils.compression.IntSequencesToCompressedByteArrayProcessor;
+import se.de.hu_berlin.informatik.utils.compression.IntegerArraysToCompressedByteArrayProcessor;
+
+/**
+ * Measures the in-memory encoders and decoders for collections of integer sequences.
+ * The throughput is given in values per second.
+ *
+ * @author Simon Heiden
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SequenceCompressionBenchmark {
+
+	public enum Codec {
+		BIT_PACKED {
+			@Override
+			byte[] encode(SequenceCompressionBenchmark data) {
+				IntArraysToCompressedByteArrayProcessor encoder = new IntArraysToCompressedByteArrayProcessor(
+						data.maxValue, data.sequenceLength, false);
+				for (int[] sequence : data.sequences) {
+					encoder.processItem(sequence);
+				}
+				return encoder.getResultFromCollectedItems();
+			}
+
+			@Override
+			Object decode(byte[] encoded) {
+				return new CompressedByteArrayToIntArraysProcessor(false).processItem(encoded);
+			}
+		},
+		INTEGER_ARRAYS {
+			@Override
+			byte[] encode(SequenceCompressionBenchmark data) {
+				IntegerArraysToCompressedByteArrayProcessor encoder = new IntegerArraysToCompressedByteArrayProcessor(
+						data.maxValue, data.sequenceLength, false);
+				for (Integer[] sequence : data.integerArrays) {
+					encoder.processItem(sequence);
+				}
+				return encoder.getResultFromCollectedItems();
+			}
+
+			@Override
+			Object decode(byte[] encoded) {
+				return new CompressedByteArrayToIntArraysProcessor(false).processItem(encoded);
+			}
+		},
+		INT_SEQUENCES {
+			@Override
+			byte[] encode(SequenceCompressionBenchmark data) {
+				IntSequencesToCompressedByteArrayProcessor encoder = new IntSequencesToCompressedByteArrayProcessor(
+						data.maxValue, data.sequenceLength, false);
+				for (List<Integer> sequence : data.lists) {
+					encoder.processItem(sequence);
+				}
+				return encoder.getResultFromCollectedItems();
+			}
+
+			@Override
+			Object decode(byte[] encoded) {
+				return new CompressedByteArrayToIntSequencesProcessor().processItem(encoded);
+			}
+		},
+		DEDUPLICATED {
+			@Override
+			byte[] encode(SequenceCompressionBenchmark data) {
+				IntArraysToCompressedByteArrayProcessor encoder = new IntArraysToCompressedByteArrayProcessor(
+						data.maxValue, data.sequenceLength, false).useDeduplication();
+				for (int[] sequence : data.sequences) {
+					encoder.processItem(sequence);
+				}
+				return encoder.getResultFromCollectedItems();
+			}
+
+			@Override
+			Object decode(byte[] encoded) {
+				return new CompressedByteArrayToIntArraysProcessor(false).processItem(encoded);
+			}
+		},
+		DELTA {
+			@Override
+			byte[] encode(SequenceCompressionBenchmark data) {
+				IntArraysToDeltaCompressedByteArrayProcessor encoder =
+						new IntArraysToDeltaCompressedByteArrayProcessor(data.sequenceLength);
+				for (int[] sequence : data.sequences) {
+					encoder.processItem(sequence);
+				}
+				return encoder.getResultFromCollectedItems();
+			}
+
+			@Override
+			Object decode(byte[] encoded) {
+				return new DeltaCompressedByteArrayToIntArraysProcessor().processItem(encoded);
+			}
+		},
+		BLOCK {
+			@Override
+			byte[] encode(SequenceCompressionBenchmark data) {
+				IntArraysToBlockCompressedByteArrayProcessor encoder =
+						new IntArraysToBlockCompressedByteArrayProcessor(data.sequenceLength, false);
+				for (int[] sequence : data.sequences) {
+					encoder.processItem(sequence);
+				}
+				return encoder.getResultFromCollectedItems();
+			}
+
+			@Override
+			Object decode(byte[] encoded) {
+				return new BlockCompressedByteArrayToIntArraysProcessor().processItem(encoded);
+			}
+		},
+		BLOCK_PATCHED {
+			@Override
+			byte[] encode(SequenceCompressionBenchmark data) {
+				IntArraysToBlockCompressedByteArrayProcessor encoder =
+						new IntArraysToBlockCompressedByteArrayProcessor(data.sequenceLength, true);
+				for (int[] sequence : data.sequences) {
+					encoder.processItem(sequence);
+				}
+				return encoder.getResultFromCollectedItems();
+			}
+
+			@Override
+			Object decode(byte[] encoded) {
+				return new BlockCompressedByteArrayToIntArraysProcessor().processItem(encoded);
+			}
+		},
+		CHUNKED {
+			@Override
+			byte[] encode(SequenceCompressionBenchmark data) {
+				return new IntArraysToChunkedCompressedByteArrayProcessor(
+						data.maxValue, data.sequenceLength, false).processItem(Arrays.asList(data.sequences));
+			}
+
+			@Override
+			Object decode(byte[] encoded) {
+				return new ChunkedCompressedByteArrayToIntArraysProcessor(false).processItem(encoded);
+			}
+		};
+
+		abstract byte[] encode(SequenceCompressionBenchmark data);
+
+		abstract Object decode(byte[] encoded);
+	}
+
+	@Param
+	public Codec codec;
+
+	@Param({ "4", "12", "24" })
+	public int bitWidth;
+
+	// 0 for delimiter mode
+	@Param({ "0", "16", "256" })
+	public int sequenceLength;
+
+	private int maxValue;
+	private int[][] sequences;
+	private List<List<Integer>> lists;
+	private Integer[][] integerArrays;
+
+	private byte[] encoded;
+
+	@Setup
+	public void setUp() {
+		maxValue = BenchmarkData.maxValue(bitWidth);
+		sequences = BenchmarkData.sequences(bitWidth, sequenceLength);
+		lists = BenchmarkData.toLists(sequences);
+		integerArrays = BenchmarkData.toIntegerArrays(sequences);
+		encoded = codec.encode(this);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BenchmarkData.VALUES)
+	public byte[] encode() {
+		return codec.encode(this);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BenchmarkData.VALUES)
+	public Object decode() {
+		return codec.decode(encoded);
+	}
+
+}
@@ -0,0 +1,141 @@
+/**
+ *
+ */
+package se.de.hu_berlin.informatik.utils.compression.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import se.de.hu_berlin.informatik.utils.compression.ByteArraysToCompressedByteArrayProcessor;
+import se.de.hu_berlin.informatik.utils.compression.CompressedByteArraysToByteArraysProcessor;
+import se.de.hu_berlin.informatik.utils.compression.single.ByteArrayToCompressedByteArrayProcessor;
+import se.de.hu_berlin.informatik.utils.compression.single.CompressedByteArrayToByteArrayProcessor;
+import se.de.hu_berlin.informatik.utils.compression.single.CompressedByteArrayToIntArrayProcessor;
+import se.de.hu_berlin.informatik.utils.compression.single.CompressedByteArrayToIntSequenceProcessor;
+import se.de.hu_berlin.informatik.utils.compression.single.IntArrayToCompressedByteArrayProcessor;
+import se.de.hu_berlin.informatik.utils.compression.single.IntSequenceToCompressedByteArrayProcessor;
+
+/**
+ * Measures the in-memory encoders and decoders for single sequences and for byte arrays.
+ * Every invocation encodes or decodes one sequence of {@link BenchmarkData#VALUES} values,
+ * so the throughput is given in values per second. Bytes are stored with at most 7 bits.
+ *
+ * @author Simon Heiden
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SingleSequenceCompressionBenchmark {
+
+	// length of the sequences that are stored in a byte array of multiple sequences
+	private static final int BYTE_SEQUENCE_LENGTH = 16;
+
+	public enum Codec {
+		INT_ARRAY {
+			@Override
+			byte[] encode(SingleSequenceCompressionBenchmark data) {
+				return new IntArrayToCompressedByteArrayProcessor().processItem(data.values);
+			}
+
+			@Override
+			Object decode(byte[] encoded) {
+				return new CompressedByteArrayToIntArrayProcessor().processItem(encoded);
+			}
+		},
+		INT_SEQUENCE {
+			@Override
+			byte[] encode(SingleSequenceCompressionBenchmark data) {
+				return new IntSequenceToCompressedByteArrayProcessor().processItem(data.list);
+			}
+
+			@Override
+			Object decode(byte[] encoded) {
+				return new CompressedByteArrayToIntSequenceProcessor().processItem(encoded);
+			}
+		},
+		BYTE_ARRAY {
+			@Override
+			byte[] encode(SingleSequenceCompressionBenchmark data) {
+				return new ByteArrayToCompressedByteArrayProcessor().processItem(data.bytes);
+			}
+
+			@Override
+			Object decode(byte[] encoded) {
+				return new CompressedByteArrayToByteArrayProcessor().processItem(encoded);
+			}
+		},
+		BYTE_ARRAYS {
+			@Override
+			byte[] encode(SingleSequenceCompressionBenchmark data) {
+				ByteArraysToCompressedByteArrayProcessor encoder = new ByteArraysToCompressedByteArrayProcessor(
+						BenchmarkData.maxValue(data.byteWidth), BYTE_SEQUENCE_LENGTH);
+				encoder.processItem(data.bytes);
+				return encoder.getResultFromCollectedItems();
+			}
+
+			@Override
+			Object decode(byte[] encoded) {
+				return new CompressedByteArraysToByteArraysProcessor().processItem(encoded);
+			}
+		};
+
+		abstract byte[] encode(SingleSequenceCompressionBenchmark data);
+
+		abstract Object decode(byte[] encoded);
+	}
+
+	@Param
+	public Codec codec;
+
+	@Param({ "4", "12", "24" })
+	public int bitWidth;
+
+	private int byteWidth;
+	private int[] values;
+	private List<Integer> list;
+	private byte[] bytes;
+
+	private byte[] encoded;
+
+	@Setup
+	public void setUp() {
+		byteWidth = Math.min(bitWidth, 7);
+		values = BenchmarkData.sequences(bitWidth, BenchmarkData.VALUES)[0];
+		list = BenchmarkData.toLists(new int[][] { values }).get(0);
+		int[] byteValues = BenchmarkData.sequences(byteWidth, BenchmarkData.VALUES)[0];
+		bytes = new byte[byteValues.length];
+		for (int i = 0; i < bytes.length; ++i) {
+			bytes[i] = (byte) byteValues[i];
+		}
+		encoded = codec.encode(this);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BenchmarkData.VALUES)
+	public byte[] encode() {
+		return codec.encode(this);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BenchmarkData.VALUES)
+	public Object decode() {
+		return codec.decode(encoded);
+	}
+
+}
@@ -0,0 +1,202 @@
+/**
+ *
+ */
+package se.de.hu_berlin.informatik.utils.compression.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import se.de.hu_berlin.informatik.utils.compression.BufferedBlockCompressedByteArrayToIntArrayQueueProcessor;
+import se.de.hu_berlin.informatik.utils.compression.BufferedCompressedByteArrayToIntArrayQueueProcessor;
+import se.de.hu_berlin.informatik.utils.compression.BufferedCompressedIntArrayIterator;
+import se.de.hu_berlin.informatik.utils.compression.BufferedIntArraysToBlockCompressedByteArrayProcessor;
+import se.de.hu_berlin.informatik.utils.compression.BufferedIntArraysToCompressedByteArrayProcessor;
+import se.de.hu_berlin.informatik.utils.compression.single.BufferedCompressedByteArrayToIntegerQueueProcessor;
+import se.de.hu_berlin.informatik.utils.compression.single.BufferedCompressedByteArrayToLongQueueProcessor;
+import se.de.hu_berlin.informatik.utils.compression.single.BufferedIntegersToCompressedByteArrayProcessor;
+import se.de.hu_berlin.informatik.utils.compression.single.BufferedLongsToCompressedByteArrayProcessor;
+import se.de.hu_berlin.informatik.utils.compression.ziputils.ZipFileWrapper;
+import se.de.hu_berlin.informatik.utils.files.FileUtils;
+
+/**
+ * Measures the encoders and decoders that write to and read from zip file entries.
+ * The throughput is given in values per second. The single value codecs store all
+ * values of all sequences in one stream and ignore the sequence length.
+ *
+ * @author Simon Heiden
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZipCompressionBenchmark {
+
+	private static final String ENTRY = "0";
+
+	public enum Codec {
+		BIT_PACKED {
+			@Override
+			void encode(ZipCompressionBenchmark data) throws IOException {
+				BufferedIntArraysToCompressedByteArrayProcessor encoder = new BufferedIntArraysToCompressedByteArrayProcessor(
+						data.zipFilePath, ENTRY, true, data.maxValue, data.sequenceLength, false);
+				for (int[] sequence : data.sequences) {
+					encoder.processItem(sequence);
+				}
+				encoder.getResultFromCollectedItems();
+			}
+
+			@Override
+			long decode(ZipCompressionBenchmark data) {
+				return new BufferedCompressedByteArrayToIntArrayQueueProcessor(
+						data.zipFile, false, new ArrayDeque<>()).processItem(ENTRY).size();
+			}
+		},
+		BIT_PACKED_ITERATOR {
+			@Override
+			void encode(ZipCompressionBenchmark data) throws IOException {
+				BIT_PACKED.encode(data);
+			}
+
+			@Override
+			long decode(ZipCompressionBenchmark data) {
+				long sum = 0;
+				try (BufferedCompressedIntArrayIterator iterator =
+						new BufferedCompressedIntArrayIterator(data.zipFile, ENTRY, false)) {
+					int[] buffer = new int[16];
+					while (iterator.hasNext()) {
+						buffer = iterator.next(buffer);
+						sum += iterator.getLength();
+					}
+				}
+				return sum;
+			}
+		},
+		BLOCK {
+			@Override
+			void encode(ZipCompressionBenchmark data) throws IOException {
+				BufferedIntArraysToBlockCompressedByteArrayProcessor encoder = new BufferedIntArraysToBlockCompressedByteArrayProcessor(
+						data.zipFilePath, ENTRY, true, data.sequenceLength, true);
+				for (int[] sequence : data.sequences) {
+					encoder.processItem(sequence);
+				}
+				encoder.getResultFromCollectedItems();
+			}
+
+			@Override
+			long decode(ZipCompressionBenchmark data) {
+				return new BufferedBlockCompressedByteArrayToIntArrayQueueProcessor(
+						data.zipFile, new ArrayDeque<>()).processItem(ENTRY).size();
+			}
+		},
+		INTEGERS {
+			@Override
+			void encode(ZipCompressionBenchmark data) throws IOException {
+				BufferedIntegersToCompressedByteArrayProcessor encoder = new BufferedIntegersToCompressedByteArrayProcessor(
+						data.zipFilePath, ENTRY, true, data.maxValue, false);
+				for (int[] sequence : data.sequences) {
+					for (int element : sequence) {
+						encoder.processItem(element);
+					}
+				}
+				encoder.getResultFromCollectedItems();
+			}
+
+			@Override
+			long decode(ZipCompressionBenchmark data) {
+				long[] sum = new long[1];
+				new BufferedCompressedByteArrayToIntegerQueueProcessor(
+						data.zipFile, false, i -> sum[0] += i).consumeItem(ENTRY);
+				return sum[0];
+			}
+		},
+		LONGS {
+			@Override
+			void encode(ZipCompressionBenchmark data) throws IOException {
+				BufferedLongsToCompressedByteArrayProcessor encoder = new BufferedLongsToCompressedByteArrayProcessor(
+						data.zipFilePath, ENTRY, true, data.maxValue, false);
+				for (int[] sequence : data.sequences) {
+					for (int element : sequence) {
+						encoder.processItem((long) element);
+					}
+				}
+				encoder.getResultFromCollectedItems();
+			}
+
+			@Override
+			long decode(ZipCompressionBenchmark data) {
+				return new BufferedCompressedByteArrayToLongQueueProcessor(
+						data.zipFile, false, new ArrayDeque<>()).processItem(ENTRY).size();
+			}
+		};
+
+		abstract void encode(ZipCompressionBenchmark data) throws IOException;
+
+		abstract long decode(ZipCompressionBenchmark data);
+	}
+
+	@Param
+	public Codec codec;
+
+	@Param({ "4", "12", "24" })
+	public int bitWidth;
+
+	// 0 for delimiter mode
+	@Param({ "0", "16", "256" })
+	public int sequenceLength;
+
+	private int maxValue;
+	private int[][] sequences;
+
+	private Path directory;
+	private Path zipFilePath;
+	private ZipFileWrapper zipFile;
+
+	@Setup
+	public void setUp() throws IOException {
+		maxValue = BenchmarkData.maxValue(bitWidth);
+		sequences = BenchmarkData.sequences(bitWidth, sequenceLength);
+		directory = Files.createTempDirectory("zipBenchmark");
+		zipFilePath = directory.resolve("benchmark.zip");
+		encode();
+	}
+
+	@TearDown
+	public void tearDown() {
+		FileUtils.delete(directory);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BenchmarkData.VALUES)
+	public void encode() throws IOException {
+		codec.encode(this);
+		//the decoders open the zip file directly, so the wrapper has to release it
+		zipFile = ZipFileWrapper.getZipFileWrapper(zipFilePath);
+		zipFile.close();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BenchmarkData.VALUES)
+	public long decode() {
+		return codec.decode(this);
+	}
+
+}
@@ -0,0 +1,112 @@
+/**
+ *
+ */
+package se.de.hu_berlin.informatik.utils.threaded.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import se.de.hu_berlin.informatik.utils.threaded.disruptor.DisruptorProvider;
+import se.de.hu_berlin.informatik.utils.threaded.disruptor.WaitStrategyType;
+import se.de.hu_berlin.informatik.utils.threaded.disruptor.eventhandler.DisruptorFCFSEventHandler;
+
+/**
+ * Measures concurrent submissions to a shared {@link DisruptorProvider}, whose
+ * handler does (almost) nothing, such that the costs of the submission path and
+ * the contention between the producer threads dominate. The throughput is given
+ * in submitted items per second.
+ *
+ * @author Simon Heiden
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DisruptorSubmitBenchmark {
+
+	@Param({ "1", "4" })
+	public int handlerCount;
+
+	@Param({ "YIELDING", "BLOCKING" })
+	public WaitStrategyType waitStrategy;
+
+	private static final int BATCH_SIZE = 64;
+
+	private DisruptorProvider<Integer> provider;
+	private List<Integer> batch;
+
+	@Setup(Level.Trial)
+	@SuppressWarnings("unchecked")
+	public void setUp() {
+		provider = new DisruptorProvider<>(1024);
+		provider.setWaitStrategy(waitStrategy);
+		DisruptorFCFSEventHandler<Integer>[] handlers = new DisruptorFCFSEventHandler[handlerCount];
+		for (int i = 0; i < handlerCount; ++i) {
+			handlers[i] = new DisruptorFCFSEventHandler<Integer>() {
+				@Override
+				public void processEvent(Integer input) throws Exception {
+					// nothing to do
+				}
+
+				@Override
+				public void resetAndInit() {
+					// nothing to reset
+				}
+			};
+		}
+		provider.connectHandlers(handlers);
+		batch = new ArrayList<>(BATCH_SIZE);
+		for (int i = 0; i < BATCH_SIZE; ++i) {
+			batch.add(i);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		provider.shutdown();
+	}
+
+	@Benchmark
+	@Threads(1)
+	public void submitSingleProducer() {
+		provider.submit(1);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public void submitFourProducers() {
+		provider.submit(1);
+	}
+
+	@Benchmark
+	@Threads(Threads.MAX)
+	public void submitMaxProducers() {
+		provider.submit(1);
+	}
+
+	// one invocation submits BATCH_SIZE items
+	@Benchmark
+	@Threads(4)
+	public void submitBatchFourProducers() {
+		provider.submitBatch(batch);
+	}
+
+}
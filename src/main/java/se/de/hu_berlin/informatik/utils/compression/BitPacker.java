@@ -0,0 +1,223 @@
+/**
+ *
+ */
+package se.de.hu_berlin.informatik.utils.compression;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import se.de.hu_berlin.informatik.utils.miscellaneous.Log;
+
+/**
+ * Packs integers with a given number of bits each into a continuous stream of bytes.
+ * Values are collected in a 64 bit accumulator and are written to the underlying
+ * output stream in whole blocks of bytes, most significant bits first.
+ *
+ * <p> The produced byte layout is identical to the layout of the bit-by-bit
+ * encoders in this package, i.e. the first bit of a value directly follows
+ * the last bit of the previous value, and the last byte gets padded with zeroes.
+ *
+ * @author Simon Heiden
+ */
+public class BitPacker {
+
+	// same buffer that is used in zip utils
+	public static final int BLOCK_SIZE = 4096;
+
+	// MASKS[n] keeps the last n bits of a value
+	static final long[] MASKS = new long[65];
+
+	static {
+		for (int i = 0; i < 64; ++i) {
+			MASKS[i] = (1L << i) - 1;
+		}
+		MASKS[64] = -1L;
+	}
+
+	private OutputStream out;
+
+	private final byte[] block;
+	private int blockPos = 0;
+	private long writtenBytes = 0;
+
+	private long accumulator = 0;
+	private int accumulatedBits = 0;
+
+	/**
+	 * Creates a new bit packer that writes whole blocks of bytes to the given output stream.
+	 * @param out
+	 * the output stream to write to
+	 */
+	public BitPacker(OutputStream out) {
+		this(out, BLOCK_SIZE);
+	}
+
+	/**
+	 * Creates a new bit packer that writes whole blocks of bytes to the given output stream.
+	 * @param out
+	 * the output stream to write to
+	 * @param blockSize
+	 * the number of bytes to collect before writing them to the output stream
+	 */
+	public BitPacker(OutputStream out, int blockSize) {
+		super();
+		if (blockSize < 8) {
+			throw new IllegalArgumentException("Block size has to be at least 8 bytes.");
+		}
+		this.out = out;
+		this.block = new byte[blockSize];
+	}
+
+	/**
+	 * Stores the last {@code bits} bits of the given value.
+	 * @param value
+	 * the value to store
+	 * @param bits
+	 * the number of bits to use (at most 32)
+	 */
+	public void write(int value, int bits) {
+		accumulator = (accumulator << bits) | (value & MASKS[bits]);
+		accumulatedBits += bits;
+		if (accumulatedBits >= 32) {
+			emitWord();
+		}
+	}
+
+	/**
+	 * Stores the last {@code bits} bits of the given value.
+	 * @param value
+	 * the value to store
+	 * @param bits
+	 * the number of bits to use (at most 64)
+	 */
+	public void writeLong(long value, int bits) {
+		if (bits > 32) {
+			write((int) (value >>> 32), bits - 32);
+			write((int) value, 32);
+		} else {
+			write((int) value, bits);
+		}
+	}
+
+	/**
+	 * Stores the last {@code bits} bits of all values in the given range of the array.
+	 * @param values
+	 * an array of values
+	 * @param from
+	 * the index of the first value to store (inclusive)
+	 * @param to
+	 * the index of the last value to store (exclusive)
+	 * @param bits
+	 * the number of bits to use for each value (at most 32)
+	 */
+	public void writeAll(int[] values, int from, int to, int bits) {
+		final long mask = MASKS[bits];
+		long acc = accumulator;
+		int accBits = accumulatedBits;
+		for (int i = from; i < to; ++i) {
+			acc = (acc << bits) | (values[i] & mask);
+			accBits += bits;
+			if (accBits >= 32) {
+				if (blockPos + 4 > block.length) {
+					flushBlock();
+				}
+				accBits -= 32;
+				int word = (int) (acc >>> accBits);
+				block[blockPos] = (byte) (word >>> 24);
+				block[blockPos+1] = (byte) (word >>> 16);
+				block[blockPos+2] = (byte) (word >>> 8);
+				block[blockPos+3] = (byte) word;
+				blockPos += 4;
+			}
+		}
+		accumulator = acc;
+		accumulatedBits = accBits;
+	}
+
+	/**
+	 * Pads the current byte with zeroes, if necessary, such that the next
+	 * value starts at a byte boundary.
+	 */
+	public void alignToByte() {
+		int remainder = accumulatedBits % 8;
+		if (remainder != 0) {
+			write(0, 8 - remainder);
+		}
+	}
+
+	/**
+	 * @return
+	 * the total number of bits that were stored by this packer so far
+	 */
+	public long getBitCount() {
+		return (writtenBytes + blockPos) * 8L + accumulatedBits;
+	}
+
+	/**
+	 * Writes all complete bytes to the output stream. Up to 7 bits may
+	 * remain pending afterwards. They can be obtained via {@link #getPendingByte()}.
+	 */
+	public void flush() {
+		while (accumulatedBits >= 8) {
+			if (blockPos >= block.length) {
+				flushBlock();
+			}
+			accumulatedBits -= 8;
+			block[blockPos++] = (byte) (accumulator >>> accumulatedBits);
+		}
+		flushBlock();
+	}
+
+	/**
+	 * @return
+	 * the number of bits that are not yet written to the output stream
+	 * (after calling {@link #flush()}, this is less than 8)
+	 */
+	public int getPendingBits() {
+		return accumulatedBits;
+	}
+
+	/**
+	 * @return
+	 * the pending bits (see {@link #flush()}), padded with zeroes to form a full byte
+	 */
+	public byte getPendingByte() {
+		return (byte) (accumulator << (8 - accumulatedBits));
+	}
+
+	/**
+	 * Writes all pending bits to the output stream. The last byte is
+	 * padded with zeroes, if necessary. Further values may be written afterwards,
+	 * starting at the next byte boundary.
+	 */
+	public void finish() {
+		alignToByte();
+		flush();
+	}
+
+	private void emitWord() {
+		if (blockPos + 4 > block.length) {
+			flushBlock();
+		}
+		accumulatedBits -= 32;
+		int word = (int) (accumulator >>> accumulatedBits);
+		block[blockPos] = (byte) (word >>> 24);
+		block[blockPos+1] = (byte) (word >>> 16);
+		block[blockPos+2] = (byte) (word >>> 8);
+		block[blockPos+3] = (byte) word;
+		blockPos += 4;
+	}
+
+	private void flushBlock() {
+		if (blockPos > 0) {
+			try {
+				out.write(block, 0, blockPos);
+			} catch (IOException e) {
+				Log.abort(this, e, "Could not write to output stream.");
+			}
+			writtenBytes += blockPos;
+			blockPos = 0;
+		}
+	}
+
+}
@@ -0,0 +1,216 @@
+/**
+ *
+ */
+package se.de.hu_berlin.informatik.utils.compression;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import se.de.hu_berlin.informatik.utils.miscellaneous.Log;
+
+/**
+ * Unpacks integers with a given number of bits each from a continuous stream of bytes,
+ * as produced by a {@link BitPacker}. Bytes are loaded into a 64 bit accumulator
+ * and values are extracted from it with precomputed masks.
+ *
+ * <p> The bytes may either be given as a byte array or be read block-wise from an input stream.
+ *
+ * @author Simon Heiden
+ */
+public class BitUnpacker {
+
+	private final InputStream in;
+
+	private byte[] buffer;
+	private int pos;
+	private int limit;
+	private long consumedBytes = 0;
+
+	private long accumulator = 0;
+	private int accumulatedBits = 0;
+
+	/**
+	 * Creates a new bit unpacker that reads from the given range of the given array.
+	 * @param array
+	 * the array holding the packed bits
+	 * @param offset
+	 * the index of the first byte to read
+	 * @param length
+	 * the number of bytes that may be read
+	 */
+	public BitUnpacker(byte[] array, int offset, int length) {
+		super();
+		this.in = null;
+		this.buffer = array;
+		this.pos = offset;
+		this.limit = offset + length;
+	}
+
+	/**
+	 * Creates a new bit unpacker that reads from the given array, starting at the given offset.
+	 * @param array
+	 * the array holding the packed bits
+	 * @param offset
+	 * the index of the first byte to read
+	 */
+	public BitUnpacker(byte[] array, int offset) {
+		this(array, offset, array.length - offset);
+	}
+
+	/**
+	 * Creates a new bit unpacker that reads whole blocks of bytes from the given input stream.
+	 * @param in
+	 * the input stream to read from
+	 */
+	public BitUnpacker(InputStream in) {
+		this(in, BitPacker.BLOCK_SIZE);
+	}
+
+	/**
+	 * Creates a new bit unpacker that reads whole blocks of bytes from the given input stream.
+	 * @param in
+	 * the input stream to read from
+	 * @param blockSize
+	 * the maximum number of bytes to read from the stream at once
+	 */
+	public BitUnpacker(InputStream in, int blockSize) {
+		super();
+		this.in = in;
+		this.buffer = new byte[blockSize];
+		this.pos = 0;
+		this.limit = 0;
+	}
+
+	/**
+	 * Checks whether at least the given number of bits is still available.
+	 * @param bits
+	 * the number of bits (at most 57)
+	 * @return
+	 * true if at least {@code bits} bits may still be read
+	 */
+	public boolean hasRemaining(int bits) {
+		if (accumulatedBits < bits) {
+			fill();
+		}
+		return accumulatedBits >= bits;
+	}
+
+	/**
+	 * Reads the next value with the given number of bits.
+	 * @param bits
+	 * the number of bits to read (at most 32)
+	 * @return
+	 * the value
+	 */
+	public int read(int bits) {
+		if (accumulatedBits < bits) {
+			fill();
+			if (accumulatedBits < bits) {
+				Log.abort(this, "Unexpected end of compressed data.");
+			}
+		}
+		accumulatedBits -= bits;
+		return (int) ((accumulator >>> accumulatedBits) & BitPacker.MASKS[bits]);
+	}
+
+	/**
+	 * Reads the next value with the given number of bits.
+	 * @param bits
+	 * the number of bits to read (at most 64)
+	 * @return
+	 * the value
+	 */
+	public long readLong(int bits) {
+		if (bits > 32) {
+			long high = read(bits - 32) & BitPacker.MASKS[32];
+			return (high << 32) | (read(32) & BitPacker.MASKS[32]);
+		} else {
+			return read(bits) & BitPacker.MASKS[32];
+		}
+	}
+
+	/**
+	 * Reads the given number of values with the given number of bits each
+	 * into the given array.
+	 * @param dest
+	 * the array to store the values in
+	 * @param offset
+	 * the index of the first value in the array
+	 * @param count
+	 * the number of values to read
+	 * @param bits
+	 * the number of bits per value (at most 32)
+	 */
+	public void readAll(int[] dest, int offset, int count, int bits) {
+		final long mask = BitPacker.MASKS[bits];
+		long acc = accumulator;
+		int accBits = accumulatedBits;
+		for (int i = offset; i < offset + count; ++i) {
+			if (accBits < bits) {
+				accumulator = acc;
+				accumulatedBits = accBits;
+				fill();
+				if (accumulatedBits < bits) {
+					Log.abort(this, "Unexpected end of compressed data.");
+				}
+				acc = accumulator;
+				accBits = accumulatedBits;
+			}
+			accBits -= bits;
+			dest[i] = (int) ((acc >>> accBits) & mask);
+		}
+		accumulator = acc;
+		accumulatedBits = accBits;
+	}
+
+	/**
+	 * Skips the remaining bits of the current byte, if any, such that the next
+	 * value is read from the start of the next byte.
+	 */
+	public void alignToByte() {
+		accumulatedBits -= accumulatedBits % 8;
+	}
+
+	/**
+	 * @return
+	 * the index of the next bit to read, relative to the start of the
+	 * given array or the start of the input stream, respectively
+	 */
+	public long getBitPosition() {
+		return (consumedBytes + pos) * 8L - accumulatedBits;
+	}
+
+	// loads as many whole bytes into the accumulator as possible
+	private void fill() {
+		while (accumulatedBits <= 56) {
+			if (pos >= limit && !refill()) {
+				return;
+			}
+			accumulator = (accumulator << 8) | (buffer[pos++] & 0xFF);
+			accumulatedBits += 8;
+		}
+	}
+
+	private boolean refill() {
+		if (in == null) {
+			return false;
+		}
+		try {
+			int len;
+			do {
+				len = in.read(buffer);
+			} while (len == 0);
+			if (len < 0) {
+				return false;
+			}
+			consumedBytes += pos;
+			pos = 0;
+			limit = len;
+			return true;
+		} catch (IOException e) {
+			Log.abort(this, e, "Could not read bytes from stream.");
+			return false;
+		}
+	}
+
+}
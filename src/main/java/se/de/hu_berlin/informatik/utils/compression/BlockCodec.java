@@ -0,0 +1,326 @@
+/**
+ *
+ */
+package se.de.hu_berlin.informatik.utils.compression;
+
+import java.util.Arrays;
+
+import se.de.hu_berlin.informatik.utils.miscellaneous.Log;
+
+/**
+ * Stores integers in blocks of up to {@link #BLOCK_SIZE} values, each with its own bit width
+ * (frame of reference). Every value of a block is stored as its difference to the minimum value
+ * of the block. Optionally, the bit width is chosen such that the total size of the block is
+ * minimal and the few values that do not fit are stored separately as exceptions (patched frame
+ * of reference). A single large value thus only affects the block it belongs to.
+ *
+ * <p> Each block starts at a byte boundary:
+ * <br> | count (1 byte) | bit width b (1 byte) | number of exceptions (1 byte) | reference (4 bytes) | count values (b bits each) |
+ * <br> followed (if there are exceptions) by
+ * <br> | exception width e (1 byte) | positions of the exceptions (1 byte each) | high bits of the exceptions (e bits each) |
+ * <br> A block with a count of 0 marks the end of the stream.
+ *
+ * <p> Sequences of a fixed length are stored as one continuous stream of value blocks.
+ * Sequences of varying length are stored in segments of up to {@link #BLOCK_SIZE} sequences:
+ * a block with the lengths of the sequences, followed by the value blocks of all their values.
+ *
+ * @author Simon Heiden
+ */
+class BlockCodec {
+
+	// marks the block format in the first header byte (bit packed formats use 1 to 32 bits)
+	static final byte BLOCK_MODE = -1;
+
+	static final int BLOCK_SIZE = 128;
+
+	private static final int END_OF_STREAM = 0;
+
+	private BlockCodec() {
+		// only static methods and nested classes
+	}
+
+	/**
+	 * Encodes a single block.
+	 * @param packer
+	 * the packer to write to (has to be at a byte boundary)
+	 * @param values
+	 * an array of values
+	 * @param offset
+	 * the index of the first value to store
+	 * @param count
+	 * the number of values to store (1 to {@link #BLOCK_SIZE})
+	 * @param patched
+	 * whether to store outliers as exceptions
+	 * @param scratch
+	 * an array of size {@link #BLOCK_SIZE} to use for intermediate results
+	 */
+	static void writeBlock(BitPacker packer, int[] values, int offset, int count, boolean patched, int[] scratch) {
+		int reference = values[offset];
+		for (int i = offset + 1; i < offset + count; ++i) {
+			reference = Math.min(reference, values[i]);
+		}
+
+		//count the values per needed bit width
+		int[] widthCounts = new int[33];
+		int fullWidth = 0;
+		for (int i = 0; i < count; ++i) {
+			scratch[i] = values[offset + i] - reference;
+			int width = 32 - Integer.numberOfLeadingZeros(scratch[i]);
+			++widthCounts[width];
+			fullWidth = Math.max(fullWidth, width);
+		}
+
+		//find the bit width that minimizes the size of the block
+		int bits = fullWidth;
+		int exceptionCount = 0;
+		if (patched) {
+			long bestSize = (long) count * fullWidth;
+			int exceptions = 0;
+			for (int width = fullWidth - 1; width >= 0; --width) {
+				exceptions += widthCounts[width + 1];
+				long size = (long) count * width + 8 + exceptions * (8L + fullWidth - width);
+				if (size < bestSize) {
+					bestSize = size;
+					bits = width;
+					exceptionCount = exceptions;
+				}
+			}
+		}
+
+		packer.write(count, 8);
+		packer.write(bits, 8);
+		packer.write(exceptionCount, 8);
+		packer.write(reference, 32);
+		packer.writeAll(scratch, 0, count, bits);
+
+		if (exceptionCount > 0) {
+			int exceptionWidth = fullWidth - bits;
+			packer.write(exceptionWidth, 8);
+			for (int i = 0; i < count; ++i) {
+				if ((scratch[i] >>> bits) != 0) {
+					packer.write(i, 8);
+				}
+			}
+			for (int i = 0; i < count; ++i) {
+				if ((scratch[i] >>> bits) != 0) {
+					packer.write(scratch[i] >>> bits, exceptionWidth);
+				}
+			}
+		}
+		packer.alignToByte();
+	}
+
+	/**
+	 * Marks the end of the stream.
+	 * @param packer
+	 * the packer to write to (has to be at a byte boundary)
+	 */
+	static void writeEnd(BitPacker packer) {
+		packer.write(END_OF_STREAM, 8);
+	}
+
+	/**
+	 * Decodes a whole block.
+	 * @param unpacker
+	 * the unpacker to read from (has to be at a byte boundary)
+	 * @param dest
+	 * an array of size {@link #BLOCK_SIZE} to store the values in
+	 * @param positions
+	 * an array of size {@link #BLOCK_SIZE} to use for intermediate results
+	 * @return
+	 * the number of decoded values, or 0 at the end of the stream
+	 */
+	static int readBlock(BitUnpacker unpacker, int[] dest, int[] positions) {
+		int count = unpacker.read(8);
+		if (count == END_OF_STREAM) {
+			return 0;
+		}
+		int bits = unpacker.read(8);
+		int exceptionCount = unpacker.read(8);
+		int reference = unpacker.read(32);
+		unpacker.readAll(dest, 0, count, bits);
+
+		if (exceptionCount > 0) {
+			int exceptionWidth = unpacker.read(8);
+			for (int i = 0; i < exceptionCount; ++i) {
+				positions[i] = unpacker.read(8);
+			}
+			for (int i = 0; i < exceptionCount; ++i) {
+				dest[positions[i]] |= unpacker.read(exceptionWidth) << bits;
+			}
+		}
+		for (int i = 0; i < count; ++i) {
+			dest[i] += reference;
+		}
+		unpacker.alignToByte();
+		return count;
+	}
+
+	/**
+	 * Collects sequences and writes them block-wise.
+	 */
+	static class Writer {
+
+		private final int sequenceLength;
+		private final boolean patched;
+
+		private final int[] scratch = new int[BLOCK_SIZE];
+
+		// lengths of the sequences in the current segment (only in delimiter mode)
+		private final int[] lengths;
+		private int sequenceCount = 0;
+
+		// values that are not written, yet
+		private int[] values;
+		private int valueCount = 0;
+
+		Writer(int sequenceLength, boolean patched) {
+			this.sequenceLength = sequenceLength;
+			this.patched = patched;
+			this.lengths = sequenceLength == 0 ? new int[BLOCK_SIZE] : null;
+			this.values = new int[BLOCK_SIZE];
+		}
+
+		void addSequence(int[] sequence, BitPacker packer) {
+			if (sequenceLength == 0) {
+				lengths[sequenceCount++] = sequence.length;
+				if (valueCount + sequence.length > values.length) {
+					values = Arrays.copyOf(values, Math.max(2 * values.length, valueCount + sequence.length));
+				}
+				System.arraycopy(sequence, 0, values, valueCount, sequence.length);
+				valueCount += sequence.length;
+				if (sequenceCount == BLOCK_SIZE) {
+					writePending(packer);
+					sequenceCount = 0;
+					valueCount = 0;
+				}
+			} else {
+				for (int element : sequence) {
+					values[valueCount++] = element;
+					if (valueCount == BLOCK_SIZE) {
+						writeBlock(packer, values, 0, valueCount, patched, scratch);
+						valueCount = 0;
+					}
+				}
+			}
+		}
+
+		/**
+		 * Writes all sequences that are not written, yet, and the end of the stream.
+		 * The sequences are kept, such that the same output is produced if further
+		 * sequences are added and the stream is finished again.
+		 * @param packer
+		 * the packer to write to
+		 */
+		void writeRemaining(BitPacker packer) {
+			writePending(packer);
+			writeEnd(packer);
+		}
+
+		private void writePending(BitPacker packer) {
+			if (sequenceLength == 0 && sequenceCount > 0) {
+				writeBlock(packer, lengths, 0, sequenceCount, patched, scratch);
+			}
+			for (int i = 0; i < valueCount; i += BLOCK_SIZE) {
+				writeBlock(packer, values, i, Math.min(BLOCK_SIZE, valueCount - i), patched, scratch);
+			}
+		}
+
+	}
+
+	/**
+	 * Reads sequences block-wise.
+	 */
+	static class Reader {
+
+		private final BitUnpacker unpacker;
+		private final int sequenceLength;
+
+		private final int[] positions = new int[BLOCK_SIZE];
+
+		private final int[] lengths;
+		private int lengthCount = 0;
+		private int lengthPos = 0;
+
+		private final int[] block = new int[BLOCK_SIZE];
+		private int blockCount = 0;
+		private int blockPos = 0;
+
+		private boolean atEnd = false;
+
+		Reader(BitUnpacker unpacker, int sequenceLength) {
+			this.unpacker = unpacker;
+			this.sequenceLength = sequenceLength;
+			this.lengths = sequenceLength == 0 ? new int[BLOCK_SIZE] : null;
+		}
+
+		/**
+		 * @return
+		 * the length of the next sequence, or -1 at the end of the stream
+		 */
+		int nextLength() {
+			if (atEnd) {
+				return -1;
+			}
+			if (sequenceLength == 0) {
+				if (lengthPos == lengthCount) {
+					lengthCount = readBlock(unpacker, lengths, positions);
+					lengthPos = 0;
+					if (lengthCount == 0) {
+						atEnd = true;
+						return -1;
+					}
+				}
+				return lengths[lengthPos++];
+			} else {
+				if (blockPos == blockCount && !nextBlock()) {
+					atEnd = true;
+					return -1;
+				}
+				return sequenceLength;
+			}
+		}
+
+		/**
+		 * Reads the values of a sequence.
+		 * @param dest
+		 * the array to store the values in
+		 * @param length
+		 * the length of the sequence, as returned by {@link #nextLength()}
+		 */
+		void readValues(int[] dest, int length) {
+			int pos = 0;
+			while (pos < length) {
+				if (blockPos == blockCount && !nextBlock()) {
+					Log.abort(this, "Unexpected end of compressed data.");
+				}
+				int count = Math.min(length - pos, blockCount - blockPos);
+				System.arraycopy(block, blockPos, dest, pos, count);
+				blockPos += count;
+				pos += count;
+			}
+		}
+
+		/**
+		 * @return
+		 * the next sequence, or null at the end of the stream
+		 */
+		int[] next() {
+			int length = nextLength();
+			if (length < 0) {
+				return null;
+			}
+			int[] sequence = new int[length];
+			readValues(sequence, length);
+			return sequence;
+		}
+
+		private boolean nextBlock() {
+			blockCount = readBlock(unpacker, block, positions);
+			blockPos = 0;
+			return blockCount > 0;
+		}
+
+	}
+
+}
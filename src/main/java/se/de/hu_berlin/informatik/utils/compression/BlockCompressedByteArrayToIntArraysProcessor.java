@@ -0,0 +1,64 @@
+/**
+ * 
+ */
+package se.de.hu_berlin.informatik.utils.compression;
+
+import java.nio.ByteBuffer;
+
+import se.de.hu_berlin.informatik.utils.miscellaneous.Log;
+import se.de.hu_berlin.informatik.utils.processors.AbstractProcessor;
+
+/**
+ * Decodes byte arrays that were encoded by an {@link IntArraysToBlockCompressedByteArrayProcessor}
+ * into arrays of integers, one block of values at a time.
+ * 
+ * @author Simon Heiden
+ */
+public class BlockCompressedByteArrayToIntArraysProcessor extends AbstractProcessor<byte[],int[][]> {
+	
+	private int sequenceLength;
+	private int totalSequences;
+	
+	public BlockCompressedByteArrayToIntArraysProcessor() {
+		super();
+	}
+	
+	/* (non-Javadoc)
+	 * @see se.de.hu_berlin.informatik.utils.tm.ITransmitter#processItem(java.lang.Object)
+	 */
+	@Override
+	public int[][] processItem(byte[] array) {
+		if (!readHeader(array)) {
+			return null;
+		}
+		BlockCodec.Reader reader = new BlockCodec.Reader(new BitUnpacker(array, 9), sequenceLength);
+		
+		int[][] result = new int[totalSequences][];
+		
+		//get all the encoded sequences
+		for (int sequenceCounter = 0; sequenceCounter < totalSequences; ++sequenceCounter) {
+			result[sequenceCounter] = reader.next();
+			if (result[sequenceCounter] == null) {
+				Log.abort(this, "Expected %d sequences, but only found %d.", totalSequences, sequenceCounter);
+			}
+		}
+		
+		return result;
+	}
+
+	private boolean readHeader(byte[] array) {
+		// header should be 9 bytes:
+		// | format marker (1 byte) | sequence length (4 bytes) - 0 for delimiter mode | total number of sequences (4 bytes) |
+		
+		if (array.length < 9 || array[0] != BlockCodec.BLOCK_MODE) {
+			Log.err(this, "Given array is not block compressed.");
+			return false;
+		}
+		
+		ByteBuffer b = ByteBuffer.wrap(array);
+		sequenceLength = b.getInt(1);
+		totalSequences = b.getInt(5);
+		return true;
+	}
+	
+}
@@ -0,0 +1,85 @@
+/**
+ * 
+ */
+package se.de.hu_berlin.informatik.utils.compression;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Queue;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import se.de.hu_berlin.informatik.utils.compression.ziputils.ZipFileWrapper;
+import se.de.hu_berlin.informatik.utils.miscellaneous.Log;
+import se.de.hu_berlin.informatik.utils.processors.AbstractProcessor;
+
+/**
+ * Decodes zip file entries that were written by a {@link BufferedIntArraysToBlockCompressedByteArrayProcessor}
+ * into arrays of integers, one block of values at a time.
+ * 
+ * @author Simon Heiden
+ */
+public class BufferedBlockCompressedByteArrayToIntArrayQueueProcessor extends AbstractProcessor<String,Queue<int[]>> {
+	
+	private ZipFileWrapper zipFileWrapper;
+	private Queue<int[]> result;
+	
+	public BufferedBlockCompressedByteArrayToIntArrayQueueProcessor(ZipFileWrapper zipFileWrapper, Queue<int[]> result) {
+		super();
+		this.zipFileWrapper = zipFileWrapper;
+		this.result = result;
+	}
+	
+	/* (non-Javadoc)
+	 * @see se.de.hu_berlin.informatik.utils.tm.ITransmitter#processItem(java.lang.Object)
+	 */
+	@Override
+	public Queue<int[]> processItem(String fileName) {
+		
+		InputStream inputStream = null;
+		try (ZipFile zipFile = new ZipFile(zipFileWrapper.getzipFilePath().toFile())) {
+			ZipEntry entry = zipFile.getEntry(fileName);
+			inputStream = zipFile.getInputStream(entry);
+
+			BitUnpacker unpacker = new BitUnpacker(inputStream);
+			int sequenceLength = readHeader(unpacker);
+
+			BlockCodec.Reader reader = new BlockCodec.Reader(unpacker, sequenceLength);
+			
+			//get all the encoded sequences
+			int[] sequence;
+			while ((sequence = reader.next()) != null) {
+				result.add(sequence);
+			}
+
+			return result;
+		} catch (IOException e) {
+			Log.abort(this, e, "Could not get input stream from file %s.", fileName);
+		} finally {
+			if (inputStream != null) {
+				try {
+					inputStream.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+		
+		return null;
+	}
+
+	private int readHeader(BitUnpacker unpacker) {
+		// header should be 5 bytes:
+		// | format marker (1 byte) | sequence length (4 bytes) - 0 for delimiter mode |
+		if (!unpacker.hasRemaining(40)) {
+			Log.abort(this, "Could not read header from input stream.");
+		}
+		if ((byte) unpacker.read(8) != BlockCodec.BLOCK_MODE) {
+			Log.abort(this, "Given entry is not block compressed.");
+		}
+		
+		//big endian, as written by a ByteBuffer
+		return unpacker.read(32);
+	}
+	
+}
@@ -3,53 +3,49 @@
  */
 package se.de.hu_berlin.informatik.utils.compression;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Queue;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 import se.de.hu_berlin.informatik.utils.compression.ziputils.ZipFileWrapper;
-import se.de.hu_berlin.informatik.utils.miscellaneous.Log;
 import se.de.hu_berlin.informatik.utils.processors.AbstractProcessor;
 
 /**
- * Decodes...
+ * Decodes a complete zip file entry into the given queue. To decode the sequences
+ * one at a time without holding all of them in memory, use a
+ * {@link BufferedCompressedIntArrayIterator} instead.
  * 
  * @author Simon Heiden
  */
 public class BufferedCompressedByteArrayToIntArrayQueueProcessor extends AbstractProcessor<String,Queue<int[]>> {
 	
-	// same buffer that is used in zip utils
-	private static final int BUFER_SIZE = 4096;
-	private byte[] buffer = new byte[BUFER_SIZE];
-		
-	public static final int DELIMITER = 1;
-	public static final int TOTAL_END_MARKER = 0;
+	public static final int DELIMITER = BufferedCompressedIntArrayIterator.DELIMITER;
+	public static final int TOTAL_END_MARKER = BufferedCompressedIntArrayIterator.TOTAL_END_MARKER;
 	
-	private byte usedBits;
-	private int sequenceLength;
-	private int arrayPos;
-
 	private boolean containsZero;
 	private ZipFileWrapper zipFileWrapper;
 	private Queue<int[]> result;
 	
+	/**
+	 * Creates a decoder. The sequence length is read from the header of the entry.
+	 * @param zipFileWrapper
+	 * the zip file
+	 * @param sequenceLength
+	 * the length of the stored sequences (unused, kept for compatibility)
+	 * @param containsZero
+	 * whether the sequences were encoded with the possibility of containing zeroes
+	 * @param result
+	 * the queue to add the decoded sequences to
+	 */
 	public BufferedCompressedByteArrayToIntArrayQueueProcessor(ZipFileWrapper zipFileWrapper, 
 			int sequenceLength, boolean containsZero, Queue<int[]> result) {
-		super();
-		this.containsZero = containsZero;
-		this.zipFileWrapper = zipFileWrapper;
-		this.result = result;
-		this.sequenceLength = sequenceLength;
+		this(zipFileWrapper, containsZero, result);
 	}
 	
 	public BufferedCompressedByteArrayToIntArrayQueueProcessor(ZipFileWrapper zipFileWrapper, 
 			boolean containsZero, Queue<int[]> result) {
-		this(zipFileWrapper, 0, containsZero, result);
+		super();
+		this.containsZero = containsZero;
+		this.zipFileWrapper = zipFileWrapper;
+		this.result = result;
 	}
 	
 	/* (non-Javadoc)
@@ -57,144 +53,14 @@ public class BufferedCompressedByteArrayToIntArrayQueueProcessor extends Abstrac
 	 */
 	@Override
 	public Queue<int[]> processItem(String fileName) {
-		
-		InputStream inputStream = null;
-		try (ZipFile zipFile = new ZipFile(zipFileWrapper.getzipFilePath().toFile())) {
-			ZipEntry entry = zipFile.getEntry(fileName);
-			inputStream = zipFile.getInputStream(entry);
-
-			int len = getNextBytesFromInputStream(inputStream);
-			readHeader(len);
-
-			boolean atTotalEnd = false;
-
-			byte currentByte = 0;
-			int currentInt = 0;
-			byte remainingBits = 0;
-			byte bitsLeft = 0;
-			List<Integer> currentSequence = null;
-
-			int intCounter = 0;
-
-			//get all the encoded integers
-			while (arrayPos < len) {
-				//for each number, the number of bits to get is equal
-				bitsLeft = usedBits;
-				//if no bits remain to get from the current byte, then get the next one from the array
-				if (remainingBits == 0) {
-					currentByte = buffer[arrayPos];
-					remainingBits = 8;
-				}
-
-				//if intCounter is zero, then we are at the start of a new sequence
-				if (intCounter == 0) {
-					if (currentSequence != null) {
-						result.add(currentSequence.stream().mapToInt(i -> i).toArray());
-					}
-					currentSequence = new ArrayList<>();
-				}
-
-				//as long as bits are still needed, get them from the array
-				while (bitsLeft > 0) {
-					if (bitsLeft > remainingBits) {
-						currentInt = (currentInt << remainingBits) | (currentByte & 0xFF ) >>> (8 - remainingBits);
-						bitsLeft -= remainingBits;
-						//					remainingBits = 0;
-						++arrayPos;
-						if (arrayPos >= len) {
-							len = getNextBytesFromInputStream(inputStream);
-							arrayPos = 0;
-						}
-						currentByte = buffer[arrayPos];
-						remainingBits = 8;
-					} else { //bitsLeft <= remainingBits
-						currentInt = (currentInt << bitsLeft) | (currentByte & 0xFF ) >>> (8 - bitsLeft);
-						currentByte = (byte) (currentByte << bitsLeft);
-						remainingBits -= bitsLeft;
-						bitsLeft = 0;
-					}
-				}
-
-				if (currentInt == TOTAL_END_MARKER) {
-					atTotalEnd = true;
-					break;
-				} else {
-					if (sequenceLength == 0) {
-						if (currentInt == DELIMITER) {
-							//reset the counter (start of new sequence)
-							intCounter = 0;
-						} else {
-							//add the next integer to the current sequence
-							currentSequence.add(containsZero ? currentInt-2 : currentInt-1);
-							++intCounter;
-						}
-					} else {
-						//add the next integer to the current sequence
-						currentSequence.add(containsZero ? currentInt-1 : currentInt);
-						++intCounter;
-						//if the sequence ends here, reset the counter
-						if (intCounter >= sequenceLength) {
-							intCounter = 0;
-						}
-					}
-				}
-				//reset the current integer to all zeroes
-				currentInt = 0;
-
-				//if no bits remain in the current byte, then update the array position for the next step
-				if (remainingBits == 0) {
-					++arrayPos;
-				}
-				if (arrayPos >= len) {
-					len = getNextBytesFromInputStream(inputStream);
-					arrayPos = 0;
-				}
-			}
-
-			if (!atTotalEnd) {
-				Log.abort(this, "No total end marker was read!");
-			}
-
-			return result;
-		} catch (IOException e) {
-			Log.abort(this, e, "Could not get input stream from file %s.", fileName);
-		} finally {
-			if (inputStream != null) {
-				try {
-					inputStream.close();
-				} catch (IOException e) {
-					// ignore
-				}
+		try (BufferedCompressedIntArrayIterator iterator = 
+				new BufferedCompressedIntArrayIterator(zipFileWrapper, fileName, containsZero)) {
+			while (iterator.hasNext()) {
+				result.add(iterator.next());
 			}
 		}
 		
-		return null;
-	}
-
-	private void readHeader(int len) {
-		// header should be 5 bytes:
-		// | number of bits used for one element (1 byte) | sequence length (4 bytes) - 0 for delimiter mode |
-		if (len < 5) {
-			Log.abort(this, "Could not read header from input stream.");
-		}
-		usedBits = buffer[0];
-		
-		byte[] smallArray = { buffer[1], buffer[2], buffer[3], buffer[4] };
-		ByteBuffer b = ByteBuffer.wrap(smallArray);
-		//b.order(ByteOrder.BIG_ENDIAN); // optional, the initial order of a byte buffer is always BIG_ENDIAN.
-		sequenceLength = b.getInt();
-		
-		arrayPos = 5;
-	}
-	
-	// returns the length of available bytes
-	private int getNextBytesFromInputStream(InputStream is) {
-		try {
-			return is.read(buffer);
-		} catch (IOException e) {
-			Log.abort(this, e, "Could not read bytes from stream.");
-			return -1;
-		}
+		return result;
 	}
 	
 }
@@ -0,0 +1,267 @@
+/**
+ *
+ */
+package se.de.hu_berlin.informatik.utils.compression;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import se.de.hu_berlin.informatik.utils.compression.ziputils.ZipFileWrapper;
+import se.de.hu_berlin.informatik.utils.miscellaneous.Log;
+
+/**
+ * Lazily decodes a zip file entry that was written by a {@link BufferedIntArraysToCompressedByteArrayProcessor}.
+ * Sequences are only decoded when they are requested, so the memory usage does not depend
+ * on the size of the entry. The entry is closed automatically after the last sequence
+ * has been read, or explicitly via {@link #close()}.
+ *
+ * <p> The sequences may either be obtained via the {@link Iterator} methods, via
+ * {@link #next(int[])} (reusing a given buffer), as a {@link Stream} of arrays or as
+ * an {@link IntStream} of all contained values. Only one of these should be used per instance.
+ *
+ * @author Simon Heiden
+ */
+public class BufferedCompressedIntArrayIterator implements Iterator<int[]>, Closeable {
+
+	public static final int DELIMITER = 1;
+	public static final int TOTAL_END_MARKER = 0;
+
+	private byte usedBits;
+	private int sequenceLength;
+
+	private boolean containsZero;
+
+	private ZipFile zipFile;
+	private InputStream inputStream;
+	private BitUnpacker unpacker;
+
+	// the next encoded integer, if already read
+	private int nextInt;
+	private boolean hasNextInt = false;
+	private boolean atTotalEnd = false;
+
+	private int lastLength = 0;
+	private int[] buffer;
+
+	/**
+	 * Opens the given entry and reads its header. The sequence length is taken from the header.
+	 * @param zipFileWrapper
+	 * the zip file
+	 * @param fileName
+	 * the name of the entry
+	 * @param containsZero
+	 * whether the sequences were encoded with the possibility of containing zeroes
+	 */
+	public BufferedCompressedIntArrayIterator(ZipFileWrapper zipFileWrapper, String fileName, boolean containsZero) {
+		super();
+		this.containsZero = containsZero;
+
+		try {
+			zipFile = new ZipFile(zipFileWrapper.getzipFilePath().toFile());
+			ZipEntry entry = zipFile.getEntry(fileName);
+			if (entry == null) {
+				close();
+				Log.abort(this, "Zip file '%s' does not contain an entry '%s'.", zipFileWrapper.getzipFilePath(), fileName);
+			}
+			inputStream = zipFile.getInputStream(entry);
+		} catch (IOException e) {
+			close();
+			Log.abort(this, e, "Could not get input stream from file %s.", fileName);
+		}
+
+		unpacker = new BitUnpacker(inputStream);
+		readHeader(unpacker);
+		buffer = new int[sequenceLength == 0 ? 16 : sequenceLength];
+	}
+
+	private void readHeader(BitUnpacker unpacker) {
+		// header should be 5 bytes:
+		// | number of bits used for one element (1 byte) | sequence length (4 bytes) - 0 for delimiter mode |
+		if (!unpacker.hasRemaining(40)) {
+			close();
+			Log.abort(this, "Could not read header from input stream.");
+		}
+		usedBits = (byte) unpacker.read(8);
+
+		//big endian, as written by a ByteBuffer
+		sequenceLength = unpacker.read(32);
+	}
+
+	private int peek() {
+		if (!hasNextInt) {
+			if (!unpacker.hasRemaining(usedBits)) {
+				close();
+				Log.abort(this, "No total end marker was read!");
+			}
+			nextInt = unpacker.read(usedBits);
+			hasNextInt = true;
+		}
+		return nextInt;
+	}
+
+	private int take() {
+		int result = peek();
+		hasNextInt = false;
+		return result;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (atTotalEnd) {
+			return false;
+		}
+		if (peek() == TOTAL_END_MARKER) {
+			atTotalEnd = true;
+			close();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Decodes the next sequence into a new array of the exact length.
+	 * @return
+	 * the next sequence
+	 */
+	@Override
+	public int[] next() {
+		buffer = next(buffer);
+		return Arrays.copyOf(buffer, lastLength);
+	}
+
+	/**
+	 * Decodes the next sequence into the given buffer, if it is large enough. Otherwise,
+	 * the sequence is decoded into a new, larger array. The length of the sequence can
+	 * be obtained via {@link #getLength()} afterwards.
+	 * @param buffer
+	 * the array to store the values in
+	 * @return
+	 * the array holding the values of the sequence (the given buffer or a new, larger one)
+	 */
+	public int[] next(int[] buffer) {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		if (sequenceLength == 0) {
+			int intCounter = 0;
+			int currentInt;
+			//add integers to the current sequence until the delimiter is reached
+			while ((currentInt = take()) != DELIMITER) {
+				if (currentInt == TOTAL_END_MARKER) {
+					close();
+					Log.abort(this, "Unexpected end marker inside of a sequence.");
+				}
+				if (intCounter == buffer.length) {
+					buffer = Arrays.copyOf(buffer, Math.max(16, 2 * buffer.length));
+				}
+				buffer[intCounter++] = containsZero ? currentInt-2 : currentInt-1;
+			}
+			lastLength = intCounter;
+		} else {
+			if (buffer.length < sequenceLength) {
+				buffer = new int[sequenceLength];
+			}
+			for (int i = 0; i < sequenceLength; ++i) {
+				int currentInt = take();
+				if (currentInt == TOTAL_END_MARKER) {
+					close();
+					Log.abort(this, "Unexpected end marker inside of a sequence.");
+				}
+				buffer[i] = containsZero ? currentInt-1 : currentInt;
+			}
+			lastLength = sequenceLength;
+		}
+		return buffer;
+	}
+
+	/**
+	 * @return
+	 * the length of the last sequence that was read
+	 */
+	public int getLength() {
+		return lastLength;
+	}
+
+	/**
+	 * @return
+	 * a sequential stream of all remaining sequences; closing the stream closes the entry
+	 */
+	public Stream<int[]> stream() {
+		return StreamSupport.stream(
+				Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+				.onClose(this::close);
+	}
+
+	/**
+	 * @return
+	 * a sequential stream of all remaining values (of all sequences), which are decoded
+	 * one at a time; closing the stream closes the entry
+	 */
+	public IntStream intStream() {
+		return StreamSupport.intStream(new ValueSpliterator(), false).onClose(this::close);
+	}
+
+	private class ValueSpliterator extends Spliterators.AbstractIntSpliterator {
+
+		protected ValueSpliterator() {
+			super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+		}
+
+		@Override
+		public boolean tryAdvance(IntConsumer action) {
+			while (!atTotalEnd) {
+				int currentInt = take();
+				if (currentInt == TOTAL_END_MARKER) {
+					atTotalEnd = true;
+					close();
+				} else if (sequenceLength == 0) {
+					if (currentInt != DELIMITER) {
+						action.accept(containsZero ? currentInt-2 : currentInt-1);
+						return true;
+					}
+				} else {
+					action.accept(containsZero ? currentInt-1 : currentInt);
+					return true;
+				}
+			}
+			return false;
+		}
+
+	}
+
+	@Override
+	public void close() {
+		//no further sequences can be read after closing
+		atTotalEnd = true;
+		unpacker = null;
+		if (inputStream != null) {
+			try {
+				inputStream.close();
+			} catch (IOException e) {
+				// ignore
+			}
+			inputStream = null;
+		}
+		if (zipFile != null) {
+			try {
+				zipFile.close();
+			} catch (IOException e) {
+				// ignore
+			}
+			zipFile = null;
+		}
+	}
+
+}
@@ -0,0 +1,123 @@
+/**
+ * 
+ */
+package se.de.hu_berlin.informatik.utils.compression;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import se.de.hu_berlin.informatik.utils.compression.ziputils.ZipEntryOutputStream;
+import se.de.hu_berlin.informatik.utils.compression.ziputils.ZipFileWrapper;
+import se.de.hu_berlin.informatik.utils.files.FileUtils;
+import se.de.hu_berlin.informatik.utils.miscellaneous.Log;
+import se.de.hu_berlin.informatik.utils.processors.AbstractProcessor;
+
+/**
+ * Encodes submitted arrays of integers into blocks of integers with a bit width per block
+ * and writes them directly to an entry of a zip file. See {@link IntArraysToBlockCompressedByteArrayProcessor}.
+ * The zip file entry is completed by {@link #getResultFromCollectedItems()} or {@link #finalShutdown()},
+ * one of which has to be called after the last submitted array.
+ * 
+ * @author Simon Heiden
+ */
+public class BufferedIntArraysToBlockCompressedByteArrayProcessor extends AbstractProcessor<int[],byte[] > {
+
+	private OutputStream out;
+	private BitPacker packer;
+	private BlockCodec.Writer writer;
+	
+	private ZipFileWrapper zipFile;
+	
+	private int sequenceLength;
+	
+	public BufferedIntArraysToBlockCompressedByteArrayProcessor(
+			Path zipFilePath, String fileName, boolean deleteExisting, 
+			int sequenceLength, boolean patched) throws IOException {
+		super();
+		if (deleteExisting) {
+			FileUtils.delete(zipFilePath);
+		}
+		
+		if (zipFilePath.getParent() != null) {
+			zipFilePath.getParent().toFile().mkdirs();
+		}
+		
+		zipFile = ZipFileWrapper.getZipFileWrapper(zipFilePath);
+		
+		//write the packed bytes directly to the entry, without a separate thread
+		out = new ZipEntryOutputStream(zipFile, fileName);
+		packer = new BitPacker(out);
+		
+		writer = new BlockCodec.Writer(sequenceLength, patched);
+
+		this.sequenceLength = sequenceLength;
+		//add a header that contains information needed for decoding
+		addHeader(sequenceLength);
+	}
+	
+	public BufferedIntArraysToBlockCompressedByteArrayProcessor(
+			Path zipFilePath, String fileName, boolean deleteExisting, 
+			boolean patched) throws IOException {
+		this(zipFilePath, fileName, deleteExisting, 0, patched);
+	}
+	
+	
+	private void addHeader(int sequenceLength) throws IOException {
+		// header should be 5 bytes:
+		// | format marker (1 byte) | sequence length (4 bytes) - 0 for delimiter mode |
+		
+		ByteBuffer b = ByteBuffer.allocate(5);
+		b.put(BlockCodec.BLOCK_MODE);
+		b.putInt(sequenceLength);
+		
+		out.write(b.array());
+	}
+
+	/* (non-Javadoc)
+	 * @see se.de.hu_berlin.informatik.utils.tm.ITransmitter#processItem(java.lang.Object)
+	 */
+	@Override
+	public byte[] processItem(int[] intArray) {
+		if (sequenceLength != 0 && intArray.length != sequenceLength) {
+			closeOutputStream();
+			Log.abort(this, "given sequence is of length %d, but should be %d.", intArray.length, sequenceLength);
+		}
+		
+		writer.addSequence(intArray, packer);
+		
+		return null;
+	}
+
+	private void closeOutputStream() {
+		if (out != null) {
+			try {
+				writer.writeRemaining(packer);
+				packer.finish();
+				packer = null;
+
+				out.flush();
+				out.close();
+			} catch (IOException e) {
+				Log.abort(this, e, "Could not write to or close output stream.");
+			} finally {
+				out = null;
+			}
+		}
+		
+		// invalidate zip file after use
+		this.zipFile = null;
+	}
+
+	@Override
+	public byte[] getResultFromCollectedItems() {
+		closeOutputStream();
+		return null;
+	}
+
+	@Override
+	public boolean finalShutdown() {
+		closeOutputStream();
+		return super.finalShutdown();
+	}
+}
@@ -4,10 +4,10 @@
 package se.de.hu_berlin.informatik.utils.compression;
 
 import java.io.IOException;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.file.Path;
+import se.de.hu_berlin.informatik.utils.compression.ziputils.ZipEntryOutputStream;
 import se.de.hu_berlin.informatik.utils.compression.ziputils.ZipFileWrapper;
 import se.de.hu_berlin.informatik.utils.files.FileUtils;
 import se.de.hu_berlin.informatik.utils.miscellaneous.Log;
@@ -21,10 +21,8 @@ import se.de.hu_berlin.informatik.utils.processors.AbstractProcessor;
  */
 public class BufferedIntArraysToCompressedByteArrayProcessor extends AbstractProcessor<int[],byte[] > {
 
-	// same buffer that is used in zip utils
-	private static final int BUFFER_SIZE = 4096;
-
-	PipedOutputStream out;
+	private OutputStream out;
+	private BitPacker packer;
 	
 	private ZipFileWrapper zipFile;
 	
@@ -32,18 +30,12 @@ public class BufferedIntArraysToCompressedByteArrayProcessor extends AbstractPro
 
 	private static final byte TOTAL_END_MARKER = 0;
 	
-	private byte[] result;
-	
 	private byte neededBits;
 	private int sequenceLength;
-	private int lastByteIndex = -1;
-	private byte remainingFreeBits = 0;
 
 	private int maxValue;
 
 	private boolean containsZero;
-
-	private Thread zipFileListener;
 	
 	public BufferedIntArraysToCompressedByteArrayProcessor(
 			Path zipFilePath, String fileName, boolean deleteExisting, 
@@ -59,18 +51,15 @@ public class BufferedIntArraysToCompressedByteArrayProcessor extends AbstractPro
 		
 		zipFile = ZipFileWrapper.getZipFileWrapper(zipFilePath);
 		
-		PipedInputStream in = new PipedInputStream();
-		out = new PipedOutputStream(in);
-		
-		zipFileListener = startZipFileListener(fileName, in);
-		zipFileListener.start();
+		//write the packed bytes directly to the entry, without a separate thread
+		out = new ZipEntryOutputStream(zipFile, fileName);
+		packer = new BitPacker(out);
 		
 		this.containsZero = containsZero;
 		this.maxValue = containsZero ? maxValue+1 : maxValue;
 		if (sequenceLength == 0) {
 			++this.maxValue;
 		}
-		result = new byte[BUFFER_SIZE];
 		
 		//compute the number of bits needed to represent integers with the given maximum value
 		neededBits = ceilLog2(this.maxValue);
@@ -79,46 +68,6 @@ public class BufferedIntArraysToCompressedByteArrayProcessor extends AbstractPro
 		//add a header that contains information needed for decoding
 		addHeader(neededBits, sequenceLength);
 	}
-
-	private Thread startZipFileListener(String fileName, PipedInputStream in) {
-		return new Thread(new Runnable() {
-			
-			@Override
-			public void run() {
-				try {
-					int tries = 0;
-					boolean worked = false;
-					while (!worked) {
-						++tries;
-						try {
-							// Creates a new entry in the zip file and adds the content to the zip file
-							zipFile.addStream(in, fileName);
-							worked = true;
-						} catch (IOException e) {
-							if (tries < 5) {
-								Log.warn(this, "Attempt %d - Error adding stream to zip file '%s'.", tries, zipFile.getzipFilePath());
-								try {
-									Thread.sleep(5000);
-								} catch (InterruptedException e1) {
-									// do nothing
-								}
-							} else {
-								Log.abort(this, e, "Zip file '%s' does not exist or could not add stream.", zipFile.getzipFilePath());
-							}
-						}
-					}
-				} finally {
-					if (in != null) {
-						try {
-							in.close();
-						} catch (IOException e) {
-							// ignore
-						}
-					}
-				}
-			}
-		});
-	}
 	
 	public BufferedIntArraysToCompressedByteArrayProcessor(
 			Path zipFilePath, String fileName, boolean deleteExisting, 
@@ -191,53 +140,21 @@ public class BufferedIntArraysToCompressedByteArrayProcessor extends AbstractPro
 				Log.abort(this, "Can not store '%d' in %d bits.", element, neededBits);
 			}
 		}
-		//reset the bits left to write
-		byte bitsLeft = neededBits;
-		//keep only relevant bits as defined by the given maximum value
-		element = keepLastNBits(element, bitsLeft);
-		//add bits until all bits of the given number are processed
-		while (bitsLeft > 0) {
-			//add a new byte if no space is left
-			if (remainingFreeBits == 0) {
-				addNewByteToList();
-				//remainingFreeBits > 0 holds now!
-			}
-			//need to shift the bits differently if more bits are left to write than free bits are remaining in the last byte of the list
-			if (bitsLeft > remainingFreeBits) {
-				bitsLeft -= remainingFreeBits;
-				result[lastByteIndex] = (byte) (result[lastByteIndex] | (element >>> bitsLeft));
-				remainingFreeBits = 0;
-				//set the first bits that are processed already to 0 and keep only the last n bits
-				element = keepLastNBits(element, bitsLeft);
-			} else { //bitsLeft <= remainingFreeBits
-				result[lastByteIndex] = (byte) (result[lastByteIndex] | (element << (remainingFreeBits - bitsLeft)));
-				remainingFreeBits -= bitsLeft;
-				bitsLeft = 0;
-			}
-		}
+		packer.write(element, neededBits);
 	}
 
 	private void closeOutputStream() {
 		if (out != null) {
 			storeNextInteger(TOTAL_END_MARKER);
 			try {
-				if (lastByteIndex >= 0) {
-					out.write(result, 0, lastByteIndex+1);
-					lastByteIndex = -1;
-				}
-				result = null;
+				packer.finish();
+				packer = null;
 
 				out.flush();
 				out.close();
 			} catch (IOException e) {
 				Log.abort(this, e, "Could not write to or close output stream.");
 			} finally {
-				while (zipFileListener.isAlive()) {
-					try {
-						zipFileListener.join();
-					} catch (InterruptedException e) {
-					}
-				}
 				out = null;
 			}
 		}
@@ -252,28 +169,6 @@ public class BufferedIntArraysToCompressedByteArrayProcessor extends AbstractPro
 		return null;
 	}
 
-	private void addNewByteToList() {
-		++lastByteIndex;
-		remainingFreeBits = 8;
-		writeBufferToStreamIfFull();
-	}
-
-	private void writeBufferToStreamIfFull() {
-		if (lastByteIndex >= BUFFER_SIZE) {
-			try {
-				out.write(result);
-			} catch (IOException e) {
-				Log.abort(this, e, "Could not write to output stream.");
-			}
-			lastByteIndex = 0;
-			result = new byte[BUFFER_SIZE];
-		}
-	}
-	
-	private int keepLastNBits(int element, byte n) {
-		return element & (int)Math.pow(2, n)-1;
-	}
-
 	private static byte ceilLog2(int n) {
 	    if (n < 0) {
 	    	throw new IllegalArgumentException("Can not compute for n = " + n);
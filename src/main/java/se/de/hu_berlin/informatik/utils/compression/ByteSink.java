@@ -0,0 +1,252 @@
+/**
+ *
+ */
+package se.de.hu_berlin.informatik.utils.compression;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A growable sink for bytes that stores its contents in primitive chunks.
+ * When more space is needed, a new chunk is added instead of copying
+ * the already written bytes, and the total capacity roughly doubles each time.
+ *
+ * <p> The chunks may either be allocated on the heap or off-heap
+ * (via {@link ByteBuffer#allocateDirect(int)}).
+ *
+ * @author Simon Heiden
+ */
+public class ByteSink extends OutputStream {
+
+	public static final int DEFAULT_INITIAL_CAPACITY = 4096;
+	/**
+	 * upper bound for the size of new chunks
+	 */
+	public static final int MAX_CHUNK_SIZE = 1 << 26;
+	// upper bound for the size of a single array
+	private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+	private final boolean direct;
+
+	private final List<ByteBuffer> chunks = new ArrayList<>();
+	private ByteBuffer current;
+	private long size = 0;
+	private long capacity = 0;
+
+	/**
+	 * Creates a new sink with a default initial capacity that stores its contents on the heap.
+	 */
+	public ByteSink() {
+		this(DEFAULT_INITIAL_CAPACITY, false);
+	}
+
+	/**
+	 * Creates a new sink.
+	 * @param initialCapacity
+	 * the size of the first chunk
+	 * @param direct
+	 * whether to allocate the chunks off-heap
+	 */
+	public ByteSink(int initialCapacity, boolean direct) {
+		super();
+		this.direct = direct;
+		addChunk(Math.max(initialCapacity, 16));
+	}
+
+	private void addChunk(int chunkSize) {
+		current = direct ? ByteBuffer.allocateDirect(chunkSize) : ByteBuffer.allocate(chunkSize);
+		chunks.add(current);
+		capacity += chunkSize;
+	}
+
+	private void ensureSpace(int needed) {
+		if (current.remaining() < needed) {
+			addChunk((int) Math.min(MAX_CHUNK_SIZE, Math.max(needed, capacity)));
+		}
+	}
+
+	@Override
+	public void write(int b) {
+		ensureSpace(1);
+		current.put((byte) b);
+		++size;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) {
+		while (len > 0) {
+			// fill the current chunk and put the rest into new ones
+			if (!current.hasRemaining()) {
+				addChunk((int) Math.min(MAX_CHUNK_SIZE, Math.max(len, capacity)));
+			}
+			int count = Math.min(len, current.remaining());
+			current.put(b, off, count);
+			size += count;
+			off += count;
+			len -= count;
+		}
+	}
+
+	/**
+	 * Replaces the byte at the given position.
+	 * @param index
+	 * the position of the byte to replace (has to be less than {@link #size()})
+	 * @param b
+	 * the new byte
+	 */
+	public void set(long index, byte b) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+		}
+		for (ByteBuffer chunk : chunks) {
+			if (index < chunk.position()) {
+				chunk.put((int) index, b);
+				return;
+			}
+			index -= chunk.position();
+		}
+	}
+
+	/**
+	 * Discards all bytes after the given number of bytes.
+	 * @param newSize
+	 * the new size (has to be at most {@link #size()})
+	 */
+	public void truncate(long newSize) {
+		if (newSize < 0 || newSize > size) {
+			throw new IndexOutOfBoundsException("New size: " + newSize + ", size: " + size);
+		}
+		long toDiscard = size - newSize;
+		while (toDiscard > 0) {
+			int inChunk = current.position();
+			if (toDiscard < inChunk || chunks.size() == 1) {
+				current.position((int) (inChunk - toDiscard));
+				break;
+			}
+			// drop the (then empty) last chunk
+			toDiscard -= inChunk;
+			capacity -= current.capacity();
+			chunks.remove(chunks.size() - 1);
+			current = chunks.get(chunks.size() - 1);
+		}
+		size = newSize;
+	}
+
+	/**
+	 * @return
+	 * the number of bytes written to this sink
+	 */
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * @return
+	 * whether the contents are stored off-heap
+	 */
+	public boolean isDirect() {
+		return direct;
+	}
+
+	/**
+	 * Resets this sink to be empty, keeping only the first chunk.
+	 */
+	public void clear() {
+		while (chunks.size() > 1) {
+			chunks.remove(chunks.size() - 1);
+		}
+		current = chunks.get(0);
+		current.clear();
+		capacity = current.capacity();
+		size = 0;
+	}
+
+	/**
+	 * Copies all written bytes into a new array, chunk by chunk.
+	 * @return
+	 * a new array holding the contents of this sink
+	 */
+	public byte[] toByteArray() {
+		checkArraySize();
+		byte[] result = new byte[(int) size];
+		int pos = 0;
+		for (ByteBuffer chunk : chunks) {
+			ByteBuffer view = chunk.duplicate();
+			view.flip();
+			int len = view.remaining();
+			view.get(result, pos, len);
+			pos += len;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a read-only view of the written bytes. If the contents are spread over
+	 * multiple chunks, they are merged into a single chunk first (once). Otherwise,
+	 * no bytes are copied at all.
+	 *
+	 * <p> The view shares its contents with this sink, so any subsequent
+	 * modification of the first {@link #size()} bytes is visible through the view.
+	 * @return
+	 * a read-only buffer holding the contents of this sink, positioned at the first byte
+	 */
+	public ByteBuffer asReadOnlyByteBuffer() {
+		if (chunks.size() > 1) {
+			mergeChunks();
+		}
+		ByteBuffer view = current.duplicate();
+		view.flip();
+		return view.asReadOnlyBuffer();
+	}
+
+	private void mergeChunks() {
+		checkArraySize();
+		ByteBuffer merged = direct ? ByteBuffer.allocateDirect((int) size) : ByteBuffer.allocate((int) size);
+		for (ByteBuffer chunk : chunks) {
+			ByteBuffer view = chunk.duplicate();
+			view.flip();
+			merged.put(view);
+		}
+		chunks.clear();
+		chunks.add(merged);
+		current = merged;
+		capacity = merged.capacity();
+	}
+
+	/**
+	 * Writes all written bytes to the given output stream, chunk by chunk.
+	 * @param out
+	 * the output stream
+	 * @throws IOException
+	 * if writing to the stream fails
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		byte[] transfer = null;
+		for (ByteBuffer chunk : chunks) {
+			if (chunk.hasArray()) {
+				out.write(chunk.array(), chunk.arrayOffset(), chunk.position());
+			} else {
+				if (transfer == null) {
+					transfer = new byte[BitPacker.BLOCK_SIZE];
+				}
+				ByteBuffer view = chunk.duplicate();
+				view.flip();
+				while (view.hasRemaining()) {
+					int len = Math.min(transfer.length, view.remaining());
+					view.get(transfer, 0, len);
+					out.write(transfer, 0, len);
+				}
+			}
+		}
+	}
+
+	private void checkArraySize() {
+		if (size > MAX_ARRAY_SIZE) {
+			throw new IllegalStateException("Contents too large for a single array: " + size + " bytes.");
+		}
+	}
+
+}
@@ -0,0 +1,125 @@
+/**
+ *
+ */
+package se.de.hu_berlin.informatik.utils.compression;
+
+import java.nio.ByteBuffer;
+
+import se.de.hu_berlin.informatik.utils.miscellaneous.Log;
+
+/**
+ * Directory of the independently encoded chunks of a chunked compressed byte array.
+ * Each chunk is a complete byte array as produced by an {@link IntArraysToCompressedByteArrayProcessor},
+ * starting at a byte boundary, such that chunks can be encoded and decoded in parallel.
+ *
+ * <p> Layout:
+ * <br> | format marker (1 byte) | total number of sequences (4 bytes) | number of chunks (4 bytes) |
+ * <br> | number of sequences in chunk (4 bytes) | length of chunk in bytes (4 bytes) | (for each chunk)
+ * <br> | chunk 0 | chunk 1 | ... |
+ *
+ * @author Simon Heiden
+ */
+class ChunkDirectory {
+
+	// marks the chunked format in the first header byte (bit packed formats use 1 to 32 bits)
+	static final byte CHUNKED_MODE = -2;
+
+	private static final int HEADER_SIZE = 9;
+	private static final int ENTRY_SIZE = 8;
+
+	private final int[] sequenceCounts;
+	private final int[] lengths;
+	private final long[] offsets;
+	private final int totalSequences;
+
+	ChunkDirectory(int[] sequenceCounts, int[] lengths) {
+		this.sequenceCounts = sequenceCounts;
+		this.lengths = lengths;
+		this.offsets = new long[lengths.length];
+		long offset = HEADER_SIZE + (long) ENTRY_SIZE * lengths.length;
+		int total = 0;
+		for (int i = 0; i < lengths.length; ++i) {
+			offsets[i] = offset;
+			offset += lengths[i];
+			total += sequenceCounts[i];
+		}
+		this.totalSequences = total;
+	}
+
+	static boolean isChunked(byte[] array) {
+		return array.length >= HEADER_SIZE && array[0] == CHUNKED_MODE;
+	}
+
+	/**
+	 * Reads the directory from the start of the given array.
+	 * @param array
+	 * the chunked compressed byte array
+	 * @return
+	 * the directory
+	 */
+	static ChunkDirectory readFrom(byte[] array) {
+		if (!isChunked(array)) {
+			Log.abort(ChunkDirectory.class, "Given array is not chunked.");
+		}
+		ByteBuffer b = ByteBuffer.wrap(array);
+		int totalSequences = b.getInt(1);
+		int chunkCount = b.getInt(5);
+		if (chunkCount < 0 || HEADER_SIZE + (long) ENTRY_SIZE * chunkCount > array.length) {
+			Log.abort(ChunkDirectory.class, "Invalid number of chunks: %d.", chunkCount);
+		}
+		int[] sequenceCounts = new int[chunkCount];
+		int[] lengths = new int[chunkCount];
+		b.position(HEADER_SIZE);
+		for (int i = 0; i < chunkCount; ++i) {
+			sequenceCounts[i] = b.getInt();
+			lengths[i] = b.getInt();
+		}
+		ChunkDirectory directory = new ChunkDirectory(sequenceCounts, lengths);
+		if (directory.totalSequences != totalSequences || directory.getEnd() > array.length) {
+			Log.abort(ChunkDirectory.class, "Chunk directory does not match the given array.");
+		}
+		return directory;
+	}
+
+	/**
+	 * Writes the header and the directory (without the chunks themselves).
+	 * @param sink
+	 * the sink to write to
+	 */
+	void writeTo(ByteSink sink) {
+		ByteBuffer b = ByteBuffer.allocate(HEADER_SIZE + ENTRY_SIZE * lengths.length);
+		b.put(CHUNKED_MODE);
+		b.putInt(totalSequences);
+		b.putInt(lengths.length);
+		for (int i = 0; i < lengths.length; ++i) {
+			b.putInt(sequenceCounts[i]);
+			b.putInt(lengths[i]);
+		}
+		sink.write(b.array(), 0, b.position());
+	}
+
+	int getChunkCount() {
+		return lengths.length;
+	}
+
+	int getTotalSequences() {
+		return totalSequences;
+	}
+
+	int getSequenceCount(int chunk) {
+		return sequenceCounts[chunk];
+	}
+
+	int getLength(int chunk) {
+		return lengths[chunk];
+	}
+
+	long getOffset(int chunk) {
+		return offsets[chunk];
+	}
+
+	private long getEnd() {
+		return lengths.length == 0 ? HEADER_SIZE : offsets[lengths.length - 1] + lengths[lengths.length - 1];
+	}
+
+}
@@ -0,0 +1,78 @@
+/**
+ * 
+ */
+package se.de.hu_berlin.informatik.utils.compression;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import se.de.hu_berlin.informatik.utils.processors.AbstractProcessor;
+
+/**
+ * Decodes byte arrays that were encoded by an {@link IntArraysToChunkedCompressedByteArrayProcessor}
+ * into arrays of integers. The chunks are decoded concurrently on a {@link ForkJoinPool}
+ * and the decoded sequences are returned in their original order.
+ * 
+ * @author Simon Heiden
+ */
+public class ChunkedCompressedByteArrayToIntArraysProcessor extends AbstractProcessor<byte[],int[][]> {
+	
+	private boolean containsZero;
+	private ForkJoinPool pool;
+	
+	/**
+	 * Creates a decoder that uses the common fork join pool.
+	 * @param containsZero
+	 * whether the sequences were encoded with the possibility of containing zeroes
+	 */
+	public ChunkedCompressedByteArrayToIntArraysProcessor(boolean containsZero) {
+		this(containsZero, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * Creates a decoder.
+	 * @param containsZero
+	 * whether the sequences were encoded with the possibility of containing zeroes
+	 * @param pool
+	 * the pool to decode the chunks with
+	 */
+	public ChunkedCompressedByteArrayToIntArraysProcessor(boolean containsZero, ForkJoinPool pool) {
+		super();
+		this.containsZero = containsZero;
+		this.pool = pool;
+	}
+	
+	/* (non-Javadoc)
+	 * @see se.de.hu_berlin.informatik.utils.tm.ITransmitter#processItem(java.lang.Object)
+	 */
+	@Override
+	public int[][] processItem(byte[] array) {
+		ChunkDirectory directory = ChunkDirectory.readFrom(array);
+		
+		//decode all chunks in parallel
+		List<ForkJoinTask<int[][]>> tasks = new ArrayList<>(directory.getChunkCount());
+		for (int i = 0; i < directory.getChunkCount(); ++i) {
+			int chunk = i;
+			tasks.add(pool.submit(() -> decodeChunk(array, directory, chunk)));
+		}
+		
+		//collect the sequences in order
+		int[][] result = new int[directory.getTotalSequences()][];
+		int sequenceCounter = 0;
+		for (ForkJoinTask<int[][]> task : tasks) {
+			int[][] chunk = task.join();
+			System.arraycopy(chunk, 0, result, sequenceCounter, chunk.length);
+			sequenceCounter += chunk.length;
+		}
+		
+		return result;
+	}
+
+	private int[][] decodeChunk(byte[] array, ChunkDirectory directory, int chunk) {
+		return new CompressedByteArrayToIntArraysProcessor(containsZero)
+				.processItem(array, (int) directory.getOffset(chunk), directory.getLength(chunk));
+	}
+	
+}
@@ -0,0 +1,85 @@
+/**
+ * 
+ */
+package se.de.hu_berlin.informatik.utils.compression;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import se.de.hu_berlin.informatik.utils.processors.AbstractProcessor;
+
+/**
+ * Decodes byte arrays that were encoded by an {@link IntArraysToChunkedCompressedByteArrayProcessor}
+ * into lists of integers. The chunks are decoded concurrently on a {@link ForkJoinPool}
+ * and the decoded sequences are returned in their original order.
+ * 
+ * @author Simon Heiden
+ */
+public class ChunkedCompressedByteArrayToIntSequencesProcessor extends AbstractProcessor<byte[],List<List<Integer>>> {
+	
+	private boolean containsZero;
+	private ForkJoinPool pool;
+	
+	/**
+	 * Creates a decoder that uses the common fork join pool.
+	 * @param containsZero
+	 * whether the sequences were encoded with the possibility of containing zeroes
+	 */
+	public ChunkedCompressedByteArrayToIntSequencesProcessor(boolean containsZero) {
+		this(containsZero, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * Creates a decoder.
+	 * @param containsZero
+	 * whether the sequences were encoded with the possibility of containing zeroes
+	 * @param pool
+	 * the pool to decode the chunks with
+	 */
+	public ChunkedCompressedByteArrayToIntSequencesProcessor(boolean containsZero, ForkJoinPool pool) {
+		super();
+		this.containsZero = containsZero;
+		this.pool = pool;
+	}
+	
+	/* (non-Javadoc)
+	 * @see se.de.hu_berlin.informatik.utils.tm.ITransmitter#processItem(java.lang.Object)
+	 */
+	@Override
+	public List<List<Integer>> processItem(byte[] array) {
+		ChunkDirectory directory = ChunkDirectory.readFrom(array);
+		
+		//decode all chunks in parallel
+		List<ForkJoinTask<List<List<Integer>>>> tasks = new ArrayList<>(directory.getChunkCount());
+		for (int i = 0; i < directory.getChunkCount(); ++i) {
+			int chunk = i;
+			tasks.add(pool.submit(() -> decodeChunk(array, directory, chunk)));
+		}
+		
+		//collect the sequences in order
+		List<List<Integer>> result = new ArrayList<>(directory.getTotalSequences());
+		for (ForkJoinTask<List<List<Integer>>> task : tasks) {
+			result.addAll(task.join());
+		}
+		
+		return result;
+	}
+
+	private List<List<Integer>> decodeChunk(byte[] array, ChunkDirectory directory, int chunk) {
+		int[][] sequences = new CompressedByteArrayToIntArraysProcessor(containsZero)
+				.processItem(array, (int) directory.getOffset(chunk), directory.getLength(chunk));
+		//box the values on the worker thread as well
+		List<List<Integer>> result = new ArrayList<>(sequences.length);
+		for (int[] sequence : sequences) {
+			List<Integer> list = new ArrayList<>(sequence.length);
+			for (int element : sequence) {
+				list.add(element);
+			}
+			result.add(list);
+		}
+		return result;
+	}
+	
+}
@@ -5,8 +5,10 @@ package se.de.hu_berlin.informatik.utils.compression;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+import se.de.hu_berlin.informatik.utils.miscellaneous.Log;
 import se.de.hu_berlin.informatik.utils.processors.AbstractProcessor;
 
 /**
@@ -19,6 +21,7 @@ public class CompressedByteArrayToIntArraysProcessor extends AbstractProcessor<b
 	public static final int DELIMITER = 0;
 	
 	private byte usedBits;
+	private boolean deduplicated;
 	private int sequenceLength;
 	private int totalSequences;
 	private int arrayPos;
@@ -35,105 +38,79 @@ public class CompressedByteArrayToIntArraysProcessor extends AbstractProcessor<b
 	 */
 	@Override
 	public int[][] processItem(byte[] array) {
-		readHeader(array);
-		byte currentByte = 0;
-		int currentInt = 0;
-		byte remainingBits = 0;
-		byte bitsLeft = 0;
-		List<Integer> currentSequence = null;
+		return processItem(array, 0, array.length);
+	}
+	
+	/**
+	 * Decodes an encoded byte array that is stored in the given range of the given array.
+	 * @param array
+	 * an array that contains the encoded bytes
+	 * @param offset
+	 * the index of the first encoded byte (the start of the header)
+	 * @param length
+	 * the number of encoded bytes
+	 * @return
+	 * the decoded sequences
+	 */
+	public int[][] processItem(byte[] array, int offset, int length) {
+		readHeader(array, offset);
+		BitUnpacker unpacker = new BitUnpacker(array, arrayPos, offset + length - arrayPos);
 		
 		int[][] result = new int[totalSequences][];
-		int intCounter = 0;
-		int sequenceCounter = 0;
+		int[] buffer = new int[sequenceLength == 0 ? 16 : sequenceLength];
+		//distinct sequences in the order of their first occurrence (only in deduplication mode)
+		List<int[]> distinct = deduplicated ? new ArrayList<>() : null;
 		
-		//get all the encoded integers
-		while (arrayPos < array.length) {
-			//for each number, the number of bits to get is equal
-			bitsLeft = usedBits;
-			//if no bits remain to get from the current byte, then get the next one from the array
-			if (remainingBits == 0) {
-				currentByte = array[arrayPos];
-				remainingBits = 8;
-			}
-			
-			//if intCounter is zero, then we are at the start of a new sequence
-			if (intCounter == 0) {
-				if (currentSequence != null) {
-					result[sequenceCounter++] = currentSequence.stream().mapToInt(i -> i).toArray();
-				}
-				if (sequenceCounter >= totalSequences) {
-					break;
-				}
-				currentSequence = new ArrayList<>();
-			}
-			
-			//as long as bits are still needed, get them from the array
-			while (bitsLeft > 0) {
-				if (bitsLeft > remainingBits) {
-					currentInt = (currentInt << remainingBits) | (currentByte & 0xFF ) >>> (8 - remainingBits);
-					bitsLeft -= remainingBits;
-//					remainingBits = 0;
-					currentByte = array[++arrayPos];
-					remainingBits = 8;
-				} else { //bitsLeft <= remainingBits
-					currentInt = (currentInt << bitsLeft) | (currentByte & 0xFF ) >>> (8 - bitsLeft);
-					currentByte = (byte) (currentByte << bitsLeft);
-					remainingBits -= bitsLeft;
-					bitsLeft = 0;
+		//get all the encoded sequences
+		for (int sequenceCounter = 0; sequenceCounter < totalSequences 
+				&& unpacker.hasRemaining(deduplicated ? 1 : usedBits); ++sequenceCounter) {
+			if (deduplicated && unpacker.read(1) == 1) {
+				//resolve the back-reference
+				int id = unpacker.read(SequenceDictionary.getReferenceBits(distinct.size()));
+				if (id >= distinct.size()) {
+					Log.abort(this, "Invalid back-reference to sequence %d.", id);
 				}
+				result[sequenceCounter] = distinct.get(id).clone();
+				continue;
 			}
-			
 			if (sequenceLength == 0) {
-				if (currentInt == DELIMITER) {
-					//reset the counter (start of new sequence)
-					intCounter = 0;
-				} else {
-					//add the next integer to the current sequence
-					currentSequence.add(containsZero ? currentInt-1 : currentInt);
-					++intCounter;
+				int intCounter = 0;
+				//add integers to the current sequence until the delimiter is reached
+				int currentInt;
+				while (unpacker.hasRemaining(usedBits) && (currentInt = unpacker.read(usedBits)) != DELIMITER) {
+					if (intCounter == buffer.length) {
+						buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+					}
+					buffer[intCounter++] = containsZero ? currentInt-1 : currentInt;
 				}
+				result[sequenceCounter] = Arrays.copyOf(buffer, intCounter);
 			} else {
-				//add the next integer to the current sequence
-				currentSequence.add(currentInt);
-				++intCounter;
-				//if the sequence ends here, reset the counter
-				if (intCounter >= sequenceLength) {
-					intCounter = 0;
-				}
+				//decode the whole sequence at once
+				result[sequenceCounter] = new int[sequenceLength];
+				unpacker.readAll(result[sequenceCounter], 0, sequenceLength, usedBits);
 			}
-			//reset the current integer to all zeroes
-			currentInt = 0;
-			
-			//if no bits remain in the current byte, then update the array position for the next step
-			if (remainingBits == 0) {
-				++arrayPos;
+			if (deduplicated) {
+				distinct.add(result[sequenceCounter]);
 			}
 		}
 		
-		if (currentSequence != null && sequenceCounter < totalSequences) {
-			result[sequenceCounter] = currentSequence.stream().mapToInt(i -> i).toArray();
-		}
-		
 		return result;
 	}
 
-	private void readHeader(byte[] array) {
+	private void readHeader(byte[] array, int offset) {
 		// header should be 9 bytes:
 		// | number of bits used for one element (1 byte) | sequence length (4 bytes) - 0 for delimiter mode | total number of sequences (4 bytes) |
 		
-		usedBits = array[0];
-		
-		byte[] smallArray = { array[1], array[2], array[3], array[4] };
-		ByteBuffer b = ByteBuffer.wrap(smallArray);
-		//b.order(ByteOrder.BIG_ENDIAN); // optional, the initial order of a byte buffer is always BIG_ENDIAN.
-		sequenceLength = b.getInt();
+		usedBits = array[offset];
+		deduplicated = (usedBits & SequenceDictionary.DEDUPLICATION_FLAG) != 0;
+		usedBits &= ~SequenceDictionary.DEDUPLICATION_FLAG;
 		
-		byte[] smallArray2 = { array[5], array[6], array[7], array[8] };
-		b = ByteBuffer.wrap(smallArray2);
+		ByteBuffer b = ByteBuffer.wrap(array);
 		//b.order(ByteOrder.BIG_ENDIAN); // optional, the initial order of a byte buffer is always BIG_ENDIAN.
-		totalSequences = b.getInt();
+		sequenceLength = b.getInt(offset + 1);
+		totalSequences = b.getInt(offset + 5);
 		
-		arrayPos = 9;
+		arrayPos = offset + 9;
 	}
 	
 	
@@ -7,6 +7,7 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
+import se.de.hu_berlin.informatik.utils.miscellaneous.Log;
 import se.de.hu_berlin.informatik.utils.processors.AbstractProcessor;
 
 /**
@@ -19,6 +20,7 @@ public class CompressedByteArrayToIntSequencesProcessor extends AbstractProcesso
 	public static final int DELIMITER = 0;
 	
 	private byte usedBits;
+	private boolean deduplicated;
 	private int sequenceLength;
 	private int totalSequences;
 	private int arrayPos;
@@ -33,76 +35,44 @@ public class CompressedByteArrayToIntSequencesProcessor extends AbstractProcesso
 	@Override
 	public List<List<Integer>> processItem(byte[] array) {
 		readHeader(array);
-		byte currentByte = 0;
-		int currentInt = 0;
-		byte remainingBits = 0;
-		byte bitsLeft = 0;
-		List<Integer> currentSequence = null;
+		BitUnpacker unpacker = new BitUnpacker(array, arrayPos);
 		
-		List<List<Integer>> result = new ArrayList<List<Integer>>();
-		int intCounter = 0;
-		int sequenceCounter = 0;
+		List<List<Integer>> result = new ArrayList<List<Integer>>(totalSequences);
+		int[] fixedSequence = sequenceLength == 0 ? null : new int[sequenceLength];
+		//distinct sequences in the order of their first occurrence (only in deduplication mode)
+		List<List<Integer>> distinct = deduplicated ? new ArrayList<>() : null;
 		
-		//get all the encoded integers
-		while (arrayPos < array.length) {
-			//for each number, the number of bits to get is equal
-			bitsLeft = usedBits;
-			//if no bits remain to get from the current byte, then get the next one from the array
-			if (remainingBits == 0) {
-				currentByte = array[arrayPos];
-				remainingBits = 8;
-			}
-			
-			//if intCounter is zero, then we are at the start of a new sequence
-			if (intCounter == 0) {
-				if (++sequenceCounter > totalSequences) {
-					break;
+		//get all the encoded sequences
+		while (result.size() < totalSequences && unpacker.hasRemaining(deduplicated ? 1 : usedBits)) {
+			List<Integer> currentSequence;
+			if (deduplicated && unpacker.read(1) == 1) {
+				//resolve the back-reference
+				int id = unpacker.read(SequenceDictionary.getReferenceBits(distinct.size()));
+				if (id >= distinct.size()) {
+					Log.abort(this, "Invalid back-reference to sequence %d.", id);
 				}
-				currentSequence = new ArrayList<>();
-				result.add(currentSequence);
+				result.add(new ArrayList<>(distinct.get(id)));
+				continue;
 			}
-			
-			//as long as bits are still needed, get them from the array
-			while (bitsLeft > 0) {
-				if (bitsLeft > remainingBits) {
-					currentInt = (currentInt << remainingBits) | (currentByte & 0xFF ) >>> (8 - remainingBits);
-					bitsLeft -= remainingBits;
-//					remainingBits = 0;
-					currentByte = array[++arrayPos];
-					remainingBits = 8;
-				} else { //bitsLeft <= remainingBits
-					currentInt = (currentInt << bitsLeft) | (currentByte & 0xFF ) >>> (8 - bitsLeft);
-					currentByte = (byte) (currentByte << bitsLeft);
-					remainingBits -= bitsLeft;
-					bitsLeft = 0;
-				}
-			}
-			
 			if (sequenceLength == 0) {
-				if (currentInt == DELIMITER) {
-					//reset the counter (start of new sequence)
-					intCounter = 0;
-				} else {
-					//add the next integer to the current sequence
+				currentSequence = new ArrayList<>();
+				//add integers to the current sequence until the delimiter is reached
+				int currentInt;
+				while (unpacker.hasRemaining(usedBits) && (currentInt = unpacker.read(usedBits)) != DELIMITER) {
 					currentSequence.add(currentInt);
-					++intCounter;
 				}
 			} else {
-				//add the next integer to the current sequence
-				currentSequence.add(currentInt);
-				++intCounter;
-				//if the sequence ends here, reset the counter
-				if (intCounter >= sequenceLength) {
-					intCounter = 0;
+				//decode the whole sequence at once
+				unpacker.readAll(fixedSequence, 0, sequenceLength, usedBits);
+				currentSequence = new ArrayList<>(sequenceLength);
+				for (int element : fixedSequence) {
+					currentSequence.add(element);
 				}
 			}
-			//reset the current integer to all zeroes
-			currentInt = 0;
-			
-			//if no bits remain in the current byte, then update the array position for the next step
-			if (remainingBits == 0) {
-				++arrayPos;
+			if (deduplicated) {
+				distinct.add(currentSequence);
 			}
+			result.add(currentSequence);
 		}
 		
 		return result;
@@ -113,6 +83,8 @@ public class CompressedByteArrayToIntSequencesProcessor extends AbstractProcesso
 		// | number of bits used for one element (1 byte) | sequence length (4 bytes) - 0 for delimiter mode | total number of sequences (4 bytes) |
 		
 		usedBits = array[0];
+		deduplicated = (usedBits & SequenceDictionary.DEDUPLICATION_FLAG) != 0;
+		usedBits &= ~SequenceDictionary.DEDUPLICATION_FLAG;
 		
 		byte[] smallArray = { array[1], array[2], array[3], array[4] };
 		ByteBuffer b = ByteBuffer.wrap(smallArray);
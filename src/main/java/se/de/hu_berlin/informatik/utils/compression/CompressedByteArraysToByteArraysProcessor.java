@@ -29,50 +29,13 @@ public class CompressedByteArraysToByteArraysProcessor extends AbstractProcessor
 	@Override
 	public byte[] processItem(byte[] array) {
 		readHeader(array);
-		byte currentByte = 0;
-		int currentInt = 0;
-		byte remainingBits = 0;
-		byte bitsLeft = 0;
+		BitUnpacker unpacker = new BitUnpacker(array, arrayPos);
 		
 		byte[] result = new byte[sequenceLength * totalSequences];
-		int bytePos = -1;
 		
-		//get all the encoded integers
-		while (bytePos+1 < result.length) {
-			//for each number, the number of bits to get is equal
-			bitsLeft = usedBits;
-			//if no bits remain to get from the current byte, then get the next one from the array
-			if (remainingBits == 0) {
-				currentByte = array[arrayPos];
-				remainingBits = 8;
-			}
-			
-			//as long as bits are still needed, get them from the array
-			while (bitsLeft > 0) {
-				if (bitsLeft > remainingBits) {
-					currentInt = (currentInt << remainingBits) | (currentByte & 0xFF ) >>> (8 - remainingBits);
-					bitsLeft -= remainingBits;
-//					remainingBits = 0;
-					currentByte = array[++arrayPos];
-					remainingBits = 8;
-				} else { //bitsLeft <= remainingBits
-					currentInt = (currentInt << bitsLeft) | (currentByte & 0xFF ) >>> (8 - bitsLeft);
-					currentByte = (byte) (currentByte << bitsLeft);
-					remainingBits -= bitsLeft;
-					bitsLeft = 0;
-				}
-			}
-			
-			//add the next integer to the result list
-			result[++bytePos] = (byte) currentInt;
-			
-			//reset the current integer to all zeroes
-			currentInt = 0;
-			
-			//if no bits remain in the current byte, then update the array position for the next step
-			if (remainingBits == 0) {
-				++arrayPos;
-			}
+		//get all the encoded bytes
+		for (int bytePos = 0; bytePos < result.length; ++bytePos) {
+			result[bytePos] = (byte) unpacker.read(usedBits);
 		}
 		
 		return result;
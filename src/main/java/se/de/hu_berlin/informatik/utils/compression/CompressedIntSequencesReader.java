@@ -0,0 +1,193 @@
+/**
+ *
+ */
+package se.de.hu_berlin.informatik.utils.compression;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import se.de.hu_berlin.informatik.utils.miscellaneous.Log;
+
+/**
+ * Provides random access to single sequences in a compressed byte array, as produced by
+ * {@link IntArraysToCompressedByteArrayProcessor} or {@link IntSequencesToCompressedByteArrayProcessor}.
+ * Only the requested sequences are decoded.
+ *
+ * <p> Sequences of a fixed length are located directly. In delimiter mode, the sparse index
+ * that is written by the encoders (if an index interval is given) is used to jump close to the
+ * requested sequence. If the array contains no index, it is built once with a single pass
+ * over the data when the first sequence is requested.
+ *
+ * <p> The reader does not modify any state after its index is available, so it may be
+ * used by multiple threads at once.
+ *
+ * @author Simon Heiden
+ */
+public class CompressedIntSequencesReader {
+
+	public static final int DELIMITER = 0;
+
+	public static final int DEFAULT_INDEX_INTERVAL = 64;
+
+	private static final int HEADER_SIZE = 9;
+
+	private final byte[] array;
+	private final boolean containsZero;
+
+	private final byte usedBits;
+	private final int sequenceLength;
+	private final int totalSequences;
+	private final int dataEnd;
+
+	private volatile SequenceIndex index;
+
+	public CompressedIntSequencesReader(byte[] array, boolean containsZero) {
+		super();
+		if (array.length < HEADER_SIZE) {
+			Log.abort(this, "Compressed array is too short to contain a header.");
+		}
+		this.array = array;
+
+		// header should be 9 bytes:
+		// | number of bits used for one element (1 byte) | sequence length (4 bytes) - 0 for delimiter mode | total number of sequences (4 bytes) |
+		ByteBuffer b = ByteBuffer.wrap(array);
+		if ((b.get(0) & SequenceDictionary.DEDUPLICATION_FLAG) != 0) {
+			Log.abort(this, "Random access to deduplicated sequences is not supported.");
+		}
+		usedBits = b.get(0);
+		sequenceLength = b.getInt(1);
+		totalSequences = b.getInt(5);
+
+		this.containsZero = sequenceLength == 0 && containsZero;
+
+		if (sequenceLength == 0) {
+			index = SequenceIndex.readFrom(b, HEADER_SIZE, totalSequences);
+		}
+		dataEnd = index == null ? array.length : array.length - index.getTrailerSize();
+	}
+
+	/**
+	 * @return
+	 * the total number of stored sequences
+	 */
+	public int size() {
+		return totalSequences;
+	}
+
+	/**
+	 * Decodes a single sequence.
+	 * @param index
+	 * the number of the sequence
+	 * @return
+	 * the decoded sequence
+	 */
+	public int[] getSequence(int index) {
+		checkRange(index, index + 1);
+		BitUnpacker unpacker = seek(index);
+		return readSequence(unpacker, new int[sequenceLength == 0 ? 16 : sequenceLength]);
+	}
+
+	/**
+	 * Decodes a consecutive range of sequences.
+	 * @param from
+	 * the number of the first sequence (inclusive)
+	 * @param to
+	 * the number of the last sequence (exclusive)
+	 * @return
+	 * the decoded sequences
+	 */
+	public int[][] getRange(int from, int to) {
+		checkRange(from, to);
+		int[][] result = new int[to - from][];
+		if (from == to) {
+			return result;
+		}
+		BitUnpacker unpacker = seek(from);
+		int[] buffer = new int[sequenceLength == 0 ? 16 : sequenceLength];
+		for (int i = 0; i < result.length; ++i) {
+			result[i] = readSequence(unpacker, buffer);
+		}
+		return result;
+	}
+
+	private void checkRange(int from, int to) {
+		if (from < 0 || to > totalSequences || from > to) {
+			throw new IndexOutOfBoundsException(
+					"Range: [" + from + ", " + to + "), total sequences: " + totalSequences);
+		}
+	}
+
+	// returns an unpacker that is positioned at the start of the given sequence
+	private BitUnpacker seek(int sequence) {
+		long bitOffset;
+		int toSkip;
+		if (sequenceLength == 0) {
+			SequenceIndex index = getIndex();
+			bitOffset = index.getOffset(sequence / index.getInterval());
+			toSkip = sequence % index.getInterval();
+		} else {
+			bitOffset = (long) sequence * sequenceLength * usedBits;
+			toSkip = 0;
+		}
+
+		int startByte = HEADER_SIZE + (int) (bitOffset >>> 3);
+		BitUnpacker unpacker = new BitUnpacker(array, startByte, dataEnd - startByte);
+		if ((bitOffset & 7) != 0) {
+			unpacker.read((int) (bitOffset & 7));
+		}
+		for (int i = 0; i < toSkip; ++i) {
+			skipSequence(unpacker);
+		}
+		return unpacker;
+	}
+
+	private SequenceIndex getIndex() {
+		SequenceIndex result = index;
+		if (result == null) {
+			synchronized (this) {
+				result = index;
+				if (result == null) {
+					index = result = buildIndex();
+				}
+			}
+		}
+		return result;
+	}
+
+	// scans all sequences once and records the offset of every k-th sequence
+	private SequenceIndex buildIndex() {
+		SequenceIndex result = new SequenceIndex(DEFAULT_INDEX_INTERVAL);
+		BitUnpacker unpacker = new BitUnpacker(array, HEADER_SIZE, dataEnd - HEADER_SIZE);
+		for (int i = 0; i < totalSequences; ++i) {
+			result.mark(i, unpacker.getBitPosition() - 8L * HEADER_SIZE);
+			skipSequence(unpacker);
+		}
+		return result;
+	}
+
+	private void skipSequence(BitUnpacker unpacker) {
+		while (unpacker.read(usedBits) != DELIMITER) {
+			// skip
+		}
+	}
+
+	private int[] readSequence(BitUnpacker unpacker, int[] buffer) {
+		if (sequenceLength == 0) {
+			int intCounter = 0;
+			//add integers to the current sequence until the delimiter is reached
+			int currentInt;
+			while ((currentInt = unpacker.read(usedBits)) != DELIMITER) {
+				if (intCounter == buffer.length) {
+					buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+				}
+				buffer[intCounter++] = containsZero ? currentInt-1 : currentInt;
+			}
+			return Arrays.copyOf(buffer, intCounter);
+		} else {
+			int[] result = new int[sequenceLength];
+			unpacker.readAll(result, 0, sequenceLength, usedBits);
+			return result;
+		}
+	}
+
+}
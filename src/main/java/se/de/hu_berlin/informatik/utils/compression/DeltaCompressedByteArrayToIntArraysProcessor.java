@@ -0,0 +1,63 @@
+/**
+ * 
+ */
+package se.de.hu_berlin.informatik.utils.compression;
+
+import java.nio.ByteBuffer;
+
+import se.de.hu_berlin.informatik.utils.miscellaneous.Log;
+import se.de.hu_berlin.informatik.utils.processors.AbstractProcessor;
+
+/**
+ * Decodes byte arrays that were encoded by an {@link IntArraysToDeltaCompressedByteArrayProcessor}
+ * or an {@link IntSequencesToDeltaCompressedByteArrayProcessor} into arrays of integers.
+ * 
+ * @author Simon Heiden
+ */
+public class DeltaCompressedByteArrayToIntArraysProcessor extends AbstractProcessor<byte[],int[][]> {
+	
+	private int sequenceLength;
+	private int totalSequences;
+	
+	public DeltaCompressedByteArrayToIntArraysProcessor() {
+		super();
+	}
+	
+	/* (non-Javadoc)
+	 * @see se.de.hu_berlin.informatik.utils.tm.ITransmitter#processItem(java.lang.Object)
+	 */
+	@Override
+	public int[][] processItem(byte[] array) {
+		if (!readHeader(array)) {
+			return null;
+		}
+		VarIntCodec codec = new VarIntCodec(array, VarIntCodec.HEADER_SIZE);
+		
+		int[][] result = new int[totalSequences][];
+		
+		//get all the encoded sequences
+		for (int sequenceCounter = 0; sequenceCounter < totalSequences; ++sequenceCounter) {
+			int length = sequenceLength == 0 ? codec.readVarInt() : sequenceLength;
+			result[sequenceCounter] = new int[length];
+			codec.readDeltas(result[sequenceCounter], 0, length);
+		}
+		
+		return result;
+	}
+
+	private boolean readHeader(byte[] array) {
+		// header should be 9 bytes:
+		// | format marker (1 byte) | sequence length (4 bytes) - 0 for length prefixed mode | total number of sequences (4 bytes) |
+		
+		if (array.length < VarIntCodec.HEADER_SIZE || array[0] != VarIntCodec.VARINT_MODE) {
+			Log.err(this, "Given array is not delta compressed.");
+			return false;
+		}
+		
+		ByteBuffer b = ByteBuffer.wrap(array);
+		sequenceLength = b.getInt(1);
+		totalSequences = b.getInt(5);
+		return true;
+	}
+	
+}
@@ -0,0 +1,70 @@
+/**
+ * 
+ */
+package se.de.hu_berlin.informatik.utils.compression;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import se.de.hu_berlin.informatik.utils.miscellaneous.Log;
+import se.de.hu_berlin.informatik.utils.processors.AbstractProcessor;
+
+/**
+ * Decodes byte arrays that were encoded by an {@link IntArraysToDeltaCompressedByteArrayProcessor}
+ * or an {@link IntSequencesToDeltaCompressedByteArrayProcessor} into lists of integers.
+ * 
+ * @author Simon Heiden
+ */
+public class DeltaCompressedByteArrayToIntSequencesProcessor extends AbstractProcessor<byte[],List<List<Integer>>> {
+	
+	private int sequenceLength;
+	private int totalSequences;
+	
+	public DeltaCompressedByteArrayToIntSequencesProcessor() {
+		super();
+	}
+	
+	/* (non-Javadoc)
+	 * @see se.de.hu_berlin.informatik.utils.tm.ITransmitter#processItem(java.lang.Object)
+	 */
+	@Override
+	public List<List<Integer>> processItem(byte[] array) {
+		if (!readHeader(array)) {
+			return null;
+		}
+		VarIntCodec codec = new VarIntCodec(array, VarIntCodec.HEADER_SIZE);
+		
+		List<List<Integer>> result = new ArrayList<>(totalSequences);
+		
+		//get all the encoded sequences
+		for (int sequenceCounter = 0; sequenceCounter < totalSequences; ++sequenceCounter) {
+			int length = sequenceLength == 0 ? codec.readVarInt() : sequenceLength;
+			List<Integer> currentSequence = new ArrayList<>(length);
+			int previous = 0;
+			for (int i = 0; i < length; ++i) {
+				previous += VarIntCodec.zigzagDecode(codec.readVarInt());
+				currentSequence.add(previous);
+			}
+			result.add(currentSequence);
+		}
+		
+		return result;
+	}
+
+	private boolean readHeader(byte[] array) {
+		// header should be 9 bytes:
+		// | format marker (1 byte) | sequence length (4 bytes) - 0 for length prefixed mode | total number of sequences (4 bytes) |
+		
+		if (array.length < VarIntCodec.HEADER_SIZE || array[0] != VarIntCodec.VARINT_MODE) {
+			Log.err(this, "Given array is not delta compressed.");
+			return false;
+		}
+		
+		ByteBuffer b = ByteBuffer.wrap(array);
+		sequenceLength = b.getInt(1);
+		totalSequences = b.getInt(5);
+		return true;
+	}
+	
+}
@@ -0,0 +1,137 @@
+/**
+ * 
+ */
+package se.de.hu_berlin.informatik.utils.compression;
+
+import java.nio.ByteBuffer;
+
+import se.de.hu_berlin.informatik.utils.miscellaneous.Log;
+import se.de.hu_berlin.informatik.utils.processors.AbstractProcessor;
+
+/**
+ * Encodes arrays of integers into blocks of integers with a bit width per block,
+ * depending on the range of the values in each block. Other than with an
+ * {@link IntArraysToCompressedByteArrayProcessor}, a single large value does not
+ * increase the size of all stored values. Arbitrary integers (including zero and 
+ * negative numbers) can be stored.
+ * 
+ * @author Simon Heiden
+ */
+public class IntArraysToBlockCompressedByteArrayProcessor extends AbstractProcessor<int[],byte[] > {
+
+	private ByteSink result;
+	private BitPacker packer;
+	private BlockCodec.Writer writer;
+	
+	private int sequenceLength;
+	private int totalSequences = 0;
+	
+	/**
+	 * Creates an encoder.
+	 * @param sequenceLength
+	 * the length of the sequences to store, or 0 for sequences of varying length
+	 * @param patched
+	 * whether to store outliers in a block as exceptions, such that the remaining 
+	 * values of the block can be stored with fewer bits
+	 */
+	public IntArraysToBlockCompressedByteArrayProcessor(int sequenceLength, boolean patched) {
+		this(sequenceLength, patched, new ByteSink());
+	}
+	
+	/**
+	 * Creates an encoder that writes the encoded bytes into the given sink.
+	 * @param sequenceLength
+	 * the length of the sequences to store, or 0 for sequences of varying length
+	 * @param patched
+	 * whether to store outliers in a block as exceptions, such that the remaining 
+	 * values of the block can be stored with fewer bits
+	 * @param result
+	 * an empty sink to write the encoded bytes into, e.g. an off-heap sink
+	 */
+	public IntArraysToBlockCompressedByteArrayProcessor(int sequenceLength, boolean patched, ByteSink result) {
+		super();
+		if (result.size() != 0) {
+			throw new IllegalArgumentException("Given sink is not empty.");
+		}
+		this.result = result;
+		this.sequenceLength = sequenceLength;
+		packer = new BitPacker(result);
+		writer = new BlockCodec.Writer(sequenceLength, patched);
+		//add a header that contains information needed for decoding
+		addHeader(sequenceLength);
+	}
+	
+	public IntArraysToBlockCompressedByteArrayProcessor(boolean patched) {
+		this(0, patched);
+	}
+	
+	private void addHeader(int sequenceLength) {
+		// header should be 9 bytes:
+		// | format marker (1 byte) | sequence length (4 bytes) - 0 for delimiter mode | total number of sequences (4 bytes) |
+		
+		ByteBuffer b = ByteBuffer.allocate(9);
+		b.put(BlockCodec.BLOCK_MODE);
+		b.putInt(sequenceLength);
+		//stores the number of sequences in the end (gets replaced later)
+		b.putInt(0);
+		
+		result.write(b.array(), 0, 9);
+	}
+
+	/* (non-Javadoc)
+	 * @see se.de.hu_berlin.informatik.utils.tm.ITransmitter#processItem(java.lang.Object)
+	 */
+	@Override
+	public byte[] processItem(int[] intArray) {
+		if (sequenceLength != 0 && intArray.length != sequenceLength) {
+			Log.abort(this, "given sequence is of length %d, but should be %d.", intArray.length, sequenceLength);
+		}
+		++totalSequences;
+		
+		writer.addSequence(intArray, packer);
+
+		return null;
+	}
+
+	@Override
+	public byte[] getResultFromCollectedItems() {
+		long dataSize = completeResult();
+		byte[] temp = result.toByteArray();
+		result.truncate(dataSize);
+		return temp;
+	}
+	
+	/**
+	 * Returns a read-only view of the encoded bytes, without copying them into a new array.
+	 * The view is only guaranteed to be valid until further items are processed.
+	 * @return
+	 * a read-only buffer holding the encoded bytes
+	 */
+	public ByteBuffer getResultAsByteBuffer() {
+		long dataSize = completeResult();
+		ByteBuffer view = result.asReadOnlyByteBuffer();
+		result.truncate(dataSize);
+		return view;
+	}
+
+	private long completeResult() {
+		ByteBuffer b = ByteBuffer.allocate(4);
+		b.putInt(totalSequences);
+
+		//set the total number of sequences stored
+		for (int i = 0; i < 4; ++i) {
+			result.set(i+5, b.array()[i]);
+		}
+		
+		//blocks end at byte boundaries, so there are no pending bits after flushing;
+		//the remaining (incomplete) blocks are kept by the writer and have to be
+		//discarded from the result again afterwards
+		packer.flush();
+		long dataSize = result.size();
+		BitPacker tail = new BitPacker(result);
+		writer.writeRemaining(tail);
+		tail.finish();
+		return dataSize;
+	}
+	
+}
@@ -0,0 +1,115 @@
+/**
+ * 
+ */
+package se.de.hu_berlin.informatik.utils.compression;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import se.de.hu_berlin.informatik.utils.processors.AbstractProcessor;
+
+/**
+ * Encodes a whole collection of integer arrays in parallel. The collection is split into
+ * chunks of a fixed number of sequences, and each chunk is encoded on a worker of a
+ * {@link ForkJoinPool} into its own byte-aligned segment with an {@link IntArraysToCompressedByteArrayProcessor}.
+ * The segments are concatenated behind a directory that stores their sizes, such that
+ * they can also be decoded in parallel by a {@link ChunkedCompressedByteArrayToIntArraysProcessor}.
+ * 
+ * @author Simon Heiden
+ */
+public class IntArraysToChunkedCompressedByteArrayProcessor extends AbstractProcessor<List<int[]>,byte[] > {
+
+	public static final int DEFAULT_CHUNK_SIZE = 4096;
+	
+	private final int maxValue;
+	private final int sequenceLength;
+	private final boolean containsZero;
+	private final int chunkSize;
+	private final ForkJoinPool pool;
+	
+	/**
+	 * Creates an encoder that uses the common fork join pool.
+	 * @param maxValue
+	 * the maximum value to store
+	 * @param sequenceLength
+	 * the length of the sequences to store, or 0 for sequences of varying length
+	 * @param containsZero
+	 * whether the sequences may contain zeroes
+	 */
+	public IntArraysToChunkedCompressedByteArrayProcessor(int maxValue, int sequenceLength, boolean containsZero) {
+		this(maxValue, sequenceLength, containsZero, DEFAULT_CHUNK_SIZE, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * Creates an encoder.
+	 * @param maxValue
+	 * the maximum value to store
+	 * @param sequenceLength
+	 * the length of the sequences to store, or 0 for sequences of varying length
+	 * @param containsZero
+	 * whether the sequences may contain zeroes
+	 * @param chunkSize
+	 * the number of sequences per chunk
+	 * @param pool
+	 * the pool to encode the chunks with
+	 */
+	public IntArraysToChunkedCompressedByteArrayProcessor(int maxValue, int sequenceLength, boolean containsZero,
+			int chunkSize, ForkJoinPool pool) {
+		super();
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("Chunk size has to be positive.");
+		}
+		this.maxValue = maxValue;
+		this.sequenceLength = sequenceLength;
+		this.containsZero = containsZero;
+		this.chunkSize = chunkSize;
+		this.pool = pool;
+	}
+
+	/* (non-Javadoc)
+	 * @see se.de.hu_berlin.informatik.utils.tm.ITransmitter#processItem(java.lang.Object)
+	 */
+	@Override
+	public byte[] processItem(List<int[]> sequences) {
+		int chunkCount = (sequences.size() + chunkSize - 1) / chunkSize;
+		
+		//encode all chunks in parallel
+		List<ForkJoinTask<byte[]>> tasks = new ArrayList<>(chunkCount);
+		for (int i = 0; i < chunkCount; ++i) {
+			List<int[]> chunk = sequences.subList(i * chunkSize, Math.min(sequences.size(), (i + 1) * chunkSize));
+			tasks.add(pool.submit(() -> encodeChunk(chunk)));
+		}
+		
+		//collect the segments in order
+		byte[][] segments = new byte[chunkCount][];
+		int[] sequenceCounts = new int[chunkCount];
+		int[] lengths = new int[chunkCount];
+		long totalLength = 0;
+		for (int i = 0; i < chunkCount; ++i) {
+			segments[i] = tasks.get(i).join();
+			sequenceCounts[i] = Math.min(chunkSize, sequences.size() - i * chunkSize);
+			lengths[i] = segments[i].length;
+			totalLength += lengths[i];
+		}
+		
+		ByteSink result = new ByteSink((int) Math.min(Integer.MAX_VALUE - 8, totalLength + 9 + 8L * chunkCount), false);
+		new ChunkDirectory(sequenceCounts, lengths).writeTo(result);
+		for (byte[] segment : segments) {
+			result.write(segment, 0, segment.length);
+		}
+		
+		return result.toByteArray();
+	}
+
+	private byte[] encodeChunk(List<int[]> chunk) {
+		IntArraysToCompressedByteArrayProcessor encoder = 
+				new IntArraysToCompressedByteArrayProcessor(maxValue, sequenceLength, containsZero);
+		for (int[] sequence : chunk) {
+			encoder.processItem(sequence);
+		}
+		return encoder.getResultFromCollectedItems();
+	}
+	
+}
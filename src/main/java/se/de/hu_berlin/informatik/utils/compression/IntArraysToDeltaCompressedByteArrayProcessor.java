@@ -0,0 +1,117 @@
+/**
+ * 
+ */
+package se.de.hu_berlin.informatik.utils.compression;
+
+import java.nio.ByteBuffer;
+
+import se.de.hu_berlin.informatik.utils.miscellaneous.Log;
+import se.de.hu_berlin.informatik.utils.processors.AbstractProcessor;
+
+/**
+ * Encodes arrays of integers into sequences of zigzag encoded differences between
+ * consecutive elements, stored with a variable number of bytes each. Works best for
+ * (mostly) sorted sequences with small gaps, independent of the maximum value.
+ * Arbitrary integers (including zero and negative numbers) can be stored.
+ * 
+ * @author Simon Heiden
+ */
+public class IntArraysToDeltaCompressedByteArrayProcessor extends AbstractProcessor<int[],byte[] > {
+
+	private ByteSink result;
+	
+	private int sequenceLength;
+	private int totalSequences = 0;
+	
+	/**
+	 * Creates an encoder for sequences of varying length.
+	 */
+	public IntArraysToDeltaCompressedByteArrayProcessor() {
+		this(0);
+	}
+	
+	/**
+	 * Creates an encoder.
+	 * @param sequenceLength
+	 * the length of the sequences to store, or 0 for sequences of varying length
+	 */
+	public IntArraysToDeltaCompressedByteArrayProcessor(int sequenceLength) {
+		this(sequenceLength, new ByteSink());
+	}
+	
+	/**
+	 * Creates an encoder that writes the encoded bytes into the given sink.
+	 * @param sequenceLength
+	 * the length of the sequences to store, or 0 for sequences of varying length
+	 * @param result
+	 * an empty sink to write the encoded bytes into, e.g. an off-heap sink
+	 */
+	public IntArraysToDeltaCompressedByteArrayProcessor(int sequenceLength, ByteSink result) {
+		super();
+		if (result.size() != 0) {
+			throw new IllegalArgumentException("Given sink is not empty.");
+		}
+		this.result = result;
+		this.sequenceLength = sequenceLength;
+		//add a header that contains information needed for decoding
+		addHeader(sequenceLength);
+	}
+	
+	private void addHeader(int sequenceLength) {
+		// header should be 9 bytes:
+		// | format marker (1 byte) | sequence length (4 bytes) - 0 for length prefixed mode | total number of sequences (4 bytes) |
+		
+		ByteBuffer b = ByteBuffer.allocate(VarIntCodec.HEADER_SIZE);
+		b.put(VarIntCodec.VARINT_MODE);
+		b.putInt(sequenceLength);
+		//stores the number of sequences in the end (gets replaced later)
+		b.putInt(0);
+		
+		result.write(b.array(), 0, VarIntCodec.HEADER_SIZE);
+	}
+
+	/* (non-Javadoc)
+	 * @see se.de.hu_berlin.informatik.utils.tm.ITransmitter#processItem(java.lang.Object)
+	 */
+	@Override
+	public byte[] processItem(int[] intArray) {
+		if (sequenceLength == 0) {
+			//prefix each sequence with its length
+			VarIntCodec.writeVarInt(result, intArray.length);
+		} else if (intArray.length != sequenceLength) {
+			Log.abort(this, "given sequence is of length %d, but should be %d.", intArray.length, sequenceLength);
+		}
+		++totalSequences;
+		
+		VarIntCodec.writeDeltas(result, intArray, 0, intArray.length);
+
+		return null;
+	}
+
+	@Override
+	public byte[] getResultFromCollectedItems() {
+		setTotalSequences();
+		return result.toByteArray();
+	}
+	
+	/**
+	 * Returns a read-only view of the encoded bytes, without copying them into a new array.
+	 * The view is only guaranteed to be valid until further items are processed.
+	 * @return
+	 * a read-only buffer holding the encoded bytes
+	 */
+	public ByteBuffer getResultAsByteBuffer() {
+		setTotalSequences();
+		return result.asReadOnlyByteBuffer();
+	}
+
+	private void setTotalSequences() {
+		ByteBuffer b = ByteBuffer.allocate(4);
+		b.putInt(totalSequences);
+
+		for (int i = 0; i < 4; ++i) {
+			result.set(i+5, b.array()[i]);
+		}
+	}
+	
+}
@@ -4,7 +4,6 @@
 package se.de.hu_berlin.informatik.utils.compression;
 
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
 import java.util.List;
 
 import se.de.hu_berlin.informatik.utils.miscellaneous.Log;
@@ -20,12 +19,13 @@ public class IntSequencesToCompressedByteArrayProcessor extends AbstractProcesso
 
 	public static final int DELIMITER = 0;
 	
-	private ArrayList<Byte> result;
+	private ByteSink result;
+	private BitPacker packer;
+	private SequenceIndex index;
+	private SequenceDictionary dictionary;
 	
 	private byte neededBits;
 	private int sequenceLength;
-	private int lastByteIndex = 0;
-	private byte remainingFreeBits = 0;
 	private int totalSequences = 0;
 
 	private int maxValue;
@@ -33,10 +33,56 @@ public class IntSequencesToCompressedByteArrayProcessor extends AbstractProcesso
 	private boolean containsZero;
 	
 	public IntSequencesToCompressedByteArrayProcessor(int maxValue, int sequenceLength, boolean containsZero) {
+		this(maxValue, sequenceLength, containsZero, 0, new ByteSink());
+	}
+	
+	public IntSequencesToCompressedByteArrayProcessor(int maxValue, int sequenceLength, boolean containsZero, ByteSink result) {
+		this(maxValue, sequenceLength, containsZero, 0, result);
+	}
+	
+	/**
+	 * Creates an encoder that appends a sparse index to the encoded bytes, which allows
+	 * random access to single sequences via a {@link CompressedIntSequencesReader}.
+	 * The index is only needed (and written) in delimiter mode, since sequences of
+	 * a fixed length can be located without it.
+	 * @param maxValue
+	 * the maximum value to store
+	 * @param sequenceLength
+	 * the length of the sequences to store, or 0 for sequences of varying length
+	 * @param containsZero
+	 * whether the sequences may contain zeroes
+	 * @param indexInterval
+	 * the number of sequences between two index entries, or 0 to not write an index
+	 */
+	public IntSequencesToCompressedByteArrayProcessor(int maxValue, int sequenceLength, boolean containsZero, int indexInterval) {
+		this(maxValue, sequenceLength, containsZero, indexInterval, new ByteSink());
+	}
+	
+	/**
+	 * Creates an encoder that writes the encoded bytes into the given sink.
+	 * @param maxValue
+	 * the maximum value to store
+	 * @param sequenceLength
+	 * the length of the sequences to store, or 0 for sequences of varying length
+	 * @param containsZero
+	 * whether the sequences may contain zeroes
+	 * @param indexInterval
+	 * the number of sequences between two index entries, or 0 to not write an index
+	 * @param result
+	 * an empty sink to write the encoded bytes into, e.g. an off-heap sink
+	 */
+	public IntSequencesToCompressedByteArrayProcessor(int maxValue, int sequenceLength, boolean containsZero, int indexInterval, ByteSink result) {
 		super();
+		if (result.size() != 0) {
+			throw new IllegalArgumentException("Given sink is not empty.");
+		}
 		this.containsZero = sequenceLength == 0 && containsZero;
 		this.maxValue = containsZero ? maxValue+1 : maxValue;
-		result = new ArrayList<>();
+		this.result = result;
+		packer = new BitPacker(result);
+		if (sequenceLength == 0 && indexInterval > 0) {
+			index = new SequenceIndex(indexInterval);
+		}
 		
 		//compute the number of bits needed to represent integers with the given maximum value
 		neededBits = ceilLog2(this.maxValue);
@@ -55,21 +101,35 @@ public class IntSequencesToCompressedByteArrayProcessor extends AbstractProcesso
 		// header should be 9 bytes:
 		// | number of bits used for one element (1 byte) | sequence length (4 bytes) - 0 for delimiter mode | total number of sequences (4 bytes) |
 		
-		result.add(neededBits);
+		result.write(neededBits);
 		
 		ByteBuffer b = ByteBuffer.allocate(4);
 		//b.order(ByteOrder.BIG_ENDIAN); // optional, the initial order of a byte buffer is always BIG_ENDIAN.
 		b.putInt(sequenceLength);
 
-		for (int i = 0; i < 4; ++i) {
-			result.add(b.array()[i]);
-		}
+		result.write(b.array(), 0, 4);
 		
 		//stores the number of sequences in the end (gets replaced later)
-		for (int i = 0; i < 4; ++i) {
-			result.add((byte) 0);
+		result.write(new byte[4], 0, 4);
+	}
+
+	/**
+	 * Enables the deduplication mode. Sequences that were already stored before are then
+	 * replaced with a back-reference to their first occurrence. Has to be called before
+	 * the first sequence is processed.
+	 * @return
+	 * this encoder
+	 */
+	public IntSequencesToCompressedByteArrayProcessor useDeduplication() {
+		if (totalSequences > 0) {
+			throw new IllegalStateException("Deduplication has to be enabled before processing any sequences.");
 		}
-		lastByteIndex = 8;
+		if (dictionary == null) {
+			dictionary = new SequenceDictionary();
+			//mark the mode in the header
+			result.set(0, (byte) (neededBits | SequenceDictionary.DEDUPLICATION_FLAG));
+		}
+		return this;
 	}
 
 	/* (non-Javadoc)
@@ -88,9 +148,14 @@ public class IntSequencesToCompressedByteArrayProcessor extends AbstractProcesso
 				Log.abort(this, "given sequence is of length %d, but should be %d.", intSequence.size(), sequenceLength);
 			}
 		}
+		if (index != null) {
+			index.mark(totalSequences, packer.getBitCount());
+		}
 		++totalSequences;
 		
-		result.ensureCapacity(result.size() + (((intSequence.size() + (sequenceLength == 0 ? 1 : 0)) * neededBits) / 8) + 1);
+		if (dictionary != null && storeReference(intSequence)) {
+			return null;
+		}
 		
 		for (Integer element : intSequence) {
 			storeNextInteger(containsZero ? element+1 : element);
@@ -110,34 +175,49 @@ public class IntSequencesToCompressedByteArrayProcessor extends AbstractProcesso
 				Log.abort(this, "Can not store '%d' in %d bits.", element.intValue(), neededBits);
 			}
 		}
-		//reset the bits left to write
-		byte bitsLeft = neededBits;
-		//keep only relevant bits as defined by the given maximum value
-		element = keepLastNBits(element, bitsLeft);
-		//add bits until all bits of the given number are processed
-		while (bitsLeft > 0) {
-			//add a new byte if no space is left
-			if (remainingFreeBits == 0) {
-				addNewByteToList();
-				//remainingFreeBits > 0 holds now!
-			}
-			//need to shift the bits differently if more bits are left to write than free bits are remaining in the last byte of the list
-			if (bitsLeft > remainingFreeBits) {
-				bitsLeft -= remainingFreeBits;
-				result.set(lastByteIndex, (byte) (result.get(lastByteIndex) | (element >>> bitsLeft)) );
-				remainingFreeBits = 0;
-				//set the first bits that are processed already to 0 and keep only the last n bits
-				element = keepLastNBits(element, bitsLeft);
-			} else { //bitsLeft <= remainingFreeBits
-				result.set(lastByteIndex, (byte) (result.get(lastByteIndex) | (element << (remainingFreeBits - bitsLeft))) );
-				remainingFreeBits -= bitsLeft;
-				bitsLeft = 0;
-			}
+		packer.write(element, neededBits);
+	}
+
+	// stores a back-reference instead of the sequence, if it was already stored before
+	private boolean storeReference(List<Integer> sequence) {
+		int[] array = new int[sequence.size()];
+		int i = 0;
+		for (int element : sequence) {
+			array[i++] = element;
 		}
+		int distinctCount = dictionary.size();
+		int id = dictionary.lookupOrAdd(array);
+		if (id < 0) {
+			packer.write(0, 1);
+			return false;
+		}
+		packer.write(1, 1);
+		packer.write(id, SequenceDictionary.getReferenceBits(distinctCount));
+		return true;
 	}
 
 	@Override
 	public byte[] getResultFromCollectedItems() {
+		long dataSize = completeResult();
+		byte[] temp = result.toByteArray();
+		result.truncate(dataSize);
+		return temp;
+	}
+	
+	/**
+	 * Returns a read-only view of the encoded bytes, without copying them into a new array.
+	 * The view is only guaranteed to be valid until further items are processed.
+	 * @return
+	 * a read-only buffer holding the encoded bytes
+	 */
+	public ByteBuffer getResultAsByteBuffer() {
+		long dataSize = completeResult();
+		ByteBuffer view = result.asReadOnlyByteBuffer();
+		result.truncate(dataSize);
+		return view;
+	}
+
+	private long completeResult() {
 		ByteBuffer b = ByteBuffer.allocate(4);
 		//b.order(ByteOrder.BIG_ENDIAN); // optional, the initial order of a byte buffer is always BIG_ENDIAN.
 		b.putInt(totalSequences);
@@ -147,21 +227,18 @@ public class IntSequencesToCompressedByteArrayProcessor extends AbstractProcesso
 			result.set(i+5, b.array()[i]);
 		}
 		
-		byte[] temp = new byte[result.size()];
-		for (int i = 0; i < temp.length; ++i) {
-			temp[i] = result.get(i);
+		//write all complete bytes and append the last (incomplete) byte and the index, if any;
+		//the pending bits remain in the packer and will be written with the next complete byte,
+		//so everything after the returned size has to be discarded again afterwards
+		packer.flush();
+		long dataSize = result.size();
+		if (packer.getPendingBits() > 0) {
+			result.write(packer.getPendingByte());
 		}
-		return temp;
-	}
-
-	private void addNewByteToList() {
-		result.add((byte) 0);
-		++lastByteIndex;
-		remainingFreeBits = 8;
-	}
-	
-	private int keepLastNBits(int element, byte n) {
-		return element & (int)Math.pow(2, n)-1;
+		if (index != null) {
+			index.writeTo(result);
+		}
+		return dataSize;
 	}
 
 	private static byte ceilLog2(int n) {
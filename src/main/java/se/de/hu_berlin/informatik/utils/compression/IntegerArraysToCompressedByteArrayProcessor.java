@@ -4,7 +4,7 @@
 package se.de.hu_berlin.informatik.utils.compression;
 
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
+
 import se.de.hu_berlin.informatik.utils.miscellaneous.Log;
 import se.de.hu_berlin.informatik.utils.processors.AbstractProcessor;
 
@@ -18,12 +18,11 @@ public class IntegerArraysToCompressedByteArrayProcessor extends AbstractProcess
 
 	public static final int DELIMITER = 0;
 	
-	private ArrayList<Byte> result;
+	private ByteSink result;
+	private BitPacker packer;
 	
 	private byte neededBits;
 	private int sequenceLength;
-	private int lastByteIndex = 0;
-	private byte remainingFreeBits = 0;
 	private int totalSequences = 0;
 
 	private int maxValue;
@@ -31,10 +30,29 @@ public class IntegerArraysToCompressedByteArrayProcessor extends AbstractProcess
 	private boolean containsZero;
 	
 	public IntegerArraysToCompressedByteArrayProcessor(int maxValue, int sequenceLength, boolean containsZero) {
+		this(maxValue, sequenceLength, containsZero, new ByteSink());
+	}
+	
+	/**
+	 * Creates an encoder that writes the encoded bytes into the given sink.
+	 * @param maxValue
+	 * the maximum value to store
+	 * @param sequenceLength
+	 * the length of the sequences to store, or 0 for sequences of varying length
+	 * @param containsZero
+	 * whether the sequences may contain zeroes
+	 * @param result
+	 * an empty sink to write the encoded bytes into, e.g. an off-heap sink
+	 */
+	public IntegerArraysToCompressedByteArrayProcessor(int maxValue, int sequenceLength, boolean containsZero, ByteSink result) {
 		super();
+		if (result.size() != 0) {
+			throw new IllegalArgumentException("Given sink is not empty.");
+		}
 		this.containsZero = sequenceLength == 0 && containsZero;
 		this.maxValue = containsZero ? maxValue+1 : maxValue;
-		result = new ArrayList<>();
+		this.result = result;
+		packer = new BitPacker(result);
 		
 		//compute the number of bits needed to represent integers with the given maximum value
 		neededBits = ceilLog2(this.maxValue);
@@ -53,21 +71,16 @@ public class IntegerArraysToCompressedByteArrayProcessor extends AbstractProcess
 		// header should be 9 bytes:
 		// | number of bits used for one element (1 byte) | sequence length (4 bytes) - 0 for delimiter mode | total number of sequences (4 bytes) |
 		
-		result.add(neededBits);
+		result.write(neededBits);
 		
 		ByteBuffer b = ByteBuffer.allocate(4);
 		//b.order(ByteOrder.BIG_ENDIAN); // optional, the initial order of a byte buffer is always BIG_ENDIAN.
 		b.putInt(sequenceLength);
 
-		for (int i = 0; i < 4; ++i) {
-			result.add(b.array()[i]);
-		}
+		result.write(b.array(), 0, 4);
 		
 		//stores the number of sequences in the end (gets replaced later)
-		for (int i = 0; i < 4; ++i) {
-			result.add((byte) 0);
-		}
-		lastByteIndex = 8;
+		result.write(new byte[4], 0, 4);
 	}
 
 	/* (non-Javadoc)
@@ -88,8 +101,6 @@ public class IntegerArraysToCompressedByteArrayProcessor extends AbstractProcess
 		}
 		++totalSequences;
 		
-		result.ensureCapacity(result.size() + (((intArray.length + (sequenceLength == 0 ? 1 : 0)) * neededBits) / 8) + 1);
-		
 		for (int element : intArray) {
 			storeNextInteger(containsZero ? element+1 : element);
 		}
@@ -108,34 +119,31 @@ public class IntegerArraysToCompressedByteArrayProcessor extends AbstractProcess
 				Log.abort(this, "Can not store '%d' in %d bits.", element, neededBits);
 			}
 		}
-		//reset the bits left to write
-		byte bitsLeft = neededBits;
-		//keep only relevant bits as defined by the given maximum value
-		element = keepLastNBits(element, bitsLeft);
-		//add bits until all bits of the given number are processed
-		while (bitsLeft > 0) {
-			//add a new byte if no space is left
-			if (remainingFreeBits == 0) {
-				addNewByteToList();
-				//remainingFreeBits > 0 holds now!
-			}
-			//need to shift the bits differently if more bits are left to write than free bits are remaining in the last byte of the list
-			if (bitsLeft > remainingFreeBits) {
-				bitsLeft -= remainingFreeBits;
-				result.set(lastByteIndex, (byte) (result.get(lastByteIndex) | (element >>> bitsLeft)) );
-				remainingFreeBits = 0;
-				//set the first bits that are processed already to 0 and keep only the last n bits
-				element = keepLastNBits(element, bitsLeft);
-			} else { //bitsLeft <= remainingFreeBits
-				result.set(lastByteIndex, (byte) (result.get(lastByteIndex) | (element << (remainingFreeBits - bitsLeft))) );
-				remainingFreeBits -= bitsLeft;
-				bitsLeft = 0;
-			}
-		}
+		packer.write(element, neededBits);
 	}
 
 	@Override
 	public byte[] getResultFromCollectedItems() {
+		completeResult();
+		byte[] temp = result.toByteArray();
+		discardPendingByte();
+		return temp;
+	}
+	
+	/**
+	 * Returns a read-only view of the encoded bytes, without copying them into a new array.
+	 * The view is only guaranteed to be valid until further items are processed.
+	 * @return
+	 * a read-only buffer holding the encoded bytes
+	 */
+	public ByteBuffer getResultAsByteBuffer() {
+		completeResult();
+		ByteBuffer view = result.asReadOnlyByteBuffer();
+		discardPendingByte();
+		return view;
+	}
+
+	private void completeResult() {
 		ByteBuffer b = ByteBuffer.allocate(4);
 		//b.order(ByteOrder.BIG_ENDIAN); // optional, the initial order of a byte buffer is always BIG_ENDIAN.
 		b.putInt(totalSequences);
@@ -145,21 +153,18 @@ public class IntegerArraysToCompressedByteArrayProcessor extends AbstractProcess
 			result.set(i+5, b.array()[i]);
 		}
 		
-		byte[] temp = new byte[result.size()];
-		for (int i = 0; i < temp.length; ++i) {
-			temp[i] = result.get(i);
+		//write all complete bytes and append the last (incomplete) byte, if any
+		packer.flush();
+		if (packer.getPendingBits() > 0) {
+			result.write(packer.getPendingByte());
 		}
-		return temp;
-	}
-
-	private void addNewByteToList() {
-		result.add((byte) 0);
-		++lastByteIndex;
-		remainingFreeBits = 8;
 	}
 	
-	private int keepLastNBits(int element, byte n) {
-		return element & (int)Math.pow(2, n)-1;
+	private void discardPendingByte() {
+		//the pending bits remain in the packer and will be written with the next complete byte
+		if (packer.getPendingBits() > 0) {
+			result.truncate(result.size() - 1);
+		}
 	}
 
 	private static byte ceilLog2(int n) {
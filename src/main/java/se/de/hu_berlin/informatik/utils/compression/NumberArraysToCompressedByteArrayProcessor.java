@@ -4,7 +4,7 @@
 package se.de.hu_berlin.informatik.utils.compression;
 
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
+
 import se.de.hu_berlin.informatik.utils.miscellaneous.Log;
 import se.de.hu_berlin.informatik.utils.processors.AbstractProcessor;
 
@@ -16,20 +16,36 @@ import se.de.hu_berlin.informatik.utils.processors.AbstractProcessor;
  */
 public class NumberArraysToCompressedByteArrayProcessor<T extends Number> extends AbstractProcessor<T[],byte[] > {
 
-	private ArrayList<Byte> result;
+	private ByteSink result;
+	private BitPacker packer;
 	
 	private byte neededBits;
 	private int sequenceLength;
-	private int lastByteIndex = 0;
-	private byte remainingFreeBits = 0;
 	private int totalSequences = 0;
 
 	private int maxValue;
 	
 	public NumberArraysToCompressedByteArrayProcessor(int maxValue, int sequenceLength) {
+		this(maxValue, sequenceLength, new ByteSink());
+	}
+	
+	/**
+	 * Creates an encoder that writes the encoded bytes into the given sink.
+	 * @param maxValue
+	 * the maximum value to store
+	 * @param sequenceLength
+	 * the length of the sequences to store
+	 * @param result
+	 * an empty sink to write the encoded bytes into, e.g. an off-heap sink
+	 */
+	public NumberArraysToCompressedByteArrayProcessor(int maxValue, int sequenceLength, ByteSink result) {
 		super();
+		if (result.size() != 0) {
+			throw new IllegalArgumentException("Given sink is not empty.");
+		}
 		this.maxValue = maxValue;
-		result = new ArrayList<>();
+		this.result = result;
+		packer = new BitPacker(result);
 		
 		//compute the number of bits needed to represent integers with the given maximum value
 		neededBits = ceilLog2(this.maxValue);
@@ -44,21 +60,16 @@ public class NumberArraysToCompressedByteArrayProcessor<T extends Number> extend
 		// header should be 9 bytes:
 		// | number of bits used for one element (1 byte) | sequence length (4 bytes) | total number of sequences (4 bytes) |
 		
-		result.add(neededBits);
+		result.write(neededBits);
 		
 		ByteBuffer b = ByteBuffer.allocate(4);
 		//b.order(ByteOrder.BIG_ENDIAN); // optional, the initial order of a byte buffer is always BIG_ENDIAN.
 		b.putInt(sequenceLength);
 
-		for (int i = 0; i < 4; ++i) {
-			result.add(b.array()[i]);
-		}
+		result.write(b.array(), 0, 4);
 		
 		//stores the number of sequences in the end (gets replaced)
-		for (int i = 0; i < 4; ++i) {
-			result.add((byte) 0);
-		}
-		lastByteIndex = 8;
+		result.write(new byte[4], 0, 4);
 	}
 
 	/* (non-Javadoc)
@@ -78,30 +89,7 @@ public class NumberArraysToCompressedByteArrayProcessor<T extends Number> extend
 					Log.abort(this, "Can not store '%d' in %d bits.", element, neededBits);
 				}
 			}
-			//reset the bits left to write
-			byte bitsLeft = neededBits;
-			//keep only relevant bits as defined by the given maximum value
-			element = keepLastNBits(element, bitsLeft);
-			//add bits until all bits of the given number are processed
-			while (bitsLeft > 0) {
-				//add a new byte if no space is left
-				if (remainingFreeBits == 0) {
-					addNewByteToList();
-					//remainingFreeBits > 0 holds now!
-				}
-				//need to shift the bits differently if more bits are left to write than free bits are remaining in the last byte of the list
-				if (bitsLeft > remainingFreeBits) {
-					bitsLeft -= remainingFreeBits;
-					result.set(lastByteIndex, (byte) (result.get(lastByteIndex) | (element >>> bitsLeft)));
-					remainingFreeBits = 0;
-					//set the first bits that are processed already to 0 and keep only the last n bits
-					element = keepLastNBits(element, bitsLeft);
-				} else { //bitsLeft <= remainingFreeBits
-					result.set(lastByteIndex, (byte) (result.get(lastByteIndex) | (element << (remainingFreeBits - bitsLeft))));
-					remainingFreeBits -= bitsLeft;
-					bitsLeft = 0;
-				}
-			}
+			packer.write(element, neededBits);
 		}
 
 		return null;
@@ -109,6 +97,26 @@ public class NumberArraysToCompressedByteArrayProcessor<T extends Number> extend
 
 	@Override
 	public byte[] getResultFromCollectedItems() {
+		completeResult();
+		byte[] temp = result.toByteArray();
+		discardPendingByte();
+		return temp;
+	}
+	
+	/**
+	 * Returns a read-only view of the encoded bytes, without copying them into a new array.
+	 * The view is only guaranteed to be valid until further items are processed.
+	 * @return
+	 * a read-only buffer holding the encoded bytes
+	 */
+	public ByteBuffer getResultAsByteBuffer() {
+		completeResult();
+		ByteBuffer view = result.asReadOnlyByteBuffer();
+		discardPendingByte();
+		return view;
+	}
+
+	private void completeResult() {
 		ByteBuffer b = ByteBuffer.allocate(4);
 		//b.order(ByteOrder.BIG_ENDIAN); // optional, the initial order of a byte buffer is always BIG_ENDIAN.
 		b.putInt(totalSequences);
@@ -118,21 +126,18 @@ public class NumberArraysToCompressedByteArrayProcessor<T extends Number> extend
 			result.set(i+5, b.array()[i]);
 		}
 		
-		byte[] temp = new byte[result.size()];
-		for (int i = 0; i < temp.length; ++i) {
-			temp[i] = result.get(i);
+		//write all complete bytes and append the last (incomplete) byte, if any
+		packer.flush();
+		if (packer.getPendingBits() > 0) {
+			result.write(packer.getPendingByte());
 		}
-		return temp;
-	}
-
-	private void addNewByteToList() {
-		result.add((byte) 0);
-		++lastByteIndex;
-		remainingFreeBits = 8;
 	}
 	
-	private int keepLastNBits(int element, byte n) {
-		return element & (int)Math.pow(2, n)-1;
+	private void discardPendingByte() {
+		//the pending bits remain in the packer and will be written with the next complete byte
+		if (packer.getPendingBits() > 0) {
+			result.truncate(result.size() - 1);
+		}
 	}
 
 	private static byte ceilLog2(int n) {
@@ -0,0 +1,86 @@
+/**
+ *
+ */
+package se.de.hu_berlin.informatik.utils.compression;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Assigns consecutive ids to distinct sequences of integers, in the order of their first
+ * occurrence. Used by the sequence encoders to replace repeated sequences with a
+ * back-reference to the id of their first occurrence.
+ *
+ * <p> In deduplication mode, every encoded sequence starts with a flag bit. A set bit is
+ * followed by the id of a previous sequence, stored with {@link #getReferenceBits(int)} bits,
+ * where the argument is the number of distinct sequences so far. Otherwise, the sequence
+ * follows as usual and gets the next id.
+ *
+ * @author Simon Heiden
+ */
+class SequenceDictionary {
+
+	// flag in the first header byte that marks deduplication mode (bit widths are at most 32)
+	static final int DEDUPLICATION_FLAG = 0x40;
+
+	private final Map<Key, Integer> ids = new HashMap<>();
+
+	/**
+	 * Looks up the given sequence. If it was not seen before, a copy of it is stored.
+	 * @param sequence
+	 * the sequence (not modified)
+	 * @return
+	 * the id of the sequence, if it was already seen before, or -1 otherwise
+	 */
+	int lookupOrAdd(int[] sequence) {
+		Key key = new Key(sequence);
+		Integer id = ids.get(key);
+		if (id != null) {
+			return id;
+		}
+		ids.put(new Key(sequence.clone()), ids.size());
+		return -1;
+	}
+
+	/**
+	 * @return
+	 * the number of distinct sequences
+	 */
+	int size() {
+		return ids.size();
+	}
+
+	/**
+	 * @param distinctCount
+	 * the number of distinct sequences
+	 * @return
+	 * the number of bits needed to store the id of any of the sequences
+	 */
+	static int getReferenceBits(int distinctCount) {
+		return distinctCount <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(distinctCount - 1);
+	}
+
+	private static final class Key {
+
+		private final int[] sequence;
+		private final int hash;
+
+		Key(int[] sequence) {
+			this.sequence = sequence;
+			this.hash = Arrays.hashCode(sequence);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Key && ((Key) obj).hash == hash && Arrays.equals(((Key) obj).sequence, sequence);
+		}
+
+	}
+
+}
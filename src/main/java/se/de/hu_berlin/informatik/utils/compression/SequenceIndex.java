@@ -0,0 +1,126 @@
+/**
+ *
+ */
+package se.de.hu_berlin.informatik.utils.compression;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Sparse index of the bit offsets of every k-th sequence in a compressed
+ * sequence of integers, as produced by the sequence encoders in delimiter mode.
+ *
+ * <p> The index is stored as a trailer after the encoded data:
+ * <br> | bit offset of sequences 0, k, 2k, ... (8 bytes each) | k (4 bytes) | number of offsets (4 bytes) | marker (4 bytes) |
+ * <br> Bit offsets are relative to the first bit after the header. Decoders that are
+ * not aware of the index stop reading after the last sequence and thus ignore the trailer.
+ *
+ * @author Simon Heiden
+ */
+class SequenceIndex {
+
+	static final int INDEX_MARKER = 0x53494458; // "SIDX"
+	static final int TRAILER_FOOTER_SIZE = 12;
+
+	private final int interval;
+	private long[] offsets;
+	private int count = 0;
+
+	SequenceIndex(int interval) {
+		if (interval < 1) {
+			throw new IllegalArgumentException("Index interval has to be positive.");
+		}
+		this.interval = interval;
+		this.offsets = new long[16];
+	}
+
+	private SequenceIndex(int interval, long[] offsets) {
+		this.interval = interval;
+		this.offsets = offsets;
+		this.count = offsets.length;
+	}
+
+	/**
+	 * Records the start of a sequence, if the sequence is the first one of an index block.
+	 * @param sequenceNumber
+	 * the number of the sequence
+	 * @param bitOffset
+	 * the offset of the sequence's first bit, relative to the end of the header
+	 */
+	void mark(int sequenceNumber, long bitOffset) {
+		if (sequenceNumber % interval == 0) {
+			if (count == offsets.length) {
+				offsets = Arrays.copyOf(offsets, 2 * offsets.length);
+			}
+			offsets[count++] = bitOffset;
+		}
+	}
+
+	int getInterval() {
+		return interval;
+	}
+
+	int size() {
+		return count;
+	}
+
+	long getOffset(int entry) {
+		return offsets[entry];
+	}
+
+	/**
+	 * Appends the index trailer to the given sink.
+	 * @param sink
+	 * the sink to write to
+	 */
+	void writeTo(ByteSink sink) {
+		ByteBuffer b = ByteBuffer.allocate(8 * count + TRAILER_FOOTER_SIZE);
+		for (int i = 0; i < count; ++i) {
+			b.putLong(offsets[i]);
+		}
+		b.putInt(interval);
+		b.putInt(count);
+		b.putInt(INDEX_MARKER);
+		sink.write(b.array(), 0, b.position());
+	}
+
+	/**
+	 * Tries to read an index trailer from the end of the given buffer.
+	 * @param buffer
+	 * the buffer holding the encoded bytes (from index 0 to its limit)
+	 * @param headerSize
+	 * the size of the header in bytes
+	 * @param totalSequences
+	 * the total number of encoded sequences
+	 * @return
+	 * the index, or null if the buffer does not end with a valid index trailer
+	 */
+	static SequenceIndex readFrom(ByteBuffer buffer, int headerSize, int totalSequences) {
+		int end = buffer.limit();
+		if (end < headerSize + TRAILER_FOOTER_SIZE || buffer.getInt(end - 4) != INDEX_MARKER) {
+			return null;
+		}
+		int interval = buffer.getInt(end - 12);
+		int count = buffer.getInt(end - 8);
+		if (interval < 1 || count < 0 ||
+				count != (totalSequences + interval - 1) / interval ||
+				end - TRAILER_FOOTER_SIZE - 8L * count < headerSize) {
+			return null;
+		}
+		int start = end - TRAILER_FOOTER_SIZE - 8 * count;
+		long[] offsets = new long[count];
+		for (int i = 0; i < count; ++i) {
+			offsets[i] = buffer.getLong(start + 8 * i);
+		}
+		return new SequenceIndex(interval, offsets);
+	}
+
+	/**
+	 * @return
+	 * the size of the trailer in bytes
+	 */
+	int getTrailerSize() {
+		return 8 * count + TRAILER_FOOTER_SIZE;
+	}
+
+}
@@ -0,0 +1,113 @@
+/**
+ *
+ */
+package se.de.hu_berlin.informatik.utils.compression;
+
+import se.de.hu_berlin.informatik.utils.miscellaneous.Log;
+
+/**
+ * Stores sequences of integers as zigzag encoded differences of consecutive elements,
+ * each in a variable number of bytes (7 bits per byte, least significant group first,
+ * with the highest bit of a byte set if more bytes follow).
+ *
+ * <p> Small gaps between elements (ascending or descending) thus need a single byte,
+ * independent of the magnitude of the elements themselves. The first element of each
+ * sequence is stored as its difference to 0.
+ *
+ * <p> An instance reads encoded values from a given byte array.
+ *
+ * @author Simon Heiden
+ */
+class VarIntCodec {
+
+	// marks the varint format in the first header byte (bit packed formats use at least 1 bit)
+	static final byte VARINT_MODE = 0;
+	
+	// | format marker (1 byte) | sequence length (4 bytes) - 0 for length prefixed mode | total number of sequences (4 bytes) |
+	static final int HEADER_SIZE = 9;
+
+	private final byte[] array;
+	private int pos;
+
+	VarIntCodec(byte[] array, int offset) {
+		this.array = array;
+		this.pos = offset;
+	}
+
+	static int zigzagEncode(int n) {
+		return (n << 1) ^ (n >> 31);
+	}
+
+	static int zigzagDecode(int n) {
+		return (n >>> 1) ^ -(n & 1);
+	}
+
+	/**
+	 * Writes the given value in as few bytes as possible.
+	 * @param sink
+	 * the sink to write to
+	 * @param value
+	 * the value, interpreted as unsigned
+	 */
+	static void writeVarInt(ByteSink sink, int value) {
+		while ((value & ~0x7F) != 0) {
+			sink.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		sink.write(value);
+	}
+
+	/**
+	 * Writes the differences of consecutive elements in the given range of the array.
+	 * @param sink
+	 * the sink to write to
+	 * @param values
+	 * an array of values
+	 * @param from
+	 * the index of the first value to store (inclusive)
+	 * @param to
+	 * the index of the last value to store (exclusive)
+	 */
+	static void writeDeltas(ByteSink sink, int[] values, int from, int to) {
+		int previous = 0;
+		for (int i = from; i < to; ++i) {
+			// overflows cancel out during decoding
+			writeVarInt(sink, zigzagEncode(values[i] - previous));
+			previous = values[i];
+		}
+	}
+
+	int readVarInt() {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			if (pos >= array.length) {
+				Log.abort(this, "Unexpected end of compressed data.");
+			}
+			byte b = array[pos++];
+			value |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		Log.abort(this, "Malformed variable length integer at position %d.", pos);
+		return 0;
+	}
+
+	/**
+	 * Reads the given number of elements that were stored with {@link #writeDeltas(ByteSink, int[], int, int)}.
+	 * @param dest
+	 * the array to store the values in
+	 * @param offset
+	 * the index of the first value in the array
+	 * @param count
+	 * the number of values to read
+	 */
+	void readDeltas(int[] dest, int offset, int count) {
+		int previous = 0;
+		for (int i = offset; i < offset + count; ++i) {
+			previous += zigzagDecode(readVarInt());
+			dest[i] = previous;
+		}
+	}
+
+}
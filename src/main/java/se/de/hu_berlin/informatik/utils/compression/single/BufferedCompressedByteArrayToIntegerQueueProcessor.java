@@ -9,6 +9,7 @@ import java.util.function.Consumer;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
+import se.de.hu_berlin.informatik.utils.compression.BitUnpacker;
 import se.de.hu_berlin.informatik.utils.compression.ziputils.ZipFileWrapper;
 import se.de.hu_berlin.informatik.utils.miscellaneous.Log;
 import se.de.hu_berlin.informatik.utils.processors.AbstractConsumingProcessor;
@@ -20,14 +21,9 @@ import se.de.hu_berlin.informatik.utils.processors.AbstractConsumingProcessor;
  */
 public class BufferedCompressedByteArrayToIntegerQueueProcessor extends AbstractConsumingProcessor<String> {
 	
-	// same buffer that is used in zip utils
-	private static final int BUFER_SIZE = 4096;
-	private byte[] buffer = new byte[BUFER_SIZE];
-		
 	public static final int DELIMITER = 0;
 	
 	private byte usedBits;
-	private int arrayPos;
 
 	private boolean containsZero;
 	private ZipFileWrapper zipFileWrapper;
@@ -55,67 +51,22 @@ public class BufferedCompressedByteArrayToIntegerQueueProcessor extends Abstract
 			}
 			inputStream = zipFile.getInputStream(entry);
 
-			int len = getNextBytesFromInputStream(inputStream);
-			readHeader(len);
+			BitUnpacker unpacker = new BitUnpacker(inputStream);
+			readHeader(unpacker);
 
 			boolean atTotalEnd = false;
 
-			byte currentByte = 0;
-			int currentInt = 0;
-			byte remainingBits = 0;
-			byte bitsLeft = 0;
-
 			//get all the encoded integers
-			while (arrayPos < len) {
-				//for each number, the number of bits to get is equal
-				bitsLeft = usedBits;
-				//if no bits remain to get from the current byte, then get the next one from the array
-				if (remainingBits == 0) {
-					currentByte = buffer[arrayPos];
-					remainingBits = 8;
-				}
-
-				//as long as bits are still needed, get them from the array
-				while (bitsLeft > 0) {
-					if (bitsLeft > remainingBits) {
-						currentInt = (currentInt << remainingBits) | (currentByte & 0xFF ) >>> (8 - remainingBits);
-						bitsLeft -= remainingBits;
-						//					remainingBits = 0;
-						++arrayPos;
-						if (arrayPos >= len) {
-							len = getNextBytesFromInputStream(inputStream);
-							arrayPos = 0;
-						}
-						currentByte = buffer[arrayPos];
-						remainingBits = 8;
-					} else { //bitsLeft <= remainingBits
-						currentInt = (currentInt << bitsLeft) | (currentByte & 0xFF ) >>> (8 - bitsLeft);
-						currentByte = (byte) (currentByte << bitsLeft);
-						remainingBits -= bitsLeft;
-						bitsLeft = 0;
-					}
-				}
+			while (unpacker.hasRemaining(usedBits)) {
+				int currentInt = unpacker.read(usedBits);
 
 				if (currentInt == DELIMITER) {
 					atTotalEnd = true;
-					//				System.out.println();
 					break;
 				} else {
-					//				System.out.print((currentInt-1) + ",");
 					//add the next integer to the current sequence
 					consumer.accept(containsZero ? currentInt-1 : currentInt);
 				}
-				//reset the current integer to all zeroes
-				currentInt = 0;
-
-				//if no bits remain in the current byte, then update the array position for the next step
-				if (remainingBits == 0) {
-					++arrayPos;
-				}
-				if (arrayPos >= len) {
-					len = getNextBytesFromInputStream(inputStream);
-					arrayPos = 0;
-				}
 			}
 
 			if (!atTotalEnd) {
@@ -136,25 +87,13 @@ public class BufferedCompressedByteArrayToIntegerQueueProcessor extends Abstract
 		
 	}
 
-	private void readHeader(int len) {
+	private void readHeader(BitUnpacker unpacker) {
 		// header should be 1 byte:
 		// | number of bits used for one element (1 byte) |
-		if (len < 1) {
+		if (!unpacker.hasRemaining(8)) {
 			Log.abort(this, "Could not read header from input stream.");
 		}
-		usedBits = buffer[0];
-		
-		arrayPos = 1;
-	}
-	
-	// returns the length of available bytes
-	private int getNextBytesFromInputStream(InputStream is) {
-		try {
-			return is.read(buffer);
-		} catch (IOException e) {
-			Log.abort(this, e, "Could not read bytes from stream.");
-			return -1;
-		}
+		usedBits = (byte) unpacker.read(8);
 	}
 	
 }
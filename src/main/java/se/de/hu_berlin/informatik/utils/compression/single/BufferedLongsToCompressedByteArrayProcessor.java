@@ -4,10 +4,11 @@
 package se.de.hu_berlin.informatik.utils.compression.single;
 
 import java.io.IOException;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
+import java.io.OutputStream;
 import java.nio.file.Path;
 
+import se.de.hu_berlin.informatik.utils.compression.BitPacker;
+import se.de.hu_berlin.informatik.utils.compression.ziputils.ZipEntryOutputStream;
 import se.de.hu_berlin.informatik.utils.compression.ziputils.ZipFileWrapper;
 import se.de.hu_berlin.informatik.utils.files.FileUtils;
 import se.de.hu_berlin.informatik.utils.miscellaneous.Log;
@@ -21,26 +22,18 @@ import se.de.hu_berlin.informatik.utils.processors.AbstractProcessor;
  */
 public class BufferedLongsToCompressedByteArrayProcessor extends AbstractProcessor<Long,byte[] > {
 
-	// same buffer that is used in zip utils
-	private static final int BUFFER_SIZE = 4096;
-
-	PipedOutputStream out;
+	private OutputStream out;
+	private BitPacker packer;
 	
 	private ZipFileWrapper zipFile;
 	
 	private static final byte TOTAL_END_MARKER = 0;
 	
-	private byte[] result;
-	
 	private byte neededBits;
-	private int lastByteIndex = -1;
-	private byte remainingFreeBits = 0;
 
 	private long maxValue;
 
 	private boolean containsZero;
-
-	private Thread zipFileListener;
 	
 	public BufferedLongsToCompressedByteArrayProcessor(
 			Path zipFilePath, String fileName, boolean deleteExisting, 
@@ -56,15 +49,12 @@ public class BufferedLongsToCompressedByteArrayProcessor extends AbstractProcess
 		
 		zipFile = ZipFileWrapper.getZipFileWrapper(zipFilePath);
 
-		PipedInputStream in = new PipedInputStream();
-		out = new PipedOutputStream(in);
-		
-		zipFileListener = startZipFileListener(fileName, in);
-		zipFileListener.start();
+		//write the packed bytes directly to the entry, without a separate thread
+		out = new ZipEntryOutputStream(zipFile, fileName);
+		packer = new BitPacker(out);
 		
 		this.containsZero = containsZero;
 		this.maxValue = containsZero ? maxValue+1 : maxValue;
-		result = new byte[BUFFER_SIZE];
 		
 		//compute the number of bits needed to represent integers with the given maximum value
 		neededBits = ceilLog2(this.maxValue);
@@ -72,47 +62,6 @@ public class BufferedLongsToCompressedByteArrayProcessor extends AbstractProcess
 		//add a header that contains information needed for decoding
 		addHeader(neededBits);
 	}
-
-	private Thread startZipFileListener(String fileName, PipedInputStream in) {
-		return new Thread(new Runnable() {
-
-			@Override
-			public void run() {
-				try {
-					int tries = 0;
-					boolean worked = false;
-					while (!worked) {
-						++tries;
-						try {
-							// Creates a new entry in the zip file and adds the content to the zip file
-							zipFile.addStream(in, fileName);
-							worked = true;
-						} catch (IOException e) {
-							if (tries < 5) {
-								Log.warn(this, "Attempt %d - Error adding stream to zip file '%s'.", tries, zipFile.getzipFilePath());
-								try {
-									Thread.sleep(5000);
-								} catch (InterruptedException e1) {
-									// do nothing
-								}
-							} else {
-								Log.abort(this, e, "Zip file '%s' does not exist.", zipFile.getzipFilePath());
-							}
-						}
-					}
-				} finally {
-					if (in != null) {
-						try {
-							in.close();
-						} catch (IOException e) {
-							// ignore
-						}
-					}
-				}
-			}
-		});
-	}
-	
 	
 	private void addHeader(byte neededBits) throws IOException {
 		// header should be 1 byte:
@@ -144,53 +93,21 @@ public class BufferedLongsToCompressedByteArrayProcessor extends AbstractProcess
 				Log.abort(this, "Can not store '%d' in %d bits.", element, neededBits);
 			}
 		}
-		//reset the bits left to write
-		byte bitsLeft = neededBits;
-		//keep only relevant bits as defined by the given maximum value
-		element = keepLastNBits(element, bitsLeft);
-		//add bits until all bits of the given number are processed
-		while (bitsLeft > 0) {
-			//add a new byte if no space is left
-			if (remainingFreeBits == 0) {
-				addNewByteToList();
-				//remainingFreeBits > 0 holds now!
-			}
-			//need to shift the bits differently if more bits are left to write than free bits are remaining in the last byte of the list
-			if (bitsLeft > remainingFreeBits) {
-				bitsLeft -= remainingFreeBits;
-				result[lastByteIndex] = (byte) (result[lastByteIndex] | (element >>> bitsLeft));
-				remainingFreeBits = 0;
-				//set the first bits that are processed already to 0 and keep only the last n bits
-				element = keepLastNBits(element, bitsLeft);
-			} else { //bitsLeft <= remainingFreeBits
-				result[lastByteIndex] = (byte) (result[lastByteIndex] | (element << (remainingFreeBits - bitsLeft)));
-				remainingFreeBits -= bitsLeft;
-				bitsLeft = 0;
-			}
-		}
+		packer.writeLong(element, neededBits);
 	}
 
 	private void closeOutputStream() {
 		if (out != null) {
 			storeNextLong(TOTAL_END_MARKER);
 			try {
-				if (lastByteIndex >= 0) {
-					out.write(result, 0, lastByteIndex+1);
-					lastByteIndex = -1;
-				}
-				result = null;
+				packer.finish();
+				packer = null;
 
 				out.flush();
 				out.close();
 			} catch (IOException e) {
 				Log.abort(this, e, "Could not write to or close output stream.");
 			} finally {
-				while (zipFileListener.isAlive()) {
-					try {
-						zipFileListener.join();
-					} catch (InterruptedException e) {
-					}
-				}
 				out = null;
 			}
 		}
@@ -205,28 +122,6 @@ public class BufferedLongsToCompressedByteArrayProcessor extends AbstractProcess
 		return null;
 	}
 
-	private void addNewByteToList() {
-		++lastByteIndex;
-		remainingFreeBits = 8;
-		writeBuferToStreamIfFull();
-	}
-
-	private void writeBuferToStreamIfFull() {
-		if (lastByteIndex >= BUFFER_SIZE) {
-			try {
-				out.write(result);
-			} catch (IOException e) {
-				Log.abort(this, e, "Could not write to output stream.");
-			}
-			lastByteIndex = 0;
-			result = new byte[BUFFER_SIZE];
-		}
-	}
-	
-	private long keepLastNBits(long element, byte n) {
-		return element & (int)Math.pow(2, n)-1;
-	}
-
 	private static byte ceilLog2(long n) {
 	    if (n < 0) {
 	    	throw new IllegalArgumentException("Can not compute for n = " + n);
@@ -0,0 +1,246 @@
+package se.de.hu_berlin.informatik.utils.compression.ziputils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+/**
+ * An open {@link ZipFile} together with an index of all of its entries, shared by all readers
+ * of a {@link ZipFileWrapper}. The central directory thus only has to be parsed once, until
+ * the zip file changes.
+ *
+ * <p> The handle is reference counted: the owning wrapper holds one reference, and each reader
+ * acquires its own reference via {@link #retain()} and releases it via {@link #close()}. After
+ * the handle has been invalidated (e.g., because the zip file gets written), the underlying
+ * zip file is closed as soon as the last reader is done.
+ *
+ * @author Simon Heiden
+ */
+class CachedZipFile implements Closeable {
+
+	private final ZipFile zipFile;
+	private final Path zipFilePath;
+	// entries in the order of the central directory
+	private final Map<String, ZipEntry> entries;
+	// positions of the entries in the file, read on demand
+	private Map<String, Long> localHeaderOffsets;
+	// the error of a failed attempt to read the positions, to not read them again
+	private IOException localHeaderOffsetsFailure;
+
+	// attributes of the file at the time it was opened
+	private final FileTime lastModified;
+	private final long size;
+	private final Object fileKey;
+
+	// the reference of the owning wrapper is released on invalidation
+	private int references = 1;
+	private boolean invalidated = false;
+
+	private CachedZipFile(ZipFile zipFile, Path zipFilePath, BasicFileAttributes attributes) {
+		this.zipFile = zipFile;
+		this.zipFilePath = zipFilePath;
+		this.lastModified = attributes.lastModifiedTime();
+		this.size = attributes.size();
+		this.fileKey = attributes.fileKey();
+
+		entries = new LinkedHashMap<>();
+		Enumeration<? extends ZipEntry> enumeration = zipFile.entries();
+		while (enumeration.hasMoreElements()) {
+			ZipEntry entry = enumeration.nextElement();
+			entries.put(entry.getName(), entry);
+		}
+	}
+
+	/**
+	 * Opens the given zip file and reads its central directory.
+	 * @param zipFilePath
+	 * the path to the zip file
+	 * @return
+	 * the opened zip file, holding one reference for the caller
+	 * @throws IOException
+	 * if the zip file does not exist or can not be read
+	 */
+	static CachedZipFile open(Path zipFilePath) throws IOException {
+		BasicFileAttributes attributes = Files.readAttributes(zipFilePath, BasicFileAttributes.class);
+		return new CachedZipFile(new ZipFile(zipFilePath.toFile()), zipFilePath, attributes);
+	}
+
+	/**
+	 * Checks whether the file at the given path is still the file that was opened,
+	 * to detect changes that were not made via the owning wrapper.
+	 * @param zipFilePath
+	 * the path to the zip file
+	 * @return
+	 * true if the file seems to be unchanged
+	 */
+	boolean isUpToDate(Path zipFilePath) {
+		try {
+			BasicFileAttributes attributes = Files.readAttributes(zipFilePath, BasicFileAttributes.class);
+			return attributes.size() == size
+					&& attributes.lastModifiedTime().equals(lastModified)
+					&& Objects.equals(attributes.fileKey(), fileKey);
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @return
+	 * the modification time of the file at the time it was opened, in milliseconds
+	 */
+	long getLastModified() {
+		return lastModified.toMillis();
+	}
+
+	/**
+	 * @return
+	 * the size of the file at the time it was opened
+	 */
+	long getSize() {
+		return size;
+	}
+
+	ZipEntry getEntry(String name) {
+		return entries.get(name);
+	}
+
+	/**
+	 * @return
+	 * the names of all entries, in the order of the central directory
+	 */
+	Collection<String> getEntryNames() {
+		return Collections.unmodifiableCollection(entries.keySet());
+	}
+
+	/**
+	 * Returns the existing entries with the given names, sorted by their positions in the file,
+	 * for sequential access. The positions are read from the central directory on first use.
+	 * If the positions can not be read (e.g., due to data in front of the first entry), the
+	 * entries are returned in the given order.
+	 * @param names
+	 * the names of the entries
+	 * @return
+	 * the entries, without duplicates and without names that do not exist
+	 */
+	List<ZipEntry> getEntriesInFileOrder(Collection<String> names) {
+		List<ZipEntry> result = new ArrayList<>(names.size());
+		for (String name : new LinkedHashSet<>(names)) {
+			ZipEntry entry = entries.get(name);
+			if (entry != null) {
+				result.add(entry);
+			}
+		}
+		Map<String, Long> offsets;
+		try {
+			offsets = getLocalHeaderOffsets();
+		} catch (IOException e) {
+			// the zip file itself can still be read
+			return result;
+		}
+		result.sort(Comparator.comparingLong(entry -> offsets.getOrDefault(entry.getName(), Long.MAX_VALUE)));
+		return result;
+	}
+
+	/**
+	 * @param name
+	 * the name of an existing entry
+	 * @return
+	 * the position of the local header of the entry in the file
+	 * @throws IOException
+	 * if the central directory can not be read or the entry does not exist
+	 */
+	long getLocalHeaderOffset(String name) throws IOException {
+		Long offset = getLocalHeaderOffsets().get(name);
+		if (offset == null) {
+			throw new ZipException("Entry '" + name + "' not found in zip file '" + zipFilePath + "'.");
+		}
+		return offset;
+	}
+
+	private synchronized Map<String, Long> getLocalHeaderOffsets() throws IOException {
+		if (localHeaderOffsetsFailure != null) {
+			throw new ZipException("Can not read the positions of entries in zip file '" 
+					+ zipFilePath + "': " + localHeaderOffsetsFailure.getMessage());
+		}
+		if (localHeaderOffsets == null) {
+			Map<String, Long> offsets = new HashMap<>(entries.size() * 2);
+			try (FileChannel channel = FileChannel.open(zipFilePath, StandardOpenOption.READ)) {
+				for (RawZipEntries.Record record : RawZipEntries.readDirectory(channel).getRecords()) {
+					offsets.put(record.getName(), record.getLocalHeaderOffset());
+				}
+			} catch (IOException e) {
+				localHeaderOffsetsFailure = e;
+				throw e;
+			}
+			localHeaderOffsets = offsets;
+		}
+		return localHeaderOffsets;
+	}
+
+	InputStream getInputStream(ZipEntry entry) throws IOException {
+		return zipFile.getInputStream(entry);
+	}
+
+	/**
+	 * Acquires a new reference to this zip file.
+	 * @return
+	 * this handle
+	 */
+	synchronized CachedZipFile retain() {
+		if (references == 0) {
+			throw new IllegalStateException("Zip file '" + zipFile.getName() + "' is already closed.");
+		}
+		++references;
+		return this;
+	}
+
+	/**
+	 * Releases the reference of the owning wrapper. The zip file is closed
+	 * as soon as all readers have released their references.
+	 */
+	synchronized void invalidate() {
+		if (!invalidated) {
+			invalidated = true;
+			release();
+		}
+	}
+
+	/**
+	 * Releases a reference that was acquired via {@link #retain()}.
+	 */
+	@Override
+	public synchronized void close() {
+		release();
+	}
+
+	private void release() {
+		if (references > 0 && --references == 0) {
+			try {
+				zipFile.close();
+			} catch (IOException e) {
+				// ignore
+			}
+		}
+	}
+
+}
@@ -0,0 +1,200 @@
+package se.de.hu_berlin.informatik.utils.compression.ziputils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A cache of decompressed zip entries with a limited size in bytes. Entries are identified
+ * by the path of the zip file, the name of the entry and the modification time and size
+ * of the zip file, such that changes of the zip file never lead to stale contents. The least
+ * recently used entries are evicted if the size limit is exceeded.
+ *
+ * <p> A cache may be shared between multiple zip files, see
+ * {@link ZipFileWrapper#setEntryCache(DecompressedEntryCache)}. Cached arrays are
+ * copied on each access, so callers may modify returned arrays.
+ *
+ * @author Simon Heiden
+ */
+public class DecompressedEntryCache {
+
+	private final long maxBytes;
+	// access order, i.e., the least recently used entry comes first
+	private final LinkedHashMap<Key, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private long bytes = 0;
+
+	private long hitCount = 0;
+	private long missCount = 0;
+	private long evictionCount = 0;
+
+	/**
+	 * Creates a cache that holds at most the given number of bytes of decompressed data.
+	 * @param maxBytes
+	 * the maximum size of all cached entries; larger entries are not cached at all
+	 */
+	public DecompressedEntryCache(long maxBytes) {
+		super();
+		if (maxBytes < 0) {
+			throw new IllegalArgumentException("Negative cache size: " + maxBytes);
+		}
+		this.maxBytes = maxBytes;
+	}
+
+	@FunctionalInterface
+	interface EntryLoader {
+		byte[] load() throws IOException;
+	}
+
+	/**
+	 * Returns the cached content of the given entry, or loads and caches it.
+	 * @param zipFilePath
+	 * the path to the zip file
+	 * @param lastModified
+	 * the modification time of the zip file
+	 * @param size
+	 * the size of the zip file
+	 * @param fileName
+	 * the name of the entry
+	 * @param loader
+	 * loads the content on a cache miss
+	 * @return
+	 * a copy of the content
+	 * @throws IOException
+	 * if the loader fails
+	 */
+	byte[] get(Path zipFilePath, long lastModified, long size, String fileName, EntryLoader loader) throws IOException {
+		Key key = new Key(zipFilePath.toAbsolutePath().toString(), fileName, lastModified, size);
+		synchronized (this) {
+			byte[] content = entries.get(key);
+			if (content != null) {
+				++hitCount;
+				return content.clone();
+			}
+			++missCount;
+		}
+		// concurrent misses of the same entry may load it more than once
+		byte[] content = loader.load();
+		put(key, content.clone());
+		return content;
+	}
+
+	private synchronized void put(Key key, byte[] content) {
+		if (content.length > maxBytes) {
+			return;
+		}
+		byte[] previous = entries.put(key, content);
+		if (previous != null) {
+			bytes -= previous.length;
+		}
+		bytes += content.length;
+		Iterator<byte[]> iterator = entries.values().iterator();
+		while (bytes > maxBytes && iterator.hasNext()) {
+			bytes -= iterator.next().length;
+			iterator.remove();
+			++evictionCount;
+		}
+	}
+
+	/**
+	 * Removes all cached entries of the given zip file.
+	 * @param zipFilePath
+	 * the path to the zip file
+	 */
+	public synchronized void invalidate(Path zipFilePath) {
+		String path = zipFilePath.toAbsolutePath().toString();
+		Iterator<Map.Entry<Key, byte[]>> iterator = entries.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<Key, byte[]> entry = iterator.next();
+			if (entry.getKey().zipFilePath.equals(path)) {
+				bytes -= entry.getValue().length;
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Removes all cached entries. The counters are not reset.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		bytes = 0;
+	}
+
+	/**
+	 * @return
+	 * the number of bytes of all cached entries
+	 */
+	public synchronized long getSize() {
+		return bytes;
+	}
+
+	public long getMaxSize() {
+		return maxBytes;
+	}
+
+	/**
+	 * @return
+	 * the number of cached entries
+	 */
+	public synchronized int getEntryCount() {
+		return entries.size();
+	}
+
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * @return
+	 * the number of entries that were removed to stay within the size limit
+	 */
+	public synchronized long getEvictionCount() {
+		return evictionCount;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "DecompressedEntryCache [entries=" + entries.size() + ", bytes=" + bytes + "/" + maxBytes
+				+ ", hits=" + hitCount + ", misses=" + missCount + ", evictions=" + evictionCount + "]";
+	}
+
+	private static final class Key {
+		private final String zipFilePath;
+		private final String fileName;
+		private final long lastModified;
+		private final long size;
+
+		private Key(String zipFilePath, String fileName, long lastModified, long size) {
+			this.zipFilePath = zipFilePath;
+			this.fileName = fileName;
+			this.lastModified = lastModified;
+			this.size = size;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(zipFilePath, fileName, lastModified, size);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return lastModified == other.lastModified && size == other.size
+					&& zipFilePath.equals(other.zipFilePath) && fileName.equals(other.fileName);
+		}
+	}
+
+}
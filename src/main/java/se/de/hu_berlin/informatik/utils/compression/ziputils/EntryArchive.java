@@ -0,0 +1,142 @@
+package se.de.hu_berlin.informatik.utils.compression.ziputils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Predicate;
+
+import se.de.hu_berlin.informatik.utils.miscellaneous.Log;
+import se.de.hu_berlin.informatik.utils.miscellaneous.Misc;
+
+/**
+ * A file that stores named entries, like a zip file. Entries may be added, replaced,
+ * read (as a whole or in parts) and removed.
+ *
+ * @author Simon Heiden
+ */
+public interface EntryArchive {
+
+	/**
+	 * Reads the given entry.
+	 * @param fileName
+	 * the name of the entry
+	 * @param logError
+	 * whether to log an error if the entry can not be read
+	 * @return
+	 * the content of the entry, or null if it can not be read
+	 */
+	public byte[] get(String fileName, boolean logError);
+
+	public boolean exists(String fileName) throws IOException;
+
+	public long getEntrySize(String fileName) throws IOException;
+
+	public byte[] uncheckedGet(String fileName) throws IOException;
+
+	/**
+	 * Reads a part of the given entry.
+	 * @param fileName
+	 * the name of the entry
+	 * @param start
+	 * the number of bytes to skip
+	 * @param byteCount
+	 * the maximum number of bytes to read
+	 * @return
+	 * the read bytes, or null if the entry is shorter than the bytes to skip
+	 * @throws IOException
+	 * if the entry does not exist or can not be read
+	 */
+	public byte[] uncheckedGet(String fileName, long start, int byteCount) throws IOException;
+
+	/**
+	 * Reads the given entry in consecutive chunks.
+	 * @param fileName
+	 * the name of the entry
+	 * @param chunkLengths
+	 * the lengths of the chunks to read
+	 * @return
+	 * the read chunks
+	 * @throws IOException
+	 * if the entry does not exist or can not be read
+	 */
+	public List<byte[]> uncheckedGet(String fileName, List<Integer> chunkLengths) throws IOException;
+
+	/**
+	 * Adds a new entry with the content of the given stream. An existing entry
+	 * with the same name gets replaced. The stream is closed afterwards.
+	 * @param in
+	 * the stream to read the content from
+	 * @param fileName
+	 * the name of the entry
+	 * @throws IOException
+	 * if the entry can not be added
+	 */
+	public void addStream(InputStream in, String fileName) throws IOException;
+
+	public void removeEntries(Collection<String> files);
+
+	/**
+	 * @param check
+	 * a predicate to test the names of all entries with
+	 * @return
+	 * the names of all matching entries
+	 * @throws IOException
+	 * if the archive can not be read
+	 */
+	public List<String> getFileHeadersSatisfyingCheck(Predicate<String> check) throws IOException;
+
+	/**
+	 * Writes all pending changes and releases all resources. The archive is opened
+	 * again on the next access.
+	 */
+	public void close();
+
+	default public void addArray(byte[] array, String fileName) {
+		try (InputStream in = new ByteArrayInputStream(array)) {
+			addStream(in, fileName);
+		} catch (IOException e) {
+			Log.abort(this, e, "Could not create input stream from byte array.");
+		}
+	}
+
+	default public List<String> getFileHeadersContainingString(String pattern) throws IOException {
+		return getFileHeadersSatisfyingCheck(k -> k.contains(pattern));
+	}
+
+	default public List<String> getFileHeadersStartingWithString(String pattern) throws IOException {
+		return getFileHeadersSatisfyingCheck(k -> k.startsWith(pattern));
+	}
+
+	default public byte[] uncheckedGet(final int index) throws IOException {
+		final String filename = index + ".bin";
+		return uncheckedGet(filename);
+	}
+
+	default public byte[] get(final int index, boolean logError) {
+		try {
+			return uncheckedGet(index);
+		} catch (IOException e) {
+			if (logError) {
+				Log.err(this, "Unable to get zipped file '%s'.", index + ".bin");
+			}
+			return null;
+		}
+	}
+
+	default public byte[] tryGetFromOneOf(String... fileNames) {
+		byte[] result = null;
+		for (String fileName : fileNames) {
+			result = this.get(fileName, false);
+			if (result != null) {
+				break;
+			}
+		}
+		if (result == null) {
+			Log.err(this, "Unable to load data from (one of) " + Misc.arrayToString(fileNames));
+		}
+		return result;
+	}
+
+}
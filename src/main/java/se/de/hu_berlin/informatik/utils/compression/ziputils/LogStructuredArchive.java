@@ -0,0 +1,665 @@
+package se.de.hu_berlin.informatik.utils.compression.ziputils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+import se.de.hu_berlin.informatik.utils.miscellaneous.Log;
+
+/**
+ * An archive of named entries that is only ever appended to. In contrast to a zip file,
+ * replacing or removing entries does not require to rewrite the whole archive: new entries
+ * are appended, and removed entries are marked with appended tombstones. An index of all
+ * entries is kept in memory and is written as a footer when the archive is closed. The space
+ * of replaced and removed entries can be reclaimed explicitly via {@link #compact()} or
+ * {@link #compactInBackground(Executor)}.
+ *
+ * <p> File layout:
+ * <br> | magic number (4 bytes) | records... | footer (optional) |
+ * <br> entry record: | 1 (1 byte) | name length n (2 bytes) | name (n bytes) | content length l (8 bytes) | content (l bytes) |
+ * <br> tombstone record: | 2 (1 byte) | name length n (2 bytes) | name (n bytes) |
+ * <br> footer: | 3 (1 byte) | entry count (4 bytes) | garbage size (8 bytes) |
+ * (name length (2 bytes) | name | content offset (8 bytes) | content length (8 bytes))... | footer start (8 bytes) | magic number (4 bytes) |
+ *
+ * <p> If the archive was not closed properly, the index is restored by reading all records,
+ * and an incomplete last record is discarded.
+ *
+ * <p> Entries are stored uncompressed. Any number of readers may access the archive at the
+ * same time, while writes are exclusive.
+ *
+ * @author Simon Heiden
+ */
+public class LogStructuredArchive implements EntryArchive {
+
+	private static final int MAGIC = 0x4C534131; // "LSA1"
+	private static final int FOOTER_MAGIC = 0x4C534149; // "LSAI"
+
+	private static final byte ENTRY = 1;
+	private static final byte TOMBSTONE = 2;
+	private static final byte FOOTER = 3;
+
+	private static final int HEADER_SIZE = 4;
+	// footer start and magic number
+	private static final int FOOTER_TRAILER_SIZE = 12;
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	final private static Map<String,LogStructuredArchive> archiveCache = new ConcurrentHashMap<>();
+
+	final private Path archivePath;
+	// any number of readers, but exclusive access for writing
+	private final ReentrantReadWriteLock readWriteLock = new ReentrantReadWriteLock();
+	private final AtomicBoolean compacting = new AtomicBoolean(false);
+
+	// null if the archive is closed
+	private FileChannel channel;
+	// entry names mapped to the positions of their contents, in the order of addition
+	private Map<String, Location> index;
+	// the end of the last record
+	private long dataEnd;
+	// whether the file currently ends with an up-to-date footer
+	private boolean hasFooter;
+	// the number of bytes in records that are not needed anymore
+	private long garbageSize;
+
+	private static class Location {
+		final long offset;
+		final long length;
+		final long recordSize;
+
+		Location(long offset, long length, long recordSize) {
+			this.offset = offset;
+			this.length = length;
+			this.recordSize = recordSize;
+		}
+	}
+
+	private LogStructuredArchive(final Path archivePath) {
+		super();
+		this.archivePath = archivePath.toAbsolutePath();
+		addShutDownHook();
+	}
+
+	public static synchronized LogStructuredArchive getLogStructuredArchive(final Path archivePath) {
+		return archiveCache.computeIfAbsent(archivePath.toAbsolutePath().toString(), k -> {
+			return new LogStructuredArchive(archivePath);
+		});
+	}
+
+	private void addShutDownHook() {
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				// do not wait for threads that are still writing
+				if (readWriteLock.writeLock().tryLock()) {
+					try {
+						closeChannel();
+					} finally {
+						readWriteLock.writeLock().unlock();
+					}
+				}
+			}
+		});
+	}
+
+	public Path getArchivePath() {
+		return archivePath;
+	}
+
+	/**
+	 * @return
+	 * the number of bytes that would be reclaimed by a compaction
+	 * @throws IOException
+	 * if the archive can not be opened
+	 */
+	public long getGarbageSize() throws IOException {
+		lockForReading();
+		try {
+			return garbageSize;
+		} finally {
+			readWriteLock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public byte[] get(String fileName, boolean logError) {
+		try {
+			if (!exists(fileName)) {
+				if (logError) {
+					Log.err(this, "Unable to get archived file '%s'.", fileName);
+				}
+				return null;
+			}
+			return uncheckedGet(fileName);
+		} catch (IOException e) {
+			if (logError) {
+				Log.err(this, e, "Error in archived file '%s'", fileName);
+			}
+			return null;
+		}
+	}
+
+	@Override
+	public boolean exists(String fileName) throws IOException {
+		lockForReading();
+		try {
+			return index.containsKey(fileName);
+		} finally {
+			readWriteLock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public long getEntrySize(String fileName) throws IOException {
+		lockForReading();
+		try {
+			return getExistingEntry(fileName).length;
+		} finally {
+			readWriteLock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public byte[] uncheckedGet(String fileName) throws IOException {
+		lockForReading();
+		try {
+			Location location = getExistingEntry(fileName);
+			return read(location.offset, toArrayLength(location.length));
+		} finally {
+			readWriteLock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public byte[] uncheckedGet(String fileName, long start, int byteCount) throws IOException {
+		lockForReading();
+		try {
+			Location location = getExistingEntry(fileName);
+			if (start > location.length) {
+				return null;
+			}
+			return read(location.offset + start, (int) Math.min(byteCount, location.length - start));
+		} finally {
+			readWriteLock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public List<byte[]> uncheckedGet(String fileName, List<Integer> chunkLengths) throws IOException {
+		lockForReading();
+		try {
+			Location location = getExistingEntry(fileName);
+			List<byte[]> chunks = new ArrayList<>(chunkLengths.size());
+			long position = 0;
+			for (int chunkLength : chunkLengths) {
+				if (position + chunkLength > location.length) {
+					Log.err(this, "Not all chunks could be retrieved (file entry too short)!");
+					break;
+				}
+				chunks.add(read(location.offset + position, chunkLength));
+				position += chunkLength;
+			}
+			if (chunks.size() == chunkLengths.size() && position < location.length) {
+				Log.warn(this, "Didn't process entire file entry!");
+			}
+			return chunks;
+		} finally {
+			readWriteLock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public List<String> getFileHeadersSatisfyingCheck(Predicate<String> check) throws IOException {
+		lockForReading();
+		try {
+			List<String> matchingHeaders = new ArrayList<>();
+			for (String name : index.keySet()) {
+				if (check.test(name)) {
+					matchingHeaders.add(name);
+				}
+			}
+			return matchingHeaders;
+		} finally {
+			readWriteLock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public void addStream(InputStream in, String fileName) throws IOException {
+		byte[] name = encodeName(fileName);
+		readWriteLock.writeLock().lock();
+		try {
+			prepareAppend();
+			long recordStart = dataEnd;
+			long contentStart = recordStart + 1 + 2 + name.length + 8;
+
+			// write the content first, then the header with the actual length
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			long length = 0;
+			int n;
+			while ((n = in.read(buffer.array())) > 0) {
+				buffer.limit(n);
+				writeFully(buffer, contentStart + length);
+				buffer.clear();
+				length += n;
+			}
+			ByteBuffer header = ByteBuffer.allocate(1 + 2 + name.length + 8);
+			header.put(ENTRY).putShort((short) name.length).put(name).putLong(length);
+			header.flip();
+			writeFully(header, recordStart);
+
+			dataEnd = contentStart + length;
+			Location previous = index.remove(fileName);
+			if (previous != null) {
+				garbageSize += previous.recordSize;
+			}
+			index.put(fileName, new Location(contentStart, length, dataEnd - recordStart));
+		} finally {
+			in.close();
+			readWriteLock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void removeEntries(Collection<String> files) {
+		readWriteLock.writeLock().lock();
+		try {
+			for (String fileName : files) {
+				if (channel == null) {
+					open();
+				}
+				Location previous = index.remove(fileName);
+				if (previous == null) {
+					continue;
+				}
+				prepareAppend();
+				byte[] name = encodeName(fileName);
+				ByteBuffer tombstone = ByteBuffer.allocate(1 + 2 + name.length);
+				tombstone.put(TOMBSTONE).putShort((short) name.length).put(name);
+				tombstone.flip();
+				writeFully(tombstone, dataEnd);
+				dataEnd += tombstone.capacity();
+				garbageSize += previous.recordSize + tombstone.capacity();
+			}
+		} catch (IOException e) {
+			Log.abort(this, e, "Could not remove entries from archive '%s'.", archivePath);
+		} finally {
+			readWriteLock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void close() {
+		readWriteLock.writeLock().lock();
+		try {
+			closeChannel();
+		} finally {
+			readWriteLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Rewrites the archive, such that it only contains the current entries.
+	 * Readers and writers are only blocked while the last few records are copied
+	 * and the files are swapped, so the archive remains usable during the compaction.
+	 * @throws IOException
+	 * if the compaction fails (the archive remains unchanged, then)
+	 */
+	public void compact() throws IOException {
+		if (!compacting.compareAndSet(false, true)) {
+			Log.warn(this, "Compaction of archive '%s' is already running.", archivePath);
+			return;
+		}
+		try {
+			// take a snapshot of the current entries
+			FileChannel source;
+			List<Map.Entry<String, Location>> snapshot;
+			long snapshotEnd;
+			lockForReading();
+			try {
+				source = channel;
+				snapshot = new ArrayList<>(index.entrySet());
+				snapshotEnd = dataEnd;
+			} finally {
+				readWriteLock.readLock().unlock();
+			}
+
+			Path tempFile = Files.createTempFile(archivePath.getParent(), archivePath.getFileName().toString(), ".compact");
+			try {
+				try (FileChannel target = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+					ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+					header.putInt(MAGIC).flip();
+					writeFully(target, header);
+
+					// copy the entries of the snapshot, while other threads may still read and write
+					for (Map.Entry<String, Location> entry : snapshot) {
+						byte[] name = encodeName(entry.getKey());
+						ByteBuffer recordHeader = ByteBuffer.allocate(1 + 2 + name.length + 8);
+						recordHeader.put(ENTRY).putShort((short) name.length).put(name).putLong(entry.getValue().length);
+						recordHeader.flip();
+						readWriteLock.readLock().lock();
+						try {
+							checkUnchanged(source);
+							writeFully(target, recordHeader);
+							transferFully(source, entry.getValue().offset, entry.getValue().length, target);
+						} finally {
+							readWriteLock.readLock().unlock();
+						}
+					}
+
+					readWriteLock.writeLock().lock();
+					try {
+						checkUnchanged(source);
+						// copy all records that have been written in the meantime
+						transferFully(source, snapshotEnd, dataEnd - snapshotEnd, target);
+						target.force(true);
+
+						channel.close();
+						channel = null;
+						Files.move(tempFile, archivePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+						// the compacted archive has no footer, yet
+						openChannel();
+						readRecords();
+					} finally {
+						readWriteLock.writeLock().unlock();
+					}
+				}
+			} finally {
+				Files.deleteIfExists(tempFile);
+			}
+		} finally {
+			compacting.set(false);
+		}
+	}
+
+	/**
+	 * Starts a compaction of the archive with the given executor.
+	 * @param executor
+	 * the executor to run the compaction with
+	 * @return
+	 * a future that completes when the compaction is done
+	 * @see #compact()
+	 */
+	public CompletableFuture<Void> compactInBackground(Executor executor) {
+		return CompletableFuture.runAsync(() -> {
+			try {
+				compact();
+			} catch (IOException e) {
+				throw new CompletionException(e);
+			}
+		}, executor);
+	}
+
+	private void checkUnchanged(FileChannel source) throws IOException {
+		if (channel != source) {
+			throw new IOException("Archive '" + archivePath + "' was closed during compaction.");
+		}
+	}
+
+	private Location getExistingEntry(String fileName) throws IOException {
+		Location location = index.get(fileName);
+		if (location == null) {
+			throw new IOException("File '" + fileName + "' does not exist in archive '" + archivePath + "'!");
+		}
+		return location;
+	}
+
+	/**
+	 * Acquires the read lock, such that the archive is open. Opening the archive requires
+	 * the write lock for a moment, which is then downgraded to the read lock.
+	 * @throws IOException
+	 * if the archive can not be opened (the read lock is not held, then)
+	 */
+	private void lockForReading() throws IOException {
+		readWriteLock.readLock().lock();
+		if (channel != null) {
+			return;
+		}
+		readWriteLock.readLock().unlock();
+
+		readWriteLock.writeLock().lock();
+		try {
+			if (channel == null) {
+				open();
+			}
+			readWriteLock.readLock().lock();
+		} finally {
+			readWriteLock.writeLock().unlock();
+		}
+	}
+
+	private void open() throws IOException {
+		openChannel();
+		try {
+			if (channel.size() == 0) {
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+				header.putInt(MAGIC).flip();
+				writeFully(header, 0);
+				dataEnd = HEADER_SIZE;
+			} else if (!readFooter()) {
+				Log.warn(this, "Archive '%s' was not closed properly. Restoring index...", archivePath);
+				readRecords();
+			}
+		} catch (IOException e) {
+			channel.close();
+			channel = null;
+			throw e;
+		}
+	}
+
+	private void openChannel() throws IOException {
+		if (archivePath.getParent() != null) {
+			archivePath.getParent().toFile().mkdirs();
+		}
+		channel = FileChannel.open(archivePath,
+				StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+		index = new LinkedHashMap<>();
+		garbageSize = 0;
+		hasFooter = false;
+		if (channel.size() > 0 && (channel.size() < HEADER_SIZE || readBuffer(0, HEADER_SIZE).getInt() != MAGIC)) {
+			channel.close();
+			channel = null;
+			throw new IOException("File '" + archivePath + "' is no log structured archive.");
+		}
+	}
+
+	private boolean readFooter() throws IOException {
+		long size = channel.size();
+		if (size < HEADER_SIZE + 1 + 4 + 8 + FOOTER_TRAILER_SIZE) {
+			return false;
+		}
+		ByteBuffer trailer = readBuffer(size - FOOTER_TRAILER_SIZE, FOOTER_TRAILER_SIZE);
+		long footerStart = trailer.getLong();
+		if (trailer.getInt() != FOOTER_MAGIC || footerStart < HEADER_SIZE || footerStart >= size - FOOTER_TRAILER_SIZE) {
+			return false;
+		}
+		ByteBuffer footer = readBuffer(footerStart, toArrayLength(size - FOOTER_TRAILER_SIZE - footerStart));
+		if (footer.get() != FOOTER) {
+			return false;
+		}
+		int entryCount = footer.getInt();
+		garbageSize = footer.getLong();
+		for (int i = 0; i < entryCount; ++i) {
+			byte[] name = new byte[footer.getShort() & 0xFFFF];
+			footer.get(name);
+			long offset = footer.getLong();
+			long length = footer.getLong();
+			long recordSize = 1 + 2 + name.length + 8 + length;
+			index.put(new String(name, StandardCharsets.UTF_8), new Location(offset, length, recordSize));
+		}
+		dataEnd = footerStart;
+		hasFooter = true;
+		return true;
+	}
+
+	// restores the index from the records, and discards an incomplete last record
+	private void readRecords() throws IOException {
+		long size = channel.size();
+		long position = HEADER_SIZE;
+		while (position + 3 <= size) {
+			ByteBuffer recordHeader = readBuffer(position, 3);
+			byte type = recordHeader.get();
+			int nameLength = recordHeader.getShort() & 0xFFFF;
+			if (type == ENTRY && position + 3 + nameLength + 8 <= size) {
+				ByteBuffer rest = readBuffer(position + 3, nameLength + 8);
+				byte[] name = new byte[nameLength];
+				rest.get(name);
+				long length = rest.getLong();
+				long contentStart = position + 3 + nameLength + 8;
+				if (length < 0 || contentStart + length > size) {
+					break;
+				}
+				Location previous = index.remove(new String(name, StandardCharsets.UTF_8));
+				if (previous != null) {
+					garbageSize += previous.recordSize;
+				}
+				index.put(new String(name, StandardCharsets.UTF_8), new Location(contentStart, length, contentStart + length - position));
+				position = contentStart + length;
+			} else if (type == TOMBSTONE && position + 3 + nameLength <= size) {
+				byte[] name = new byte[nameLength];
+				readBuffer(position + 3, nameLength).get(name);
+				Location previous = index.remove(new String(name, StandardCharsets.UTF_8));
+				garbageSize += 3 + nameLength + (previous == null ? 0 : previous.recordSize);
+				position += 3 + nameLength;
+			} else {
+				// footer or incomplete record
+				break;
+			}
+		}
+		dataEnd = position;
+		channel.truncate(dataEnd);
+	}
+
+	private void writeFooter() throws IOException {
+		int footerSize = 1 + 4 + 8 + FOOTER_TRAILER_SIZE;
+		List<byte[]> names = new ArrayList<>(index.size());
+		for (String name : index.keySet()) {
+			byte[] encoded = encodeName(name);
+			names.add(encoded);
+			footerSize += 2 + encoded.length + 8 + 8;
+		}
+		ByteBuffer footer = ByteBuffer.allocate(footerSize);
+		footer.put(FOOTER).putInt(index.size()).putLong(garbageSize);
+		int i = 0;
+		for (Location location : index.values()) {
+			byte[] name = names.get(i++);
+			footer.putShort((short) name.length).put(name).putLong(location.offset).putLong(location.length);
+		}
+		footer.putLong(dataEnd).putInt(FOOTER_MAGIC);
+		footer.flip();
+		writeFully(footer, dataEnd);
+		channel.truncate(dataEnd + footerSize);
+		hasFooter = true;
+	}
+
+	// opens the archive if necessary and removes the footer
+	private void prepareAppend() throws IOException {
+		if (channel == null) {
+			open();
+		}
+		if (hasFooter) {
+			channel.truncate(dataEnd);
+			hasFooter = false;
+		}
+	}
+
+	private void closeChannel() {
+		if (channel == null) {
+			return;
+		}
+		try {
+			if (!hasFooter) {
+				writeFooter();
+			}
+			channel.force(true);
+		} catch (IOException e) {
+			Log.err(this, e, "Could not write index of archive '%s'.", archivePath);
+		} finally {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				// ignore
+			}
+			channel = null;
+			index = null;
+		}
+	}
+
+	private byte[] read(long position, int length) throws IOException {
+		return readBuffer(position, length).array();
+	}
+
+	private ByteBuffer readBuffer(long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new EOFException("Unexpected end of archive '" + archivePath + "'.");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	private void writeFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+	}
+
+	private static void writeFully(FileChannel target, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			target.write(buffer);
+		}
+	}
+
+	private static void transferFully(FileChannel source, long position, long count, FileChannel target) throws IOException {
+		while (count > 0) {
+			long transferred = source.transferTo(position, count, target);
+			if (transferred <= 0) {
+				throw new EOFException("Unexpected end of file while copying.");
+			}
+			position += transferred;
+			count -= transferred;
+		}
+	}
+
+	private static byte[] encodeName(String fileName) {
+		byte[] name = fileName.getBytes(StandardCharsets.UTF_8);
+		if (name.length > 0xFFFF) {
+			throw new IllegalArgumentException("Entry name is too long: " + fileName);
+		}
+		return name;
+	}
+
+	private static int toArrayLength(long length) throws IOException {
+		if (length > Integer.MAX_VALUE - 8) {
+			throw new IOException("Entry is too large to be read into an array: " + length + " bytes.");
+		}
+		return (int) length;
+	}
+
+	@Override
+	public String toString() {
+		return archivePath.toString();
+	}
+
+}
@@ -1,16 +1,20 @@
 package se.de.hu_berlin.informatik.utils.compression.ziputils;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.nio.file.Path;
-import java.util.zip.ZipException;
-import java.util.zip.ZipFile;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
 import se.de.hu_berlin.informatik.utils.miscellaneous.Log;
 import se.de.hu_berlin.informatik.utils.miscellaneous.Pair;
 import se.de.hu_berlin.informatik.utils.processors.AbstractProcessor;
 
 /**
- * Adds byte arrays to a zip file.
+ * Copies entries from one zip file to another without decompressing and compressing them again.
+ * The entries are collected and copied all at once in {@link #getResultFromCollectedItems()}.
  * 
  * @author Simon Heiden
  */
@@ -18,6 +22,8 @@ public class MoveNamedByteArraysBetweenZipFilesProcessor extends AbstractProcess
 
 	private Path zipFilePathSource;
 	private Path zipFilePathTarget;
+	// maps target entry names to source entry names
+	private final Map<String, String> sourceFileNames = new LinkedHashMap<>();
 
 	public MoveNamedByteArraysBetweenZipFilesProcessor(Path zipFilePathSource, Path zipFilePathTarget) {
 		//if this module needs an input item
@@ -39,40 +45,50 @@ public class MoveNamedByteArraysBetweenZipFilesProcessor extends AbstractProcess
 	 */
 	@Override
 	public Boolean processItem(Pair<String, String> sourceAndTargetFileNames) {
-		ZipFileWrapper zipFileSource = ZipFileWrapper.getZipFileWrapper(zipFilePathSource);
-		ZipFileWrapper zipFileTarget = ZipFileWrapper.getZipFileWrapper(zipFilePathTarget);
+		// the entries are copied all at once, since every transfer rewrites the central directory;
+		// the last source wins if a target name occurs more than once
+		sourceFileNames.remove(sourceAndTargetFileNames.second());
+		sourceFileNames.put(sourceAndTargetFileNames.second(), sourceAndTargetFileNames.first());
+		return null;
+	}
 
-		try {
-			if (!zipFileSource.exists(sourceAndTargetFileNames.first())) {
-				return false;
-			}
-		} catch (ZipException e1) {
-			Log.abort(this, e1, "File '%s' does not exist.", sourceAndTargetFileNames.first());
+	/**
+	 * Copies all collected entries with a single transfer.
+	 * @return
+	 * true if all entries were copied; false if some of them do not exist in the source zip file;
+	 * null if no entries were collected
+	 */
+	@Override
+	public Boolean getResultFromCollectedItems() {
+		if (sourceFileNames.isEmpty()) {
+			return null;
+		}
+		List<Pair<String, String>> transfers = new ArrayList<>(sourceFileNames.size());
+		for (Entry<String, String> names : sourceFileNames.entrySet()) {
+			transfers.add(new Pair<>(names.getValue(), names.getKey()));
 		}
+		sourceFileNames.clear();
+		
+		ZipFileWrapper zipFileSource = ZipFileWrapper.getZipFileWrapper(zipFilePathSource);
+		ZipFileWrapper zipFileTarget = ZipFileWrapper.getZipFileWrapper(zipFilePathTarget);
 		try {
-			InputStream sourceStream = null;
-			try {
-				try (ZipFile zipFile = new ZipFile(zipFileSource.getzipFilePath().toFile())) {
-
-					sourceStream = zipFile.getInputStream(zipFile.getEntry(sourceAndTargetFileNames.first()));
-
-					// Creates a new entry in the zip file and adds the content to the zip file
-					zipFileTarget.addStream(sourceStream, sourceAndTargetFileNames.second());
-
-				} catch (IOException e) {
-					throw new ZipException("Reading input stream from file '" + zipFileSource.getzipFilePath() + "' failed!");
-				}
-			} catch (ZipException e) {
-				Log.abort(this, e, "File '%s' does not exist or failed to create stream.", sourceAndTargetFileNames.first());
-			} finally {
-				if (sourceStream != null) {
-					sourceStream.close();
-				}
-			}
+			// copies the compressed data as it is
+			return zipFileTarget.transferEntries(zipFileSource, transfers) == transfers.size();
 		} catch (IOException e) {
-			Log.abort(this, e, "Could not copy files.");
+			Log.abort(this, e, "Could not copy %d file(s) from '%s' to '%s'.", 
+					transfers.size(), zipFilePathSource, zipFilePathTarget);
 		}
-		return true;
+		return false;
+	}
+
+	/* (non-Javadoc)
+	 * @see se.de.hu_berlin.informatik.utils.processors.Processor#finalShutdown()
+	 */
+	@Override
+	public boolean finalShutdown() {
+		// copies entries that have not been copied yet
+		getResultFromCollectedItems();
+		return super.finalShutdown();
 	}
 
 }
@@ -0,0 +1,293 @@
+package se.de.hu_berlin.informatik.utils.compression.ziputils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import se.de.hu_berlin.informatik.utils.threaded.ExecutorServiceProvider;
+
+/**
+ * Adds byte arrays to a zip file in batches. The arrays are compressed concurrently
+ * by a pool of worker threads, and the compressed entries are appended to the zip file
+ * in the order in which they were added. The amount of (uncompressed) data that is
+ * submitted, but not yet written, is limited; adding further arrays blocks until enough
+ * entries have been written.
+ *
+ * <p> All entries are written when calling {@link #flush()} or {@link #close()}.
+ * If an entry can not be compressed or written, the entries that were added before
+ * are still written (as far as possible), all later entries are discarded, and every
+ * further call throws an {@link IOException}.
+ *
+ * @author Simon Heiden
+ */
+public class ParallelZipWriter implements Closeable {
+
+	public static final long DEFAULT_MAX_IN_FLIGHT_BYTES = 64L * 1024 * 1024;
+
+	private final ZipFileWrapper zipFileWrapper;
+	private final ExecutorServiceProvider executor;
+	private final int compressionLevel;
+	private final long maxInFlightBytes;
+
+	// compression jobs in the order of submission
+	private final Deque<Future<DeflatedEntry>> pending = new ArrayDeque<>();
+	private long inFlightBytes = 0;
+	private boolean closed = false;
+	// the first compression or write error, if any
+	private Exception failure = null;
+
+	/**
+	 * Creates a writer that compresses entries with the given number of threads.
+	 * @param zipFileWrapper
+	 * the zip file to write to
+	 * @param threadCount
+	 * the number of threads to compress entries with
+	 * @param maxInFlightBytes
+	 * the maximum number of bytes of added arrays that may wait for being written
+	 * (a single larger array is still accepted if nothing else is pending)
+	 * @param compressionLevel
+	 * the compression level (0-9), see {@link Deflater}
+	 */
+	public ParallelZipWriter(ZipFileWrapper zipFileWrapper, int threadCount, long maxInFlightBytes, int compressionLevel) {
+		super();
+		if (threadCount < 1) {
+			throw new IllegalArgumentException("Need at least one thread: " + threadCount);
+		}
+		this.zipFileWrapper = zipFileWrapper;
+		this.executor = new ExecutorServiceProvider(threadCount);
+		this.maxInFlightBytes = maxInFlightBytes;
+		this.compressionLevel = compressionLevel;
+	}
+
+	/**
+	 * Creates a writer that compresses entries with the given number of threads,
+	 * with the default compression level.
+	 * @param zipFileWrapper
+	 * the zip file to write to
+	 * @param threadCount
+	 * the number of threads to compress entries with
+	 * @param maxInFlightBytes
+	 * the maximum number of bytes of added arrays that may wait for being written
+	 */
+	public ParallelZipWriter(ZipFileWrapper zipFileWrapper, int threadCount, long maxInFlightBytes) {
+		this(zipFileWrapper, threadCount, maxInFlightBytes, Deflater.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * Creates a writer that compresses entries with one thread per available processor,
+	 * with at most {@link #DEFAULT_MAX_IN_FLIGHT_BYTES} bytes waiting for being written.
+	 * @param zipFileWrapper
+	 * the zip file to write to
+	 */
+	public ParallelZipWriter(ZipFileWrapper zipFileWrapper) {
+		this(zipFileWrapper, Runtime.getRuntime().availableProcessors(), DEFAULT_MAX_IN_FLIGHT_BYTES);
+	}
+
+	/**
+	 * Submits the given array for compression. An existing entry with the same name
+	 * gets replaced when the entry is written. The array must not be changed afterwards.
+	 * @param array
+	 * the content of the entry
+	 * @param fileName
+	 * the name of the entry
+	 * @throws IOException
+	 * if previously added entries could not be compressed or written, or if
+	 * the writer failed before
+	 */
+	public synchronized void addArray(byte[] array, String fileName) throws IOException {
+		if (closed) {
+			throw new IllegalStateException("Writer for zip file '" + zipFileWrapper + "' is closed.");
+		}
+		// write finished entries first, and wait for more if the limit is reached
+		writeFinishedEntries(array.length);
+		inFlightBytes += array.length;
+		pending.add(executor.getExecutorService().submit(() -> deflate(array, fileName, compressionLevel)));
+	}
+
+	/**
+	 * Waits for all submitted entries to be compressed and writes them to the zip file.
+	 * @throws IOException
+	 * if an entry could not be compressed or written, or if the writer failed before
+	 */
+	public synchronized void flush() throws IOException {
+		writeFinishedEntries(Long.MAX_VALUE);
+	}
+
+	/**
+	 * Writes all submitted entries and shuts down the worker threads.
+	 * @throws IOException
+	 * if an entry could not be compressed or written
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			flush();
+		} finally {
+			executor.shutdownAndWaitForTermination(false);
+		}
+	}
+
+	/**
+	 * Writes compressed entries in the order of submission, as long as they are finished.
+	 * Waits for further entries until the given number of additional bytes fits into the limit
+	 * (or nothing is pending anymore).
+	 * @param additionalBytes
+	 * the number of bytes that shall be submitted next
+	 * @throws IOException
+	 * if an entry could not be compressed or written
+	 */
+	private void writeFinishedEntries(long additionalBytes) throws IOException {
+		if (failure != null) {
+			throw new IOException("Writing to zip file '" + zipFileWrapper + "' failed before.", failure);
+		}
+		List<DeflatedEntry> entries = new ArrayList<>();
+		IOException compressionFailure = null;
+		while (!pending.isEmpty()) {
+			Future<DeflatedEntry> next = pending.peek();
+			boolean mustWait = inFlightBytes > 0 && inFlightBytes > maxInFlightBytes - additionalBytes;
+			if (!next.isDone() && !mustWait) {
+				break;
+			}
+			pending.poll();
+			try {
+				DeflatedEntry entry = getUninterruptibly(next);
+				inFlightBytes -= entry.getSize();
+				entries.add(entry);
+			} catch (IOException e) {
+				compressionFailure = e;
+				break;
+			}
+		}
+		try {
+			if (!entries.isEmpty()) {
+				// one append (and one new central directory) per batch of finished entries
+				zipFileWrapper.addDeflatedEntries(entries);
+			}
+		} catch (IOException | RuntimeException e) {
+			if (compressionFailure != null) {
+				e.addSuppressed(compressionFailure);
+			}
+			fail(e);
+			throw e;
+		}
+		if (compressionFailure != null) {
+			fail(compressionFailure);
+			throw compressionFailure;
+		}
+	}
+
+	/**
+	 * Discards all pending entries. Every further call of {@link #addArray(byte[], String)}
+	 * or {@link #flush()} throws an exception afterwards.
+	 * @param e
+	 * the error that caused the failure
+	 */
+	private void fail(Exception e) {
+		failure = e;
+		for (Future<DeflatedEntry> future : pending) {
+			future.cancel(true);
+		}
+		pending.clear();
+		inFlightBytes = 0;
+	}
+
+	private static DeflatedEntry getUninterruptibly(Future<DeflatedEntry> future) throws IOException {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return future.get();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				} catch (ExecutionException e) {
+					throw new IOException("Compressing entry failed.", e.getCause());
+				}
+			}
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private static DeflatedEntry deflate(byte[] array, String fileName, int compressionLevel) {
+		CRC32 crc = new CRC32();
+		crc.update(array, 0, array.length);
+		// raw deflate data, as stored in zip files
+		Deflater deflater = new Deflater(compressionLevel, true);
+		try {
+			deflater.setInput(array);
+			deflater.finish();
+			ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, array.length / 2));
+			byte[] buffer = new byte[8192];
+			while (!deflater.finished()) {
+				int length = deflater.deflate(buffer);
+				out.write(buffer, 0, length);
+			}
+			return new DeflatedEntry(fileName, crc.getValue(), array.length, out.toByteArray());
+		} finally {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * An entry that has been compressed with the deflate algorithm.
+	 */
+	static class DeflatedEntry {
+		private final String name;
+		private final long crc;
+		private final long size;
+		private final byte[] compressedData;
+
+		DeflatedEntry(String name, long crc, long size, byte[] compressedData) {
+			this.name = name;
+			this.crc = crc;
+			this.size = size;
+			this.compressedData = compressedData;
+		}
+
+		String getName() {
+			return name;
+		}
+
+		long getCrc() {
+			return crc;
+		}
+
+		long getSize() {
+			return size;
+		}
+
+		byte[] getCompressedData() {
+			return compressedData;
+		}
+
+		/**
+		 * @return
+		 * a stream of the uncompressed data
+		 */
+		InputStream getInputStream() {
+			// the inflater needs an additional dummy byte for raw deflate data
+			return new InflaterInputStream(new ByteArrayInputStream(
+					Arrays.copyOf(compressedData, compressedData.length + 1)), new Inflater(true));
+		}
+	}
+
+}
@@ -0,0 +1,620 @@
+package se.de.hu_berlin.informatik.utils.compression.ziputils;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Reads the central directory of a zip file and copies entries between zip files as they are,
+ * i.e., without decompressing and compressing their contents again. New entries can be written
+ * from already compressed data, or uncompressed (STORED) with aligned data.
+ *
+ * <p> Copied entries get a new local header that contains the CRC and the sizes of the entry,
+ * so no data descriptor is needed. Encrypted entries and entries with sizes or offsets that
+ * require zip64 extra fields are not supported. Zip64 end records (for more than 65535 entries)
+ * are read and written.
+ *
+ * @author Simon Heiden
+ */
+final class RawZipEntries {
+
+	private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+	private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+	private static final int END_SIGNATURE = 0x06054b50;
+	private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+	private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+
+	private static final int LOCAL_HEADER_SIZE = 30;
+	private static final int CENTRAL_HEADER_SIZE = 46;
+	private static final int END_SIZE = 22;
+	private static final int ZIP64_END_SIZE = 56;
+	private static final int ZIP64_LOCATOR_SIZE = 20;
+	private static final int EXTRA_HEADER_SIZE = 4;
+
+	// extra field id for alignment padding (as used by zipalign)
+	private static final int PADDING_HEADER_ID = 0xD935;
+
+	private static final int FLAG_ENCRYPTED = 0x1;
+	private static final int FLAG_DATA_DESCRIPTOR = 0x8;
+	private static final int FLAG_UTF8 = 0x800;
+
+	private static final long MAX_32 = 0xFFFFFFFFL;
+	private static final int MAX_16 = 0xFFFF;
+
+	private RawZipEntries() {
+		// only static methods and nested classes
+	}
+
+	/**
+	 * An entry of the central directory.
+	 */
+	static class Record {
+		private int versionMadeBy;
+		private int versionNeeded;
+		private int flags;
+		private int method;
+		private int time;
+		private int date;
+		private long crc;
+		private long compressedSize;
+		private long size;
+		private byte[] name;
+		private byte[] extra;
+		private byte[] comment;
+		private int internalAttributes;
+		private long externalAttributes;
+		private long localHeaderOffset;
+
+		private Record() {
+		}
+
+		private Record(Record other) {
+			versionMadeBy = other.versionMadeBy;
+			versionNeeded = other.versionNeeded;
+			flags = other.flags;
+			method = other.method;
+			time = other.time;
+			date = other.date;
+			crc = other.crc;
+			compressedSize = other.compressedSize;
+			size = other.size;
+			name = other.name;
+			extra = other.extra;
+			comment = other.comment;
+			internalAttributes = other.internalAttributes;
+			externalAttributes = other.externalAttributes;
+			localHeaderOffset = other.localHeaderOffset;
+		}
+
+		String getName() {
+			// names are UTF-8 encoded by default in java
+			return new String(name, StandardCharsets.UTF_8);
+		}
+
+		long getLocalHeaderOffset() {
+			return localHeaderOffset;
+		}
+
+		long getCompressedSize() {
+			return compressedSize;
+		}
+
+		private boolean isSupported() {
+			return (flags & FLAG_ENCRYPTED) == 0
+					&& compressedSize != MAX_32 && size != MAX_32 && localHeaderOffset != MAX_32;
+		}
+	}
+
+	/**
+	 * The central directory of a zip file.
+	 */
+	static class Directory {
+		private final List<Record> records;
+		private final long offset;
+		private final boolean supported;
+
+		private Directory(List<Record> records, long offset, boolean supported) {
+			this.records = records;
+			this.offset = offset;
+			this.supported = supported;
+		}
+
+		/**
+		 * @return
+		 * the entries in the order of the central directory
+		 */
+		List<Record> getRecords() {
+			return Collections.unmodifiableList(records);
+		}
+
+		/**
+		 * @return
+		 * the position of the central directory (the end of the last entry)
+		 */
+		long getOffset() {
+			return offset;
+		}
+
+		/**
+		 * @return
+		 * whether all entries can be copied
+		 */
+		boolean isSupported() {
+			return supported;
+		}
+	}
+
+	/**
+	 * Reads the central directory of the given zip file.
+	 * @param channel
+	 * a channel of the zip file
+	 * @return
+	 * the central directory
+	 * @throws IOException
+	 * if the file is no valid zip file
+	 */
+	static Directory readDirectory(FileChannel channel) throws IOException {
+		long fileSize = channel.size();
+		if (fileSize < END_SIZE) {
+			throw new ZipException("File is too short to be a zip file.");
+		}
+		// the end record is followed by a comment of up to 65535 bytes
+		int tailSize = (int) Math.min(fileSize, END_SIZE + MAX_16);
+		long tailStart = fileSize - tailSize;
+		ByteBuffer tail = read(channel, tailStart, tailSize);
+		int endPos = -1;
+		for (int i = tailSize - END_SIZE; i >= 0; --i) {
+			if (tail.getInt(i) == END_SIGNATURE && i + END_SIZE + (tail.getShort(i + 20) & MAX_16) == tailSize) {
+				endPos = i;
+				break;
+			}
+		}
+		if (endPos < 0) {
+			throw new ZipException("End of central directory not found.");
+		}
+
+		long entryCount = tail.getShort(endPos + 10) & MAX_16;
+		long directorySize = tail.getInt(endPos + 12) & MAX_32;
+		long directoryOffset = tail.getInt(endPos + 16) & MAX_32;
+		if (entryCount == MAX_16 || directorySize == MAX_32 || directoryOffset == MAX_32) {
+			// zip64 end record
+			long locatorPos = tailStart + endPos - ZIP64_LOCATOR_SIZE;
+			ByteBuffer locator = locatorPos < 0 ? null : read(channel, locatorPos, ZIP64_LOCATOR_SIZE);
+			if (locator != null && locator.getInt(0) == ZIP64_LOCATOR_SIGNATURE) {
+				ByteBuffer end64 = read(channel, locator.getLong(8), ZIP64_END_SIZE);
+				if (end64.getInt(0) != ZIP64_END_SIGNATURE) {
+					throw new ZipException("Invalid zip64 end of central directory.");
+				}
+				entryCount = end64.getLong(32);
+				directorySize = end64.getLong(40);
+				directoryOffset = end64.getLong(48);
+			}
+		}
+		if (directorySize > Integer.MAX_VALUE || directoryOffset + directorySize > fileSize) {
+			throw new ZipException("Invalid central directory.");
+		}
+
+		ByteBuffer directory = read(channel, directoryOffset, (int) directorySize);
+		List<Record> records = new ArrayList<>((int) Math.min(entryCount, 1 << 20));
+		boolean supported = true;
+		for (long i = 0; i < entryCount; ++i) {
+			int pos = directory.position();
+			if (directory.remaining() < CENTRAL_HEADER_SIZE || directory.getInt(pos) != CENTRAL_HEADER_SIGNATURE) {
+				throw new ZipException("Invalid central directory header.");
+			}
+			Record record = new Record();
+			record.versionMadeBy = directory.getShort(pos + 4) & MAX_16;
+			record.versionNeeded = directory.getShort(pos + 6) & MAX_16;
+			record.flags = directory.getShort(pos + 8) & MAX_16;
+			record.method = directory.getShort(pos + 10) & MAX_16;
+			record.time = directory.getShort(pos + 12) & MAX_16;
+			record.date = directory.getShort(pos + 14) & MAX_16;
+			record.crc = directory.getInt(pos + 16) & MAX_32;
+			record.compressedSize = directory.getInt(pos + 20) & MAX_32;
+			record.size = directory.getInt(pos + 24) & MAX_32;
+			int nameLength = directory.getShort(pos + 28) & MAX_16;
+			int extraLength = directory.getShort(pos + 30) & MAX_16;
+			int commentLength = directory.getShort(pos + 32) & MAX_16;
+			record.internalAttributes = directory.getShort(pos + 36) & MAX_16;
+			record.externalAttributes = directory.getInt(pos + 38) & MAX_32;
+			record.localHeaderOffset = directory.getInt(pos + 42) & MAX_32;
+			directory.position(pos + CENTRAL_HEADER_SIZE);
+			record.name = new byte[nameLength];
+			directory.get(record.name);
+			record.extra = new byte[extraLength];
+			directory.get(record.extra);
+			record.comment = new byte[commentLength];
+			directory.get(record.comment);
+			supported &= record.isSupported();
+			records.add(record);
+		}
+		return new Directory(records, directoryOffset, supported);
+	}
+
+	/**
+	 * Copies an entry with its compressed content to the current position of the target channel.
+	 * @param source
+	 * a channel of the zip file that contains the entry
+	 * @param record
+	 * the entry to copy
+	 * @param name
+	 * the name of the copied entry
+	 * @param target
+	 * the channel to write to
+	 * @return
+	 * the entry of the copy, to be added to the central directory of the target
+	 * @throws IOException
+	 * if the entry can not be read or written
+	 */
+	static Record copy(FileChannel source, Record record, String name, FileChannel target) throws IOException {
+		ByteBuffer localHeader = read(source, record.localHeaderOffset, LOCAL_HEADER_SIZE);
+		if (localHeader.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+			throw new ZipException("Invalid local header for entry '" + record.getName() + "'.");
+		}
+		int localNameLength = localHeader.getShort(26) & MAX_16;
+		int localExtraLength = localHeader.getShort(28) & MAX_16;
+		ByteBuffer localExtra = read(source, record.localHeaderOffset + LOCAL_HEADER_SIZE + localNameLength, localExtraLength);
+		long dataStart = record.localHeaderOffset + LOCAL_HEADER_SIZE + localNameLength + localExtraLength;
+
+		Record copy = new Record(record);
+		copy.localHeaderOffset = target.position();
+		// the sizes are known, so no data descriptor is needed
+		copy.flags &= ~FLAG_DATA_DESCRIPTOR;
+		if (!name.equals(record.getName())) {
+			copy.name = name.getBytes(StandardCharsets.UTF_8);
+			copy.flags |= FLAG_UTF8;
+		}
+		if (copy.name.length > MAX_16) {
+			throw new ZipException("Entry name is too long: " + name);
+		}
+
+		ByteBuffer header = ByteBuffer.allocate(LOCAL_HEADER_SIZE + copy.name.length + localExtraLength)
+				.order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(LOCAL_HEADER_SIGNATURE)
+		.putShort((short) copy.versionNeeded)
+		.putShort((short) copy.flags)
+		.putShort((short) copy.method)
+		.putShort((short) copy.time)
+		.putShort((short) copy.date)
+		.putInt((int) copy.crc)
+		.putInt((int) copy.compressedSize)
+		.putInt((int) copy.size)
+		.putShort((short) copy.name.length)
+		.putShort((short) localExtraLength)
+		.put(copy.name)
+		.put(localExtra);
+		header.flip();
+		write(target, header);
+
+		long position = dataStart;
+		long remaining = record.compressedSize;
+		while (remaining > 0) {
+			long transferred = source.transferTo(position, remaining, target);
+			if (transferred <= 0) {
+				throw new EOFException("Unexpected end of zip file while copying entry '" + record.getName() + "'.");
+			}
+			position += transferred;
+			remaining -= transferred;
+		}
+		return copy;
+	}
+
+	/**
+	 * Writes a new entry with data that has already been compressed with the deflate
+	 * algorithm (without zlib header) to the current position of the target channel.
+	 * @param target
+	 * the channel to write to
+	 * @param name
+	 * the name of the entry
+	 * @param crc
+	 * the CRC-32 of the uncompressed data
+	 * @param size
+	 * the size of the uncompressed data
+	 * @param compressedData
+	 * the compressed data
+	 * @return
+	 * the new entry, to be added to the central directory of the target
+	 * @throws IOException
+	 * if writing fails
+	 */
+	static Record write(FileChannel target, String name, long crc, long size, byte[] compressedData) throws IOException {
+		return write(target, name, ZipEntry.DEFLATED, crc, size, compressedData, 1);
+	}
+
+	/**
+	 * Writes a new entry with data that has already been compressed with the deflate
+	 * algorithm (without zlib header) to the current position of the target channel.
+	 * The compressed data is transferred from the given channel, starting at position 0.
+	 * @param target
+	 * the channel to write to
+	 * @param name
+	 * the name of the entry
+	 * @param crc
+	 * the CRC-32 of the uncompressed data
+	 * @param size
+	 * the size of the uncompressed data
+	 * @param compressedData
+	 * a channel with the compressed data
+	 * @param compressedSize
+	 * the size of the compressed data
+	 * @return
+	 * the new entry, to be added to the central directory of the target
+	 * @throws IOException
+	 * if reading or writing fails
+	 */
+	static Record write(FileChannel target, String name, long crc, long size, 
+			FileChannel compressedData, long compressedSize) throws IOException {
+		Record record = writeLocalHeader(target, name, ZipEntry.DEFLATED, crc, size, compressedSize, 1);
+		long position = 0;
+		while (position < compressedSize) {
+			long transferred = compressedData.transferTo(position, compressedSize - position, target);
+			if (transferred <= 0) {
+				throw new EOFException("Unexpected end of compressed data of entry '" + name + "'.");
+			}
+			position += transferred;
+		}
+		return record;
+	}
+
+	/**
+	 * Writes a new entry with uncompressed data (method STORED) to the current position
+	 * of the target channel. The local header is padded with an extra field, such that
+	 * the data starts at a multiple of the given alignment within the file.
+	 * @param target
+	 * the channel to write to
+	 * @param name
+	 * the name of the entry
+	 * @param data
+	 * the data
+	 * @param alignment
+	 * the alignment of the data in bytes (a power of two)
+	 * @return
+	 * the new entry, to be added to the central directory of the target
+	 * @throws IOException
+	 * if writing fails
+	 */
+	static Record writeStored(FileChannel target, String name, byte[] data, int alignment) throws IOException {
+		CRC32 crc = new CRC32();
+		crc.update(data, 0, data.length);
+		return write(target, name, ZipEntry.STORED, crc.getValue(), data.length, data, alignment);
+	}
+
+	private static Record write(FileChannel target, String name, int method, 
+			long crc, long size, byte[] data, int alignment) throws IOException {
+		Record record = writeLocalHeader(target, name, method, crc, size, data.length, alignment);
+		write(target, ByteBuffer.wrap(data));
+		return record;
+	}
+
+	private static Record writeLocalHeader(FileChannel target, String name, int method, 
+			long crc, long size, long compressedSize, int alignment) throws IOException {
+		if (size > getMaxEntrySize() || compressedSize > getMaxEntrySize()) {
+			throw new ZipException("Entry is too large: " + name);
+		}
+		Record record = new Record();
+		record.versionMadeBy = 20;
+		record.versionNeeded = method == ZipEntry.STORED ? 10 : 20;
+		record.flags = FLAG_UTF8;
+		record.method = method;
+		LocalDateTime now = LocalDateTime.now();
+		record.time = (now.getHour() << 11) | (now.getMinute() << 5) | (now.getSecond() >> 1);
+		record.date = (Math.max(now.getYear() - 1980, 0) << 9) | (now.getMonthValue() << 5) | now.getDayOfMonth();
+		record.crc = crc;
+		record.compressedSize = compressedSize;
+		record.size = size;
+		record.name = name.getBytes(StandardCharsets.UTF_8);
+		record.extra = new byte[0];
+		record.comment = new byte[0];
+		record.localHeaderOffset = target.position();
+		if (record.name.length > MAX_16) {
+			throw new ZipException("Entry name is too long: " + name);
+		}
+
+		// padding extra field (header id, data length, zeros) to align the data
+		int padding = 0;
+		long dataStart = record.localHeaderOffset + LOCAL_HEADER_SIZE + record.name.length;
+		if (dataStart % alignment != 0) {
+			padding = EXTRA_HEADER_SIZE + (int) ((alignment - (dataStart + EXTRA_HEADER_SIZE) % alignment) % alignment);
+		}
+
+		ByteBuffer header = ByteBuffer.allocate(LOCAL_HEADER_SIZE + record.name.length + padding)
+				.order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(LOCAL_HEADER_SIGNATURE)
+		.putShort((short) record.versionNeeded)
+		.putShort((short) record.flags)
+		.putShort((short) record.method)
+		.putShort((short) record.time)
+		.putShort((short) record.date)
+		.putInt((int) record.crc)
+		.putInt((int) record.compressedSize)
+		.putInt((int) record.size)
+		.putShort((short) record.name.length)
+		.putShort((short) padding)
+		.put(record.name);
+		if (padding > 0) {
+			header.putShort((short) PADDING_HEADER_ID)
+			.putShort((short) (padding - EXTRA_HEADER_SIZE));
+		}
+		header.position(header.capacity());
+		header.flip();
+		write(target, header);
+		return record;
+	}
+
+	/**
+	 * @param channel
+	 * a channel of the zip file
+	 * @param localHeaderOffset
+	 * the position of the local header of an entry
+	 * @return
+	 * the position of the (compressed) data of the entry
+	 * @throws IOException
+	 * if the local header can not be read
+	 */
+	static long getDataOffset(FileChannel channel, long localHeaderOffset) throws IOException {
+		ByteBuffer localHeader = read(channel, localHeaderOffset, LOCAL_HEADER_SIZE);
+		if (localHeader.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+			throw new ZipException("Invalid local header at position " + localHeaderOffset + ".");
+		}
+		return localHeaderOffset + LOCAL_HEADER_SIZE
+				+ (localHeader.getShort(26) & MAX_16) + (localHeader.getShort(28) & MAX_16);
+	}
+
+	/**
+	 * @param name
+	 * the name of a new entry
+	 * @param compressedSize
+	 * the size of the compressed data
+	 * @return
+	 * an upper bound for the number of bytes that the entry needs (without the central directory)
+	 */
+	static long getMaxWriteSize(String name, long compressedSize) {
+		return getMaxWriteSize(name, compressedSize, 1);
+	}
+
+	/**
+	 * @param name
+	 * the name of a new entry
+	 * @param compressedSize
+	 * the size of the compressed data
+	 * @param alignment
+	 * the alignment of the data
+	 * @return
+	 * an upper bound for the number of bytes that the entry needs (without the central directory)
+	 */
+	static long getMaxWriteSize(String name, long compressedSize, int alignment) {
+		return LOCAL_HEADER_SIZE + 3L * name.length() + EXTRA_HEADER_SIZE + alignment + compressedSize;
+	}
+
+	/**
+	 * @param record
+	 * an entry
+	 * @param name
+	 * the name of the copy
+	 * @return
+	 * an upper bound for the number of bytes that a copy of the entry needs (without the central directory)
+	 */
+	static long getMaxCopySize(Record record, String name) {
+		return LOCAL_HEADER_SIZE + 3L * name.length() + MAX_16 + record.compressedSize;
+	}
+
+	/**
+	 * @return
+	 * the largest (compressed or uncompressed) size of an entry that can be written
+	 * without zip64 extra fields
+	 */
+	static long getMaxEntrySize() {
+		return MAX_32 - 1;
+	}
+
+	/**
+	 * @return
+	 * the largest offset of a local header that can be stored without zip64 extra fields
+	 */
+	static long getMaxLocalHeaderOffset() {
+		return MAX_32 - 1;
+	}
+
+	/**
+	 * Writes the central directory and the end records at the current position of
+	 * the given channel, and truncates the file afterwards.
+	 * @param target
+	 * the channel to write to
+	 * @param records
+	 * the entries of the central directory
+	 * @throws IOException
+	 * if writing fails
+	 */
+	static void writeDirectory(FileChannel target, List<Record> records) throws IOException {
+		long directoryOffset = target.position();
+		long directorySize = 0;
+		for (Record record : records) {
+			ByteBuffer header = ByteBuffer.allocate(CENTRAL_HEADER_SIZE
+					+ record.name.length + record.extra.length + record.comment.length)
+					.order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(CENTRAL_HEADER_SIGNATURE)
+			.putShort((short) record.versionMadeBy)
+			.putShort((short) record.versionNeeded)
+			.putShort((short) record.flags)
+			.putShort((short) record.method)
+			.putShort((short) record.time)
+			.putShort((short) record.date)
+			.putInt((int) record.crc)
+			.putInt((int) record.compressedSize)
+			.putInt((int) record.size)
+			.putShort((short) record.name.length)
+			.putShort((short) record.extra.length)
+			.putShort((short) record.comment.length)
+			.putShort((short) 0)
+			.putShort((short) record.internalAttributes)
+			.putInt((int) record.externalAttributes)
+			.putInt((int) record.localHeaderOffset)
+			.put(record.name)
+			.put(record.extra)
+			.put(record.comment);
+			header.flip();
+			directorySize += header.remaining();
+			write(target, header);
+		}
+
+		boolean zip64 = records.size() >= MAX_16 || directorySize >= MAX_32 || directoryOffset >= MAX_32;
+		ByteBuffer end = ByteBuffer.allocate((zip64 ? ZIP64_END_SIZE + ZIP64_LOCATOR_SIZE : 0) + END_SIZE)
+				.order(ByteOrder.LITTLE_ENDIAN);
+		if (zip64) {
+			long end64Offset = directoryOffset + directorySize;
+			end.putInt(ZIP64_END_SIGNATURE)
+			.putLong(ZIP64_END_SIZE - 12)
+			.putShort((short) 45)
+			.putShort((short) 45)
+			.putInt(0)
+			.putInt(0)
+			.putLong(records.size())
+			.putLong(records.size())
+			.putLong(directorySize)
+			.putLong(directoryOffset);
+			end.putInt(ZIP64_LOCATOR_SIGNATURE)
+			.putInt(0)
+			.putLong(end64Offset)
+			.putInt(1);
+		}
+		end.putInt(END_SIGNATURE)
+		.putShort((short) 0)
+		.putShort((short) 0)
+		.putShort((short) Math.min(records.size(), MAX_16))
+		.putShort((short) Math.min(records.size(), MAX_16))
+		.putInt((int) Math.min(directorySize, MAX_32))
+		.putInt((int) Math.min(directoryOffset, MAX_32))
+		.putShort((short) 0);
+		end.flip();
+		write(target, end);
+		target.truncate(target.position());
+	}
+
+	private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new EOFException("Unexpected end of zip file.");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+}
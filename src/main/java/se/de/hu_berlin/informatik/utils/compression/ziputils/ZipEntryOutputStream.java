@@ -0,0 +1,193 @@
+package se.de.hu_berlin.informatik.utils.compression.ziputils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Output stream for a new entry of a zip file. Written bytes are compressed on the fly with
+ * the deflate algorithm, and the compressed bytes are collected in a buffer that grows up to the
+ * given buffer size. Only if they do not fit into the buffer, they are written block-wise to a
+ * temporary file through a {@link FileChannel}.
+ * When the stream gets closed, the compressed data is appended to the zip file as it is, without
+ * compressing it again.
+ *
+ * <p> No additional thread is needed and the zip file is only locked while the finished
+ * entry gets added, so many of these streams may be written to concurrently, even if they
+ * belong to the same zip file. (The data can not be written directly into the zip file,
+ * since the lock of the zip file is owned by a thread, and streams are usually created
+ * and closed on different threads.)
+ *
+ * @author Simon Heiden
+ */
+public class ZipEntryOutputStream extends OutputStream {
+
+	public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+	private static final int INITIAL_BUFFER_SIZE = 8192;
+
+	private ZipFileWrapper zipFile;
+	private final String fileName;
+
+	private Deflater deflater;
+	private final CRC32 crc = new CRC32();
+	private long size = 0;
+
+	// uncompressed bytes that have not been passed to the deflater yet
+	private final byte[] input = new byte[8192];
+	private int inputCount = 0;
+
+	// compressed bytes that have not been written to the temporary file yet;
+	// the buffer grows up to the maximum size, such that small entries need little memory
+	private byte[] compressed;
+	private int compressedCount = 0;
+	private final int maxBufferSize;
+
+	// created as soon as the compressed data does not fit into the buffer
+	private Path tempFile = null;
+	private FileChannel channel = null;
+
+	public ZipEntryOutputStream(ZipFileWrapper zipFile, String fileName) throws IOException {
+		this(zipFile, fileName, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Creates a new output stream for an entry of the given zip file.
+	 * @param zipFile
+	 * the zip file
+	 * @param fileName
+	 * the name of the new entry (an existing entry with the same name gets replaced)
+	 * @param bufferSize
+	 * the maximum number of compressed bytes to collect before writing them to a temporary file
+	 * @throws IOException
+	 * if the stream can not be created
+	 */
+	public ZipEntryOutputStream(ZipFileWrapper zipFile, String fileName, int bufferSize) throws IOException {
+		super();
+		this.zipFile = zipFile;
+		this.fileName = fileName;
+		// raw deflate data, as stored in zip files
+		deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		maxBufferSize = Math.max(bufferSize, 64);
+		compressed = new byte[Math.min(maxBufferSize, INITIAL_BUFFER_SIZE)];
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		ensureOpen();
+		if (inputCount == input.length) {
+			deflateInput();
+		}
+		input[inputCount++] = (byte) b;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		ensureOpen();
+		if (len >= input.length) {
+			// large arrays are compressed directly
+			deflateInput();
+			deflate(b, off, len);
+			return;
+		}
+		if (len > input.length - inputCount) {
+			deflateInput();
+		}
+		System.arraycopy(b, off, input, inputCount, len);
+		inputCount += len;
+	}
+
+	private void ensureOpen() throws IOException {
+		if (deflater == null) {
+			throw new IOException("Stream for entry '" + fileName + "' is already closed.");
+		}
+	}
+
+	private void deflateInput() throws IOException {
+		if (inputCount > 0) {
+			deflate(input, 0, inputCount);
+			inputCount = 0;
+		}
+	}
+
+	private void deflate(byte[] b, int off, int len) throws IOException {
+		crc.update(b, off, len);
+		size += len;
+		deflater.setInput(b, off, len);
+		while (!deflater.needsInput()) {
+			collectCompressedBytes();
+		}
+	}
+
+	private void collectCompressedBytes() throws IOException {
+		if (compressedCount == compressed.length) {
+			if (compressed.length < maxBufferSize) {
+				compressed = Arrays.copyOf(compressed, 
+						(int) Math.min(maxBufferSize, 2L * compressed.length));
+			} else {
+				spillCompressedBytes();
+			}
+		}
+		compressedCount += deflater.deflate(compressed, compressedCount, compressed.length - compressedCount);
+	}
+
+	private void spillCompressedBytes() throws IOException {
+		if (channel == null) {
+			Path directory = zipFile.getzipFilePath().toAbsolutePath().getParent();
+			directory.toFile().mkdirs();
+			// use the directory of the zip file to not copy the data between different file systems
+			tempFile = Files.createTempFile(directory, ".zipentry", ".tmp");
+			tempFile.toFile().deleteOnExit();
+			channel = FileChannel.open(tempFile, StandardOpenOption.READ,
+					StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(compressed, 0, compressedCount);
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		compressedCount = 0;
+	}
+
+	/**
+	 * Compresses all remaining bytes and adds the entry to the zip file. Errors are
+	 * not retried, since they are not expected to be transient.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (deflater == null) {
+			return;
+		}
+		try {
+			deflateInput();
+			deflater.finish();
+			while (!deflater.finished()) {
+				collectCompressedBytes();
+			}
+			if (channel == null) {
+				byte[] data = Arrays.copyOf(compressed, compressedCount);
+				zipFile.addDeflatedEntries(Collections.singletonList(
+						new ParallelZipWriter.DeflatedEntry(fileName, crc.getValue(), size, data)));
+			} else {
+				spillCompressedBytes();
+				zipFile.addDeflatedEntry(fileName, crc.getValue(), size, channel, channel.size());
+			}
+		} finally {
+			deflater.end();
+			deflater = null;
+			zipFile = null;
+			if (channel != null) {
+				channel.close();
+				channel = null;
+				Files.deleteIfExists(tempFile);
+			}
+		}
+	}
+
+}
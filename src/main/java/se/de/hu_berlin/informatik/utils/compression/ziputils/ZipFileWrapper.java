@@ -8,34 +8,67 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
 import java.util.function.Predicate;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
-import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
 import se.de.hu_berlin.informatik.utils.miscellaneous.Log;
-import se.de.hu_berlin.informatik.utils.miscellaneous.Misc;
+import se.de.hu_berlin.informatik.utils.miscellaneous.Pair;
+import se.de.hu_berlin.informatik.utils.threaded.ExecutorServiceProvider;
 
-public class ZipFileWrapper {
+public class ZipFileWrapper implements EntryArchive {
 	
 	final private Path zipFilePath;
 	private ZipOutputStream outputStream;
-	private ReentrantLock readWriteLock = new ReentrantLock();
+	// any number of readers, but exclusive access for writing
+	private final ReentrantReadWriteLock readWriteLock = new ReentrantReadWriteLock();
+	// shared open zip file for all readers; invalidated on writes
+	private CachedZipFile cachedZipFile;
+	// optional cache of decompressed entries
+	private volatile DecompressedEntryCache entryCache;
 	
 //	Map<String, String> env;
 	
+	/**
+	 * default alignment of the data of STORED entries, in bytes
+	 */
+	public static final int DEFAULT_STORED_ALIGNMENT = 8;
+
+	/**
+	 * minimum compressed size of a batch of entries to decompress it in parallel, in bytes
+	 */
+	public static final long MIN_PARALLEL_READ_BYTES = 256L * 1024;
+	
 	final private static Map<String,ZipFileWrapper> zipFileCache = new ConcurrentHashMap<>();
 	
 	private ZipFileWrapper(final Path zipFilePath) {
@@ -57,6 +90,7 @@ public class ZipFileWrapper {
 			@Override
 			public void run() {
 				closeOpenOutputStream();
+				invalidateCachedZipFile();
 //				for (Entry<String, ZipOutputStream> entry : openOutputStreams.entrySet()) {
 //					if (entry.getValue() != null) {
 //						try {
@@ -71,63 +105,43 @@ public class ZipFileWrapper {
 	}
 
 	public byte[] get(String fileName, boolean logError) {
-		readWriteLock.lock();
 		try {
-			closeOpenOutputStream();
-			try (ZipFile zipFile = new ZipFile(zipFilePath.toString())) {
-				if (zipFile.getEntry(fileName) == null) {
-					if (logError) {
-						Log.err(this, "Unable to get zipped file '%s'.", fileName);
-					}
-					return null;
-				}
-			} catch (IOException e) {
+			if (!read(zipFile -> zipFile.getEntry(fileName) != null)) {
 				if (logError) {
-					Log.err(this, "Unable to get zipped file '%s'", fileName);
+					Log.err(this, "Unable to get zipped file '%s'.", fileName);
 				}
 				return null;
 			}
+		} catch (IOException e) {
+			if (logError) {
+				Log.err(this, "Unable to get zipped file '%s'", fileName);
+			}
+			return null;
+		}
 
-			try {
-				return uncheckedGet(fileName);
-			} catch (ZipException e) {
-				if (logError) {
-					Log.err(this, e, "Error in zipped file '%s'", fileName);
-				}
-				return null;
+		try {
+			return uncheckedGet(fileName);
+		} catch (ZipException e) {
+			if (logError) {
+				Log.err(this, e, "Error in zipped file '%s'", fileName);
 			}
-		} finally {
-			readWriteLock.unlock();
+			return null;
 		}
 	}
 	
 	public boolean exists(String fileName) throws ZipException {
-		readWriteLock.lock();
 		try {
-			closeOpenOutputStream();
-			try (ZipFile zipFile = new ZipFile(zipFilePath.toString()) ){
-				ZipEntry entry = zipFile.getEntry(fileName);
-				return entry != null;
-			} catch (IOException e) {
-				throw new ZipException("Reading file '" + fileName + "' failed!");
-			}
-		} finally {
-			readWriteLock.unlock();
+			return read(zipFile -> zipFile.getEntry(fileName) != null);
+		} catch (IOException e) {
+			throw new ZipException("Reading file '" + fileName + "' failed!");
 		}
 	}
 	
 	public long getEntrySize(String fileName) throws ZipException {
-		readWriteLock.lock();
 		try {
-			closeOpenOutputStream();
-			try (ZipFile zipFile = new ZipFile(zipFilePath.toString()) ){
-				ZipEntry entry = zipFile.getEntry(fileName);
-				return entry.getSize();
-			} catch (IOException e) {
-				throw new ZipException("Reading file '" + fileName + "' failed!");
-			}
-		} finally {
-			readWriteLock.unlock();
+			return read(zipFile -> zipFile.getEntry(fileName).getSize());
+		} catch (IOException e) {
+			throw new ZipException("Reading file '" + fileName + "' failed!");
 		}
 	}
 	
@@ -136,85 +150,358 @@ public class ZipFileWrapper {
 	}
 	
 	public byte[] uncheckedGet(String fileName) throws ZipException {
-		readWriteLock.lock();
 		try {
-			closeOpenOutputStream();
-			try (ZipFile zipFile = new ZipFile(zipFilePath.toString()) ){
-				ZipEntry entry = zipFile.getEntry(fileName);
-				if (entry == null) {
-					throw new ZipException("File '" + fileName + "' does not exist in zip file'" + zipFilePath.toString() + "'!");
-				}
-				return getBytesFromInputStream(zipFile.getInputStream(entry));
-			} catch (IOException e) {
-				throw new ZipException("Reading input stream from file '" + fileName + "' failed!");
-			}
-		} finally {
-			readWriteLock.unlock();
+			return read(zipFile -> readEntry(zipFile, getExistingEntry(zipFile, fileName)));
+		} catch (IOException e) {
+			throw new ZipException("Reading input stream from file '" + fileName + "' failed!");
 		}
 	}
 
 	public byte[] uncheckedGet(ZipEntry fileHeader) throws ZipException {
-		readWriteLock.lock();
 		try {
-			closeOpenOutputStream();
-			try (ZipFile zipFile = new ZipFile(zipFilePath.toString()) ){
-				return getBytesFromInputStream(zipFile.getInputStream(fileHeader));
-			} catch (IOException e) {
-				throw new ZipException("Reading input stream from file '" + fileHeader.getName() + "' failed!");
-			}
-		} finally {
-			readWriteLock.unlock();
+			return read(zipFile -> readEntry(zipFile, fileHeader));
+		} catch (IOException e) {
+			throw new ZipException("Reading input stream from file '" + fileHeader.getName() + "' failed!");
 		}
 	}
 	
 	public byte[] uncheckedGet(String fileName, long start, int byteCount) throws ZipException {
-		readWriteLock.lock();
 		try {
-			closeOpenOutputStream();
-			try (ZipFile zipFile = new ZipFile(zipFilePath.toString()) ){
-				ZipEntry entry = zipFile.getEntry(fileName);
-				if (entry == null) {
-					throw new ZipException("File '" + fileName + "' does not exist in zip file'" + zipFilePath.toString() + "'!");
+			return read(zipFile -> getBytesFromInputStream(
+					zipFile.getInputStream(getExistingEntry(zipFile, fileName)), start, byteCount));
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new ZipException("Reading input stream from file '" + this.zipFilePath + "/" + fileName + "' failed!");
+		}
+	}
+
+	public byte[] uncheckedGet(ZipEntry fileHeader, long start, int byteCount) throws ZipException {
+		try {
+			return read(zipFile -> getBytesFromInputStream(zipFile.getInputStream(fileHeader), start, byteCount));
+		} catch (IOException e) {
+			throw new ZipException("Reading input stream from file '" + fileHeader.getName() + "' failed!");
+		}
+	}
+	
+	public List<byte[]> uncheckedGet(String fileName, List<Integer> chunkLengths) throws ZipException {
+		try {
+			return read(zipFile -> getBytesFromInputStream(
+					zipFile.getInputStream(getExistingEntry(zipFile, fileName)), chunkLengths));
+		} catch (IOException e) {
+			throw new ZipException("Reading input stream from file '" + fileName + "' failed!");
+		}
+	}
+	
+	/**
+	 * Reads the given entries, with one thread per available processor.
+	 * @param fileNames
+	 * the names of the entries
+	 * @return
+	 * a map from the entry names to the contents, in the order of the given names;
+	 * entries that do not exist are not contained
+	 * @throws IOException
+	 * if the zip file can not be read
+	 * @see #getAll(Collection, int)
+	 */
+	public Map<String, byte[]> getAll(Collection<String> fileNames) throws IOException {
+		return getAll(fileNames, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Reads the given entries. The zip file is opened once, and the entries are read in
+	 * the order of their positions in the file, while they are decompressed in parallel.
+	 * @param fileNames
+	 * the names of the entries
+	 * @param threadCount
+	 * the number of threads to decompress the entries with
+	 * @return
+	 * a map from the entry names to the contents, in the order of the given names;
+	 * entries that do not exist are not contained
+	 * @throws IOException
+	 * if the zip file can not be read
+	 */
+	public Map<String, byte[]> getAll(Collection<String> fileNames, int threadCount) throws IOException {
+		Map<String, byte[]> contents = new HashMap<>();
+		getAll(fileNames, threadCount, contents::put);
+		Map<String, byte[]> result = new LinkedHashMap<>();
+		for (String fileName : fileNames) {
+			byte[] content = contents.get(fileName);
+			if (content != null) {
+				result.put(fileName, content);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Reads the given entries and passes them to the given consumer as soon as they are
+	 * available. The zip file is opened once, and the entries are read in the order of
+	 * their positions in the file, while up to {@code 2 * threadCount} entries are
+	 * decompressed in parallel ahead of the consumer. Small batches (less than
+	 * {@link #MIN_PARALLEL_READ_BYTES} compressed bytes) are read on the calling thread.
+	 * The consumer is called on the calling thread, in the order of the positions of
+	 * the entries in the file. It must not write to this zip file.
+	 * @param fileNames
+	 * the names of the entries; names that do not exist are ignored
+	 * @param threadCount
+	 * the number of threads to decompress the entries with
+	 * @param consumer
+	 * gets the name and the content of each entry
+	 * @throws IOException
+	 * if the zip file can not be read
+	 */
+	public void getAll(Collection<String> fileNames, int threadCount,
+			BiConsumer<String, byte[]> consumer) throws IOException {
+		read(zipFile -> {
+			List<ZipEntry> entries = zipFile.getEntriesInFileOrder(fileNames);
+			if (threadCount <= 1 || entries.size() <= 1 || isSmallBatch(entries)) {
+				readAllSequentially(zipFile, entries, consumer);
+				return null;
+			}
+
+			ExecutorServiceProvider executor = new ExecutorServiceProvider(threadCount);
+			try {
+				readAllInParallel(zipFile, entries, executor.getExecutorService(), threadCount, consumer);
+			} finally {
+				executor.getExecutorService().shutdownNow();
+			}
+			return null;
+		});
+	}
+
+	/**
+	 * Reads the given entries like {@link #getAll(Collection, int, BiConsumer)}, but
+	 * decompresses them with the given executor, which is not shut down afterwards.
+	 * This avoids creating new threads for each batch of entries.
+	 * @param fileNames
+	 * the names of the entries; names that do not exist are ignored
+	 * @param executor
+	 * the executor to decompress the entries with
+	 * @param parallelism
+	 * the number of entries to decompress in parallel (at most {@code 2 * parallelism}
+	 * entries are decompressed ahead of the consumer)
+	 * @param consumer
+	 * gets the name and the content of each entry
+	 * @throws IOException
+	 * if the zip file can not be read
+	 */
+	public void getAll(Collection<String> fileNames, ExecutorService executor, int parallelism,
+			BiConsumer<String, byte[]> consumer) throws IOException {
+		read(zipFile -> {
+			List<ZipEntry> entries = zipFile.getEntriesInFileOrder(fileNames);
+			if (parallelism <= 1 || entries.size() <= 1 || isSmallBatch(entries)) {
+				readAllSequentially(zipFile, entries, consumer);
+			} else {
+				readAllInParallel(zipFile, entries, executor, parallelism, consumer);
+			}
+			return null;
+		});
+	}
+
+	private static boolean isSmallBatch(List<ZipEntry> entries) {
+		long compressedSize = 0;
+		for (ZipEntry entry : entries) {
+			if (entry.getCompressedSize() < 0) {
+				// unknown size
+				return false;
+			}
+			compressedSize += entry.getCompressedSize();
+		}
+		return compressedSize < MIN_PARALLEL_READ_BYTES;
+	}
+
+	private void readAllSequentially(CachedZipFile zipFile, List<ZipEntry> entries,
+			BiConsumer<String, byte[]> consumer) throws IOException {
+		for (ZipEntry entry : entries) {
+			consumer.accept(entry.getName(), readEntry(zipFile, entry));
+		}
+	}
+
+	private void readAllInParallel(CachedZipFile zipFile, List<ZipEntry> entries, ExecutorService executor, 
+			int parallelism, BiConsumer<String, byte[]> consumer) throws IOException {
+		Deque<Future<byte[]>> pending = new ArrayDeque<>();
+		try {
+			Iterator<ZipEntry> iterator = entries.iterator();
+			Iterator<ZipEntry> consumed = entries.iterator();
+			while (consumed.hasNext()) {
+				// keep a limited number of entries in flight
+				while (iterator.hasNext() && pending.size() < 2 * parallelism) {
+					ZipEntry entry = iterator.next();
+					pending.add(executor.submit(() -> readEntry(zipFile, entry)));
 				}
-				return getBytesFromInputStream(zipFile.getInputStream(entry), start, byteCount);
-			} catch (IOException e) {
-				e.printStackTrace();
-				throw new ZipException("Reading input stream from file '" + this.zipFilePath + "/" + fileName + "' failed!");
+				consumer.accept(consumed.next().getName(), getUninterruptibly(pending.poll()));
 			}
 		} finally {
-			readWriteLock.unlock();
+			// the zip file may not be released while entries are still read
+			for (Future<byte[]> future : pending) {
+				awaitQuietly(future);
+			}
 		}
 	}
 
-	public byte[] uncheckedGet(ZipEntry fileHeader, long start, int byteCount) throws ZipException {
-		readWriteLock.lock();
+	private static void awaitQuietly(Future<?> future) {
+		boolean interrupted = false;
+		while (true) {
+			try {
+				future.get();
+				break;
+			} catch (InterruptedException e) {
+				interrupted = true;
+			} catch (ExecutionException e) {
+				break;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Maps the data of the given entry into memory. The entry has to be stored without
+	 * compression, see {@link #addStoredArrays(Map, int)}. The returned buffer is read-only,
+	 * has big-endian byte order and stays valid after the zip file is changed or closed, since
+	 * the data of existing entries is never overwritten (entries get removed by rewriting the file).
+	 * @param fileName
+	 * the name of the entry
+	 * @return
+	 * a buffer with the content of the entry
+	 * @throws IOException
+	 * if the entry does not exist, is compressed or can not be mapped
+	 */
+	public MappedByteBuffer getMappedEntry(String fileName) throws IOException {
+		return read(zipFile -> {
+			ZipEntry entry = getExistingEntry(zipFile, fileName);
+			if (entry.getMethod() != ZipEntry.STORED) {
+				throw new ZipException("Entry '" + fileName + "' in zip file '" + zipFilePath + "' is compressed.");
+			}
+			try (FileChannel channel = FileChannel.open(zipFilePath, StandardOpenOption.READ)) {
+				long dataOffset = RawZipEntries.getDataOffset(channel, zipFile.getLocalHeaderOffset(fileName));
+				return channel.map(MapMode.READ_ONLY, dataOffset, entry.getSize());
+			}
+		});
+	}
+
+	/**
+	 * Sets a cache for decompressed entries, which may be shared with other zip files.
+	 * Complete reads of entries are served from the cache, and writing to this zip file
+	 * removes its entries from the cache.
+	 * @param entryCache
+	 * the cache to use, or null to disable caching
+	 */
+	public void setEntryCache(DecompressedEntryCache entryCache) {
+		DecompressedEntryCache previous = this.entryCache;
+		this.entryCache = entryCache;
+		if (previous != null && previous != entryCache) {
+			previous.invalidate(zipFilePath);
+		}
+	}
+
+	public DecompressedEntryCache getEntryCache() {
+		return entryCache;
+	}
+
+	private void invalidateEntryCache() {
+		DecompressedEntryCache cache = entryCache;
+		if (cache != null) {
+			cache.invalidate(zipFilePath);
+		}
+	}
+
+	private byte[] readEntry(CachedZipFile zipFile, ZipEntry entry) throws IOException {
+		DecompressedEntryCache cache = entryCache;
+		if (cache == null) {
+			return getBytesFromInputStream(zipFile.getInputStream(entry));
+		}
+		return cache.get(zipFilePath, zipFile.getLastModified(), zipFile.getSize(), entry.getName(), 
+				() -> getBytesFromInputStream(zipFile.getInputStream(entry)));
+	}
+
+	private static <T> T getUninterruptibly(Future<T> future) throws IOException {
+		boolean interrupted = false;
 		try {
-			closeOpenOutputStream();
-			try (ZipFile zipFile = new ZipFile(zipFilePath.toString()) ){
-				return getBytesFromInputStream(zipFile.getInputStream(fileHeader), start, byteCount);
-			} catch (IOException e) {
-				throw new ZipException("Reading input stream from file '" + fileHeader.getName() + "' failed!");
+			while (true) {
+				try {
+					return future.get();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				} catch (ExecutionException e) {
+					throw new ZipException("Reading entry failed: " + e.getCause());
+				}
 			}
 		} finally {
-			readWriteLock.unlock();
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private ZipEntry getExistingEntry(CachedZipFile zipFile, String fileName) throws ZipException {
+		ZipEntry entry = zipFile.getEntry(fileName);
+		if (entry == null) {
+			throw new ZipException("File '" + fileName + "' does not exist in zip file'" + zipFilePath.toString() + "'!");
 		}
+		return entry;
 	}
 	
-	public List<byte[]> uncheckedGet(String fileName, List<Integer> chunkLengths) throws ZipException {
-		readWriteLock.lock();
+	@FunctionalInterface
+	private interface ZipFileReader<T> {
+		T read(CachedZipFile zipFile) throws IOException;
+	}
+	
+	/**
+	 * Applies the given reader to the shared, open zip file. Any number of readers may
+	 * access the zip file at the same time, while writes have to wait until all readers are done.
+	 * @param reader
+	 * reads from the zip file
+	 * @return
+	 * the result of the reader
+	 * @throws IOException
+	 * if the zip file does not exist or can not be read
+	 */
+	private <T> T read(ZipFileReader<T> reader) throws IOException {
+		lockForReading();
+		try (CachedZipFile zipFile = cachedZipFile.retain()) {
+			return reader.read(zipFile);
+		} finally {
+			readWriteLock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Acquires the read lock, such that the shared zip file is open and up to date. The zip file
+	 * is opened (and its central directory is read) only if it has not been opened before, if it
+	 * has been written in the meantime or if the file has been changed from outside. This
+	 * requires the write lock for a moment, which is then downgraded to the read lock.
+	 * @throws IOException
+	 * if the zip file does not exist or can not be read (the read lock is not held, then)
+	 */
+	private void lockForReading() throws IOException {
+		readWriteLock.readLock().lock();
+		if (outputStream == null && cachedZipFile != null && cachedZipFile.isUpToDate(zipFilePath)) {
+			return;
+		}
+		readWriteLock.readLock().unlock();
+		
+		readWriteLock.writeLock().lock();
 		try {
 			closeOpenOutputStream();
-			try (ZipFile zipFile = new ZipFile(zipFilePath.toString()) ){
-				ZipEntry entry = zipFile.getEntry(fileName);
-				if (entry == null) {
-					throw new ZipException("File '" + fileName + "' does not exist in zip file'" + zipFilePath.toString() + "'!");
-				}
-				return getBytesFromInputStream(zipFile.getInputStream(entry), chunkLengths);
-			} catch (IOException e) {
-				throw new ZipException("Reading input stream from file '" + fileName + "' failed!");
+			if (cachedZipFile != null && !cachedZipFile.isUpToDate(zipFilePath)) {
+				invalidateCachedZipFile();
 			}
+			if (cachedZipFile == null) {
+				cachedZipFile = CachedZipFile.open(zipFilePath);
+			}
+			readWriteLock.readLock().lock();
 		} finally {
-			readWriteLock.unlock();
+			readWriteLock.writeLock().unlock();
+		}
+	}
+	
+	private void invalidateCachedZipFile() {
+		if (cachedZipFile != null) {
+			// gets closed as soon as all readers are done
+			cachedZipFile.invalidate();
+			cachedZipFile = null;
 		}
 	}
 
@@ -233,11 +520,12 @@ public class ZipFileWrapper {
 	
 
 	public void close() {
-		readWriteLock.lock();
+		readWriteLock.writeLock().lock();
 		try {
 			closeOpenOutputStream();
+			invalidateCachedZipFile();
 		} finally {
-			readWriteLock.unlock();
+			readWriteLock.writeLock().unlock();
 		}
 	}
 	
@@ -254,6 +542,9 @@ public class ZipFileWrapper {
 	}
 	
 	private ZipOutputStream getOutputStream(Collection<String> excludeFiles) {
+		// the zip file gets changed
+		invalidateCachedZipFile();
+		invalidateEntryCache();
 		if (excludeFiles != null) {
 			closeOpenOutputStream();
 		}
@@ -317,19 +608,16 @@ public class ZipFileWrapper {
 	}
 	
 	public void removeEntries(Collection<String> files) {
-		getOutputStream(files);
-	}
-	
-	public void addArray(byte[] array, String fileName) {
-		try (InputStream in = new ByteArrayInputStream(array)) {
-			addStream(in, fileName);
-		} catch (IOException e) {
-			Log.abort(this, e, "Could not create input stream from byte array.");
+		readWriteLock.writeLock().lock();
+		try {
+			getOutputStream(files);
+		} finally {
+			readWriteLock.writeLock().unlock();
 		}
 	}
 	
 	public void addStream(InputStream in, String fileName) throws IOException {
-		readWriteLock.lock();
+		readWriteLock.writeLock().lock();
 		try {
 			ZipOutputStream zos = getOutputStream(null);
 			try {
@@ -359,57 +647,402 @@ public class ZipFileWrapper {
 				zos.closeEntry();
 			}
 		} finally {
-			readWriteLock.unlock();
+			readWriteLock.writeLock().unlock();
 		}
 	}
-	
-	public List<String> getFileHeadersContainingString(String pattern) throws IOException {
-		return getFileHeadersSatisfyingCheck(k -> k.contains(pattern));
+
+	/**
+	 * Adds a new entry without compression, with the data aligned to
+	 * {@link #DEFAULT_STORED_ALIGNMENT} bytes. An existing entry with the same name gets replaced.
+	 * @param array
+	 * the content of the entry
+	 * @param fileName
+	 * the name of the entry
+	 * @throws IOException
+	 * if the entry can not be written
+	 * @see #addStoredArrays(Map, int)
+	 */
+	public void addStoredArray(byte[] array, String fileName) throws IOException {
+		addStoredArrays(Collections.singletonMap(fileName, array), DEFAULT_STORED_ALIGNMENT);
 	}
-	
-	public List<String> getFileHeadersStartingWithString(String pattern) throws IOException {
-		return getFileHeadersSatisfyingCheck(k -> k.startsWith(pattern));
+
+	/**
+	 * Adds new entries without compression (method STORED). The data of each entry starts
+	 * at a multiple of the given alignment within the file, such that it can be accessed
+	 * efficiently via {@link #getMappedEntry(String)}. Existing entries with the same names get
+	 * replaced. The alignment is lost if the zip file is rewritten later, e.g., when removing
+	 * or replacing entries that were not added in this way.
+	 * @param arrays
+	 * the contents of the entries, mapped by their names
+	 * @param alignment
+	 * the alignment in bytes (a power of two)
+	 * @throws IOException
+	 * if the entries can not be written
+	 */
+	public void addStoredArrays(Map<String, byte[]> arrays, int alignment) throws IOException {
+		if (alignment < 1 || Integer.bitCount(alignment) != 1 || alignment > 0x8000) {
+			throw new IllegalArgumentException("Alignment is no power of two up to 32768: " + alignment);
+		}
+		readWriteLock.writeLock().lock();
+		try {
+			if (arrays.isEmpty()) {
+				return;
+			}
+			long maxSize = 0;
+			for (Entry<String, byte[]> array : arrays.entrySet()) {
+				maxSize += RawZipEntries.getMaxWriteSize(array.getKey(), array.getValue().length, alignment);
+			}
+			RawZipEntries.Directory directory = prepareRawAppend(arrays.keySet());
+			if (!canAppendRaw(directory, maxSize)) {
+				throw new ZipException("Can not append uncompressed entries to zip file '" + zipFilePath + "'.");
+			}
+			appendRaw(directory, (channel, records) -> {
+				for (Entry<String, byte[]> array : arrays.entrySet()) {
+					records.add(RawZipEntries.writeStored(channel, array.getKey(), array.getValue(), alignment));
+				}
+			});
+		} finally {
+			readWriteLock.writeLock().unlock();
+		}
 	}
-	
-	public List<String> getFileHeadersSatisfyingCheck(Predicate<String> check) throws IOException {
-		readWriteLock.lock();
+
+	/**
+	 * Copies an entry of the given zip file into this zip file. The compressed data is copied
+	 * as it is, without decompressing and compressing it again. An existing entry with the
+	 * target name gets replaced.
+	 * @param source
+	 * the zip file to copy from
+	 * @param sourceFileName
+	 * the name of the entry in the source zip file
+	 * @param targetFileName
+	 * the name of the entry in this zip file
+	 * @return
+	 * true if the entry was copied; false if it does not exist in the source zip file
+	 * @throws IOException
+	 * if one of the zip files can not be read or written
+	 */
+	public boolean transferEntry(ZipFileWrapper source, String sourceFileName, String targetFileName) throws IOException {
+		return transferEntries(source, Collections.singletonList(new Pair<>(sourceFileName, targetFileName))) == 1;
+	}
+
+	/**
+	 * Copies entries of the given zip file into this zip file. The compressed data is copied
+	 * as it is, without decompressing and compressing it again. Both zip files are processed
+	 * in a single pass: the source entries are read in the order of their positions in the source
+	 * file and are appended to this zip file, followed by a new central directory. Existing entries
+	 * with one of the target names get replaced (which requires to rewrite this zip file once).
+	 * Entries that do not exist in the source zip file are skipped.
+	 *
+	 * <p> Zip files that use encryption or zip64 extra fields for single entries are
+	 * copied entry by entry with {@link #addStream(InputStream, String)}, instead.
+	 * @param source
+	 * the zip file to copy from
+	 * @param sourceAndTargetFileNames
+	 * pairs of entry names in the source zip file and in this zip file
+	 * @return
+	 * the number of copied entries
+	 * @throws IOException
+	 * if one of the zip files can not be read or written
+	 */
+	public int transferEntries(ZipFileWrapper source,
+			List<Pair<String, String>> sourceAndTargetFileNames) throws IOException {
+		if (source == this) {
+			throw new IllegalArgumentException("Source and target zip file are identical: " + zipFilePath);
+		}
+		// lock both zip files in a consistent order to avoid deadlocks between transfers in opposite directions
+		boolean sourceFirst = source.getzipFilePath().compareTo(getzipFilePath()) < 0;
+		if (sourceFirst) {
+			source.lockForReading();
+		}
 		try {
-			closeOpenOutputStream();
-			ZipFile zipFile = null;
+			readWriteLock.writeLock().lock();
 			try {
-				zipFile = new ZipFile(zipFilePath.toString());
-				List<String> matchingHeaders = new ArrayList<>();
-				ZipInputStream zis = new ZipInputStream(new FileInputStream(zipFile.getName()));
-				ZipEntry zipEntry;
-				while ((zipEntry = zis.getNextEntry()) != null) {
-//					System.err.println(zipEntry.getName());
-					if (check.test(zipEntry.getName())) {
-						matchingHeaders.add(zipEntry.getName());
+				if (!sourceFirst) {
+					source.lockForReading();
+				}
+				try {
+					return transferEntriesLocked(source, sourceAndTargetFileNames);
+				} finally {
+					if (!sourceFirst) {
+						source.readWriteLock.readLock().unlock();
 					}
-					zis.closeEntry();
 				}
-				zis.close();
-
-//				// sort the files alphabetically
-//				Collections.sort(matchingHeaders, new Comparator<String>() {
-//
-//					@Override
-//					public int compare(String o1, String o2) {
-//						return o1.compareTo(o2);
-//					}
-//				});
-
-				return matchingHeaders;
-			} catch (IOException e) {
-				e.printStackTrace();
-				throw new ZipException("Getting zip file contents failed: " + zipFilePath);
 			} finally {
-				if (zipFile != null) {
-					zipFile.close();
+				readWriteLock.writeLock().unlock();
+			}
+		} finally {
+			if (sourceFirst) {
+				source.readWriteLock.readLock().unlock();
+			}
+		}
+	}
+
+	private int transferEntriesLocked(ZipFileWrapper source,
+			List<Pair<String, String>> sourceAndTargetFileNames) throws IOException {
+		try (FileChannel sourceChannel = FileChannel.open(source.zipFilePath, StandardOpenOption.READ)) {
+			RawZipEntries.Directory sourceDirectory = RawZipEntries.readDirectory(sourceChannel);
+			Map<String, RawZipEntries.Record> sourceRecords = new HashMap<>();
+			for (RawZipEntries.Record record : sourceDirectory.getRecords()) {
+				sourceRecords.put(record.getName(), record);
+			}
+			// the last transfer wins if a target name occurs more than once
+			Map<String, RawZipEntries.Record> transfers = new LinkedHashMap<>();
+			for (Pair<String, String> names : sourceAndTargetFileNames) {
+				RawZipEntries.Record record = sourceRecords.get(names.first());
+				if (record != null) {
+					transfers.remove(names.second());
+					transfers.put(names.second(), record);
+				}
+			}
+			if (transfers.isEmpty()) {
+				return 0;
+			}
+
+			RawZipEntries.Directory targetDirectory = prepareRawAppend(transfers.keySet());
+			long maxSize = 0;
+			for (Entry<String, RawZipEntries.Record> transfer : transfers.entrySet()) {
+				maxSize += RawZipEntries.getMaxCopySize(transfer.getValue(), transfer.getKey());
+			}
+			if (!sourceDirectory.isSupported() || !canAppendRaw(targetDirectory, maxSize)) {
+				// fall back to decompressing and compressing again
+				for (Entry<String, RawZipEntries.Record> transfer : transfers.entrySet()) {
+					ZipEntry entry = source.getExistingEntry(source.cachedZipFile, transfer.getValue().getName());
+					addStream(source.cachedZipFile.getInputStream(entry), transfer.getKey());
+				}
+				return transfers.size();
+			}
+
+			// read the source file sequentially
+			List<Entry<String, RawZipEntries.Record>> sortedTransfers = new ArrayList<>(transfers.entrySet());
+			sortedTransfers.sort((a, b) -> Long.compare(
+					a.getValue().getLocalHeaderOffset(), b.getValue().getLocalHeaderOffset()));
+
+			appendRaw(targetDirectory, (targetChannel, records) -> {
+				for (Entry<String, RawZipEntries.Record> transfer : sortedTransfers) {
+					records.add(RawZipEntries.copy(sourceChannel, transfer.getValue(), transfer.getKey(), targetChannel));
+				}
+			});
+			return transfers.size();
+		}
+	}
+
+	/**
+	 * Adds entries that have already been compressed with the deflate algorithm. The entries
+	 * are appended directly to the zip file, in the given order, followed by a new central directory.
+	 * Existing entries with the same names get replaced.
+	 * @param entries
+	 * the compressed entries
+	 * @throws IOException
+	 * if the zip file can not be written
+	 */
+	void addDeflatedEntries(List<ParallelZipWriter.DeflatedEntry> entries) throws IOException {
+		readWriteLock.writeLock().lock();
+		try {
+			// the last entry wins if a name occurs more than once
+			Map<String, ParallelZipWriter.DeflatedEntry> entryMap = new LinkedHashMap<>();
+			long maxSize = 0;
+			for (ParallelZipWriter.DeflatedEntry entry : entries) {
+				entryMap.remove(entry.getName());
+				entryMap.put(entry.getName(), entry);
+				maxSize += RawZipEntries.getMaxWriteSize(entry.getName(), entry.getCompressedData().length);
+			}
+			if (entryMap.isEmpty()) {
+				return;
+			}
+
+			RawZipEntries.Directory directory = prepareRawAppend(entryMap.keySet());
+			if (!canAppendRaw(directory, maxSize)) {
+				// fall back to decompressing and compressing again
+				for (ParallelZipWriter.DeflatedEntry entry : entryMap.values()) {
+					addStream(entry.getInputStream(), entry.getName());
 				}
+				return;
 			}
+			appendRaw(directory, (channel, records) -> {
+				for (ParallelZipWriter.DeflatedEntry entry : entryMap.values()) {
+					records.add(RawZipEntries.write(channel, entry.getName(), 
+							entry.getCrc(), entry.getSize(), entry.getCompressedData()));
+				}
+			});
+		} finally {
+			readWriteLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Adds an entry whose data has already been compressed with the deflate algorithm and is
+	 * read from the given channel. The entry is appended directly to the zip file, followed by
+	 * a new central directory. An existing entry with the same name gets replaced.
+	 * @param fileName
+	 * the name of the entry
+	 * @param crc
+	 * the CRC-32 of the uncompressed data
+	 * @param size
+	 * the size of the uncompressed data
+	 * @param compressedData
+	 * a channel with the compressed data, starting at position 0
+	 * @param compressedSize
+	 * the size of the compressed data
+	 * @throws IOException
+	 * if the compressed data can not be read or the zip file can not be written
+	 */
+	void addDeflatedEntry(String fileName, long crc, long size, 
+			FileChannel compressedData, long compressedSize) throws IOException {
+		readWriteLock.writeLock().lock();
+		try {
+			RawZipEntries.Directory directory = prepareRawAppend(Collections.singleton(fileName));
+			if (size > RawZipEntries.getMaxEntrySize() || compressedSize > RawZipEntries.getMaxEntrySize()
+					|| !canAppendRaw(directory, RawZipEntries.getMaxWriteSize(fileName, compressedSize))) {
+				// fall back to decompressing and compressing again;
+				// the inflater needs an additional dummy byte for raw deflate data
+				compressedData.position(0);
+				Inflater inflater = new Inflater(true);
+				try (InputStream in = new InflaterInputStream(new SequenceInputStream(
+						Channels.newInputStream(compressedData), new ByteArrayInputStream(new byte[1])), inflater)) {
+					addStream(in, fileName);
+				} finally {
+					inflater.end();
+				}
+				return;
+			}
+			appendRaw(directory, (channel, records) -> {
+				records.add(RawZipEntries.write(channel, fileName, crc, size, compressedData, compressedSize));
+			});
 		} finally {
-			readWriteLock.unlock();
+			readWriteLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Prepares appending entries directly to the zip file. An open output stream gets closed
+	 * and existing entries with one of the given names are removed. Requires the write lock.
+	 * @param fileNames
+	 * the names of the entries to append
+	 * @return
+	 * the central directory of the zip file, or null if the zip file does not exist
+	 * @throws IOException
+	 * if the zip file can not be read
+	 */
+	private RawZipEntries.Directory prepareRawAppend(Collection<String> fileNames) throws IOException {
+		closeOpenOutputStream();
+		invalidateCachedZipFile();
+		invalidateEntryCache();
+		RawZipEntries.Directory directory = readDirectoryIfExists();
+		if (directory != null) {
+			List<String> replacedEntries = new ArrayList<>();
+			for (RawZipEntries.Record record : directory.getRecords()) {
+				if (fileNames.contains(record.getName())) {
+					replacedEntries.add(record.getName());
+				}
+			}
+			if (!replacedEntries.isEmpty()) {
+				getOutputStream(replacedEntries);
+				closeOpenOutputStream();
+				directory = readDirectoryIfExists();
+			}
+		}
+		return directory;
+	}
+
+	private static boolean canAppendRaw(RawZipEntries.Directory directory, long maxAppendedSize) {
+		if (directory == null) {
+			return maxAppendedSize <= RawZipEntries.getMaxLocalHeaderOffset();
+		}
+		return directory.isSupported() 
+				&& directory.getOffset() + maxAppendedSize <= RawZipEntries.getMaxLocalHeaderOffset();
+	}
+
+	@FunctionalInterface
+	private interface RawEntryAppender {
+		void append(FileChannel channel, List<RawZipEntries.Record> records) throws IOException;
+	}
+
+	/**
+	 * Appends entries behind the last entry of the zip file, overwriting the old central
+	 * directory, and writes a new central directory. Requires the write lock. If appending
+	 * fails, the old central directory is restored and the file is truncated to its original
+	 * length (or deleted if it did not exist before).
+	 * @param directory
+	 * the current central directory, or null if the zip file does not exist
+	 * @param appender
+	 * writes the entries to the given channel and adds them to the given records
+	 * @throws IOException
+	 * if the zip file can not be written
+	 */
+	private void appendRaw(RawZipEntries.Directory directory, RawEntryAppender appender) throws IOException {
+		boolean existed = Files.exists(zipFilePath);
+		if (directory == null) {
+			zipFilePath.toAbsolutePath().getParent().toFile().mkdirs();
+		}
+		try (FileChannel channel = FileChannel.open(zipFilePath,
+				StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE)) {
+			List<RawZipEntries.Record> records = directory == null ?
+					new ArrayList<>() : new ArrayList<>(directory.getRecords());
+			long offset = directory == null ? 0 : directory.getOffset();
+			long originalSize = channel.size();
+			// everything behind the last entry gets overwritten
+			ByteBuffer oldDirectory = readFully(channel, offset, originalSize - offset);
+			try {
+				channel.position(offset);
+				appender.append(channel, records);
+				RawZipEntries.writeDirectory(channel, records);
+			} catch (Throwable e) {
+				try {
+					oldDirectory.rewind();
+					while (oldDirectory.hasRemaining()) {
+						channel.write(oldDirectory, offset + oldDirectory.position());
+					}
+					channel.truncate(originalSize);
+				} catch (IOException restoreException) {
+					e.addSuppressed(restoreException);
+				}
+				throw e;
+			}
+		} catch (Throwable e) {
+			if (!existed) {
+				Files.deleteIfExists(zipFilePath);
+			}
+			throw e;
+		}
+	}
+
+	private static ByteBuffer readFully(FileChannel channel, long position, long length) throws IOException {
+		if (length > Integer.MAX_VALUE) {
+			throw new ZipException("Central directory too large: " + length + " bytes.");
+		}
+		ByteBuffer buffer = ByteBuffer.allocate((int) length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new ZipException("Unexpected end of zip file.");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	private RawZipEntries.Directory readDirectoryIfExists() throws IOException {
+		if (!Files.exists(zipFilePath) || Files.size(zipFilePath) == 0) {
+			return null;
+		}
+		try (FileChannel channel = FileChannel.open(zipFilePath, StandardOpenOption.READ)) {
+			return RawZipEntries.readDirectory(channel);
+		}
+	}
+
+	public List<String> getFileHeadersSatisfyingCheck(Predicate<String> check) throws IOException {
+		try {
+			return read(zipFile -> {
+				List<String> matchingHeaders = new ArrayList<>();
+				for (String name : zipFile.getEntryNames()) {
+					if (check.test(name)) {
+						matchingHeaders.add(name);
+					}
+				}
+				return matchingHeaders;
+			});
+		} catch (IOException e) {
+			e.printStackTrace();
+			throw new ZipException("Getting zip file contents failed: " + zipFilePath);
 		}
 	}
 
@@ -516,31 +1149,6 @@ public class ZipFileWrapper {
 		return uncheckedGet(filename);
 	}
 	
-	public byte[] get(final int index, boolean logError) {
-		try {
-			return uncheckedGet(index);
-		} catch (ZipException e) {
-			if (logError) {
-				Log.err(this, "Unable to get zipped file '%s'.", index + ".bin");
-			}
-			return null;
-		}
-	}
-	
-	public byte[] tryGetFromOneOf(String... fileNames) {
-		byte[] result = null;
-		for (String fileName : fileNames) { 
-			result = this.get(fileName, false);
-			if (result != null) {
-				break;
-			}
-		}
-		if (result == null) {
-			Log.err(this, "Unable to load data from (one of) " + Misc.arrayToString(fileNames));
-		}
-		return result;
-	}
-
 	@Override
 	public String toString() {
 		return zipFilePath.toAbsolutePath().toString();
@@ -25,6 +25,7 @@ import se.de.hu_berlin.informatik.utils.files.FileUtils;
 import se.de.hu_berlin.informatik.utils.miscellaneous.Log;
 import se.de.hu_berlin.informatik.utils.miscellaneous.Misc;
 import se.de.hu_berlin.informatik.utils.miscellaneous.OutputStreamManipulationUtilities;
+import se.de.hu_berlin.informatik.utils.threaded.disruptor.WaitStrategyType;
 
 /**
  * Provides an easy interface to the commons cli {@link CommandLine} parser
@@ -107,6 +108,25 @@ final public class OptionParser {
 	public enum ThreadingStrategy {
 		AGGRESSIVE, NICE, DEFENSIVE;
 
+		/**
+		 * @return
+		 * the strategy that threads should use to wait for new items: yielding
+		 * for {@link #AGGRESSIVE}, blocking for {@link #NICE} and sleeping for
+		 * {@link #DEFENSIVE}
+		 */
+		public WaitStrategyType getWaitStrategy() {
+			switch (this) {
+			case AGGRESSIVE:
+				return WaitStrategyType.YIELDING;
+			case NICE:
+				return WaitStrategyType.BLOCKING;
+			case DEFENSIVE:
+				return WaitStrategyType.SLEEPING;
+			default:
+				throw new IllegalStateException("Unknown threading strategy: " + name());
+			}
+		}
+
 		@Override
 		public String toString() {
 			switch (this) {
@@ -117,7 +137,7 @@ final public class OptionParser {
 			case DEFENSIVE:
 				return STRAT_DEFENSIVE;
 			default:
-				throw new UnsupportedOperationException("Not implemented.");
+				throw new IllegalStateException("Unknown threading strategy: " + name());
 			}
 		}
 	}
@@ -254,23 +274,7 @@ final public class OptionParser {
 			}
 		}
 
-		ThreadingStrategy strategy = ThreadingStrategy.NICE;
-		if (this.hasOption(DefaultCmdOptions.THREAD_STRATEGY)) {
-			switch (this.getOptionValue(DefaultCmdOptions.THREAD_STRATEGY)) {
-			case STRAT_NICE:
-				strategy = ThreadingStrategy.NICE;
-				break;
-			case STRAT_AGGRESSIVE:
-				strategy = ThreadingStrategy.AGGRESSIVE;
-				break;
-			case STRAT_DEFENSIVE:
-				strategy = ThreadingStrategy.DEFENSIVE;
-				break;
-			default:
-				// should not happen
-				Log.abort(this, "Unknown strategy: '%s'", this.getOptionValue(DefaultCmdOptions.THREAD_STRATEGY));
-			}
-		}
+		ThreadingStrategy strategy = getThreadingStrategy();
 
 		final int processors = Runtime.getRuntime().availableProcessors();
 		double processorsToUse;
@@ -294,6 +298,40 @@ final public class OptionParser {
 		}
 	}
 
+	/**
+	 * @return the threading strategy according to the given options
+	 * ({@link ThreadingStrategy#NICE} by default)
+	 */
+	public ThreadingStrategy getThreadingStrategy() {
+		ThreadingStrategy strategy = ThreadingStrategy.NICE;
+		if (isThreaded && this.hasOption(DefaultCmdOptions.THREAD_STRATEGY)) {
+			switch (this.getOptionValue(DefaultCmdOptions.THREAD_STRATEGY)) {
+			case STRAT_NICE:
+				strategy = ThreadingStrategy.NICE;
+				break;
+			case STRAT_AGGRESSIVE:
+				strategy = ThreadingStrategy.AGGRESSIVE;
+				break;
+			case STRAT_DEFENSIVE:
+				strategy = ThreadingStrategy.DEFENSIVE;
+				break;
+			default:
+				// should not happen
+				Log.abort(this, "Unknown strategy: '%s'", this.getOptionValue(DefaultCmdOptions.THREAD_STRATEGY));
+			}
+		}
+		return strategy;
+	}
+
+	/**
+	 * @return the strategy that threads should use to wait for new items,
+	 * according to the threading strategy
+	 * @see ThreadingStrategy#getWaitStrategy()
+	 */
+	public WaitStrategyType getWaitStrategy() {
+		return getThreadingStrategy().getWaitStrategy();
+	}
+
 	/**
 	 * Adds all options declared in the given Enum.
 	 * @param options
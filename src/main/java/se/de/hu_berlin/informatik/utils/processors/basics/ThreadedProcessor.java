@@ -11,6 +11,7 @@ import se.de.hu_berlin.informatik.utils.threaded.ThreadLimit;
 import se.de.hu_berlin.informatik.utils.threaded.ThreadLimitDummy;
 import se.de.hu_berlin.informatik.utils.threaded.disruptor.AbstractDisruptorMultiplexer;
 import se.de.hu_berlin.informatik.utils.threaded.disruptor.DisruptorProvider;
+import se.de.hu_berlin.informatik.utils.threaded.disruptor.WaitStrategyType;
 import se.de.hu_berlin.informatik.utils.threaded.disruptor.eventhandler.AbstractDisruptorEventHandler;
 
 /**
@@ -18,6 +19,8 @@ import se.de.hu_berlin.informatik.utils.threaded.disruptor.eventhandler.Abstract
  * a specifiec number of threads in parallel. The output of the threads
  * is collected with a multiplexer thread which returns it to the linked 
  * output pipe. {@code null} objects are ignored by the multiplexer.
+ * Outputs are produced in the order of completion, unless the order of
+ * the input elements shall be preserved, see {@link #preserveOrder(int)}.
  * 
  * @author Simon Heiden
  */
@@ -72,10 +75,59 @@ public class ThreadedProcessor<A,B> extends AbstractProcessor<A,B> {
 		this(threadCount, ThreadLimitDummy.getInstance(), transmitter, null);
 	}
 	
+	/**
+	 * Sets the strategy that the worker threads use to wait for new input items.
+	 * @param waitStrategy
+	 * the wait strategy
+	 * @return
+	 * this
+	 */
+	public ThreadedProcessor<A,B> setWaitStrategy(WaitStrategyType waitStrategy) {
+		disruptorProvider.setWaitStrategy(waitStrategy);
+		return this;
+	}
+	
+	/**
+	 * Sets whether the worker threads form a worker pool, such that each input item is
+	 * passed to exactly one idle thread, see {@link DisruptorProvider#setWorkerPool(boolean)}.
+	 * Recommended if the processing times of the input items vary.
+	 * @param useWorkerPool
+	 * whether to use a worker pool
+	 * @return
+	 * this
+	 */
+	public ThreadedProcessor<A,B> setWorkerPool(boolean useWorkerPool) {
+		disruptorProvider.setWorkerPool(useWorkerPool);
+		return this;
+	}
+	
+	/**
+	 * Makes the output items get produced in the order of the corresponding input items.
+	 * Outputs of at most the given number of input items are held back while waiting for
+	 * the outputs of a slow input item. Further input items are not processed until the
+	 * slow input item is finished.
+	 * @param reorderWindow
+	 * the size of the reorder window; 0 to produce outputs in the order of their completion
+	 * @return
+	 * this
+	 * @throws IllegalStateException
+	 * if items are being processed
+	 */
+	public ThreadedProcessor<A,B> preserveOrder(int reorderWindow) {
+		if (disruptorProvider.isRunning() || !disruptorProvider.isTerminated()) {
+			throw new IllegalStateException("Can not change the order of outputs while processing items.");
+		}
+		//the multiplexer is idle, so it can safely be restarted
+		multiplexer.shutdown();
+		multiplexer.setReorderWindow(reorderWindow);
+		multiplexer.start();
+		return this;
+	}
+	
 	private void initMultiplexer() {
 		//now that the handlers are instantiated, we can connect them to the multiplexer
-		//by starting the multiplexer thread (which will park itself until notified
-		//of any generated output
+		//by starting the multiplexer thread (which will park itself while no output
+		//is available)
 		multiplexer.startAndConnectHandlers();
 	}
 	
@@ -92,6 +144,10 @@ public class ThreadedProcessor<A,B> extends AbstractProcessor<A,B> {
 		}
 		//restart the multiplexer if it has been shut down
 		if (!multiplexer.isRunning()) {
+			//handler threads of a timed out shutdown must not submit outputs to the restarted multiplexer
+			if (!disruptorProvider.isRunning() && !disruptorProvider.isTerminated()) {
+				throw new IllegalStateException("Worker threads of a timed out shutdown are still running.");
+			}
 			multiplexer.start();
 		}
 		disruptorProvider.submit(input);
@@ -3,7 +3,8 @@
  */
 package se.de.hu_berlin.informatik.utils.processors.sockets.eh;
 
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.ArrayList;
+import java.util.List;
 
 import se.de.hu_berlin.informatik.utils.processors.Processor;
 import se.de.hu_berlin.informatik.utils.processors.sockets.ProcessorSocket;
@@ -13,6 +14,7 @@ import se.de.hu_berlin.informatik.utils.threaded.disruptor.Multiplexer;
 import se.de.hu_berlin.informatik.utils.threaded.disruptor.MultiplexerInput;
 import se.de.hu_berlin.informatik.utils.threaded.disruptor.eventhandler.AbstractDisruptorEventHandler;
 import se.de.hu_berlin.informatik.utils.threaded.disruptor.eventhandler.DisruptorFCFSEventHandler;
+import se.de.hu_berlin.informatik.utils.threaded.disruptor.eventhandler.SingleUseEvent;
 
 /**
  * A {@link ProcessorSocket} implementation that provides a simple API for 
@@ -28,15 +30,12 @@ import se.de.hu_berlin.informatik.utils.threaded.disruptor.eventhandler.Disrupto
  */
 public class EHWithInputAndReturn<A,B> extends DisruptorFCFSEventHandler<A> implements ProcessorSocket<A,B>, MultiplexerInput<B> {
 
-	/**
-	 * The output object.
-	 */
-	private B output = null;
-	
-	private AtomicBoolean hasNewOutput = new AtomicBoolean(false);
-	private final Object lock = new Object();
 	private Multiplexer<B> multiplexer = null;
 	
+	// sequence of the current input item and its collected outputs, if the multiplexer is ordered
+	private long sequence = -1;
+	private List<B> orderedOutputs = null;
+	
 	private Processor<A, B> processor;
 	
 	/**
@@ -49,9 +48,31 @@ public class EHWithInputAndReturn<A,B> extends DisruptorFCFSEventHandler<A> impl
 		insert(processor);
 	}
 	
+	@Override
+	protected void processClaimedEvent(SingleUseEvent<A> event, long sequence) throws Exception {
+		if (multiplexer != null && multiplexer.isOrdered()) {
+			// wait before acquiring a thread slot for this event
+			multiplexer.awaitOrderedSlot(sequence);
+			this.sequence = sequence;
+		}
+		super.processClaimedEvent(event, sequence);
+	}
+	
 	@Override
 	public void processEvent(A input) throws Exception {
-		initAndConsume(input);
+		if (multiplexer != null && multiplexer.isOrdered()) {
+			orderedOutputs = new ArrayList<>(1);
+			try {
+				initAndConsume(input);
+			} finally {
+				// the multiplexer waits for the outputs of every input item
+				List<B> outputs = orderedOutputs;
+				orderedOutputs = null;
+				multiplexer.submitOrderedOutputs(sequence, outputs);
+			}
+		} else {
+			initAndConsume(input);
+		}
 	}
 
 	@Override
@@ -66,7 +87,13 @@ public class EHWithInputAndReturn<A,B> extends DisruptorFCFSEventHandler<A> impl
 	
 	@Override
 	public void produce(B item) {
-		trySettingNewOutputAndValidate(item);
+		if (orderedOutputs != null) {
+			if (item != null) {
+				orderedOutputs.add(item);
+			}
+		} else {
+			submitOutput(item);
+		}
 	}
 	
 	/* (non-Javadoc)
@@ -80,55 +107,6 @@ public class EHWithInputAndReturn<A,B> extends DisruptorFCFSEventHandler<A> impl
 		this.multiplexer = multiplexer;
 	}
 
-	/* (non-Javadoc)
-	 * @see se.de.hu_berlin.informatik.utils.threaded.IMultiplexerInput#getLock()
-	 */
-	@Override
-	public Object getLock() {
-		return lock;
-	}
-	
-	/* (non-Javadoc)
-	 * @see se.de.hu_berlin.informatik.utils.threaded.IMultiplexerInput#getOutput()
-	 */
-	@Override
-	public B getOutput() {
-		return output;
-	}
-	
-	/* (non-Javadoc)
-	 * @see se.de.hu_berlin.informatik.utils.threaded.IMultiplexerInput#setOutput(java.lang.Object)
-	 */
-	@Override
-	public boolean setOutput(B item) {
-		output = item;
-		return true;
-	}
-	
-	/* (non-Javadoc)
-	 * @see se.de.hu_berlin.informatik.utils.threaded.IMultiplexerInput#outputItemIsValid()
-	 */
-	@Override
-	public boolean outputItemIsValid() {
-		return hasNewOutput.get();
-	}
-
-	/* (non-Javadoc)
-	 * @see se.de.hu_berlin.informatik.utils.threaded.IMultiplexerInput#setOutputItemValid()
-	 */
-	@Override
-	public void setOutputItemValid() {
-		hasNewOutput.set(true);
-	}
-
-	/* (non-Javadoc)
-	 * @see se.de.hu_berlin.informatik.utils.threaded.IMultiplexerInput#setOutputItemInvalid()
-	 */
-	@Override
-	public void setOutputItemInvalid() {
-		hasNewOutput.set(false);
-	}
-
 	/* (non-Javadoc)
 	 * @see se.de.hu_berlin.informatik.utils.threaded.IMultiplexerInput#getMultiplexer()
 	 */
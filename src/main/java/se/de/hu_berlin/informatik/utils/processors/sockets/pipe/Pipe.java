@@ -3,12 +3,16 @@
  */
 package se.de.hu_berlin.informatik.utils.processors.sockets.pipe;
 
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
 import se.de.hu_berlin.informatik.utils.miscellaneous.Log;
 import se.de.hu_berlin.informatik.utils.processors.Processor;
 import se.de.hu_berlin.informatik.utils.processors.sockets.AbstractProcessorSocket;
 import se.de.hu_berlin.informatik.utils.processors.sockets.ProcessorSocket;
 import se.de.hu_berlin.informatik.utils.processors.sockets.module.Module;
 import se.de.hu_berlin.informatik.utils.threaded.disruptor.DisruptorProvider;
+import se.de.hu_berlin.informatik.utils.threaded.disruptor.WaitStrategyType;
 import se.de.hu_berlin.informatik.utils.threaded.disruptor.eventhandler.AbstractDisruptorEventHandler;
 import se.de.hu_berlin.informatik.utils.threaded.disruptor.eventhandler.DisruptorFCFSEventHandler;
 
@@ -67,6 +71,8 @@ public class Pipe<A, B> extends AbstractProcessorSocket<A, B> {
 
 	private final boolean singleWriter;
 	private ClassLoader classLoader;
+	private WaitStrategyType waitStrategy = WaitStrategyType.BLOCKING;
+	private long shutdownTimeoutNanos = -1;
 
 	/**
 	 * Creates a pipe object with a buffer size of 8.
@@ -121,7 +127,27 @@ public class Pipe<A, B> extends AbstractProcessorSocket<A, B> {
 	 * a class loader to set as the context class loader for created threads
 	 */
 	public Pipe(Processor<A, B> processor, int bufferSize, boolean singleWriter, ClassLoader cl) {
+		this(processor, bufferSize, singleWriter, cl, WaitStrategyType.BLOCKING);
+	}
+
+	/**
+	 * Creates a pipe object.
+	 * @param processor
+	 * the processor
+	 * @param bufferSize
+	 * the size of the ring buffer, must be power of 2
+	 * @param singleWriter
+	 * whether this pipe writes to the output with only a single thread (if not
+	 * sure, set this to false)
+	 * @param cl
+	 * a class loader to set as the context class loader for created threads
+	 * @param waitStrategy
+	 * the strategy that the pipe's thread uses to wait for new items
+	 */
+	public Pipe(Processor<A, B> processor, int bufferSize, boolean singleWriter, ClassLoader cl,
+			WaitStrategyType waitStrategy) {
 		super(processor);
+		this.waitStrategy = waitStrategy;
 		initialize(bufferSize, cl);
 		this.singleWriter = singleWriter;
 	}
@@ -130,6 +156,8 @@ public class Pipe<A, B> extends AbstractProcessorSocket<A, B> {
 		this.bufferSize = bufferSize;
 		this.classLoader = cl;
 		disruptorProvider = new DisruptorProvider<>(bufferSize, cl);
+		disruptorProvider.setWaitStrategy(waitStrategy);
+		disruptorProvider.setShutdownTimeout(shutdownTimeoutNanos, TimeUnit.NANOSECONDS);
 		// event handler used for transmitting items from one pipe to another
 		disruptorProvider.connectHandlers(new DisruptorFCFSEventHandler<A>() {
 
@@ -183,6 +211,52 @@ public class Pipe<A, B> extends AbstractProcessorSocket<A, B> {
 		disruptorProvider.setProducerType(singleWriter);
 	}
 
+	/**
+	 * Sets the strategy that this pipe's thread uses to wait for new items. Latency-critical
+	 * pipes may spin, while pipes that process items in batches may sleep.
+	 * @param waitStrategy
+	 * the wait strategy
+	 * @return
+	 * this pipe
+	 * @throws IllegalStateException
+	 * if the pipe is running
+	 */
+	public Pipe<A, B> setWaitStrategy(WaitStrategyType waitStrategy) {
+		disruptorProvider.setWaitStrategy(waitStrategy);
+		this.waitStrategy = waitStrategy;
+		return this;
+	}
+
+	public WaitStrategyType getWaitStrategy() {
+		return waitStrategy;
+	}
+
+	/**
+	 * Sets the maximum time that {@link #shutdown()} waits for this pipe's pending items
+	 * to be processed. Negative values disable the timeout (default).
+	 * @param timeout
+	 * the timeout
+	 * @param unit
+	 * the unit of the timeout
+	 * @return
+	 * this pipe
+	 */
+	public Pipe<A, B> setShutdownTimeout(long timeout, TimeUnit unit) {
+		shutdownTimeoutNanos = timeout < 0 ? -1 : unit.toNanos(timeout);
+		disruptorProvider.setShutdownTimeout(shutdownTimeoutNanos, TimeUnit.NANOSECONDS);
+		return this;
+	}
+
+	/**
+	 * @param unit
+	 * the unit to return the time in
+	 * @return
+	 * the time that the last shutdown waited for this pipe's pending items to be processed
+	 */
+	public long getLastDrainTime(TimeUnit unit) {
+		return disruptorProvider.getLastDrainTime(unit);
+	}
+
 	/**
 	 * @return whether an input pipe exists
 	 */
@@ -280,6 +354,15 @@ public class Pipe<A, B> extends AbstractProcessorSocket<A, B> {
 		}
 	}
 
+	/**
+	 * Submits multiple items to this pipe at once. {@code null} items are ignored.
+	 * @param items
+	 * the items to be submitted
+	 */
+	public void submitBatch(Collection<? extends A> items) {
+		disruptorProvider.submitBatch(items);
+	}
+
 	/**
 	 * Submits an item of some kind to this pipe. Will abort the application if
 	 * the type does not match the pipe's input type. More specificially, it
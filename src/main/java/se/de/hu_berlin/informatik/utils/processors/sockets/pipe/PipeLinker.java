@@ -7,6 +7,7 @@ import se.de.hu_berlin.informatik.utils.miscellaneous.Log;
 import se.de.hu_berlin.informatik.utils.optionparser.OptionCarrier;
 import se.de.hu_berlin.informatik.utils.optionparser.OptionParser;
 import se.de.hu_berlin.informatik.utils.processors.sockets.ProcessorSocketGenerator;
+import se.de.hu_berlin.informatik.utils.threaded.disruptor.WaitStrategyType;
 import se.de.hu_berlin.informatik.utils.tracking.Trackable;
 import se.de.hu_berlin.informatik.utils.tracking.TrackingStrategy;
 import se.de.hu_berlin.informatik.utils.tracking.TrackerDummy;
@@ -68,6 +69,7 @@ public class PipeLinker implements Trackable, OptionCarrier {
 	private Pipe<?,?> startPipe = null;
 	private Pipe<?,?> endPipe = null;
 	private OptionParser options;
+	private boolean waitStrategyFromOptions = false;
 
 	/**
 	 * Links the given Pipes (provided by socket generators, possibly) 
@@ -94,9 +96,45 @@ public class PipeLinker implements Trackable, OptionCarrier {
 	 * this PipeLinker
 	 */
 	public PipeLinker append(int bufferSize, ProcessorSocketGenerator<?,?>... generators) {	
+		return append(bufferSize, getDefaultWaitStrategy(), generators);
+	}
+	
+	/**
+	 * Links the given Pipes (provided by socket generators, possibly) 
+	 * together and appends them to former appended Pipes, if any. 
+	 * If the Pipes don't match, then execution stops and the application aborts.
+	 * @param waitStrategy
+	 * the strategy that the linked pipes' threads use to wait for new items
+	 * @param generators
+	 * Pipes to be linked together (given as generators, possibly)
+	 * @return
+	 * this PipeLinker
+	 */
+	public PipeLinker append(WaitStrategyType waitStrategy, ProcessorSocketGenerator<?,?>... generators) {	
+		return append(8, waitStrategy, generators);
+	}
+	
+	/**
+	 * Links the given Pipes (provided by socket generators, possibly) 
+	 * together and appends them to former appended Pipes, if any. 
+	 * If the Pipes don't match, then execution stops and the application aborts.
+	 * @param bufferSize
+	 * size of buffers in front of linked pipes
+	 * @param waitStrategy
+	 * the strategy that the linked pipes' threads use to wait for new items;
+	 * null to keep the strategies of the pipes
+	 * @param generators
+	 * Pipes to be linked together (given as generators, possibly)
+	 * @return
+	 * this PipeLinker
+	 */
+	public PipeLinker append(int bufferSize, WaitStrategyType waitStrategy, ProcessorSocketGenerator<?,?>... generators) {	
 		if (generators.length != 0) {
 			try {
 				generators[0].asPipe(bufferSize).setOptions(options);
+				if (waitStrategy != null) {
+					generators[0].asPipe(bufferSize).setWaitStrategy(waitStrategy);
+				}
 				if (startPipe == null) {
 					startPipe = generators[0].asPipe(bufferSize);
 					//set whether input items are submitted with a single thread
@@ -111,6 +149,9 @@ public class PipeLinker implements Trackable, OptionCarrier {
 				for (int i = 0; i < generators.length-1; ++i) {
 					generators[i].asPipe(bufferSize).linkTo(generators[i+1].asPipe(bufferSize));
 					generators[i+1].asPipe(bufferSize).setOptions(options);
+					if (waitStrategy != null) {
+						generators[i+1].asPipe(bufferSize).setWaitStrategy(waitStrategy);
+					}
 				}
 
 				endPipe = generators[generators.length-1].asPipe(bufferSize);
@@ -121,6 +162,33 @@ public class PipeLinker implements Trackable, OptionCarrier {
 		return this;
 	}
 	
+	/**
+	 * Sets whether pipes that are appended without an explicit wait strategy use the
+	 * wait strategy that matches the threading strategy of the options, e.g., yielding
+	 * for {@link OptionParser.ThreadingStrategy#AGGRESSIVE}. Such pipes keep their own
+	 * wait strategy otherwise (default).
+	 * @param waitStrategyFromOptions
+	 * whether to derive the default wait strategy from the options
+	 * @return
+	 * this PipeLinker
+	 */
+	public PipeLinker setWaitStrategyFromOptions(boolean waitStrategyFromOptions) {
+		this.waitStrategyFromOptions = waitStrategyFromOptions;
+		return this;
+	}
+
+	/**
+	 * @return
+	 * the wait strategy for pipes that are appended without an explicit wait strategy,
+	 * or null if the pipes keep their own strategies
+	 */
+	private WaitStrategyType getDefaultWaitStrategy() {
+		if (waitStrategyFromOptions && options != null) {
+			return options.getWaitStrategy();
+		}
+		return null;
+	}
+	
 	/**
 	 * Retrieves the start pipe or aborts the application if none set.
 	 * @return
@@ -8,6 +8,7 @@ import java.nio.file.*;
 import se.de.hu_berlin.informatik.utils.files.AFileWalker;
 import se.de.hu_berlin.informatik.utils.processors.sockets.ConsumingProcessorSocketGenerator;
 import se.de.hu_berlin.informatik.utils.threaded.disruptor.DisruptorProvider;
+import se.de.hu_berlin.informatik.utils.threaded.disruptor.WaitStrategyType;
 
 /**
  * {@link AFileWalker} extension that takes a callable class 
@@ -27,6 +28,7 @@ public class ThreadedFileWalker extends AFileWalker {
 		}
 		
 		disruptorProvider = new DisruptorProvider<>(builder.classLoader);
+		disruptorProvider.setWaitStrategy(builder.waitStrategy);
 		disruptorProvider.connectHandlers(builder.callableFactory, builder.threadCount);
 	}
 
@@ -53,6 +55,7 @@ public class ThreadedFileWalker extends AFileWalker {
 		public ConsumingProcessorSocketGenerator<Path> callableFactory;
 		public int threadCount;
 		public ClassLoader classLoader;
+		public WaitStrategyType waitStrategy = WaitStrategyType.BLOCKING;
 		
 		public Builder(String pattern, int threadCount) {
 			super(pattern);
@@ -88,5 +91,17 @@ public class ThreadedFileWalker extends AFileWalker {
 			return this;
 		}
 		
+		/**
+		 * Sets the strategy that the threads use to wait for new files.
+		 * @param waitStrategy
+		 * a wait strategy
+		 * @return
+		 * this
+		 */
+		public Builder setWaitStrategy(WaitStrategyType waitStrategy) {
+			this.waitStrategy = waitStrategy;
+			return this;
+		}
+		
 	}
 }
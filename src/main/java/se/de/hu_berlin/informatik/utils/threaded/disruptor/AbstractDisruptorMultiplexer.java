@@ -1,5 +1,7 @@
 package se.de.hu_berlin.informatik.utils.threaded.disruptor;
 
+import se.de.hu_berlin.informatik.utils.threaded.disruptor.eventhandler.AbstractDisruptorEventHandler;
+
 /**
  * Abstract multiplexer that collects output generated by multiple
  * threads and processes it. Automatically uses the handlers connected
@@ -18,10 +20,33 @@ public abstract class AbstractDisruptorMultiplexer<B> extends AbstractMultiplexe
 		this.disruptor = disruptor;
 	}
 	
+	/**
+	 * Creates a multiplexer for the given disruptor with the given buffer size and wait strategy.
+	 * @param disruptor
+	 * the disruptor whose handlers produce the output items
+	 * @param bufferSize
+	 * the maximum number of output items that may wait for being processed;
+	 * must be a power of 2
+	 * @param waitStrategy
+	 * the strategy that the multiplexer thread uses to wait for new items
+	 */
+	public AbstractDisruptorMultiplexer(DisruptorProvider<?> disruptor, int bufferSize, WaitStrategyType waitStrategy) {
+		super(bufferSize, waitStrategy);
+		this.disruptor = disruptor;
+	}
+	
+	/**
+	 * Connects the handlers of the disruptor to this multiplexer, such that they
+	 * submit their output items to it. Then starts the multiplexer thread.
+	 */
 	@SuppressWarnings("unchecked")
 	public void startAndConnectHandlers() {
 		if (!isRunning()) {
-			connectHandlers((MultiplexerInput<B>[]) disruptor.getHandlers());
+			for (AbstractDisruptorEventHandler<?> handler : disruptor.getHandlers()) {
+				if (handler instanceof MultiplexerInput) {
+					((MultiplexerInput<B>) handler).setMultiplexer(this);
+				}
+			}
 		}
 		start();
 	}
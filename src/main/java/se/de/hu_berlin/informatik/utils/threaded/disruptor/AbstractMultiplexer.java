@@ -1,86 +1,251 @@
 package se.de.hu_berlin.informatik.utils.threaded.disruptor;
 
+import java.util.List;
+
+import com.lmax.disruptor.BatchEventProcessor;
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.ExceptionHandler;
+import com.lmax.disruptor.RingBuffer;
+
+import se.de.hu_berlin.informatik.utils.miscellaneous.Log;
+
 /**
  * Abstract multiplexer that collects output generated by multiple
- * threads and processes it.
- * 
+ * threads and processes it. The output items are published to a bounded
+ * multi-producer ring buffer, such that producing threads only block if
+ * the buffer is full. The multiplexer thread waits for new items with the
+ * given wait strategy (by default, it parks while the buffer is empty).
+ *
+ * <p> If a reorder window is set, output items are processed in the order
+ * of the corresponding input items, see {@link #setReorderWindow(int)}.
+ *
  * @author Simon Heiden
  * @param <B>
  * the type of objects that are processed
  */
 public abstract class AbstractMultiplexer<B> implements Multiplexer<B> {
 
-	private MultiplexerInput<B>[] handlers;
-	
+	public static final int DEFAULT_BUFFER_SIZE = 1024;
+
+	private final RingBuffer<OutputEvent<B>> ringBuffer;
+	private final BatchEventProcessor<OutputEvent<B>> processor;
+
 	private Thread thread = null;
-	private boolean shouldStop;
 
-	private boolean isRunning = false;
-	
-	public AbstractMultiplexer() {
+	private volatile boolean isRunning = false;
+
+	// 0 means that outputs are processed in the order of completion
+	private volatile int reorderWindow = 0;
+	// completed outputs that wait for outputs of earlier input items
+	private List<B>[] reorderBuffer = null;
+	// the sequence of the next input item whose outputs may be processed;
+	// only written by the multiplexer thread while running
+	private volatile long nextSequence = 0;
+
+	/**
+	 * Creates a multiplexer with the given buffer size and wait strategy.
+	 * @param bufferSize
+	 * the maximum number of output items that may wait for being processed;
+	 * must be a power of 2
+	 * @param waitStrategy
+	 * the strategy that the multiplexer thread uses to wait for new items
+	 */
+	public AbstractMultiplexer(int bufferSize, WaitStrategyType waitStrategy) {
 		super();
+		ringBuffer = RingBuffer.createMultiProducer(OutputEvent<B>::new, bufferSize, waitStrategy.newInstance());
+		EventHandler<OutputEvent<B>> handler = (event, sequence, endOfBatch) -> processEvent(event);
+		processor = new BatchEventProcessor<>(ringBuffer, ringBuffer.newBarrier(), handler);
+		processor.setExceptionHandler(new ExceptionHandler<OutputEvent<B>>() {
+			@Override
+			public void handleOnStartException(Throwable ex) {
+				Log.err(AbstractMultiplexer.this, ex, "%s was thrown while starting.", ex);
+			}
+			@Override
+			public void handleOnShutdownException(Throwable ex) {
+				Log.err(AbstractMultiplexer.this, ex, "%s was thrown while shutting down.", ex);
+			}
+			@Override
+			public void handleEventException(Throwable ex, long sequence, OutputEvent<B> event) {
+				Log.err(AbstractMultiplexer.this, ex, "%s was thrown while processing output item #%d.", ex, sequence);
+			}
+		});
+		// producers may not overwrite items that have not been processed yet
+		ringBuffer.addGatingSequences(processor.getSequence());
+	}
+
+	/**
+	 * Creates a multiplexer with a buffer size of {@link #DEFAULT_BUFFER_SIZE}
+	 * that parks while no output items are available.
+	 */
+	public AbstractMultiplexer() {
+		this(DEFAULT_BUFFER_SIZE, WaitStrategyType.BLOCKING);
+	}
+
+	/**
+	 * Sets the number of input items whose outputs may be held back at most in order to
+	 * process all output items in the order of the corresponding input items. Producers of
+	 * outputs for later input items wait if a slow input item blocks the whole window.
+	 * @param reorderWindow
+	 * the size of the reorder window; 0 to process outputs in the order of their completion
+	 * @return
+	 * this
+	 * @throws IllegalStateException
+	 * if the multiplexer is running
+	 */
+	public AbstractMultiplexer<B> setReorderWindow(int reorderWindow) {
+		if (reorderWindow < 0) {
+			throw new IllegalArgumentException("Negative reorder window: " + reorderWindow);
+		}
+		if (isRunning) {
+			throw new IllegalStateException("Can not change the reorder window of a running multiplexer.");
+		}
+		this.reorderWindow = reorderWindow;
+		return this;
 	}
-	
+
+	public int getReorderWindow() {
+		return reorderWindow;
+	}
+
+	/* (non-Javadoc)
+	 * @see se.de.hu_berlin.informatik.utils.threaded.disruptor.Multiplexer#isOrdered()
+	 */
+	@Override
+	public boolean isOrdered() {
+		return reorderWindow > 0;
+	}
+
+	/* (non-Javadoc)
+	 * @see se.de.hu_berlin.informatik.utils.threaded.disruptor.Multiplexer#submitOutput(java.lang.Object)
+	 */
+	@Override
+	public void submitOutput(B item) {
+		if (item != null) {
+			ringBuffer.publishEvent(OutputEvent::translate, item);
+		}
+	}
+
 	/* (non-Javadoc)
-	 * @see se.de.hu_berlin.informatik.utils.threaded.IMultiplexer#setHandlers(se.de.hu_berlin.informatik.utils.threaded.IMultiplexerInput[])
+	 * @see se.de.hu_berlin.informatik.utils.threaded.disruptor.Multiplexer#awaitOrderedSlot(long)
 	 */
 	@Override
-	public void connectHandlers(MultiplexerInput<B>[] handlers) {
-		this.handlers = handlers;
+	public void awaitOrderedSlot(long sequence) {
+		if (sequence - nextSequence >= reorderWindow) {
+			IdleBackoff backoff = new IdleBackoff();
+			// the outputs get dropped anyway if the multiplexer has been shut down
+			while (isRunning && sequence - nextSequence >= reorderWindow) {
+				backoff.idle();
+			}
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see se.de.hu_berlin.informatik.utils.threaded.disruptor.Multiplexer#submitOrderedOutputs(long, java.util.List)
+	 */
+	@Override
+	public void submitOrderedOutputs(long sequence, List<B> items) {
+		if (!isOrdered()) {
+			throw new UnsupportedOperationException("No reorder window set.");
+		}
+		if (!isRunning) {
+			// late outputs of a timed out shutdown; their sequences are not valid anymore
+			Log.warn(this, "Multiplexer is not running. Dropping %d output item(s) of input item #%d.", 
+					items.size(), sequence);
+			return;
+		}
+		ringBuffer.publishEvent(OutputEvent::translateOrdered, sequence, items);
+	}
+
+	private void processEvent(OutputEvent<B> event) {
+		B item = event.item;
+		List<B> items = event.items;
+		event.item = null;
+		event.items = null;
+		if (items == null) {
+			processNewOutputItem(item);
+			return;
+		}
+		long sequence = event.sequence;
+		if (sequence != nextSequence) {
+			// wait for the outputs of earlier input items
+			reorderBuffer[(int) (sequence % reorderBuffer.length)] = items;
+			return;
+		}
+		processOutputItems(items);
+		long next = sequence + 1;
+		while ((items = takeFromReorderBuffer(next)) != null) {
+			processOutputItems(items);
+			++next;
+		}
+		nextSequence = next;
+	}
+
+	private List<B> takeFromReorderBuffer(long sequence) {
+		int index = (int) (sequence % reorderBuffer.length);
+		List<B> items = reorderBuffer[index];
+		reorderBuffer[index] = null;
+		return items;
+	}
+
+	private void processOutputItems(List<B> items) {
+		for (B item : items) {
+			processNewOutputItem(item);
+		}
 	}
 
-	
 	@Override
 	public boolean isRunning() {
 		return isRunning;
 	}
 
 	/* (non-Javadoc)
-	 * @see se.de.hu_berlin.informatik.utils.threaded.IMultiplexer#start()
+	 * @see se.de.hu_berlin.informatik.utils.threaded.disruptor.Multiplexer#start()
 	 */
+	@SuppressWarnings("unchecked")
 	@Override
-	public void start() {
+	public synchronized void start() {
 		if (!isRunning) {
+			// sequences of input items start at 0 again after a restart
+			nextSequence = 0;
+			reorderBuffer = reorderWindow > 0 ? (List<B>[]) new List<?>[reorderWindow] : null;
+			if (reorderBuffer != null) {
+				// skip outputs that were published during the last shutdown
+				long skipped = ringBuffer.getCursor() - processor.getSequence().get();
+				if (skipped > 0) {
+					Log.warn(this, "Dropping %d late output(s) of previous input items.", skipped);
+					processor.getSequence().set(ringBuffer.getCursor());
+				}
+			}
 //			Log.out(this, "Creating new Multiplexer thread.");
 			thread = new Thread(this);
 			thread.start();
+			// a halt before the processor is running would get lost
+			while (!processor.isRunning()) {
+				Thread.yield();
+			}
 			isRunning = true;
 		}
 	}
-	
+
 	@Override
 	public void run() {
-		shouldStop = false;
-		boolean shouldDefinitivelyStop = false;
-		if (handlers == null || handlers.length == 0) {
-			throw new IllegalStateException("No handlers given to multiplexer.");
-		}
-		//collect available output in an infinite loop
-		while (true) {
-			//iterate over all input threads (all handlers)
-			processPendingItems(handlers);
-			
-			//test if shutdown condition is fulfilled 
-			if (shouldStop) {
-				//test if we already checked for any pending outputs
-				if (shouldDefinitivelyStop) {
-					//then we may return now...
-					return;
-				}
-
-				//there might still be pending output items, so better check once more...
-				//but next time around, we can definitively stop!
-				shouldDefinitivelyStop = true;
-			}
-		}
+		processor.run();
 	}
 
 	/* (non-Javadoc)
-	 * @see se.de.hu_berlin.informatik.utils.threaded.IMultiplexer#shutdown()
+	 * @see se.de.hu_berlin.informatik.utils.threaded.disruptor.Multiplexer#shutdown()
 	 */
 	@Override
-	public void shutdown() {
-		shouldStop = true;
+	public synchronized void shutdown() {
+		if (!isRunning) {
+			return;
+		}
+		// wait for all published items to be processed
+		IdleBackoff backoff = new IdleBackoff();
+		while (processor.getSequence().get() < ringBuffer.getCursor()) {
+			backoff.idle();
+		}
+		processor.halt();
 		while (thread.isAlive()) {
 			try {
 				thread.join();
@@ -88,7 +253,47 @@ public abstract class AbstractMultiplexer<B> implements Multiplexer<B> {
 				// do nothing
 			}
 		}
+		if (reorderBuffer != null) {
+			processRemainingOrderedOutputs();
+		}
 		isRunning = false;
 	}
-	
+
+	/**
+	 * Processes outputs that still wait for outputs of earlier input items, e.g.,
+	 * if input items have been dropped. Keeps the order of the remaining items.
+	 */
+	private void processRemainingOrderedOutputs() {
+		int count = 0;
+		for (long sequence = nextSequence; sequence < nextSequence + reorderBuffer.length; ++sequence) {
+			List<B> items = takeFromReorderBuffer(sequence);
+			if (items != null) {
+				++count;
+				processOutputItems(items);
+			}
+		}
+		if (count > 0) {
+			Log.warn(this, "Outputs of %d input item(s) were processed without the outputs of earlier input items.", count);
+		}
+	}
+
+	/**
+	 * Wrapper for output items in the ring buffer.
+	 */
+	private static final class OutputEvent<B> {
+		private B item;
+		// outputs of a single input item in ordered mode
+		private List<B> items;
+		private long sequence;
+
+		private static <B> void translate(OutputEvent<B> event, long ringSequence, B item) {
+			event.item = item;
+		}
+
+		private static <B> void translateOrdered(OutputEvent<B> event, long ringSequence, long sequence, List<B> items) {
+			event.sequence = sequence;
+			event.items = items;
+		}
+	}
+
 }
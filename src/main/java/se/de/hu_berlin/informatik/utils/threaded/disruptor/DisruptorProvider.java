@@ -1,8 +1,15 @@
 package se.de.hu_berlin.informatik.utils.threaded.disruptor;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
-import com.lmax.disruptor.BlockingWaitStrategy;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 import com.lmax.disruptor.ExceptionHandler;
 import com.lmax.disruptor.RingBuffer;
 import com.lmax.disruptor.dsl.Disruptor;
@@ -52,12 +59,23 @@ public class DisruptorProvider<A> implements Trackable {
 //		};
 //	}
 	
+	// starting, shutting down and replacing the disruptor instance require the lock
+	private final ReentrantLock stateLock = new ReentrantLock();
+	// submissions that have entered and exited the publishing phase; the counters
+	// are striped, such that concurrent submissions do not contend on a single lock
+	private final LongAdder enteredSubmissions = new LongAdder();
+	private final LongAdder exitedSubmissions = new LongAdder();
+	
 	private Disruptor<SingleUseEvent<A>> disruptor = null;
+	// threads of the current (or last) disruptor instance
+	private final List<Thread> handlerThreads = Collections.synchronizedList(new ArrayList<>());
 	private RingBuffer<SingleUseEvent<A>> ringBuffer = null;
 	private AbstractDisruptorEventHandler<A>[] handlers = null;
 	private int bufferSize = 0;
 	
 	private ProducerType producerType = ProducerType.MULTI;
+	private WaitStrategyType waitStrategy = WaitStrategyType.BLOCKING;
+	private boolean useWorkerPool = false;
 	
 	private boolean abortOnEventError = false;
 	private boolean abortOnStartupError = false;
@@ -65,12 +83,16 @@ public class DisruptorProvider<A> implements Trackable {
 	
 	private int exceptions;
 	
-	private boolean isRunning = false;
+	private volatile boolean isRunning = false;
 	private boolean isConnectedToHandlers = false;
 	private int minimalBufferSize = 0;
 	
 	private TrackingStrategy tracker = TrackerDummy.getInstance();
 	private boolean onlyForced = false;
+	
+	// negative values mean no timeout
+	private long shutdownTimeoutNanos = -1;
+	private long lastDrainTimeNanos = 0;
 
 	/**
 	 * Creates a new disruptor provider with the minimal given buffer size. 
@@ -100,6 +122,7 @@ public class DisruptorProvider<A> implements Trackable {
 				if (cl != null) {
 					thread.setContextClassLoader(cl);
 				}
+				handlerThreads.add(thread);
 				return thread;
 			}
 		};
@@ -153,7 +176,7 @@ public class DisruptorProvider<A> implements Trackable {
 	private void createNewDisruptorInstance() {
 		// Construct the Disruptor
 		disruptor = new Disruptor<>(SingleUseEvent<A>::new, bufferSize, threadFactory,
-				producerType, new BlockingWaitStrategy());
+				producerType, waitStrategy.newInstance());
 
 		disruptor.setDefaultExceptionHandler(new ExceptionHandler<Event<A>>() {
 			@Override
@@ -226,6 +249,85 @@ public class DisruptorProvider<A> implements Trackable {
 		}
 	}
 	
+	/**
+	 * Sets the strategy that the event handler threads use to wait for new events.
+	 * Defaults to {@link WaitStrategyType#BLOCKING}. If the disruptor has already been
+	 * created, it gets created again with the new strategy on the next start.
+	 * @param waitStrategy
+	 * the wait strategy
+	 * @return
+	 * this
+	 * @throws IllegalStateException
+	 * if the disruptor is running
+	 */
+	public DisruptorProvider<A> setWaitStrategy(WaitStrategyType waitStrategy) {
+		if (waitStrategy == null) {
+			throw new IllegalArgumentException("No wait strategy given.");
+		}
+		stateLock.lock();
+		try {
+			if (this.waitStrategy != waitStrategy) {
+				if (isRunning) {
+					throw new IllegalStateException("Can not change the wait strategy of a running disruptor.");
+				}
+				this.waitStrategy = waitStrategy;
+				// handlers get connected to a new disruptor instance on the next start
+				cleanup();
+			}
+		} finally {
+			stateLock.unlock();
+		}
+		return this;
+	}
+	
+	/**
+	 * @return
+	 * the strategy that the event handler threads use to wait for new events
+	 */
+	public WaitStrategyType getWaitStrategy() {
+		return waitStrategy;
+	}
+	
+	/**
+	 * Sets whether the connected handlers form a worker pool. In a worker pool, each
+	 * event is passed to exactly one idle handler, such that handlers do not have to
+	 * check every event and a handler that is busy with a long running event does not
+	 * hold back the others. Otherwise, every handler sees every event and the handlers
+	 * decide on their own which events to process (e.g., first come, first serve).
+	 * Defaults to {@code false}. If the disruptor has already been created, it gets
+	 * created again on the next start.
+	 * @param useWorkerPool
+	 * whether to use a worker pool
+	 * @return
+	 * this
+	 * @throws IllegalStateException
+	 * if the disruptor is running
+	 */
+	public DisruptorProvider<A> setWorkerPool(boolean useWorkerPool) {
+		stateLock.lock();
+		try {
+			if (this.useWorkerPool != useWorkerPool) {
+				if (isRunning) {
+					throw new IllegalStateException("Can not change the dispatch mode of a running disruptor.");
+				}
+				this.useWorkerPool = useWorkerPool;
+				// handlers get connected to a new disruptor instance on the next start
+				cleanup();
+			}
+		} finally {
+			stateLock.unlock();
+		}
+		return this;
+	}
+	
+	/**
+	 * @return
+	 * whether the connected handlers form a worker pool
+	 */
+	public boolean usesWorkerPool() {
+		return useWorkerPool;
+	}
+	
 	/**
 	 * @return
 	 * whether the disruptor is running
@@ -238,6 +340,7 @@ public class DisruptorProvider<A> implements Trackable {
 	 * Performs a cleanup in the sense that an existing disruptor instance gets
 	 * nullified. Possibly existing instances of event handlers are kept, though,
 	 * in order to be able to start the disruptor again, if needed.
+	 * Requires the state lock.
 	 * @return
 	 * this
 	 */
@@ -252,7 +355,8 @@ public class DisruptorProvider<A> implements Trackable {
 	
 	/**
 	 * Connects the given event handlers to the disruptor. The handlers process submitted events
-	 * in parallel. If no disruptor instance is available, a new one is created beforehand.
+	 * in parallel, as a worker pool if {@link #setWorkerPool(boolean)} has been set. 
+	 * If no disruptor instance is available, a new one is created beforehand.
 	 * @param handlers
 	 * the handlers to connect
 	 * @return
@@ -264,32 +368,45 @@ public class DisruptorProvider<A> implements Trackable {
 			throw new IllegalStateException("No Handlers given.");
 		}
 		
-		if (disruptor == null) {
-			//get a reasonable buffer size, such that it is at least eight times
-			//as big as the number of handlers, but at least as big as the
-			//specified minimal buffer size
-			bufferSize = getContainingPowerOfTwo(handlers.length/* * 8*/);
-			if (bufferSize < minimalBufferSize) {
-				bufferSize = getContainingPowerOfTwo(minimalBufferSize);
+		stateLock.lock();
+		try {
+			if (disruptor == null) {
+				//get a reasonable buffer size, such that it is at least eight times
+				//as big as the number of handlers, but at least as big as the
+				//specified minimal buffer size
+				bufferSize = getContainingPowerOfTwo(handlers.length/* * 8*/);
+				if (bufferSize < minimalBufferSize) {
+					bufferSize = getContainingPowerOfTwo(minimalBufferSize);
+				}
+//				Log.out(this, "buffer size: %d", bufferSize);
+				if (Integer.bitCount(bufferSize) != 1) {
+					throw new IllegalArgumentException("Buffer size must be a power of 2.");
+				}
+				createNewDisruptorInstance();
+			} else if (isConnectedToHandlers) {
+				throw new IllegalStateException("Already connected to handlers.");
+			}
+		
+			// connect a copy, such that later changes of the given array have no effect;
+			// safe, since the handlers are only read from the array (see @SafeVarargs)
+			@SuppressWarnings("varargs")
+			AbstractDisruptorEventHandler<A>[] connectedHandlers = handlers.clone();
+			boolean isSingle = connectedHandlers.length == 1;
+			for (AbstractDisruptorEventHandler<A> handler : connectedHandlers) {
+				handler.setSingleConsumer(isSingle);
 			}
-//			Log.out(this, "buffer size: %d", bufferSize);
-			if (Integer.bitCount(bufferSize) != 1) {
-				throw new IllegalArgumentException("Buffer size must be a power of 2.");
+			// Connect the handlers
+			if (useWorkerPool) {
+				disruptor.handleEventsWithWorkerPool(connectedHandlers);
+			} else {
+				disruptor.handleEventsWith(connectedHandlers);
 			}
-			createNewDisruptorInstance();
-		} else if (isConnectedToHandlers) {
-			throw new IllegalStateException("Already connected to handlers.");
-		}
+			this.handlers = connectedHandlers;
 		
-		boolean isSingle = handlers.length == 1;
-		for (AbstractDisruptorEventHandler<A> handler : handlers) {
-			handler.setSingleConsumer(isSingle);
+			isConnectedToHandlers = true;
+		} finally {
+			stateLock.unlock();
 		}
-		// Connect the handlers
-		disruptor.handleEventsWith(handlers);
-		this.handlers = handlers;
-		
-		isConnectedToHandlers = true;
 		
 		return this;
 	}
@@ -407,61 +524,333 @@ public class DisruptorProvider<A> implements Trackable {
 	/**
 	 * Starts the disruptor if it is not already running.
 	 */
-	private synchronized void startIfNotRunning() {
-		if (!isRunning) {
-			if (disruptor == null || !isConnectedToHandlers) {
-				if (handlers == null) {
-					throw new IllegalStateException("No handlers given. Cannot start the disruptor.");
+	private void startIfNotRunning() {
+		stateLock.lock();
+		try {
+			if (!isRunning) {
+				// the handlers must not be run by old and new threads at the same time
+				if (!isTerminated()) {
+					throw new IllegalStateException("Handler threads of a timed out shutdown are still running. "
+							+ "Cannot restart the disruptor.");
+				}
+				handlerThreads.clear();
+				if (disruptor == null || !isConnectedToHandlers) {
+					if (handlers == null) {
+						throw new IllegalStateException("No handlers given. Cannot start the disruptor.");
+					}
+					connectHandlers(handlers);
 				}
-				connectHandlers(handlers);
-			}
 
-			// Start the Disruptor, starts all threads running
-			disruptor.start();
-			isRunning = true;
+				// Start the Disruptor, starts all threads running
+				disruptor.start();
+				isRunning = true;
+			}
+		} finally {
+			stateLock.unlock();
 		}
 	}
 	
 	/**
-	 * Shuts down the disruptor.
+	 * Sets the maximum time that {@link #shutdown()} waits for all submitted
+	 * events to be processed. Negative values disable the timeout (default).
+	 * @param timeout
+	 * the timeout
+	 * @param unit
+	 * the unit of the timeout
+	 * @return
+	 * this
+	 */
+	public DisruptorProvider<A> setShutdownTimeout(long timeout, TimeUnit unit) {
+		shutdownTimeoutNanos = timeout < 0 ? -1 : unit.toNanos(timeout);
+		return this;
+	}
+	
+	/**
+	 * @param unit
+	 * the unit to return the time in
+	 * @return
+	 * the time that the last shutdown waited for submitted events to be processed
+	 */
+	public long getLastDrainTime(TimeUnit unit) {
+		return unit.convert(lastDrainTimeNanos, TimeUnit.NANOSECONDS);
+	}
+	
+	/**
+	 * @return
+	 * the number of published or claimed events that have not been processed 
+	 * by all event handlers yet; 0 if the disruptor is not running
+	 */
+	public long getPendingEventCount() {
+		if (!isRunning) {
+			return 0;
+		}
+		// the ring buffer is assigned before the running flag gets set
+		RingBuffer<SingleUseEvent<A>> buffer = ringBuffer;
+		if (buffer == null) {
+			return 0;
+		}
+		return Math.max(0, buffer.getCursor() - buffer.getMinimumGatingSequence());
+	}
+	
+	/**
+	 * Shuts down the disruptor after all submitted events have been processed,
+	 * using the timeout set with {@link #setShutdownTimeout(long, TimeUnit)}.
 	 * @return
 	 * this
 	 */
 	public DisruptorProvider<A> shutdown() {
-		if (disruptor != null && isRunning) {
-			try {
-				Thread.sleep(250);
-			} catch (InterruptedException e) {
-				// do nothing
-			}
-//			Log.out(this, "shutting down disruptor..., %s", Thread.currentThread());
-			// Shuts down the disruptor
-			disruptor.shutdown();
-			
-			isRunning = false;
-			if (exceptions > 0) {
-				Log.warn(this, "%d event(s) ended by throwing an exception.", exceptions);
+		return shutdown(shutdownTimeoutNanos, TimeUnit.NANOSECONDS);
+	}
+	
+	/**
+	 * Shuts down the disruptor after all submitted events have been processed,
+	 * or after the given timeout expired. Waits for the event handler threads
+	 * to exit, unless the timeout expired. Then, the threads still finish the
+	 * batch of events that they are currently processing in the background, and
+	 * remaining events are not processed. The disruptor can not be started again
+	 * until these threads have exited, see {@link #isTerminated()} and
+	 * {@link #awaitTermination(long, TimeUnit)}.
+	 * @param timeout
+	 * the maximum time to wait for pending events; negative values mean no timeout
+	 * @param unit
+	 * the unit of the timeout
+	 * @return
+	 * this
+	 */
+	public DisruptorProvider<A> shutdown(long timeout, TimeUnit unit) {
+		stateLock.lock();
+		try {
+			if (disruptor != null && isRunning) {
+//				Log.out(this, "shutting down disruptor..., %s", Thread.currentThread());
+				// new submissions wait for the lock and restart the disruptor afterwards
+				isRunning = false;
+				awaitRunningSubmissions();
+				long start = System.nanoTime();
+				boolean drained = drain(start, timeout < 0 ? -1 : unit.toNanos(timeout));
+				lastDrainTimeNanos = System.nanoTime() - start;
+				if (!drained) {
+					Log.warn(this, "Timeout after %d ms: stopped waiting for %d pending event(s).", 
+							getLastDrainTime(TimeUnit.MILLISECONDS), 
+							ringBuffer.getCursor() - ringBuffer.getMinimumGatingSequence());
+				}
+				// stops the event handler threads
+				disruptor.halt();
+				if (drained) {
+					// the threads exit as soon as they notice the halt
+					awaitTerminationUninterruptibly();
+				} else {
+					Log.warn(this, "Handler threads are still running. No restart until they have finished.");
+				}
+				
+				if (exceptions > 0) {
+					Log.warn(this, "%d event(s) ended by throwing an exception.", exceptions);
+				}
 			}
+			cleanup();
+		} finally {
+			stateLock.unlock();
 		}
-		cleanup();
 		return this;
 	}
 	
+	/**
+	 * @return
+	 * whether all event handler threads have exited; always {@code false} while
+	 * the disruptor is running
+	 */
+	public boolean isTerminated() {
+		synchronized (handlerThreads) {
+			for (Thread thread : handlerThreads) {
+				if (thread.isAlive()) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Waits for the event handler threads of a timed out shutdown to exit.
+	 * @param timeout
+	 * the maximum time to wait
+	 * @param unit
+	 * the unit of the timeout
+	 * @return
+	 * whether all event handler threads have exited
+	 * @throws InterruptedException
+	 * if interrupted while waiting
+	 */
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		for (Thread thread : getHandlerThreads()) {
+			long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+			if (remainingMillis > 0) {
+				thread.join(remainingMillis);
+			}
+			if (thread.isAlive()) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private void awaitTerminationUninterruptibly() {
+		boolean interrupted = false;
+		for (Thread thread : getHandlerThreads()) {
+			while (thread.isAlive()) {
+				try {
+					thread.join();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	private List<Thread> getHandlerThreads() {
+		synchronized (handlerThreads) {
+			return new ArrayList<>(handlerThreads);
+		}
+	}
+	
+	/**
+	 * Waits until all event handlers have processed every published event.
+	 * @param start
+	 * the start time in nanoseconds
+	 * @param timeoutNanos
+	 * the timeout in nanoseconds; negative values mean no timeout
+	 * @return
+	 * whether all events have been processed
+	 */
+	private boolean drain(long start, long timeoutNanos) {
+		IdleBackoff backoff = new IdleBackoff();
+		// the cursor includes claimed, but not yet published sequences; 
+		// those get published by the submitting threads eventually
+		while (ringBuffer.getMinimumGatingSequence() < ringBuffer.getCursor()) {
+			if (timeoutNanos >= 0 && System.nanoTime() - start >= timeoutNanos) {
+				return false;
+			}
+			backoff.idle();
+		}
+		return true;
+	}
+	
 	/**
 	 * Submits an item to the disruptor. Starts the disruptor threads
 	 * if it is not running. If no handlers are connected, then this
-	 * will throw an exception.
+	 * will throw an exception. Multiple threads may submit items
+	 * concurrently, unless only a single writer has been declared via
+	 * {@link #setProducerType(boolean)}. While the disruptor is running,
+	 * submissions take no lock; they only update striped counters, which
+	 * let a shutdown wait for items that are being published.
 	 * @param item
 	 * the item to submit
 	 */
-	public synchronized void submit(A item) {
-		//avoid calling synchronized method call if already running
-		if (!isRunning) {
+	public void submit(A item) {
+		enterRunning();
+		try {
+			trackSubmissions(1);
+//			Log.out(this, "%s, submitting %s", Thread.currentThread(), item);
+			ringBuffer.publishEvent(DisruptorProvider::translate, item);
+		} finally {
+			exitedSubmissions.increment();
+		}
+	}
+	
+	/**
+	 * Submits multiple items to the disruptor. Claims ranges of sequences
+	 * of up to the buffer size at once and publishes each range as a whole,
+	 * such that consumers are only notified once per range.
+	 * {@code null} items are ignored.
+	 * @param items
+	 * the items to submit
+	 */
+	public void submitBatch(Collection<? extends A> items) {
+		List<A> nonNullItems = new ArrayList<>(items.size());
+		for (A item : items) {
+			if (item != null) {
+				nonNullItems.add(item);
+			}
+		}
+		if (nonNullItems.isEmpty()) {
+			return;
+		}
+		enterRunning();
+		try {
+			trackSubmissions(nonNullItems.size());
+			Iterator<A> iterator = nonNullItems.iterator();
+			int remaining = nonNullItems.size();
+			while (remaining > 0) {
+				int count = Math.min(remaining, ringBuffer.getBufferSize());
+				long hi = ringBuffer.next(count);
+				long lo = hi - (count - 1);
+				try {
+					for (long sequence = lo; sequence <= hi; ++sequence) {
+						translate(ringBuffer.get(sequence), sequence, iterator.next());
+					}
+				} finally {
+					ringBuffer.publish(lo, hi);
+				}
+				remaining -= count;
+			}
+		} finally {
+			exitedSubmissions.increment();
+		}
+	}
+	
+	private static <A> void translate(SingleUseEvent<A> event, long sequence, A item) {
+		event.set(item);
+		// handlers of worker pools get the sequence from the event
+		event.setSequence(sequence);
+	}
+	
+	/**
+	 * Registers a submission while the disruptor is running, and starts it if necessary.
+	 * The submission has to increment {@link #exitedSubmissions} after publishing.
+	 */
+	private void enterRunning() {
+		while (true) {
+			enteredSubmissions.increment();
+			// a shutdown clears the flag before it waits for registered submissions,
+			// so either the shutdown sees this submission or the submission sees the shutdown
+			if (isRunning) {
+				return;
+			}
+			exitedSubmissions.increment();
 			startIfNotRunning();
 		}
-		track();
-//		Log.out(this, "%s, submitting %s", Thread.currentThread(), item);
-		ringBuffer.publishEvent(Event::translate, item);
+	}
+
+	/**
+	 * Waits until all submissions that saw the disruptor running have published their items.
+	 * Requires {@link #isRunning} to be cleared beforehand.
+	 */
+	private void awaitRunningSubmissions() {
+		IdleBackoff backoff = new IdleBackoff();
+		while (true) {
+			// both counters only grow, so reading the exited submissions first
+			// can only report equal values if no submission was running in between
+			long exited = exitedSubmissions.sum();
+			if (enteredSubmissions.sum() == exited) {
+				return;
+			}
+			backoff.idle();
+		}
+	}
+	
+	private void trackSubmissions(int count) {
+		if (isTracking()) {
+			// trackers are not thread-safe
+			TrackingStrategy tracker = getTracker();
+			synchronized (tracker) {
+				for (int i = 0; i < count; ++i) {
+					track();
+				}
+			}
+		}
 	}
 
 	@Override
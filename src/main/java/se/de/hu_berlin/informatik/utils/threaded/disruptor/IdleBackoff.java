@@ -0,0 +1,30 @@
+package se.de.hu_berlin.informatik.utils.threaded.disruptor;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Waiting strategy for threads that poll for a condition. Yields the thread
+ * for the first iterations and parks it for increasing periods of up to
+ * one millisecond afterwards.
+ *
+ * @author Simon Heiden
+ */
+final class IdleBackoff {
+
+	private static final int YIELD_COUNT = 100;
+	private static final long MAX_PARK_NANOS = 1_000_000L;
+
+	private int idleCount = 0;
+
+	/**
+	 * Waits once, depending on the number of previous calls.
+	 */
+	void idle() {
+		if (++idleCount < YIELD_COUNT) {
+			Thread.yield();
+		} else {
+			LockSupport.parkNanos(Math.min(MAX_PARK_NANOS, 1_000L * (idleCount - YIELD_COUNT + 1)));
+		}
+	}
+
+}
@@ -1,21 +1,61 @@
 package se.de.hu_berlin.informatik.utils.threaded.disruptor;
 
+import java.util.List;
+
 public interface Multiplexer<B> extends Runnable {
 
 	/**
-	 * Sets the connected handlers that generate the output items that
-	 * shall be collected by this multiplexer. 
-	 * @param handlers
-	 * the handlers
+	 * Submits an output item that shall be processed by the multiplexer thread.
+	 * May be called by multiple threads concurrently. Only blocks if too many
+	 * submitted items are waiting for being processed.
+	 * If the given item is {@code null}, then this method has no effect.
+	 * @param item
+	 * the item to submit (may be {@code null})
+	 */
+	public void submitOutput(B item);
+
+	/**
+	 * @return
+	 * whether output items are processed in the order of the corresponding
+	 * input items; if so, producers have to use {@link #awaitOrderedSlot(long)}
+	 * and {@link #submitOrderedOutputs(long, List)} instead of {@link #submitOutput(Object)}
 	 */
-	public void connectHandlers(MultiplexerInput<B>[] handlers);
+	default public boolean isOrdered() {
+		return false;
+	}
+
+	/**
+	 * Waits until the outputs of the input item with the given sequence number
+	 * fit into the reorder window, i.e., until enough outputs of earlier input
+	 * items have been processed.
+	 * @param sequence
+	 * the sequence number of the input item (starting at 0)
+	 */
+	default public void awaitOrderedSlot(long sequence) {
+		// no reordering by default
+	}
+
+	/**
+	 * Submits all output items of the input item with the given sequence number.
+	 * Has to be called exactly once for each input item, even if no output items
+	 * were produced. May be called by multiple threads concurrently.
+	 * @param sequence
+	 * the sequence number of the input item (starting at 0)
+	 * @param items
+	 * the output items (not {@code null})
+	 * @throws UnsupportedOperationException
+	 * if this multiplexer does not preserve the order of output items
+	 */
+	default public void submitOrderedOutputs(long sequence, List<B> items) {
+		throw new UnsupportedOperationException("Multiplexer does not preserve the order of output items.");
+	}
 
 	/**
 	 * Creates a new multiplexer thread if a running thread does not exists.
 	 * Then starts the created thread.
 	 */
 	public void start();
-	
+
 	/**
 	 * @return
 	 * whether this multiplexer's thread is running
@@ -24,27 +64,10 @@ public interface Multiplexer<B> extends Runnable {
 
 	/**
 	 * Shuts down the multiplexer thread. Waits until the thread
-	 * has collected all pending output items.
+	 * has processed all submitted output items.
 	 */
 	public void shutdown();
-	
-	/**
-	 * Checks for any pending items and processes each item that is valid.
-	 * @param handlers
-	 * the connected handlers
-	 */
-	default public void processPendingItems(MultiplexerInput<B>[] handlers) {
-		for (int i = 0; i < handlers.length; ++i) {
-			//check for validity
-			if (handlers[i].outputItemIsValid()) {
-				//get the output and notify the handler
-				B result = handlers[i].getValidOutputAndNotifyHandler();
-				//process valid item
-				processNewOutputItem(result);
-			}
-		}
-	}
-	
+
 	/**
 	 * Processes an item of type B. Has to be implemented by any
 	 * class implementing this interface.
@@ -52,5 +75,5 @@ public interface Multiplexer<B> extends Runnable {
 	 * the item to process
 	 */
 	public void processNewOutputItem(B item);
-	
+
 }
@@ -0,0 +1,69 @@
+package se.de.hu_berlin.informatik.utils.threaded.disruptor;
+
+import java.util.concurrent.TimeUnit;
+
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.BusySpinWaitStrategy;
+import com.lmax.disruptor.PhasedBackoffWaitStrategy;
+import com.lmax.disruptor.SleepingWaitStrategy;
+import com.lmax.disruptor.TimeoutBlockingWaitStrategy;
+import com.lmax.disruptor.WaitStrategy;
+import com.lmax.disruptor.YieldingWaitStrategy;
+
+/**
+ * The strategies that event handler threads of a {@link DisruptorProvider} may use to
+ * wait for new events. Strategies with lower latency use more CPU time while waiting.
+ *
+ * @author Simon Heiden
+ */
+public enum WaitStrategyType {
+
+	/**
+	 * uses a lock and a condition variable; lowest CPU usage, but highest latency
+	 */
+	BLOCKING,
+	/**
+	 * spins, then yields, then sleeps for short periods; low CPU usage, suited for batch stages
+	 */
+	SLEEPING,
+	/**
+	 * spins, then yields the thread; low latency, but occupies the CPU
+	 */
+	YIELDING,
+	/**
+	 * spins constantly; lowest latency, but occupies one CPU core per waiting thread
+	 */
+	BUSY_SPIN,
+	/**
+	 * spins for 1 ms, then yields for 1 ms, then falls back to a lock
+	 */
+	PHASED_BACKOFF,
+	/**
+	 * like {@link #BLOCKING}, but wakes up every 100 ms
+	 */
+	TIMEOUT_BLOCKING;
+
+	/**
+	 * @return
+	 * a new wait strategy instance of this type
+	 */
+	public WaitStrategy newInstance() {
+		switch (this) {
+		case BLOCKING:
+			return new BlockingWaitStrategy();
+		case SLEEPING:
+			return new SleepingWaitStrategy();
+		case YIELDING:
+			return new YieldingWaitStrategy();
+		case BUSY_SPIN:
+			return new BusySpinWaitStrategy();
+		case PHASED_BACKOFF:
+			return PhasedBackoffWaitStrategy.withLock(1, 1, TimeUnit.MILLISECONDS);
+		case TIMEOUT_BLOCKING:
+			return new TimeoutBlockingWaitStrategy(100, TimeUnit.MILLISECONDS);
+		default:
+			throw new IllegalStateException("Unknown wait strategy type: " + name());
+		}
+	}
+
+}
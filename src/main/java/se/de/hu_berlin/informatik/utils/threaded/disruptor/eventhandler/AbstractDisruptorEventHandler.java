@@ -1,6 +1,7 @@
 package se.de.hu_berlin.informatik.utils.threaded.disruptor.eventhandler;
 
 import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.WorkHandler;
 
 import se.de.hu_berlin.informatik.utils.optionparser.OptionCarrier;
 import se.de.hu_berlin.informatik.utils.processors.BasicComponent;
@@ -19,12 +20,15 @@ import se.de.hu_berlin.informatik.utils.tracking.Trackable;
  * is set, then access to threads will be unrestricted with practically no additional 
  * costs (no synchronization will take place). 
  * 
+ * <p> Handlers may also be used as a worker pool, see {@link DisruptorProvider#setWorkerPool(boolean)}.
+ * Then, each event is passed to exactly one idle handler.
+ * 
  * @author Simon Heiden
  * @param <A>
  * the type of elements that shall be processed by this handler
  * @see DisruptorProvider
  */
-public abstract class AbstractDisruptorEventHandler<A> extends BasicComponent implements EventHandler<SingleUseEvent<A>>, OptionCarrier, Trackable {
+public abstract class AbstractDisruptorEventHandler<A> extends BasicComponent implements EventHandler<SingleUseEvent<A>>, WorkHandler<SingleUseEvent<A>>, OptionCarrier, Trackable {
 
     private ThreadLimit limit = ThreadLimitDummy.getInstance();
 	private boolean singleConsumer = false;
@@ -55,6 +59,31 @@ public abstract class AbstractDisruptorEventHandler<A> extends BasicComponent im
     
     @Override
     public void onEvent(SingleUseEvent<A> event, long sequence, boolean endOfBatch) throws Exception {
+    	processClaimedEvent(event, sequence);
+	}
+    
+    /**
+     * Processes an event that has been assigned to this handler by a worker pool.
+     * @param event
+     * the event
+     * @throws Exception
+     * if an error occurs
+     */
+    @Override
+    public void onEvent(SingleUseEvent<A> event) throws Exception {
+    	processClaimedEvent(event, event.getSequence());
+    }
+    
+    /**
+     * Processes an event that has to be processed by this handler.
+     * @param event
+     * the event
+     * @param sequence
+     * the sequence of the event in the ring buffer
+     * @throws Exception
+     * if an error occurs
+     */
+    protected void processClaimedEvent(SingleUseEvent<A> event, long sequence) throws Exception {
     	limit.acquireSlot();
 //		Log.out(this, event.get().toString() + " " + sequence);
     	try {
@@ -63,7 +92,7 @@ public abstract class AbstractDisruptorEventHandler<A> extends BasicComponent im
     	} finally {
     		limit.releaseSlot();
     	}
-	}
+    }
 	
     /**
      * @param isSingle
@@ -13,6 +13,8 @@ import java.util.concurrent.atomic.AtomicBoolean;
 public class MultiUseEvent<T> implements Event<T> {
 	
 	private T item;
+	// the sequence in the ring buffer
+	private long sequence = -1;
 	
 	private AtomicBoolean isFirstAccess = new AtomicBoolean(false);
 
@@ -25,6 +27,18 @@ public class MultiUseEvent<T> implements Event<T> {
 	public void setWithoutValidation(T item) {
 		this.item = item;
 	}
+	
+	public void setSequence(long sequence) {
+		this.sequence = sequence;
+	}
+	
+	/**
+	 * @return
+	 * the sequence of this event in the ring buffer, if it has been set on publication
+	 */
+	public long getSequence() {
+		return sequence;
+	}
 
 	@Override
 	public T get() {
@@ -0,0 +1,104 @@
+/**
+ * 
+ */
+package se.de.hu_berlin.informatik.utils.tm.modules.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+
+import org.junit.Test;
+
+import se.de.hu_berlin.informatik.utils.compression.BitPacker;
+import se.de.hu_berlin.informatik.utils.compression.BitUnpacker;
+
+/**
+ * @author Simon Heiden
+ *
+ */
+public class BitPackerTest {
+
+	@Test
+	public void testLayoutMatchesBitwiseEncoding() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BitPacker packer = new BitPacker(out);
+		
+		// 101 | 001 | 111 | 000 | 11
+		packer.write(5, 3);
+		packer.write(1, 3);
+		packer.write(7, 3);
+		packer.write(0, 3);
+		packer.write(3, 2);
+		packer.finish();
+		
+		assertArrayEquals(new byte[] { (byte) 0b10100111, (byte) 0b10001100 }, out.toByteArray());
+	}
+	
+	@Test
+	public void testRoundTripAllBitWidths() throws Exception {
+		for (int bits = 1; bits <= 32; ++bits) {
+			int[] values = new int[1000];
+			for (int i = 0; i < values.length; ++i) {
+				values[i] = (int) ((i * 2654435761L) & ((1L << bits) - 1));
+			}
+			
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			BitPacker packer = new BitPacker(out, 16);
+			packer.writeAll(values, 0, 500, bits);
+			for (int i = 500; i < values.length; ++i) {
+				packer.write(values[i], bits);
+			}
+			packer.finish();
+			assertEquals((values.length * bits + 7) / 8, out.size());
+			
+			int[] actual = new int[values.length];
+			BitUnpacker unpacker = new BitUnpacker(out.toByteArray(), 0);
+			for (int i = 0; i < 500; ++i) {
+				actual[i] = unpacker.read(bits);
+			}
+			unpacker.readAll(actual, 500, 500, bits);
+			assertArrayEquals("bits: " + bits, values, actual);
+		}
+	}
+	
+	@Test
+	public void testThirtyOneBitValuesKeepLowestBit() throws Exception {
+		// the former encoders masked 31 bit values with (int) Math.pow(2, 31) - 1 = 0x7FFFFFFE
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BitPacker packer = new BitPacker(out);
+		packer.write(Integer.MAX_VALUE, 31);
+		packer.write(1, 1);
+		packer.write(0x40000001, 31);
+		packer.write(1, 31);
+		packer.finish();
+		
+		byte[] bytes = out.toByteArray();
+		assertEquals(-1, bytes[0]);
+		assertEquals(-1, bytes[1]);
+		assertEquals(-1, bytes[2]);
+		assertEquals(-1, bytes[3]);
+		
+		BitUnpacker unpacker = new BitUnpacker(bytes, 0);
+		assertEquals(Integer.MAX_VALUE, unpacker.read(31));
+		assertEquals(1, unpacker.read(1));
+		assertEquals(0x40000001, unpacker.read(31));
+		assertEquals(1, unpacker.read(31));
+	}
+	
+	@Test
+	public void testRoundTripLongs() throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BitPacker packer = new BitPacker(out);
+		packer.writeLong(Long.MAX_VALUE, 63);
+		packer.writeLong(4294967295L, 33);
+		packer.writeLong(1, 1);
+		packer.finish();
+		
+		BitUnpacker unpacker = new BitUnpacker(new java.io.ByteArrayInputStream(out.toByteArray()), 8);
+		assertEquals(Long.MAX_VALUE, unpacker.readLong(63));
+		assertEquals(4294967295L, unpacker.readLong(33));
+		assertEquals(1, unpacker.readLong(1));
+		assertFalse(unpacker.hasRemaining(8));
+	}
+	
+}
@@ -0,0 +1,128 @@
+/**
+ * 
+ */
+package se.de.hu_berlin.informatik.utils.tm.modules.tests;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import se.de.hu_berlin.informatik.utils.compression.BlockCompressedByteArrayToIntArraysProcessor;
+import se.de.hu_berlin.informatik.utils.compression.BufferedBlockCompressedByteArrayToIntArrayQueueProcessor;
+import se.de.hu_berlin.informatik.utils.compression.BufferedIntArraysToBlockCompressedByteArrayProcessor;
+import se.de.hu_berlin.informatik.utils.compression.IntArraysToBlockCompressedByteArrayProcessor;
+import se.de.hu_berlin.informatik.utils.compression.IntArraysToCompressedByteArrayProcessor;
+import se.de.hu_berlin.informatik.utils.compression.ziputils.ZipFileWrapper;
+import se.de.hu_berlin.informatik.utils.miscellaneous.TestSettings;
+
+/**
+ * @author Simon Heiden
+ *
+ */
+public class BlockCompressionTest extends TestSettings {
+
+	@Before
+	public void setUp() throws Exception {
+		deleteTestOutputs();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		deleteTestOutputs();
+	}
+	
+	// small values with rare outliers
+	private static int[][] sequences(int count, int fixedLength) {
+		Random random = new Random(count + fixedLength);
+		int[][] sequences = new int[count][];
+		for (int i = 0; i < count; ++i) {
+			sequences[i] = new int[fixedLength > 0 ? fixedLength : random.nextInt(300)];
+			for (int j = 0; j < sequences[i].length; ++j) {
+				sequences[i][j] = random.nextInt(200) == 0 ? 1 << 24 : random.nextInt(16);
+			}
+		}
+		return sequences;
+	}
+	
+	private static byte[] encode(int[][] sequences, int sequenceLength, boolean patched) {
+		IntArraysToBlockCompressedByteArrayProcessor encoder = 
+				new IntArraysToBlockCompressedByteArrayProcessor(sequenceLength, patched);
+		for (int[] sequence : sequences) {
+			encoder.processItem(sequence);
+		}
+		return encoder.getResultFromCollectedItems();
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		for (boolean patched : new boolean[] { false, true }) {
+			int[][] sequences = sequences(300, 0);
+			sequences[1] = new int[0];
+			sequences[2] = new int[] { Integer.MIN_VALUE, -1, 0, Integer.MAX_VALUE };
+			assertArrayEquals(sequences, new BlockCompressedByteArrayToIntArraysProcessor()
+					.processItem(encode(sequences, 0, patched)));
+			
+			sequences = sequences(100, 13);
+			assertArrayEquals(sequences, new BlockCompressedByteArrayToIntArraysProcessor()
+					.processItem(encode(sequences, 13, patched)));
+		}
+	}
+	
+	@Test
+	public void testIntermediateResults() throws Exception {
+		int[][] sequences = sequences(200, 0);
+		IntArraysToBlockCompressedByteArrayProcessor encoder = new IntArraysToBlockCompressedByteArrayProcessor(true);
+		for (int i = 0; i < 150; ++i) {
+			encoder.processItem(sequences[i]);
+		}
+		int[][] decoded = new BlockCompressedByteArrayToIntArraysProcessor().processItem(encoder.getResultFromCollectedItems());
+		assertEquals(150, decoded.length);
+		for (int i = 150; i < 200; ++i) {
+			encoder.processItem(sequences[i]);
+		}
+		assertArrayEquals(encode(sequences, 0, true), encoder.getResultFromCollectedItems());
+	}
+	
+	@Test
+	public void testOutliersOnlyAffectTheirBlock() throws Exception {
+		int[][] sequences = sequences(100, 0);
+		IntArraysToCompressedByteArrayProcessor encoder = new IntArraysToCompressedByteArrayProcessor(1 << 24, true);
+		for (int[] sequence : sequences) {
+			encoder.processItem(sequence);
+		}
+		int globalWidthSize = encoder.getResultFromCollectedItems().length;
+		int blockSize = encode(sequences, 0, false).length;
+		int patchedSize = encode(sequences, 0, true).length;
+		
+		assertTrue(blockSize < globalWidthSize);
+		assertTrue(2 * patchedSize < globalWidthSize);
+	}
+	
+	@Test
+	public void testZipFileRoundTrip() throws Exception {
+		Path zipFilePath = Paths.get(getStdTestDir(), "block.zip");
+		int[][] sequences = sequences(300, 0);
+		
+		BufferedIntArraysToBlockCompressedByteArrayProcessor encoder = 
+				new BufferedIntArraysToBlockCompressedByteArrayProcessor(zipFilePath, "0", true, true);
+		for (int[] sequence : sequences) {
+			encoder.processItem(sequence);
+		}
+		encoder.getResultFromCollectedItems();
+		ZipFileWrapper zipFileWrapper = ZipFileWrapper.getZipFileWrapper(zipFilePath);
+		zipFileWrapper.close();
+		
+		Queue<int[]> result = new BufferedBlockCompressedByteArrayToIntArrayQueueProcessor(
+				zipFileWrapper, new ArrayDeque<>()).processItem("0");
+		assertArrayEquals(sequences, result.toArray(new int[0][]));
+	}
+
+}
@@ -0,0 +1,137 @@
+/**
+ * 
+ */
+package se.de.hu_berlin.informatik.utils.tm.modules.tests;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import se.de.hu_berlin.informatik.utils.compression.BufferedCompressedByteArrayToIntArrayQueueProcessor;
+import se.de.hu_berlin.informatik.utils.compression.BufferedCompressedIntArrayIterator;
+import se.de.hu_berlin.informatik.utils.compression.BufferedIntArraysToCompressedByteArrayProcessor;
+import se.de.hu_berlin.informatik.utils.compression.ziputils.ZipFileWrapper;
+import se.de.hu_berlin.informatik.utils.miscellaneous.TestSettings;
+
+/**
+ * @author Simon Heiden
+ *
+ */
+public class BufferedCompressedIntArrayIteratorTest extends TestSettings {
+
+	@Before
+	public void setUp() throws Exception {
+		deleteTestOutputs();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		deleteTestOutputs();
+	}
+	
+	private static int[][] sequences(int count, int fixedLength) {
+		Random random = new Random(count + fixedLength);
+		int[][] sequences = new int[count][];
+		for (int i = 0; i < count; ++i) {
+			sequences[i] = new int[fixedLength > 0 ? fixedLength : random.nextInt(40)];
+			for (int j = 0; j < sequences[i].length; ++j) {
+				sequences[i][j] = random.nextInt(1000);
+			}
+		}
+		return sequences;
+	}
+	
+	private static ZipFileWrapper write(String name, int[][] sequences, int sequenceLength) throws Exception {
+		Path zipFilePath = Paths.get(getStdTestDir(), name + ".zip");
+		BufferedIntArraysToCompressedByteArrayProcessor encoder = 
+				new BufferedIntArraysToCompressedByteArrayProcessor(zipFilePath, name, true, 999, sequenceLength, true);
+		for (int[] sequence : sequences) {
+			encoder.processItem(sequence);
+		}
+		encoder.getResultFromCollectedItems();
+		ZipFileWrapper zipFileWrapper = ZipFileWrapper.getZipFileWrapper(zipFilePath);
+		zipFileWrapper.close();
+		return zipFileWrapper;
+	}
+
+	@Test
+	public void testIteratorWithBuffer() throws Exception {
+		int[][] sequences = sequences(500, 0);
+		ZipFileWrapper zipFileWrapper = write("iterator", sequences, 0);
+		
+		int[] buffer = new int[4];
+		int i = 0;
+		try (BufferedCompressedIntArrayIterator iterator = 
+				new BufferedCompressedIntArrayIterator(zipFileWrapper, "iterator", true)) {
+			while (iterator.hasNext()) {
+				buffer = iterator.next(buffer);
+				assertArrayEquals(sequences[i++], Arrays.copyOf(buffer, iterator.getLength()));
+			}
+		}
+		assertEquals(sequences.length, i);
+		
+		Queue<int[]> queue = new BufferedCompressedByteArrayToIntArrayQueueProcessor(
+				zipFileWrapper, true, new ArrayDeque<>()).processItem("iterator");
+		assertArrayEquals(sequences, queue.toArray(new int[0][]));
+	}
+	
+	@Test
+	public void testStreams() throws Exception {
+		int[][] sequences = sequences(300, 5);
+		ZipFileWrapper zipFileWrapper = write("streams", sequences, 5);
+		
+		BufferedCompressedIntArrayIterator iterator = new BufferedCompressedIntArrayIterator(zipFileWrapper, "streams", true);
+		assertArrayEquals(sequences, iterator.stream().toArray(int[][]::new));
+		assertFalse(iterator.hasNext());
+		
+		long expectedSum = Arrays.stream(sequences).flatMapToInt(Arrays::stream).asLongStream().sum();
+		iterator = new BufferedCompressedIntArrayIterator(zipFileWrapper, "streams", true);
+		assertEquals(expectedSum, iterator.intStream().asLongStream().sum());
+		
+		// only decode as far as needed
+		iterator = new BufferedCompressedIntArrayIterator(zipFileWrapper, "streams", true);
+		assertArrayEquals(sequences[0], iterator.stream().findFirst().get());
+		iterator.close();
+		assertFalse(iterator.hasNext());
+	}
+
+	@Test
+	public void testInterleavedEncodersForSameZipFile() throws Exception {
+		Path zipFilePath = Paths.get(getStdTestDir(), "interleaved.zip");
+		int[][] sequences1 = sequences(200, 0);
+		int[][] sequences2 = sequences(100, 3);
+		
+		// both entries are written at the same time without blocking each other
+		BufferedIntArraysToCompressedByteArrayProcessor encoder1 = 
+				new BufferedIntArraysToCompressedByteArrayProcessor(zipFilePath, "1", true, 999, true);
+		BufferedIntArraysToCompressedByteArrayProcessor encoder2 = 
+				new BufferedIntArraysToCompressedByteArrayProcessor(zipFilePath, "2", false, 999, 3, true);
+		for (int i = 0; i < sequences1.length; ++i) {
+			encoder1.processItem(sequences1[i]);
+			if (i < sequences2.length) {
+				encoder2.processItem(sequences2[i]);
+			}
+		}
+		encoder2.getResultFromCollectedItems();
+		encoder1.getResultFromCollectedItems();
+		ZipFileWrapper zipFileWrapper = ZipFileWrapper.getZipFileWrapper(zipFilePath);
+		zipFileWrapper.close();
+		
+		try (BufferedCompressedIntArrayIterator iterator = new BufferedCompressedIntArrayIterator(zipFileWrapper, "1", true)) {
+			assertArrayEquals(sequences1, iterator.stream().toArray(int[][]::new));
+		}
+		try (BufferedCompressedIntArrayIterator iterator = new BufferedCompressedIntArrayIterator(zipFileWrapper, "2", true)) {
+			assertArrayEquals(sequences2, iterator.stream().toArray(int[][]::new));
+		}
+	}
+
+}
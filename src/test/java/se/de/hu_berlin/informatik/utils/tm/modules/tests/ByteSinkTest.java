@@ -0,0 +1,111 @@
+/**
+ * 
+ */
+package se.de.hu_berlin.informatik.utils.tm.modules.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import se.de.hu_berlin.informatik.utils.compression.ByteSink;
+import se.de.hu_berlin.informatik.utils.compression.CompressedByteArrayToIntArraysProcessor;
+import se.de.hu_berlin.informatik.utils.compression.IntArraysToCompressedByteArrayProcessor;
+
+/**
+ * @author Simon Heiden
+ *
+ */
+public class ByteSinkTest {
+
+	private static byte[] testBytes(int length) {
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; ++i) {
+			bytes[i] = (byte) (i * 31);
+		}
+		return bytes;
+	}
+	
+	@Test
+	public void testGrowingOverSeveralChunks() throws Exception {
+		for (boolean direct : new boolean[] { false, true }) {
+			ByteSink sink = new ByteSink(16, direct);
+			byte[] expected = testBytes(1000);
+			sink.write(expected, 0, 10);
+			for (int i = 10; i < 100; ++i) {
+				sink.write(expected[i]);
+			}
+			sink.write(expected, 100, 900);
+			
+			assertEquals(1000, sink.size());
+			assertArrayEquals(expected, sink.toByteArray());
+			
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			sink.writeTo(out);
+			assertArrayEquals(expected, out.toByteArray());
+			
+			ByteBuffer view = sink.asReadOnlyByteBuffer();
+			assertTrue(view.isReadOnly());
+			assertEquals(1000, view.remaining());
+			for (int i = 0; i < expected.length; ++i) {
+				assertEquals(expected[i], view.get(i));
+			}
+		}
+	}
+	
+	@Test
+	public void testWriteLargerThanMaxChunkSize() throws Exception {
+		ByteSink sink = new ByteSink(16, false);
+		sink.write(testBytes(10));
+		byte[] expected = testBytes(ByteSink.MAX_CHUNK_SIZE + 1000);
+		sink.write(expected, 0, expected.length);
+		
+		assertEquals(10 + expected.length, sink.size());
+		ByteBuffer view = sink.asReadOnlyByteBuffer();
+		for (int i = 0; i < 10; ++i) {
+			assertEquals(expected[i], view.get(i));
+		}
+		for (int i = 0; i < expected.length; i += 997) {
+			assertEquals(expected[i], view.get(10 + i));
+		}
+		assertEquals(expected[expected.length - 1], view.get(view.limit() - 1));
+	}
+	
+	@Test
+	public void testSetAndTruncate() throws Exception {
+		ByteSink sink = new ByteSink(16, false);
+		sink.write(testBytes(100), 0, 100);
+		sink.set(5, (byte) 42);
+		sink.set(99, (byte) 43);
+		sink.truncate(20);
+		sink.write(7);
+		
+		byte[] expected = new byte[21];
+		System.arraycopy(testBytes(20), 0, expected, 0, 20);
+		expected[5] = 42;
+		expected[20] = 7;
+		assertArrayEquals(expected, sink.toByteArray());
+	}
+	
+	@Test
+	public void testEncoderWithOffHeapSink() throws Exception {
+		IntArraysToCompressedByteArrayProcessor encoder = 
+				new IntArraysToCompressedByteArrayProcessor(1000, 0, false, new ByteSink(16, true));
+		for (int i = 1; i < 100; ++i) {
+			encoder.processItem(new int[] { i, 10 * i, 1000 - i });
+		}
+		
+		ByteBuffer view = encoder.getResultAsByteBuffer();
+		byte[] bytes = encoder.getResultFromCollectedItems();
+		assertEquals(bytes.length, view.remaining());
+		
+		int[][] actual = new CompressedByteArrayToIntArraysProcessor(false).processItem(bytes);
+		assertEquals(99, actual.length);
+		for (int i = 1; i < 100; ++i) {
+			assertArrayEquals(new int[] { i, 10 * i, 1000 - i }, actual[i-1]);
+		}
+	}
+	
+}
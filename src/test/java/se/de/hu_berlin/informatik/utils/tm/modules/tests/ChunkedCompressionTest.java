@@ -0,0 +1,77 @@
+/**
+ * 
+ */
+package se.de.hu_berlin.informatik.utils.tm.modules.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import se.de.hu_berlin.informatik.utils.compression.ChunkedCompressedByteArrayToIntArraysProcessor;
+import se.de.hu_berlin.informatik.utils.compression.ChunkedCompressedByteArrayToIntSequencesProcessor;
+import se.de.hu_berlin.informatik.utils.compression.IntArraysToChunkedCompressedByteArrayProcessor;
+
+/**
+ * @author Simon Heiden
+ *
+ */
+public class ChunkedCompressionTest {
+
+	private static List<int[]> sequences(int count, int fixedLength, boolean containsZero) {
+		Random random = new Random(count + fixedLength);
+		List<int[]> sequences = new ArrayList<>(count);
+		for (int i = 0; i < count; ++i) {
+			int[] sequence = new int[fixedLength > 0 ? fixedLength : random.nextInt(30)];
+			for (int j = 0; j < sequence.length; ++j) {
+				sequence[j] = containsZero ? random.nextInt(5000) : 1 + random.nextInt(4999);
+			}
+			sequences.add(sequence);
+		}
+		return sequences;
+	}
+	
+	@Test
+	public void testRoundTrip() throws Exception {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			List<int[]> sequences = sequences(1000, 0, true);
+			byte[] encoded = new IntArraysToChunkedCompressedByteArrayProcessor(4999, 0, true, 64, pool)
+					.processItem(sequences);
+			assertArrayEquals(sequences.toArray(new int[0][]), 
+					new ChunkedCompressedByteArrayToIntArraysProcessor(true, pool).processItem(encoded));
+			
+			List<List<Integer>> lists = new ChunkedCompressedByteArrayToIntSequencesProcessor(true, pool).processItem(encoded);
+			assertEquals(sequences.size(), lists.size());
+			for (int i = 0; i < sequences.size(); ++i) {
+				assertArrayEquals(sequences.get(i), lists.get(i).stream().mapToInt(Integer::intValue).toArray());
+			}
+			
+			sequences = sequences(777, 6, false);
+			encoded = new IntArraysToChunkedCompressedByteArrayProcessor(4999, 6, false, 100, pool)
+					.processItem(sequences);
+			assertArrayEquals(sequences.toArray(new int[0][]), 
+					new ChunkedCompressedByteArrayToIntArraysProcessor(false).processItem(encoded));
+		} finally {
+			pool.shutdown();
+		}
+	}
+	
+	@Test
+	public void testEmptyAndSingleChunk() throws Exception {
+		byte[] encoded = new IntArraysToChunkedCompressedByteArrayProcessor(10, 0, false)
+				.processItem(new ArrayList<>());
+		assertEquals(0, new ChunkedCompressedByteArrayToIntArraysProcessor(false).processItem(encoded).length);
+		
+		List<int[]> sequences = Arrays.asList(new int[] { 1, 2, 3 }, new int[] {}, new int[] { 10 });
+		encoded = new IntArraysToChunkedCompressedByteArrayProcessor(10, 0, false).processItem(sequences);
+		assertArrayEquals(sequences.toArray(new int[0][]), 
+				new ChunkedCompressedByteArrayToIntArraysProcessor(false).processItem(encoded));
+	}
+
+}
@@ -186,6 +186,25 @@ public class CompressedByteArrayToIntSequenceModuleTest {
 		assertEquals(63, sequence.get(1).intValue());
 	}
 	
+	@Test
+	public void testThirtyOneBitSeqLength3() throws Exception {
+		// odd values with 31 bits lost their lowest bit in former versions
+		Module<List<Integer>, byte[]> module = new IntSequencesToCompressedByteArrayProcessor(Integer.MAX_VALUE - 1, 3, false).asModule();
+		
+		List<Integer> temp = new ArrayList<>();
+		temp.add(Integer.MAX_VALUE - 1);temp.add(0x40000001);temp.add(1);
+		module.submit(temp);
+		
+		List<List<Integer>> actual = decoder.submit(module.getResultFromCollectedItems()).getResult();
+		
+		assertEquals(1, actual.size());
+		List<Integer> sequence = actual.get(0);
+		assertEquals(3, sequence.size());
+		assertEquals(Integer.MAX_VALUE - 1, sequence.get(0).intValue());
+		assertEquals(0x40000001, sequence.get(1).intValue());
+		assertEquals(1, sequence.get(2).intValue());
+	}
+	
 	@Test
 	public void testDelimiterMethod() throws Exception {
 		Module<List<Integer>, byte[]> module = new IntSequencesToCompressedByteArrayProcessor(7, false).asModule();
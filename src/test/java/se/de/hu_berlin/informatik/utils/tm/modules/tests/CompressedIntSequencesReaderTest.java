@@ -0,0 +1,89 @@
+/**
+ * 
+ */
+package se.de.hu_berlin.informatik.utils.tm.modules.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import se.de.hu_berlin.informatik.utils.compression.CompressedByteArrayToIntArraysProcessor;
+import se.de.hu_berlin.informatik.utils.compression.CompressedIntSequencesReader;
+import se.de.hu_berlin.informatik.utils.compression.IntArraysToCompressedByteArrayProcessor;
+
+/**
+ * @author Simon Heiden
+ *
+ */
+public class CompressedIntSequencesReaderTest {
+
+	private static int[][] randomSequences(int count, int fixedLength, int maxValue, boolean containsZero) {
+		Random random = new Random(count + fixedLength);
+		int[][] sequences = new int[count][];
+		for (int i = 0; i < count; ++i) {
+			sequences[i] = new int[fixedLength > 0 ? fixedLength : random.nextInt(20)];
+			for (int j = 0; j < sequences[i].length; ++j) {
+				sequences[i][j] = containsZero ? random.nextInt(maxValue + 1) : 1 + random.nextInt(maxValue);
+			}
+		}
+		return sequences;
+	}
+	
+	private static byte[] encode(int[][] sequences, int maxValue, int sequenceLength, boolean containsZero, int indexInterval) {
+		IntArraysToCompressedByteArrayProcessor encoder = 
+				new IntArraysToCompressedByteArrayProcessor(maxValue, sequenceLength, containsZero, indexInterval);
+		for (int[] sequence : sequences) {
+			encoder.processItem(sequence);
+		}
+		return encoder.getResultFromCollectedItems();
+	}
+	
+	private static void assertRandomAccess(int[][] sequences, CompressedIntSequencesReader reader) {
+		assertEquals(sequences.length, reader.size());
+		for (int i = sequences.length - 1; i >= 0; --i) {
+			assertArrayEquals(sequences[i], reader.getSequence(i));
+		}
+		int[][] range = reader.getRange(17, 150);
+		for (int i = 0; i < range.length; ++i) {
+			assertArrayEquals(sequences[17 + i], range[i]);
+		}
+		assertEquals(0, reader.getRange(42, 42).length);
+	}
+	
+	@Test
+	public void testDelimiterModeWithIndex() throws Exception {
+		int[][] sequences = randomSequences(500, 0, 1000, true);
+		byte[] encoded = encode(sequences, 1000, 0, true, 8);
+		
+		assertRandomAccess(sequences, new CompressedIntSequencesReader(encoded, true));
+		
+		// the index trailer is ignored by the sequential decoder
+		int[][] decoded = new CompressedByteArrayToIntArraysProcessor(true).processItem(encoded);
+		assertArrayEquals(sequences, decoded);
+	}
+	
+	@Test
+	public void testDelimiterModeWithoutIndex() throws Exception {
+		int[][] sequences = randomSequences(500, 0, 77, false);
+		byte[] encoded = encode(sequences, 77, 0, false, 0);
+		
+		assertRandomAccess(sequences, new CompressedIntSequencesReader(encoded, false));
+	}
+	
+	@Test
+	public void testFixedLengthMode() throws Exception {
+		int[][] sequences = randomSequences(300, 7, 12345, false);
+		byte[] encoded = encode(sequences, 12345, 7, false, 0);
+		
+		assertRandomAccess(sequences, new CompressedIntSequencesReader(encoded, false));
+	}
+	
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testOutOfRange() throws Exception {
+		int[][] sequences = randomSequences(10, 3, 10, false);
+		new CompressedIntSequencesReader(encode(sequences, 10, 3, false, 0), false).getSequence(10);
+	}
+
+}
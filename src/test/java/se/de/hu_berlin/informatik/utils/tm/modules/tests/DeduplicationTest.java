@@ -0,0 +1,95 @@
+/**
+ * 
+ */
+package se.de.hu_berlin.informatik.utils.tm.modules.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import se.de.hu_berlin.informatik.utils.compression.CompressedByteArrayToIntArraysProcessor;
+import se.de.hu_berlin.informatik.utils.compression.CompressedByteArrayToIntSequencesProcessor;
+import se.de.hu_berlin.informatik.utils.compression.IntArraysToCompressedByteArrayProcessor;
+import se.de.hu_berlin.informatik.utils.compression.IntSequencesToCompressedByteArrayProcessor;
+
+/**
+ * @author Simon Heiden
+ *
+ */
+public class DeduplicationTest {
+
+	// many repetitions of a few distinct sequences
+	private static int[][] redundantSequences(int count, int fixedLength) {
+		Random random = new Random(count);
+		int[][] distinct = new int[20][];
+		for (int i = 0; i < distinct.length; ++i) {
+			distinct[i] = new int[fixedLength > 0 ? fixedLength : random.nextInt(100)];
+			for (int j = 0; j < distinct[i].length; ++j) {
+				distinct[i][j] = 1 + random.nextInt(2000);
+			}
+		}
+		int[][] sequences = new int[count][];
+		for (int i = 0; i < count; ++i) {
+			sequences[i] = distinct[random.nextInt(distinct.length)].clone();
+		}
+		return sequences;
+	}
+	
+	@Test
+	public void testIntArrays() throws Exception {
+		for (int sequenceLength : new int[] { 0, 8 }) {
+			int[][] sequences = redundantSequences(1000, sequenceLength);
+			IntArraysToCompressedByteArrayProcessor plainEncoder = 
+					new IntArraysToCompressedByteArrayProcessor(2000, sequenceLength, true);
+			IntArraysToCompressedByteArrayProcessor dedupEncoder = 
+					new IntArraysToCompressedByteArrayProcessor(2000, sequenceLength, true).useDeduplication();
+			for (int[] sequence : sequences) {
+				plainEncoder.processItem(sequence);
+				dedupEncoder.processItem(sequence);
+			}
+			byte[] plain = plainEncoder.getResultFromCollectedItems();
+			byte[] deduplicated = dedupEncoder.getResultFromCollectedItems();
+			
+			assertTrue(deduplicated.length * 4 < plain.length);
+			int[][] decoded = new CompressedByteArrayToIntArraysProcessor(true).processItem(deduplicated);
+			assertArrayEquals(sequences, decoded);
+			// repeated sequences are decoded into separate arrays
+			for (int i = 1; i < decoded.length; ++i) {
+				if (Arrays.equals(decoded[0], decoded[i])) {
+					assertNotSame(decoded[0], decoded[i]);
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testIntSequences() throws Exception {
+		int[][] sequences = redundantSequences(500, 0);
+		IntSequencesToCompressedByteArrayProcessor encoder = 
+				new IntSequencesToCompressedByteArrayProcessor(2000, false).useDeduplication();
+		List<List<Integer>> expected = new ArrayList<>();
+		for (int[] sequence : sequences) {
+			List<Integer> list = new ArrayList<>();
+			for (int element : sequence) {
+				list.add(element);
+			}
+			expected.add(list);
+			encoder.processItem(list);
+		}
+		
+		assertEquals(expected, new CompressedByteArrayToIntSequencesProcessor().processItem(encoder.getResultFromCollectedItems()));
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void testEnableAfterFirstSequence() throws Exception {
+		IntArraysToCompressedByteArrayProcessor encoder = new IntArraysToCompressedByteArrayProcessor(10, false);
+		encoder.processItem(new int[] { 1 });
+		encoder.useDeduplication();
+	}
+
+}
@@ -0,0 +1,106 @@
+/**
+ * 
+ */
+package se.de.hu_berlin.informatik.utils.tm.modules.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import se.de.hu_berlin.informatik.utils.compression.CompressedByteArrayToIntArraysProcessor;
+import se.de.hu_berlin.informatik.utils.compression.DeltaCompressedByteArrayToIntArraysProcessor;
+import se.de.hu_berlin.informatik.utils.compression.DeltaCompressedByteArrayToIntSequencesProcessor;
+import se.de.hu_berlin.informatik.utils.compression.IntArraysToCompressedByteArrayProcessor;
+import se.de.hu_berlin.informatik.utils.compression.IntArraysToDeltaCompressedByteArrayProcessor;
+import se.de.hu_berlin.informatik.utils.compression.IntSequencesToDeltaCompressedByteArrayProcessor;
+
+/**
+ * @author Simon Heiden
+ *
+ */
+public class DeltaCompressionTest {
+
+	// mostly ascending sequences with small gaps and occasional large values
+	private static int[][] traces(int count) {
+		Random random = new Random(count);
+		int[][] sequences = new int[count][];
+		for (int i = 0; i < count; ++i) {
+			sequences[i] = new int[random.nextInt(50)];
+			int current = random.nextInt(100);
+			for (int j = 0; j < sequences[i].length; ++j) {
+				current += random.nextInt(10) - 1;
+				sequences[i][j] = random.nextInt(100) == 0 ? 1000000 : current;
+			}
+		}
+		return sequences;
+	}
+
+	@Test
+	public void testIntArraysRoundTrip() throws Exception {
+		int[][] sequences = traces(200);
+		sequences[0] = new int[] { Integer.MIN_VALUE, Integer.MAX_VALUE, 0, -1, -7, Integer.MAX_VALUE };
+		
+		IntArraysToDeltaCompressedByteArrayProcessor encoder = new IntArraysToDeltaCompressedByteArrayProcessor();
+		for (int[] sequence : sequences) {
+			encoder.processItem(sequence);
+		}
+		byte[] encoded = encoder.getResultFromCollectedItems();
+		
+		assertArrayEquals(sequences, new DeltaCompressedByteArrayToIntArraysProcessor().processItem(encoded));
+		
+		List<List<Integer>> decoded = new DeltaCompressedByteArrayToIntSequencesProcessor().processItem(encoded);
+		assertEquals(sequences.length, decoded.size());
+		for (int i = 0; i < sequences.length; ++i) {
+			assertEquals(sequences[i].length, decoded.get(i).size());
+			for (int j = 0; j < sequences[i].length; ++j) {
+				assertEquals(sequences[i][j], decoded.get(i).get(j).intValue());
+			}
+		}
+	}
+	
+	@Test
+	public void testIntSequencesFixedLengthRoundTrip() throws Exception {
+		IntSequencesToDeltaCompressedByteArrayProcessor encoder = new IntSequencesToDeltaCompressedByteArrayProcessor(4);
+		List<List<Integer>> sequences = new ArrayList<>();
+		sequences.add(Arrays.asList(1, 2, 3, 4));
+		sequences.add(Arrays.asList(400, 300, 200, 100));
+		sequences.add(Arrays.asList(0, 0, 0, 0));
+		for (List<Integer> sequence : sequences) {
+			encoder.processItem(sequence);
+		}
+		byte[] encoded = encoder.getResultFromCollectedItems();
+		
+		assertEquals(sequences, new DeltaCompressedByteArrayToIntSequencesProcessor().processItem(encoded));
+	}
+	
+	@Test
+	public void testSmallerThanBitPacking() throws Exception {
+		int[][] sequences = traces(500);
+		
+		IntArraysToDeltaCompressedByteArrayProcessor deltaEncoder = new IntArraysToDeltaCompressedByteArrayProcessor();
+		IntArraysToCompressedByteArrayProcessor bitEncoder = new IntArraysToCompressedByteArrayProcessor(1000000, true);
+		for (int[] sequence : sequences) {
+			deltaEncoder.processItem(sequence);
+			bitEncoder.processItem(sequence);
+		}
+		byte[] deltaEncoded = deltaEncoder.getResultFromCollectedItems();
+		byte[] bitEncoded = bitEncoder.getResultFromCollectedItems();
+		
+		assertArrayEquals(new CompressedByteArrayToIntArraysProcessor(true).processItem(bitEncoded), 
+				new DeltaCompressedByteArrayToIntArraysProcessor().processItem(deltaEncoded));
+		assertTrue(deltaEncoded.length * 2 < bitEncoded.length);
+	}
+	
+	@Test
+	public void testRejectsOtherFormats() throws Exception {
+		IntArraysToCompressedByteArrayProcessor bitEncoder = new IntArraysToCompressedByteArrayProcessor(10, false);
+		bitEncoder.processItem(new int[] { 1, 2 });
+		assertNull(new DeltaCompressedByteArrayToIntArraysProcessor().processItem(bitEncoder.getResultFromCollectedItems()));
+	}
+
+}
@@ -0,0 +1,150 @@
+/**
+ *
+ */
+package se.de.hu_berlin.informatik.utils.tm.modules.tests;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import se.de.hu_berlin.informatik.utils.compression.ziputils.LogStructuredArchive;
+import se.de.hu_berlin.informatik.utils.miscellaneous.TestSettings;
+
+/**
+ * @author Simon Heiden
+ *
+ */
+public class LogStructuredArchiveTest extends TestSettings {
+
+	@Before
+	public void setUp() throws Exception {
+		deleteTestOutputs();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		deleteTestOutputs();
+	}
+
+	private static byte[] bytes(String content) {
+		return content.getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testAddReplaceRemove() throws Exception {
+		Path path = Paths.get(getStdTestDir(), "basic.lsa");
+		LogStructuredArchive archive = LogStructuredArchive.getLogStructuredArchive(path);
+		archive.addArray(bytes("first"), "a");
+		archive.addArray(bytes("second"), "b");
+		archive.addArray(bytes("third"), "c");
+		assertEquals(0, archive.getGarbageSize());
+
+		archive.addArray(bytes("replaced"), "a");
+		archive.removeEntries(Arrays.asList("b", "unknown"));
+		assertTrue(archive.getGarbageSize() > 0);
+
+		assertArrayEquals(bytes("replaced"), archive.get("a", true));
+		assertNull(archive.get("b", false));
+		assertFalse(archive.exists("b"));
+		assertEquals(5, archive.getEntrySize("c"));
+		assertArrayEquals(bytes("ird"), archive.uncheckedGet("c", 2, 3));
+		assertArrayEquals(bytes("ird"), archive.uncheckedGet("c", 2, 10));
+		assertArrayEquals(bytes("th"), archive.uncheckedGet("c", Arrays.asList(2, 3)).get(0));
+		assertEquals(Arrays.asList("c", "a"), archive.getFileHeadersSatisfyingCheck(k -> true));
+
+		// reopen from the index footer
+		long garbage = archive.getGarbageSize();
+		archive.close();
+		assertArrayEquals(bytes("replaced"), archive.get("a", true));
+		assertEquals(Arrays.asList("c", "a"), archive.getFileHeadersSatisfyingCheck(k -> true));
+		assertEquals(garbage, archive.getGarbageSize());
+
+		// appending after reopening
+		archive.addArray(bytes("fourth"), "d");
+		archive.close();
+		assertArrayEquals(bytes("fourth"), archive.get("d", true));
+		archive.close();
+	}
+
+	@Test
+	public void testRecoveryWithoutFooter() throws Exception {
+		Path path = Paths.get(getStdTestDir(), "recovery.lsa");
+		LogStructuredArchive archive = LogStructuredArchive.getLogStructuredArchive(path);
+		archive.addArray(bytes("first"), "a");
+		archive.addArray(bytes("second"), "b");
+		archive.removeEntries(Arrays.asList("a"));
+		archive.close();
+
+		// remove the footer and append an incomplete record, as after a crash
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.READ)) {
+			ByteBuffer trailer = ByteBuffer.allocate(12);
+			channel.read(trailer, channel.size() - 12);
+			trailer.flip();
+			channel.truncate(trailer.getLong());
+			channel.write(ByteBuffer.wrap(new byte[] { 1, 0, 5, 'a' }), channel.size());
+		}
+
+		assertFalse(archive.exists("a"));
+		assertArrayEquals(bytes("second"), archive.get("b", true));
+		archive.addArray(bytes("third"), "c");
+		archive.close();
+		assertEquals(Arrays.asList("b", "c"), archive.getFileHeadersSatisfyingCheck(k -> true));
+		archive.close();
+	}
+
+	@Test
+	public void testCompaction() throws Exception {
+		Path path = Paths.get(getStdTestDir(), "compaction.lsa");
+		LogStructuredArchive archive = LogStructuredArchive.getLogStructuredArchive(path);
+		byte[] large = new byte[10000];
+		for (int i = 0; i < 20; ++i) {
+			archive.addArray(large, String.valueOf(i));
+		}
+		for (int i = 0; i < 10; ++i) {
+			archive.addArray(bytes("small" + i), String.valueOf(i));
+		}
+		archive.removeEntries(Arrays.asList("19"));
+		archive.close();
+		long size = Files.size(path);
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			CompletableFuture<Void> compaction = archive.compactInBackground(executor);
+			// writes during the compaction are kept
+			archive.addArray(bytes("during"), "20");
+			archive.removeEntries(Arrays.asList("18"));
+			compaction.join();
+		} finally {
+			executor.shutdown();
+		}
+
+		assertArrayEquals(bytes("small3"), archive.get("3", true));
+		assertArrayEquals(large, archive.get("15", true));
+		assertArrayEquals(bytes("during"), archive.get("20", true));
+		assertFalse(archive.exists("18"));
+		assertFalse(archive.exists("19"));
+		assertEquals(19, archive.getFileHeadersSatisfyingCheck(k -> true).size());
+
+		archive.compact();
+		assertEquals(0, archive.getGarbageSize());
+		archive.close();
+		assertTrue(Files.size(path) < size / 2);
+		assertArrayEquals(large, archive.get("17", true));
+		archive.close();
+	}
+
+}
@@ -0,0 +1,593 @@
+/**
+ *
+ */
+package se.de.hu_berlin.informatik.utils.tm.modules.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import se.de.hu_berlin.informatik.utils.compression.ziputils.DecompressedEntryCache;
+import se.de.hu_berlin.informatik.utils.compression.ziputils.MoveNamedByteArraysBetweenZipFilesProcessor;
+import se.de.hu_berlin.informatik.utils.compression.ziputils.ParallelZipWriter;
+import se.de.hu_berlin.informatik.utils.compression.ziputils.ZipEntryOutputStream;
+import se.de.hu_berlin.informatik.utils.compression.ziputils.ZipFileWrapper;
+import se.de.hu_berlin.informatik.utils.miscellaneous.Pair;
+import se.de.hu_berlin.informatik.utils.miscellaneous.TestSettings;
+
+/**
+ * @author Simon Heiden
+ *
+ */
+public class ZipFileWrapperTest extends TestSettings {
+
+	@Before
+	public void setUp() throws Exception {
+		deleteTestOutputs();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		deleteTestOutputs();
+	}
+
+	private static byte[] bytes(String content) {
+		return content.getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testReadsSeeWrites() throws Exception {
+		ZipFileWrapper zipFileWrapper = ZipFileWrapper.getZipFileWrapper(Paths.get(getStdTestDir(), "cache.zip"));
+		zipFileWrapper.addArray(bytes("first"), "a");
+		zipFileWrapper.addArray(bytes("second"), "b");
+
+		assertArrayEquals(bytes("first"), zipFileWrapper.get("a", true));
+		assertArrayEquals(bytes("second"), zipFileWrapper.uncheckedGet("b"));
+		assertTrue(zipFileWrapper.exists("b"));
+		assertFalse(zipFileWrapper.exists("c"));
+		assertEquals(6, zipFileWrapper.getEntrySize("b"));
+
+		// writing invalidates the cached zip file
+		zipFileWrapper.addArray(bytes("third"), "c");
+		assertTrue(zipFileWrapper.exists("c"));
+		zipFileWrapper.addArray(bytes("replaced"), "a");
+		assertArrayEquals(bytes("replaced"), zipFileWrapper.get("a", true));
+
+		zipFileWrapper.removeEntries(Arrays.asList("b"));
+		assertFalse(zipFileWrapper.exists("b"));
+		assertEquals(Arrays.asList("c", "a"), zipFileWrapper.getFileHeadersSatisfyingCheck(k -> true));
+
+		assertArrayEquals(bytes("ird"), zipFileWrapper.uncheckedGet("c", 2, 3));
+		List<byte[]> chunks = zipFileWrapper.uncheckedGet("c", Arrays.asList(2, 3));
+		assertArrayEquals(bytes("th"), chunks.get(0));
+		assertArrayEquals(bytes("ird"), chunks.get(1));
+	}
+
+	@Test
+	public void testConcurrentReadsAndWrites() throws Exception {
+		ZipFileWrapper zipFileWrapper = ZipFileWrapper.getZipFileWrapper(Paths.get(getStdTestDir(), "concurrent.zip"));
+		for (int i = 0; i < 20; ++i) {
+			zipFileWrapper.addArray(bytes("entry" + i), String.valueOf(i));
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int thread = 0; thread < 4; ++thread) {
+				futures.add(executor.submit(() -> {
+					for (int k = 0; k < 200; ++k) {
+						int i = k % 20;
+						assertArrayEquals(bytes("entry" + i), zipFileWrapper.get(String.valueOf(i), true));
+					}
+					return null;
+				}));
+			}
+			// writes in between the reads
+			for (int i = 20; i < 25; ++i) {
+				zipFileWrapper.addArray(bytes("entry" + i), String.valueOf(i));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(25, zipFileWrapper.getFileHeadersSatisfyingCheck(k -> true).size());
+	}
+
+	@Test
+	public void testRawTransferBetweenZipFiles() throws Exception {
+		ZipFileWrapper source = ZipFileWrapper.getZipFileWrapper(Paths.get(getStdTestDir(), "transferSource.zip"));
+		byte[] large = new byte[100000];
+		for (int i = 0; i < large.length; ++i) {
+			large[i] = (byte) (i % 7);
+		}
+		source.addArray(large, "large");
+		source.addArray(bytes("first"), "a");
+		source.addArray(bytes("second"), "b");
+		ZipFileWrapper target = ZipFileWrapper.getZipFileWrapper(Paths.get(getStdTestDir(), "transferTarget.zip"));
+		target.addArray(bytes("kept"), "x");
+		target.addArray(bytes("replaced"), "renamed");
+
+		assertEquals(3, target.transferEntries(source, Arrays.asList(
+				new Pair<>("b", "renamed"), new Pair<>("large", "large"),
+				new Pair<>("unknown", "y"), new Pair<>("a", "\u00e4"))));
+		assertFalse(target.transferEntry(source, "unknown", "y"));
+
+		assertArrayEquals(bytes("kept"), target.get("x", true));
+		assertArrayEquals(bytes("second"), target.get("renamed", true));
+		assertArrayEquals(bytes("first"), target.get("\u00e4", true));
+		assertArrayEquals(large, target.get("large", true));
+		assertEquals(4, target.getFileHeadersSatisfyingCheck(k -> true).size());
+		// the source is unchanged
+		assertArrayEquals(bytes("first"), source.get("a", true));
+
+		// writing afterwards reads the copied entries sequentially
+		target.addArray(bytes("new"), "z");
+		target.close();
+		List<String> names = new ArrayList<>();
+		try (ZipInputStream in = new ZipInputStream(Files.newInputStream(target.getzipFilePath()))) {
+			for (ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry()) {
+				names.add(entry.getName());
+			}
+		}
+		// entries are appended in the order of the source zip file
+		assertEquals(Arrays.asList("x", "large", "\u00e4", "renamed", "z"), names);
+		assertArrayEquals(large, target.get("large", true));
+
+		// transfer into a new zip file
+		ZipFileWrapper newTarget = ZipFileWrapper.getZipFileWrapper(Paths.get(getStdTestDir(), "new", "transferNew.zip"));
+		assertTrue(newTarget.transferEntry(target, "z", "z"));
+		assertArrayEquals(bytes("new"), newTarget.get("z", true));
+	}
+
+	@Test
+	public void testMoveProcessorTransfersCollectedEntries() throws Exception {
+		Path sourcePath = Paths.get(getStdTestDir(), "moveSource.zip");
+		Path targetPath = Paths.get(getStdTestDir(), "moveTarget.zip");
+		ZipFileWrapper source = ZipFileWrapper.getZipFileWrapper(sourcePath);
+		ZipFileWrapper target = ZipFileWrapper.getZipFileWrapper(targetPath);
+		for (int i = 0; i < 20; ++i) {
+			source.addArray(bytes("entry " + i), String.valueOf(i));
+		}
+		target.addArray(bytes("kept"), "kept");
+
+		MoveNamedByteArraysBetweenZipFilesProcessor processor = 
+				new MoveNamedByteArraysBetweenZipFilesProcessor(sourcePath, targetPath);
+		for (int i = 0; i < 20; ++i) {
+			assertNull(processor.processItem(new Pair<>(String.valueOf(i), "copy" + i)));
+		}
+		// the last source wins for duplicate target names
+		assertNull(processor.processItem(new Pair<>("0", "copy1")));
+		// nothing is copied before the collected items are processed
+		assertEquals(1, target.getFileHeadersSatisfyingCheck(k -> true).size());
+
+		assertTrue(processor.getResultFromCollectedItems());
+		assertEquals(21, target.getFileHeadersSatisfyingCheck(k -> true).size());
+		assertArrayEquals(bytes("entry 0"), target.get("copy1", true));
+		assertArrayEquals(bytes("entry 19"), target.get("copy19", true));
+		assertArrayEquals(bytes("kept"), target.get("kept", true));
+		assertNull(processor.getResultFromCollectedItems());
+
+		// unknown entries are reported, and the final shutdown copies remaining entries
+		processor.processItem(new Pair<>("unknown", "unknown"));
+		assertFalse(processor.getResultFromCollectedItems());
+		processor.processItem(new Pair<>("5", "last"));
+		assertTrue(processor.finalShutdown());
+		assertArrayEquals(bytes("entry 5"), target.get("last", true));
+	}
+
+	@Test
+	public void testParallelWriter() throws Exception {
+		ZipFileWrapper zipFileWrapper = ZipFileWrapper.getZipFileWrapper(Paths.get(getStdTestDir(), "parallel.zip"));
+		zipFileWrapper.addArray(bytes("existing"), "existing");
+		zipFileWrapper.addArray(bytes("old"), "3");
+
+		List<byte[]> arrays = new ArrayList<>();
+		// small limit, such that adding has to wait for entries to be written
+		try (ParallelZipWriter writer = new ParallelZipWriter(zipFileWrapper, 4, 50000)) {
+			for (int i = 0; i < 50; ++i) {
+				byte[] array = new byte[1000 * i];
+				for (int j = 0; j < array.length; ++j) {
+					array[j] = (byte) ((j * i) % 13);
+				}
+				arrays.add(array);
+				writer.addArray(array, String.valueOf(i));
+			}
+		}
+
+		List<String> names = new ArrayList<>();
+		names.add("existing");
+		for (int i = 0; i < 50; ++i) {
+			assertArrayEquals(arrays.get(i), zipFileWrapper.get(String.valueOf(i), true));
+			names.add(String.valueOf(i));
+		}
+		assertArrayEquals(bytes("existing"), zipFileWrapper.get("existing", true));
+		// entries are written in the order of submission
+		assertEquals(names, zipFileWrapper.getFileHeadersSatisfyingCheck(k -> true));
+
+		// the written entries are valid when read sequentially
+		zipFileWrapper.addArray(bytes("new"), "new");
+		assertArrayEquals(arrays.get(49), zipFileWrapper.get("49", true));
+	}
+
+	@Test
+	public void testParallelZipWriterFailure() throws Exception {
+		Path zipFilePath = Paths.get(getStdTestDir(), "failedParallel.zip");
+		ZipFileWrapper zipFileWrapper = ZipFileWrapper.getZipFileWrapper(zipFilePath);
+		zipFileWrapper.addArray(bytes("existing"), "existing");
+
+		// an invalid compression level lets every compression task fail
+		ParallelZipWriter writer = new ParallelZipWriter(zipFileWrapper, 2, 50000, 42);
+		try {
+			// the failure is reported by a later call of addArray or by flush
+			for (int i = 0; i < 10; ++i) {
+				writer.addArray(bytes("entry" + i), String.valueOf(i));
+			}
+			writer.flush();
+			fail();
+		} catch (IOException e) {
+			assertTrue(e.getCause() instanceof IllegalArgumentException);
+		}
+
+		// the writer stays in the failed state
+		try {
+			writer.addArray(bytes("late"), "late");
+			fail();
+		} catch (IOException e) {
+			assertTrue(e.getCause() instanceof IOException);
+		}
+		try {
+			writer.close();
+			fail();
+		} catch (IOException e) {
+			assertTrue(e.getCause() instanceof IOException);
+		}
+		writer.close();
+
+		assertEquals(Collections.singletonList("existing"), zipFileWrapper.getFileHeadersSatisfyingCheck(k -> true));
+		try (ZipFile zipFile = new ZipFile(zipFilePath.toFile())) {
+			assertEquals(1, zipFile.size());
+		}
+		assertArrayEquals(bytes("existing"), zipFileWrapper.get("existing", true));
+	}
+
+	@Test
+	public void testEntryOutputStream() throws Exception {
+		Path zipFilePath = Paths.get(getStdTestDir(), "entryStreams.zip");
+		ZipFileWrapper zipFileWrapper = ZipFileWrapper.getZipFileWrapper(zipFilePath);
+		zipFileWrapper.addArray(bytes("existing"), "existing");
+
+		byte[] large = new byte[100000];
+		new Random(42).nextBytes(large);
+		// the compressed data of the large entry does not fit into the buffer
+		try (ZipEntryOutputStream small = new ZipEntryOutputStream(zipFileWrapper, "small", 1024);
+				ZipEntryOutputStream spilled = new ZipEntryOutputStream(zipFileWrapper, "large", 1024)) {
+			small.write('s');
+			small.write(bytes("mall"));
+			for (int i = 0; i < large.length; i += 7000) {
+				spilled.write(large, i, Math.min(7000, large.length - i));
+			}
+			spilled.write(large, 0, 10);
+		}
+		new ZipEntryOutputStream(zipFileWrapper, "empty").close();
+		// the buffer grows beyond its initial size instead of spilling to a temporary file
+		try (ZipEntryOutputStream grown = new ZipEntryOutputStream(zipFileWrapper, "grown")) {
+			grown.write(large);
+			grown.flush();
+			try (Stream<Path> files = Files.list(zipFilePath.getParent())) {
+				assertFalse(files.anyMatch(file -> file.getFileName().toString().endsWith(".tmp")));
+			}
+		}
+
+		assertArrayEquals(bytes("existing"), zipFileWrapper.get("existing", true));
+		assertArrayEquals(large, zipFileWrapper.get("grown", true));
+		assertArrayEquals(bytes("small"), zipFileWrapper.get("small", true));
+		byte[] expected = Arrays.copyOf(large, large.length + 10);
+		System.arraycopy(large, 0, expected, large.length, 10);
+		assertArrayEquals(expected, zipFileWrapper.get("large", true));
+		assertArrayEquals(new byte[0], zipFileWrapper.get("empty", true));
+		try (ZipFile zipFile = new ZipFile(zipFilePath.toFile())) {
+			assertEquals(5, zipFile.size());
+		}
+		// temporary files are deleted
+		try (Stream<Path> files = Files.list(zipFilePath.getParent())) {
+			assertFalse(files.anyMatch(file -> file.getFileName().toString().endsWith(".tmp")));
+		}
+	}
+
+	@Test
+	public void testGetAll() throws Exception {
+		ZipFileWrapper zipFileWrapper = ZipFileWrapper.getZipFileWrapper(Paths.get(getStdTestDir(), "getAll.zip"));
+		for (int i = 0; i < 100; ++i) {
+			zipFileWrapper.addArray(bytes("entry" + i), String.valueOf(i));
+		}
+
+		List<String> names = Arrays.asList("42", "unknown", "7", "99", "7", "0");
+		Map<String, byte[]> contents = zipFileWrapper.getAll(names, 4);
+		assertEquals(Arrays.asList("42", "7", "99", "0"), new ArrayList<>(contents.keySet()));
+		for (Entry<String, byte[]> entry : contents.entrySet()) {
+			assertArrayEquals(bytes("entry" + entry.getKey()), entry.getValue());
+		}
+		assertEquals(contents.keySet(), zipFileWrapper.getAll(names, 1).keySet());
+
+		// streamed in the order of the entries in the file
+		List<String> streamed = new ArrayList<>();
+		List<String> all = new ArrayList<>();
+		for (int i = 99; i >= 0; --i) {
+			all.add(String.valueOf(i));
+		}
+		zipFileWrapper.getAll(all, 3, (name, content) -> {
+			assertArrayEquals(bytes("entry" + name), content);
+			streamed.add(name);
+		});
+		Collections.reverse(all);
+		assertEquals(all, streamed);
+	}
+
+	@Test
+	public void testGetAllWithExecutor() throws Exception {
+		ZipFileWrapper zipFileWrapper = ZipFileWrapper.getZipFileWrapper(Paths.get(getStdTestDir(), "getAllExecutor.zip"));
+		List<byte[]> arrays = new ArrayList<>();
+		List<String> names = new ArrayList<>();
+		Random random = new Random(42);
+		for (int i = 0; i < 20; ++i) {
+			// incompressible, to exceed the threshold for parallel reading
+			byte[] array = new byte[50000];
+			random.nextBytes(array);
+			arrays.add(array);
+			names.add(String.valueOf(i));
+			zipFileWrapper.addArray(array, String.valueOf(i));
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			for (int round = 0; round < 2; ++round) {
+				List<String> streamed = new ArrayList<>();
+				zipFileWrapper.getAll(names, executor, 3, (name, content) -> {
+					assertArrayEquals(arrays.get(Integer.parseInt(name)), content);
+					streamed.add(name);
+				});
+				assertEquals(names, streamed);
+			}
+			// the executor is not shut down
+			assertFalse(executor.isShutdown());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testGetAllWithUnsupportedDirectory() throws Exception {
+		// data in front of the first entry (e.g., a launcher script) shifts all positions
+		Path zipFilePath = Paths.get(getStdTestDir(), "prefixed.zip");
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(bytes("#!/bin/sh\nexit 0\n"));
+		try (ZipOutputStream zipOut = new ZipOutputStream(out)) {
+			for (int i = 0; i < 10; ++i) {
+				zipOut.putNextEntry(new ZipEntry(String.valueOf(i)));
+				zipOut.write(bytes("entry" + i));
+				zipOut.closeEntry();
+			}
+		}
+		Files.createDirectories(zipFilePath.getParent());
+		Files.write(zipFilePath, out.toByteArray());
+
+		ZipFileWrapper zipFileWrapper = ZipFileWrapper.getZipFileWrapper(zipFilePath);
+		List<String> names = Arrays.asList("9", "3", "5");
+		Map<String, byte[]> contents = zipFileWrapper.getAll(names, 4);
+		assertEquals(names, new ArrayList<>(contents.keySet()));
+		for (Entry<String, byte[]> entry : contents.entrySet()) {
+			assertArrayEquals(bytes("entry" + entry.getKey()), entry.getValue());
+		}
+	}
+
+	@Test
+	public void testEntryCache() throws Exception {
+		ZipFileWrapper zipFileWrapper = ZipFileWrapper.getZipFileWrapper(Paths.get(getStdTestDir(), "entryCache.zip"));
+		zipFileWrapper.addArray(new byte[600], "a");
+		zipFileWrapper.addArray(new byte[300], "b");
+		zipFileWrapper.addArray(new byte[2000], "large");
+		DecompressedEntryCache cache = new DecompressedEntryCache(1000);
+		zipFileWrapper.setEntryCache(cache);
+
+		byte[] a = zipFileWrapper.get("a", true);
+		a[0] = 1;
+		assertEquals(0, zipFileWrapper.get("a", true)[0]);
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, cache.getHitCount());
+		zipFileWrapper.get("b", true);
+		zipFileWrapper.get("large", true);
+		zipFileWrapper.get("large", true);
+		// too large to be cached
+		assertEquals(4, cache.getMissCount());
+		assertEquals(900, cache.getSize());
+
+		// closing keeps the cached entries
+		zipFileWrapper.close();
+		zipFileWrapper.getAll(Arrays.asList("a", "b"), 2);
+		assertEquals(3, cache.getHitCount());
+
+		// "b" is least recently used
+		zipFileWrapper.get("a", true);
+		ZipFileWrapper other = ZipFileWrapper.getZipFileWrapper(Paths.get(getStdTestDir(), "entryCacheOther.zip"));
+		other.addArray(new byte[200], "c");
+		other.setEntryCache(cache);
+		other.get("c", true);
+		assertEquals(1, cache.getEvictionCount());
+		assertEquals(800, cache.getSize());
+
+		// writing invalidates the entries of the written zip file only
+		zipFileWrapper.addArray(bytes("changed"), "a");
+		assertEquals(1, cache.getEntryCount());
+		assertArrayEquals(bytes("changed"), zipFileWrapper.get("a", true));
+		assertEquals(207, cache.getSize());
+	}
+
+	@Test
+	public void testMappedStoredEntries() throws Exception {
+		Path zipFilePath = Paths.get(getStdTestDir(), "stored.zip");
+		ZipFileWrapper zipFileWrapper = ZipFileWrapper.getZipFileWrapper(zipFilePath);
+		zipFileWrapper.addArray(bytes("compressed"), "compressed");
+		Map<String, byte[]> arrays = new LinkedHashMap<>();
+		arrays.put("a", bytes("stored content a"));
+		arrays.put("b", bytes("stored content b"));
+		zipFileWrapper.addStoredArrays(arrays, 4096);
+		zipFileWrapper.addStoredArray(bytes("stored content c"), "c");
+
+		byte[] file = Files.readAllBytes(zipFilePath);
+		for (String name : Arrays.asList("a", "b", "c")) {
+			byte[] expected = bytes("stored content " + name);
+			assertArrayEquals(expected, zipFileWrapper.get(name, true));
+			assertArrayEquals(bytes("content"), zipFileWrapper.uncheckedGet(name, 7, 7));
+
+			ByteBuffer buffer = zipFileWrapper.getMappedEntry(name);
+			assertTrue(buffer.isReadOnly());
+			byte[] mapped = new byte[buffer.remaining()];
+			buffer.get(mapped);
+			assertArrayEquals(expected, mapped);
+
+			// the data is aligned within the file
+			int position = indexOf(file, expected);
+			assertEquals(0, position % (name.equals("c") ? ZipFileWrapper.DEFAULT_STORED_ALIGNMENT : 4096));
+		}
+		try {
+			zipFileWrapper.getMappedEntry("compressed");
+			fail();
+		} catch (ZipException e) {
+			// expected
+		}
+
+		// stored entries survive a rewrite
+		zipFileWrapper.addArray(bytes("replaced"), "compressed");
+		assertArrayEquals(bytes("replaced"), zipFileWrapper.get("compressed", true));
+		ByteBuffer buffer = zipFileWrapper.getMappedEntry("b");
+		assertEquals('s', buffer.get(0));
+		assertEquals('b', buffer.get(buffer.limit() - 1));
+	}
+
+	@Test
+	public void testFailedAppendKeepsArchive() throws Exception {
+		Path zipFilePath = Paths.get(getStdTestDir(), "failed.zip");
+		ZipFileWrapper zipFileWrapper = ZipFileWrapper.getZipFileWrapper(zipFilePath);
+		zipFileWrapper.addArray(bytes("compressed"), "compressed");
+		zipFileWrapper.addStoredArray(bytes("stored"), "stored");
+		byte[] original = Files.readAllBytes(zipFilePath);
+
+		// the first entry gets written over the old central directory before the second one fails
+		Set<Entry<String, byte[]>> entries = new LinkedHashSet<>();
+		entries.add(new AbstractMap.SimpleImmutableEntry<>("a", bytes("written")));
+		entries.add(new AbstractMap.SimpleImmutableEntry<String, byte[]>("b", bytes("failing")) {
+			private static final long serialVersionUID = 1L;
+			private int calls = 0;
+			@Override
+			public byte[] getValue() {
+				// the first call only computes the maximum size
+				if (++calls % 2 == 0) {
+					throw new IllegalStateException("injected failure");
+				}
+				return super.getValue();
+			}
+		});
+		Map<String, byte[]> arrays = new AbstractMap<String, byte[]>() {
+			@Override
+			public Set<Entry<String, byte[]>> entrySet() {
+				return entries;
+			}
+		};
+		try {
+			zipFileWrapper.addStoredArrays(arrays, 4096);
+			fail();
+		} catch (IllegalStateException e) {
+			// expected
+		}
+
+		assertArrayEquals(original, Files.readAllBytes(zipFilePath));
+		try (ZipFile zipFile = new ZipFile(zipFilePath.toFile())) {
+			assertEquals(2, zipFile.size());
+		}
+		assertArrayEquals(bytes("compressed"), zipFileWrapper.get("compressed", true));
+		assertArrayEquals(bytes("stored"), zipFileWrapper.get("stored", true));
+		try {
+			zipFileWrapper.uncheckedGet("a");
+			fail();
+		} catch (ZipException e) {
+			// expected
+		}
+
+		// a failure while creating a new zip file leaves no file behind
+		Path newZipFilePath = Paths.get(getStdTestDir(), "failed_new.zip");
+		try {
+			ZipFileWrapper.getZipFileWrapper(newZipFilePath).addStoredArrays(arrays, 4096);
+			fail();
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		assertFalse(Files.exists(newZipFilePath));
+	}
+
+	private static int indexOf(byte[] array, byte[] pattern) {
+		outer: for (int i = 0; i <= array.length - pattern.length; ++i) {
+			for (int j = 0; j < pattern.length; ++j) {
+				if (array[i + j] != pattern[j]) {
+					continue outer;
+				}
+			}
+			return i;
+		}
+		return -1;
+	}
+
+	@Test
+	public void testExternalChangesAreDetected() throws Exception {
+		Path zipFilePath = Paths.get(getStdTestDir(), "external.zip");
+		ZipFileWrapper zipFileWrapper = ZipFileWrapper.getZipFileWrapper(zipFilePath);
+		zipFileWrapper.addArray(bytes("old"), "a");
+		assertTrue(zipFileWrapper.exists("a"));
+
+		// replace the file without using the wrapper
+		Path otherPath = Paths.get(getStdTestDir(), "other.zip");
+		ZipFileWrapper other = ZipFileWrapper.getZipFileWrapper(otherPath);
+		other.addArray(bytes("new entry with different size"), "b");
+		other.close();
+		Files.delete(zipFilePath);
+		Files.copy(otherPath, zipFilePath);
+
+		assertFalse(zipFileWrapper.exists("a"));
+		assertArrayEquals(bytes("new entry with different size"), zipFileWrapper.get("b", true));
+
+		Files.delete(zipFilePath);
+		assertNull(zipFileWrapper.get("b", false));
+	}
+
+}
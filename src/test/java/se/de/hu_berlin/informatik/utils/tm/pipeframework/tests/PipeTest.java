@@ -4,8 +4,19 @@
 package se.de.hu_berlin.informatik.utils.tm.pipeframework.tests;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.After;
 import org.junit.AfterClass;
@@ -15,8 +26,12 @@ import org.junit.Test;
 
 import se.de.hu_berlin.informatik.utils.miscellaneous.Log;
 import se.de.hu_berlin.informatik.utils.processors.AbstractProcessor;
+import se.de.hu_berlin.informatik.utils.processors.basics.ThreadedProcessor;
 import se.de.hu_berlin.informatik.utils.processors.sockets.pipe.Pipe;
 import se.de.hu_berlin.informatik.utils.processors.sockets.pipe.PipeLinker;
+import se.de.hu_berlin.informatik.utils.threaded.disruptor.DisruptorProvider;
+import se.de.hu_berlin.informatik.utils.threaded.disruptor.WaitStrategyType;
+import se.de.hu_berlin.informatik.utils.threaded.disruptor.eventhandler.DisruptorFCFSEventHandler;
 
 /**
  * @author SimHigh
@@ -189,4 +204,396 @@ public class PipeTest {
 		assertEquals(15000, processedElements.get());
 	}
 	
+	@Test
+	public void testWaitStrategies() throws Exception {
+		for (WaitStrategyType waitStrategy : WaitStrategyType.values()) {
+			final AtomicInteger processedElements = new AtomicInteger(0);
+			PipeLinker linker = new PipeLinker();
+			
+			linker.append(waitStrategy,
+					new AbstractProcessor<Integer, Integer>() {
+						@Override
+						public Integer processItem(Integer item) {
+							processedElements.incrementAndGet();
+							return item;
+						}
+					},
+					new AbstractProcessor<Integer, Integer>() {
+						@Override
+						public Integer processItem(Integer item) {
+							processedElements.incrementAndGet();
+							return item;
+						}
+					});
+			
+			for (int i = 0; i < 2000; ++i) {
+				linker.submit(i);
+			}
+			
+			linker.shutdown();
+			
+			assertEquals(waitStrategy.toString(), 4000, processedElements.get());
+		}
+	}
+	
+	@Test
+	public void testAppendKeepsWaitStrategiesOfPipes() throws Exception {
+		final AtomicInteger processedElements = new AtomicInteger(0);
+		Pipe<Integer, Integer> yielding = new Pipe<>(new AbstractProcessor<Integer, Integer>() {
+			@Override
+			public Integer processItem(Integer item) {
+				processedElements.incrementAndGet();
+				return item;
+			}
+		}, 8, true, null, WaitStrategyType.YIELDING);
+		Pipe<Integer, Integer> sleeping = new Pipe<>(new AbstractProcessor<Integer, Integer>() {
+			@Override
+			public Integer processItem(Integer item) {
+				processedElements.incrementAndGet();
+				return item;
+			}
+		}, 8, true, null).setWaitStrategy(WaitStrategyType.SLEEPING);
+		
+		PipeLinker linker = new PipeLinker().append(yielding, sleeping);
+		assertEquals(WaitStrategyType.YIELDING, yielding.getWaitStrategy());
+		assertEquals(WaitStrategyType.SLEEPING, sleeping.getWaitStrategy());
+		
+		for (int i = 0; i < 1000; ++i) {
+			linker.submit(i);
+		}
+		linker.shutdown();
+		assertEquals(2000, processedElements.get());
+		
+		// an explicitly given strategy replaces the strategies of the pipes
+		Pipe<Integer, Integer> pipe = new Pipe<>(new AbstractProcessor<Integer, Integer>() {
+			@Override
+			public Integer processItem(Integer item) {
+				return item;
+			}
+		}, 8, true, null, WaitStrategyType.YIELDING);
+		new PipeLinker().append(WaitStrategyType.BLOCKING, pipe);
+		assertEquals(WaitStrategyType.BLOCKING, pipe.getWaitStrategy());
+	}
+	
+	@Test
+	public void testConcurrentAndBatchSubmission() throws Exception {
+		final AtomicInteger processedElements = new AtomicInteger(0);
+		
+		Pipe<Integer, Integer> pipe = new AbstractProcessor<Integer, Integer>() {
+			@Override
+			public Integer processItem(Integer item) {
+				processedElements.incrementAndGet();
+				return item;
+			}
+		}.asPipe();
+		
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 4; ++t) {
+			threads.add(new Thread(() -> {
+				List<Integer> batch = new ArrayList<>();
+				for (int i = 0; i < 10000; ++i) {
+					if (i % 2 == 0) {
+						pipe.submit(i);
+					} else {
+						batch.add(i);
+						if (batch.size() == 100) {
+							// larger than the buffer size
+							batch.add(null);
+							pipe.submitBatch(batch);
+							batch.clear();
+						}
+					}
+				}
+				pipe.submitBatch(batch);
+			}));
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		
+		pipe.shutdown();
+		
+		assertEquals(40000, processedElements.get());
+	}
+	
+	@Test(timeout = 60000)
+	public void testConcurrentSubmissionAndShutdown() throws Exception {
+		final AtomicInteger processedElements = new AtomicInteger(0);
+		final AtomicReference<Throwable> error = new AtomicReference<>();
+		
+		Pipe<Integer, Integer> pipe = new AbstractProcessor<Integer, Integer>() {
+			@Override
+			public Integer processItem(Integer item) {
+				processedElements.incrementAndGet();
+				return null;
+			}
+		}.asPipe();
+		
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 4; ++t) {
+			Thread thread = new Thread(() -> {
+				List<Integer> batch = new ArrayList<>();
+				for (int i = 0; i < 20000; ++i) {
+					if (i % 2 == 0) {
+						pipe.submit(i);
+					} else {
+						batch.add(i);
+						if (batch.size() == 10) {
+							pipe.submitBatch(batch);
+							batch.clear();
+						}
+					}
+				}
+			});
+			thread.setUncaughtExceptionHandler((th, e) -> error.set(e));
+			threads.add(thread);
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		// submissions restart the pipe after each shutdown
+		while (threads.stream().anyMatch(Thread::isAlive)) {
+			pipe.shutdown();
+			Thread.sleep(1);
+		}
+		pipe.shutdown();
+		
+		assertNull(error.get());
+		assertEquals(80000, processedElements.get());
+	}
+	
+	@Test
+	public void testDrainOnShutdown() throws Exception {
+		final AtomicInteger processedElements = new AtomicInteger(0);
+		
+		PipeLinker linker = new PipeLinker().append(
+				new AbstractProcessor<Integer, Integer>() {
+					@Override
+					public Integer processItem(Integer item) {
+						return item;
+					}
+				},
+				new AbstractProcessor<Integer, Integer>() {
+					@Override
+					public Integer processItem(Integer item) {
+						return item;
+					}
+				},
+				new AbstractProcessor<Integer, Integer>() {
+					@Override
+					public Integer processItem(Integer item) {
+						processedElements.incrementAndGet();
+						return null;
+					}
+				});
+		
+		// shutting down a chain that has not been started does nothing
+		linker.shutdown();
+		
+		for (int i = 0; i < 1000; ++i) {
+			linker.submit(i);
+		}
+		linker.shutdown();
+		assertEquals(1000, processedElements.get());
+		
+		// an idle provider drains without waiting: even with no time left, 
+		// the shutdown does not time out and waits for the handler threads
+		DisruptorProvider<Integer> idleProvider = new DisruptorProvider<>(8);
+		idleProvider.connectHandlers(new DisruptorFCFSEventHandler<Integer>() {
+			@Override
+			public void processEvent(Integer input) throws Exception {
+				processedElements.incrementAndGet();
+			}
+			@Override
+			public void resetAndInit() {
+				// nothing to reset
+			}
+		});
+		idleProvider.setShutdownTimeout(0, TimeUnit.NANOSECONDS);
+		idleProvider.submit(0);
+		while (idleProvider.getPendingEventCount() > 0) {
+			Thread.yield();
+		}
+		assertTrue(idleProvider.isRunning());
+		idleProvider.shutdown();
+		assertFalse(idleProvider.isRunning());
+		assertTrue(idleProvider.isTerminated());
+		assertEquals(1001, processedElements.get());
+		
+		// shutdown stops waiting for pending items after the timeout
+		final CountDownLatch latch = new CountDownLatch(1);
+		DisruptorProvider<Integer> provider = new DisruptorProvider<>(8);
+		provider.connectHandlers(new DisruptorFCFSEventHandler<Integer>() {
+			@Override
+			public void processEvent(Integer input) throws Exception {
+				processedElements.incrementAndGet();
+				latch.await();
+			}
+			@Override
+			public void resetAndInit() {
+				// nothing to reset
+			}
+		});
+		provider.setShutdownTimeout(50, TimeUnit.MILLISECONDS);
+		processedElements.set(0);
+		for (int i = 0; i < 8; ++i) {
+			provider.submit(i);
+		}
+		provider.shutdown();
+		assertTrue(provider.getLastDrainTime(TimeUnit.MILLISECONDS) >= 50);
+		assertTrue(processedElements.get() <= 1);
+		
+		// no restart while the handler is still busy
+		assertFalse(provider.isTerminated());
+		try {
+			provider.submit(8);
+			fail("restarted while the old handler thread is running");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		
+		latch.countDown();
+		assertTrue(provider.awaitTermination(10, TimeUnit.SECONDS));
+		processedElements.set(0);
+		provider.submit(8);
+		provider.shutdown();
+		assertEquals(1, processedElements.get());
+		assertTrue(provider.isTerminated());
+	}
+	
+	@Test
+	public void testThreadedProcessor() throws Exception {
+		final AtomicInteger processedElements = new AtomicInteger(0);
+		final AtomicLong sum = new AtomicLong(0);
+		
+		PipeLinker linker = new PipeLinker().append(
+				new ThreadedProcessor<>(4, new AbstractProcessor<Integer, Integer>() {
+					@Override
+					public Integer processItem(Integer item) {
+						// null outputs are ignored by the multiplexer
+						return item % 10 == 0 ? null : 2 * item;
+					}
+				}),
+				new AbstractProcessor<Integer, Integer>() {
+					@Override
+					public Integer processItem(Integer item) {
+						processedElements.incrementAndGet();
+						sum.addAndGet(item);
+						return null;
+					}
+				});
+		
+		// more items than fit into the multiplexer's buffer
+		for (int i = 0; i < 10000; ++i) {
+			linker.submit(i);
+		}
+		linker.shutdown();
+		assertEquals(9000, processedElements.get());
+		assertEquals(2 * (49995000L - 4995000L), sum.get());
+		
+		// the multiplexer gets restarted
+		linker.submitAndShutdown(1, 2, 3);
+		assertEquals(9003, processedElements.get());
+	}
+	
+	@Test
+	public void testOrderPreservingThreadedProcessor() throws Exception {
+		final List<Integer> outputs = new ArrayList<>();
+		
+		PipeLinker linker = new PipeLinker().append(
+				new ThreadedProcessor<>(4, new AbstractProcessor<Integer, Integer>() {
+					@Override
+					public Integer processItem(Integer item) {
+						if (item % 100 == 0) {
+							// a slow item holds back the following items
+							try {
+								Thread.sleep(20);
+							} catch (InterruptedException e) {
+								// do nothing
+							}
+						}
+						// null outputs are ignored by the multiplexer
+						return item % 10 == 5 ? null : item;
+					}
+				}).preserveOrder(16),
+				new AbstractProcessor<Integer, Integer>() {
+					@Override
+					public Integer processItem(Integer item) {
+						outputs.add(item);
+						return null;
+					}
+				});
+		
+		List<Integer> expected = new ArrayList<>();
+		for (int i = 0; i < 1000; ++i) {
+			linker.submit(i);
+			if (i % 10 != 5) {
+				expected.add(i);
+			}
+		}
+		linker.shutdown();
+		assertEquals(expected, outputs);
+		
+		// sequences start at 0 again after a restart
+		outputs.clear();
+		linker.submitAndShutdown(3, 2, 1, 5, 0);
+		assertEquals(Arrays.asList(3, 2, 1, 0), outputs);
+	}
+	
+	@Test
+	public void testWorkerPool() throws Exception {
+		final AtomicInteger processedElements = new AtomicInteger(0);
+		final AtomicLong sum = new AtomicLong(0);
+		final List<Integer> outputs = new ArrayList<>();
+		
+		ThreadedProcessor<Integer, Integer> threadedProcessor = new ThreadedProcessor<>(4, 
+				new AbstractProcessor<Integer, Integer>() {
+					@Override
+					public Integer processItem(Integer item) {
+						processedElements.incrementAndGet();
+						if (item % 100 == 0) {
+							// long running items do not hold back the other threads
+							try {
+								Thread.sleep(10);
+							} catch (InterruptedException e) {
+								// do nothing
+							}
+						}
+						return item;
+					}
+				}).setWorkerPool(true);
+		PipeLinker linker = new PipeLinker().append(
+				threadedProcessor,
+				new AbstractProcessor<Integer, Integer>() {
+					@Override
+					public Integer processItem(Integer item) {
+						sum.addAndGet(item);
+						outputs.add(item);
+						return null;
+					}
+				});
+		
+		List<Integer> expected = new ArrayList<>();
+		for (int i = 0; i < 2000; ++i) {
+			linker.submit(i);
+			expected.add(i);
+		}
+		linker.shutdown();
+		// each item is processed exactly once
+		assertEquals(2000, processedElements.get());
+		assertEquals(1999000L, sum.get());
+		
+		// combined with the order preserving mode
+		threadedProcessor.preserveOrder(8);
+		outputs.clear();
+		for (int i = 0; i < 2000; ++i) {
+			linker.submit(i);
+		}
+		linker.shutdown();
+		assertEquals(expected, outputs);
+	}
+	
 }